@@ -0,0 +1,35 @@
+/*
+ * Copyright © 2020 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+
+package io.cdap.cdap.api.metrics;
+
+import io.cdap.cdap.api.annotation.Beta;
+
+/**
+ * A handle for incrementing a counter metric that is bound to a metric name and the tags of the context it was
+ * obtained from. Obtaining the handle once and reusing it avoids resolving the metric on every increment.
+ */
+@Beta
+public interface Counter {
+
+  /**
+   * Increases the value of the counter by delta.
+   *
+   * @param delta the value to increase by
+   */
+  void increment(long delta);
+}
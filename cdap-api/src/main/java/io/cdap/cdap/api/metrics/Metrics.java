@@ -16,6 +16,8 @@
 
 package io.cdap.cdap.api.metrics;
 
+import io.cdap.cdap.api.annotation.Beta;
+
 import java.util.Map;
 
 /**
@@ -37,6 +39,28 @@ public interface Metrics {
    */
   void gauge(String metricName, long value);
 
+  /**
+   * Returns a {@link Counter} for the specific metric. The returned counter should be reused for emitting the same
+   * metric repeatedly, which is cheaper than calling {@link #count(String, int)} each time.
+   * @param metricName Name of the counter. Use alphanumeric characters in metric names.
+   * @return a {@link Counter} bound to the given metric name
+   */
+  @Beta
+  default Counter counter(String metricName) {
+    return delta -> count(metricName, Math.toIntExact(delta));
+  }
+
+  /**
+   * Returns a {@link Gauge} for the specific metric. The returned gauge should be reused for emitting the same
+   * metric repeatedly, which is cheaper than calling {@link #gauge(String, long)} each time.
+   * @param metricName Name of the gauge. Use alphanumeric characters in metric names.
+   * @return a {@link Gauge} bound to the given metric name
+   */
+  @Beta
+  default Gauge gauge(String metricName) {
+    return value -> gauge(metricName, value);
+  }
+
   /**
    * Get the child {@link Metrics} by adding specified tags to the current metrics context.
    * @param tags to be added to the current metrics context
@@ -37,4 +37,22 @@ public interface MetricsCollector {
    * @param value value of the metric.
    */
   void gauge(String metricName, long value);
+
+  /**
+   * Returns a {@link Counter} for the given metric. The returned counter should be reused for emitting the same
+   * metric repeatedly, which is cheaper than calling {@link #increment(String, long)} each time.
+   * @param metricName Name of the metric.
+   */
+  default Counter counter(String metricName) {
+    return delta -> increment(metricName, delta);
+  }
+
+  /**
+   * Returns a {@link Gauge} for the given metric. The returned gauge should be reused for emitting the same
+   * metric repeatedly, which is cheaper than calling {@link #gauge(String, long)} each time.
+   * @param metricName Name of the metric.
+   */
+  default Gauge gauge(String metricName) {
+    return value -> gauge(metricName, value);
+  }
 }
@@ -17,6 +17,8 @@
 package io.cdap.cdap.app.metrics;
 
 import com.google.common.collect.Sets;
+import io.cdap.cdap.api.metrics.Counter;
+import io.cdap.cdap.api.metrics.Gauge;
 import io.cdap.cdap.api.metrics.Metrics;
 import io.cdap.cdap.api.metrics.MetricsCollectionService;
 import io.cdap.cdap.api.metrics.MetricsContext;
@@ -54,6 +56,16 @@ public class ProgramUserMetrics implements Metrics {
     metricsContext.gauge(metricName, value);
   }
 
+  @Override
+  public Counter counter(String metricName) {
+    return metricsContext.counter(metricName);
+  }
+
+  @Override
+  public Gauge gauge(String metricName) {
+    return metricsContext.gauge(metricName);
+  }
+
   @Override
   public Metrics child(Map<String, String> tags) {
     Sets.SetView<String> intersection = Sets.intersection(getTags().keySet(), tags.keySet());
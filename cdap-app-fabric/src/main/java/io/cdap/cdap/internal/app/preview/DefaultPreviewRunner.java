@@ -45,6 +45,7 @@ import io.cdap.cdap.data2.datafabric.dataset.service.executor.DatasetOpExecutorS
 import io.cdap.cdap.data2.dataset2.lib.table.leveldb.LevelDBTableService;
 import io.cdap.cdap.internal.app.deploy.ProgramTerminator;
 import io.cdap.cdap.internal.app.runtime.AbstractListener;
+import io.cdap.cdap.internal.app.runtime.artifact.UnpackedArtifactCache;
 import io.cdap.cdap.internal.app.services.ApplicationLifecycleService;
 import io.cdap.cdap.internal.app.services.ProgramLifecycleService;
 import io.cdap.cdap.internal.app.services.ProgramNotificationSubscriberService;
@@ -110,6 +111,7 @@ public class DefaultPreviewRunner extends AbstractIdleService implements Preview
   private final LevelDBTableService levelDBTableService;
   private final StructuredTableAdmin structuredTableAdmin;
   private final StructuredTableRegistry structuredTableRegistry;
+  private final UnpackedArtifactCache unpackedArtifactCache;
   private final Path previewIdDirPath;
 
   @Inject
@@ -128,6 +130,7 @@ public class DefaultPreviewRunner extends AbstractIdleService implements Preview
                        LevelDBTableService levelDBTableService,
                        StructuredTableAdmin structuredTableAdmin,
                        StructuredTableRegistry structuredTableRegistry,
+                       UnpackedArtifactCache unpackedArtifactCache,
                        CConfiguration cConf) {
     this.messagingService = messagingService;
     this.dsOpExecService = dsOpExecService;
@@ -144,6 +147,7 @@ public class DefaultPreviewRunner extends AbstractIdleService implements Preview
     this.levelDBTableService = levelDBTableService;
     this.structuredTableAdmin = structuredTableAdmin;
     this.structuredTableRegistry = structuredTableRegistry;
+    this.unpackedArtifactCache = unpackedArtifactCache;
     this.previewIdDirPath = Paths.get(cConf.get(Constants.CFG_LOCAL_DATA_DIR), "previewid").toAbsolutePath();
   }
 
@@ -310,6 +314,7 @@ public class DefaultPreviewRunner extends AbstractIdleService implements Preview
                                                                        Constants.Logging.COMPONENT_NAME,
                                                                        Constants.Service.PREVIEW_HTTP));
     Futures.allAsList(
+      unpackedArtifactCache.start(),
       applicationLifecycleService.start(),
       programRuntimeService.start(),
       metricsCollectionService.start(),
@@ -350,6 +355,7 @@ public class DefaultPreviewRunner extends AbstractIdleService implements Preview
     if (messagingService instanceof Service) {
       ((Service) messagingService).stopAndWait();
     }
+    unpackedArtifactCache.stopAndWait();
     levelDBTableService.close();
   }
 
@@ -18,9 +18,11 @@ package io.cdap.cdap.internal.app.runtime;
 
 import com.google.common.io.Closeables;
 import com.google.common.util.concurrent.Service;
+import com.google.inject.Inject;
 import io.cdap.cdap.app.runtime.ProgramOptions;
 import io.cdap.cdap.app.runtime.ProgramRunner;
 import io.cdap.cdap.common.conf.CConfiguration;
+import io.cdap.cdap.internal.app.runtime.artifact.UnpackedArtifactCache;
 import io.cdap.cdap.internal.app.runtime.plugin.PluginInstantiator;
 import org.apache.twill.internal.ServiceListenerAdapter;
 
@@ -34,11 +36,21 @@ import javax.annotation.Nullable;
 public abstract class AbstractProgramRunnerWithPlugin implements ProgramRunner {
 
   protected final CConfiguration cConf;
+  private UnpackedArtifactCache artifactCache;
 
   public AbstractProgramRunnerWithPlugin(CConfiguration cConf) {
     this.cConf = cConf;
   }
 
+  /**
+   * Sets the {@link UnpackedArtifactCache} for expanding plugin jars. If it is not set, plugin jars are expanded
+   * to temporary directories owned by each {@link PluginInstantiator}.
+   */
+  @Inject(optional = true)
+  public void setArtifactCache(UnpackedArtifactCache artifactCache) {
+    this.artifactCache = artifactCache;
+  }
+
   /**
    * Creates a {@link PluginInstantiator} based on the {@link ProgramOptionConstants#PLUGIN_DIR} in
    * the system arguments in the given {@link ProgramOptions}.
@@ -53,7 +65,8 @@ public abstract class AbstractProgramRunnerWithPlugin implements ProgramRunner {
       return null;
     }
     return new PluginInstantiator(
-      cConf, classLoader, new File(options.getArguments().getOption(ProgramOptionConstants.PLUGIN_DIR)));
+      cConf, classLoader, new File(options.getArguments().getOption(ProgramOptionConstants.PLUGIN_DIR)), true,
+      artifactCache);
   }
 
   /**
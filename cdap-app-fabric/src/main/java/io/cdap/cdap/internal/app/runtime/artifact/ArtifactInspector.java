@@ -133,7 +133,7 @@ final class ArtifactInspector {
         PluginInstantiator pluginInstantiator =
           new PluginInstantiator(cConf, parentClassLoader == null ? artifactClassLoader : parentClassLoader,
                                  Files.createTempDirectory(stageDir, "plugins-").toFile(),
-                                 false)) {
+                                 false, artifactClassLoaderFactory.getArtifactCache())) {
         pluginInstantiator.addArtifact(artifactLocation, artifactId.toArtifactId());
         ArtifactClasses.Builder builder = inspectApplications(artifactId, ArtifactClasses.builder(),
                                                               artifactLocation, artifactClassLoader);
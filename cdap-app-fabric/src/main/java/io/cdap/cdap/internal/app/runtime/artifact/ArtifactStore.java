@@ -19,6 +19,7 @@ package io.cdap.cdap.internal.app.runtime.artifact;
 import com.google.common.annotations.VisibleForTesting;
 import com.google.common.base.Throwables;
 import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
 import com.google.common.collect.Lists;
 import com.google.common.collect.Maps;
 import com.google.common.collect.MinMaxPriorityQueue;
@@ -33,6 +34,9 @@ import io.cdap.cdap.api.artifact.ArtifactScope;
 import io.cdap.cdap.api.artifact.ArtifactVersion;
 import io.cdap.cdap.api.data.schema.Schema;
 import io.cdap.cdap.api.dataset.lib.CloseableIterator;
+import io.cdap.cdap.api.metrics.MetricsCollectionService;
+import io.cdap.cdap.api.metrics.MetricsContext;
+import io.cdap.cdap.api.metrics.NoopMetricsContext;
 import io.cdap.cdap.api.plugin.PluginClass;
 import io.cdap.cdap.common.ArtifactAlreadyExistsException;
 import io.cdap.cdap.common.ArtifactNotFoundException;
@@ -41,7 +45,6 @@ import io.cdap.cdap.common.conf.Constants;
 import io.cdap.cdap.common.id.Id;
 import io.cdap.cdap.common.io.Locations;
 import io.cdap.cdap.common.namespace.NamespacePathLocator;
-import io.cdap.cdap.common.utils.ImmutablePair;
 import io.cdap.cdap.internal.app.runtime.plugin.PluginNotExistsException;
 import io.cdap.cdap.internal.io.SchemaTypeAdapter;
 import io.cdap.cdap.proto.artifact.ArtifactSortOrder;
@@ -84,6 +87,8 @@ import java.util.Set;
 import java.util.SortedMap;
 import java.util.Spliterators;
 import java.util.TreeMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
 import java.util.function.BinaryOperator;
 import java.util.function.Function;
 import java.util.function.Predicate;
@@ -169,6 +174,11 @@ import javax.annotation.Nullable;
  *
  * In order to prevent deadlock if the storage backend is SQL, if a transaction needs to use multiple tables, the order
  * to use the table will be: artifact_data -> app_data -> plugin_data -> universal_plugin_data
+ *
+ * Plugin lookups are served from a {@link PluginCatalog}, which is built from a full scan of the plugin_data and
+ * universal_plugin_data tables. The catalog is rebuilt on the next lookup after any artifact is written or deleted
+ * through this store, or after it is older than the configured TTL, which bounds how long changes made by
+ * other processes can go unnoticed.
  */
 public class ArtifactStore {
   private static final String ARTIFACTS_PATH = "artifacts";
@@ -177,12 +187,20 @@ public class ArtifactStore {
     .registerTypeAdapter(Schema.class, new SchemaTypeAdapter())
     .registerTypeAdapter(ArtifactRange.class, new ArtifactRangeCodec())
     .create();
+  private static final Map<String, String> METRICS_TAGS = ImmutableMap.of(
+    Constants.Metrics.Tag.NAMESPACE, NamespaceId.SYSTEM.getNamespace(),
+    Constants.Metrics.Tag.COMPONENT, Constants.Service.APP_FABRIC_HTTP);
 
   private final LocationFactory locationFactory;
   private final NamespacePathLocator namespacePathLocator;
   private final Impersonator impersonator;
   private final Set<String> requirementBlacklist;
   private final TransactionRunner transactionRunner;
+  private final long pluginCatalogTTLMillis;
+  private final AtomicLong pluginGeneration;
+  private final Object pluginCatalogLock;
+  private volatile PluginCatalog pluginCatalog;
+  private MetricsContext metricsContext;
 
   @Inject
   ArtifactStore(CConfiguration cConf,
@@ -197,6 +215,20 @@ public class ArtifactStore {
       new HashSet<>(cConf.getTrimmedStringCollection(Constants.REQUIREMENTS_DATASET_TYPE_EXCLUDE))
         .stream().map(String::toLowerCase).collect(Collectors.toSet());
     this.transactionRunner = transactionRunner;
+    this.pluginCatalogTTLMillis =
+      TimeUnit.SECONDS.toMillis(cConf.getLong(Constants.AppFabric.ARTIFACT_PLUGIN_CATALOG_TTL_SECONDS));
+    this.pluginGeneration = new AtomicLong();
+    this.pluginCatalogLock = new Object();
+    this.metricsContext = new NoopMetricsContext();
+  }
+
+  /**
+   * Optional guice injection for the {@link MetricsCollectionService} to emit plugin catalog hit and miss metrics.
+   * It is optional because not every process that uses the store has metrics collection.
+   */
+  @Inject(optional = true)
+  void setMetricsCollectionService(MetricsCollectionService metricsCollectionService) {
+    this.metricsContext = metricsCollectionService.getContext(METRICS_TAGS);
   }
 
   /**
@@ -483,35 +515,23 @@ public class ArtifactStore {
                                                                           @Nullable String type)
     throws ArtifactNotFoundException, IOException {
 
+    PluginCatalog catalog = getPluginCatalog();
     return TransactionRunners.run(transactionRunner, context -> {
       StructuredTable artifactDataTable = getTable(context, StoreDefinition.ArtifactStore.ARTIFACT_DATA_TABLE);
       SortedMap<ArtifactDescriptor, Set<PluginClass>> plugins =
         getPluginsInArtifact(artifactDataTable, parentArtifactId,
                              input -> (type == null || type.equals(input.getType())) && isAllowed(input));
 
-      // Scan plugins
-      StructuredTable pluginTable = getTable(context, StoreDefinition.ArtifactStore.PLUGIN_DATA_TABLE);
-      try (CloseableIterator<StructuredRow> iterator =
-             pluginTable.scan(createPluginScanRange(parentArtifactId, type), Integer.MAX_VALUE)) {
-        while (iterator.hasNext()) {
-          StructuredRow row = iterator.next();
-          addPluginToMap(namespace, parentArtifactId, plugins, row);
-        }
+      // Lookup plugins
+      for (PluginCatalog.Entry entry : getPlugins(context, catalog, parentArtifactId.getNamespace().getId(),
+                                                  parentArtifactId.getName(), type, null)) {
+        addPluginToMap(namespace, parentArtifactId, plugins, entry);
       }
 
-      // Scan universal plugins
-      StructuredTable uniPluginTable = getTable(context, StoreDefinition.ArtifactStore.UNIV_PLUGIN_DATA_TABLE);
-      List<Range> ranges = Arrays.asList(
-        createUniversalPluginScanRange(namespace.getNamespace(), type),
-        createUniversalPluginScanRange(NamespaceId.SYSTEM.getNamespace(), type)
-      );
-
-      for (Range range : ranges) {
-        try (CloseableIterator<StructuredRow> iterator = uniPluginTable.scan(range, Integer.MAX_VALUE)) {
-          while (iterator.hasNext()) {
-            StructuredRow row = iterator.next();
-            addPluginToMap(namespace, parentArtifactId, plugins, row);
-          }
+      // Lookup universal plugins
+      for (String ns : Arrays.asList(namespace.getNamespace(), NamespaceId.SYSTEM.getNamespace())) {
+        for (PluginCatalog.Entry entry : getUniversalPlugins(context, catalog, ns, type, null)) {
+          addPluginToMap(namespace, parentArtifactId, plugins, entry);
         }
       }
 
@@ -567,6 +587,7 @@ public class ArtifactStore {
     @Nullable final Predicate<io.cdap.cdap.proto.id.ArtifactId> pluginRange, int limit, ArtifactSortOrder order)
     throws IOException, ArtifactNotFoundException, PluginNotExistsException {
 
+    PluginCatalog catalog = getPluginCatalog();
     SortedMap<ArtifactDescriptor, PluginClass> result = TransactionRunners.run(transactionRunner, context -> {
       StructuredTable artifactDataTable = getTable(context, StoreDefinition.ArtifactStore.ARTIFACT_DATA_TABLE);
       List<ArtifactDetail> parentArtifactDetails = getArtifacts(artifactDataTable, parentArtifactRange,
@@ -595,22 +616,15 @@ public class ArtifactStore {
       }
 
       // Add all plugins that extends from the given set of parents
-      StructuredTable pluginTable = getTable(context, StoreDefinition.ArtifactStore.PLUGIN_DATA_TABLE);
-      PluginKeyPrefix pluginKey = new PluginKeyPrefix(parentArtifactRange.getNamespace(),
-                                                      parentArtifactRange.getName(), type, name);
-      try (CloseableIterator<StructuredRow> iterator =
-             pluginTable.scan(Range.singleton(pluginKey.keys), Integer.MAX_VALUE)) {
-        addPluginsInRangeToMap(namespace, parentArtifacts, iterator, plugins, pluginRange, limit);
-      }
+      addPluginsInRangeToMap(namespace, parentArtifacts,
+                             getPlugins(context, catalog, parentArtifactRange.getNamespace(),
+                                        parentArtifactRange.getName(), type, name),
+                             plugins, pluginRange, limit);
 
       // Add all universal plugins
-      StructuredTable uniPluginTable = getTable(context, StoreDefinition.ArtifactStore.UNIV_PLUGIN_DATA_TABLE);
       for (String ns : Arrays.asList(namespace.getNamespace(), NamespaceId.SYSTEM.getNamespace())) {
-        UniversalPluginKeyPrefix universalPluginKey = new UniversalPluginKeyPrefix(ns, type, name);
-        try (CloseableIterator<StructuredRow> iterator =
-               uniPluginTable.scan(Range.singleton(universalPluginKey.keys), Integer.MAX_VALUE)) {
-          addPluginsInRangeToMap(namespace, parentArtifacts, iterator, plugins, pluginRange, limit);
-        }
+        addPluginsInRangeToMap(namespace, parentArtifacts, getUniversalPlugins(context, catalog, ns, type, name),
+                               plugins, pluginRange, limit);
       }
 
       return Collections.unmodifiableSortedMap(plugins);
@@ -719,6 +733,7 @@ public class ArtifactStore {
         // write artifact metadata
         writeMeta(context, artifactId, data);
       });
+      pluginGeneration.incrementAndGet();
 
       return new ArtifactDetail(new ArtifactDescriptor(artifactId.toArtifactId(), destination), artifactMeta);
     } catch (TransactionException e) {
@@ -768,6 +783,7 @@ public class ArtifactStore {
                  GSON.fromJson(optional.get().getString(StoreDefinition.ArtifactStore.ARTIFACT_DATA_FIELD),
                                ArtifactData.class));
     }, IOException.class, ArtifactNotFoundException.class);
+    pluginGeneration.incrementAndGet();
   }
 
   /**
@@ -797,7 +813,7 @@ public class ArtifactStore {
       // delete all rows about universal plugins
       StructuredTable univPluginsDataTable  = getTable(context, StoreDefinition.ArtifactStore.UNIV_PLUGIN_DATA_TABLE);
       deleteRangeFromTable(univPluginsDataTable,
-                           createUniversalPluginScanRange(namespace.getNamespace(), null));
+                           createUniversalPluginScanRange(namespace.getNamespace(), null, null));
 
       // delete app classes in this namespace
       StructuredTable appClassTable = getTable(context, StoreDefinition.ArtifactStore.APP_DATA_TABLE);
@@ -820,15 +836,17 @@ public class ArtifactStore {
         }
       }
     }, IOException.class);
+    pluginGeneration.incrementAndGet();
   }
 
   private void deleteRangeFromTable(StructuredTable table, Range range) throws IOException {
+    List<Collection<Field<?>>> keys = new ArrayList<>();
     try (CloseableIterator<StructuredRow> iterator = table.scan(range, Integer.MAX_VALUE)) {
       while (iterator.hasNext()) {
-        StructuredRow row = iterator.next();
-        table.delete(row.getPrimaryKeys());
+        keys.add(iterator.next().getPrimaryKeys());
       }
     }
+    table.multiDelete(keys);
   }
 
   private Map.Entry<ArtifactDescriptor, ApplicationClass> extractApplicationClass(StructuredRow row) {
@@ -860,16 +878,19 @@ public class ArtifactStore {
     // write appClass metadata
     StructuredTable appTable = getTable(context, StoreDefinition.ArtifactStore.APP_DATA_TABLE);
     ArtifactCell artifactkeys = new ArtifactCell(artifactId);
+    List<Collection<Field<?>>> appRows = new ArrayList<>();
     for (ApplicationClass appClass : classes.getApps()) {
       // a:{namespace}:{classname}
       AppClassKey appClassKey = new AppClassKey(artifactId.getNamespace().toEntityId(), appClass.getClassName());
       Field<String> appDataField = Fields.stringField(StoreDefinition.ArtifactStore.APP_DATA_FIELD,
                                                       GSON.toJson(new AppData(appClass, artifactLocation)));
-      appTable.upsert(concatFields(appClassKey.keys, artifactkeys.keys, Collections.singleton(appDataField)));
+      appRows.add(concatFields(appClassKey.keys, artifactkeys.keys, Collections.singleton(appDataField)));
     }
+    appTable.multiUpsert(appRows);
 
     // write pluginClass metadata, we loop twice to only access to one table at a time to prevent deadlock
     StructuredTable pluginTable = getTable(context, StoreDefinition.ArtifactStore.PLUGIN_DATA_TABLE);
+    List<Collection<Field<?>>> pluginRows = new ArrayList<>();
     for (PluginClass pluginClass : classes.getPlugins()) {
       // write metadata for each artifact this plugin extends
       for (ArtifactRange artifactRange : data.meta.getUsableBy()) {
@@ -880,12 +901,14 @@ public class ArtifactStore {
         Field<String> pluginDataField = Fields.stringField(StoreDefinition.ArtifactStore.PLUGIN_DATA_FIELD,
                                                            GSON.toJson(new PluginData(pluginClass, artifactLocation,
                                                                                       artifactRange)));
-        pluginTable.upsert(concatFields(pluginKey.keys, artifactkeys.keys, Collections.singleton(pluginDataField)));
+        pluginRows.add(concatFields(pluginKey.keys, artifactkeys.keys, Collections.singleton(pluginDataField)));
       }
     }
+    pluginTable.multiUpsert(pluginRows);
 
     // write universal plugin class metadata
     StructuredTable uniPluginTable = getTable(context, StoreDefinition.ArtifactStore.UNIV_PLUGIN_DATA_TABLE);
+    List<Collection<Field<?>>> uniPluginRows = new ArrayList<>();
     for (PluginClass pluginClass : classes.getPlugins()) {
       // If the artifact is deployed without any parent, add a special row to indicate that it can be used
       // by any other artifact in the same namespace.
@@ -896,9 +919,10 @@ public class ArtifactStore {
         Field<String> pluginDataField = Fields.stringField(StoreDefinition.ArtifactStore.PLUGIN_DATA_FIELD,
                                                            GSON.toJson(new PluginData(pluginClass, artifactLocation,
                                                                                       null)));
-        uniPluginTable.upsert(concatFields(pluginKey.keys, artifactkeys.keys, Collections.singleton(pluginDataField)));
+        uniPluginRows.add(concatFields(pluginKey.keys, artifactkeys.keys, Collections.singleton(pluginDataField)));
       }
     }
+    uniPluginTable.multiUpsert(uniPluginRows);
   }
 
   private Collection<Field<?>> concatFields(Collection<Field<?>> fields1, Collection<Field<?>> fields2) {
@@ -931,6 +955,7 @@ public class ArtifactStore {
 
     // delete old plugins, we loop twice to only access to one table at a time to prevent deadlock
     StructuredTable pluginDataTable = getTable(context, StoreDefinition.ArtifactStore.PLUGIN_DATA_TABLE);
+    List<Collection<Field<?>>> pluginKeys = new ArrayList<>();
     for (PluginClass pluginClass : oldMeta.meta.getClasses().getPlugins()) {
       // delete metadata for each artifact this plugin extends
       for (ArtifactRange artifactRange : oldMeta.meta.getUsableBy()) {
@@ -938,19 +963,22 @@ public class ArtifactStore {
         PluginKeyPrefix pluginKey = new PluginKeyPrefix(artifactRange.getNamespace(),
                                                         artifactRange.getName(), pluginClass.getType(),
                                                         pluginClass.getName());
-        pluginDataTable.delete(concatFields(pluginKey.keys, artifactCell.keys));
+        pluginKeys.add(concatFields(pluginKey.keys, artifactCell.keys));
       }
     }
+    pluginDataTable.multiDelete(pluginKeys);
 
     // Delete the universal plugin row
     StructuredTable uniPluginTable = getTable(context, StoreDefinition.ArtifactStore.UNIV_PLUGIN_DATA_TABLE);
+    List<Collection<Field<?>>> uniPluginKeys = new ArrayList<>();
     for (PluginClass pluginClass : oldMeta.meta.getClasses().getPlugins()) {
       if (oldMeta.meta.getUsableBy().isEmpty()) {
         UniversalPluginKeyPrefix pluginKey = new UniversalPluginKeyPrefix(artifactId.getNamespace().getId(),
                                                                           pluginClass.getType(), pluginClass.getName());
-        uniPluginTable.delete(concatFields(pluginKey.keys, artifactCell.keys));
+        uniPluginKeys.add(concatFields(pluginKey.keys, artifactCell.keys));
       }
     }
+    uniPluginTable.multiDelete(uniPluginKeys);
 
     // delete the old jar file
     try {
@@ -1009,40 +1037,19 @@ public class ArtifactStore {
   // if so, information about the plugin artifact and the plugin details are added to the given map.
   private void addPluginToMap(NamespaceId namespace, Id.Artifact parentArtifactId,
                               SortedMap<ArtifactDescriptor, Set<PluginClass>> map,
-                              StructuredRow row) {
-    ImmutablePair<ArtifactDescriptor, PluginClass> pluginEntry = getPluginEntry(namespace, parentArtifactId, row);
-    if (pluginEntry != null && isAllowed(pluginEntry.getSecond())) {
-      map.computeIfAbsent(pluginEntry.getFirst(), k -> new HashSet<>()).add(pluginEntry.getSecond());
+                              PluginCatalog.Entry entry) {
+    NamespaceId namespaceId = entry.getArtifactId().getNamespaceId();
+    if (!NamespaceId.SYSTEM.equals(namespaceId) && !namespace.equals(namespaceId)) {
+      return;
     }
-  }
-
-  /**
-   * Decode the PluginClass from the table column if it is from an artifact in the given namespace and
-   * extends the given parent artifact. If the plugin's artifact is not in the given namespace, or it does not
-   * extend the given parent artifact, return null.
-   */
-  @Nullable
-  private ImmutablePair<ArtifactDescriptor, PluginClass> getPluginEntry(
-    NamespaceId namespace, Id.Artifact parentArtifactId, StructuredRow row) {
-    ImmutablePair<ArtifactDescriptor, PluginData> pluginPair = getPlugin(row, artifactId -> {
-      NamespaceId namespaceId = artifactId.getNamespaceId();
-      return NamespaceId.SYSTEM.equals(namespaceId) || namespace.equals(namespaceId);
-    });
-
-    if (pluginPair == null) {
-      return null;
-    }
-
-    PluginData pluginData = pluginPair.getSecond();
     // filter out plugins that don't extend this version of the parent artifact
-    if (pluginData.isUsableBy(parentArtifactId.toEntityId())) {
-      return ImmutablePair.of(pluginPair.getFirst(), pluginData.pluginClass);
+    if (entry.isUsableBy(parentArtifactId.toEntityId()) && isAllowed(entry.getPluginClass())) {
+      map.computeIfAbsent(entry.getDescriptor(), k -> new HashSet<>()).add(entry.getPluginClass());
     }
-    return null;
   }
 
   private void addPluginsInRangeToMap(final NamespaceId namespace, List<Id.Artifact> parentArtifacts,
-                                      Iterator<StructuredRow> iterator,
+                                      List<PluginCatalog.Entry> entries,
                                       SortedMap<ArtifactDescriptor, PluginClass> plugins,
                                       @Nullable Predicate<io.cdap.cdap.proto.id.ArtifactId> range,
                                       int limit) {
@@ -1052,18 +1059,15 @@ public class ArtifactStore {
       ? range
       : input -> NamespaceId.SYSTEM.equals(input.getParent()) || input.getParent().equals(namespace);
 
-    while (iterator.hasNext()) {
-      StructuredRow row = iterator.next();
-      ImmutablePair<ArtifactDescriptor, PluginData> pluginPair = getPlugin(row, range);
-      if (pluginPair == null) {
+    for (PluginCatalog.Entry entry : entries) {
+      if (!range.test(entry.getArtifactId())) {
         continue;
       }
 
-      PluginData pluginData = pluginPair.getSecond();
       // filter out plugins that don't extend this version of the parent artifact
       for (Id.Artifact parentArtifactId : parentArtifacts) {
-        if (pluginData.isUsableBy(parentArtifactId.toEntityId()) && isAllowed(pluginData.pluginClass)) {
-          plugins.put(pluginPair.getFirst(), pluginData.pluginClass);
+        if (entry.isUsableBy(parentArtifactId.toEntityId()) && isAllowed(entry.getPluginClass())) {
+          plugins.put(entry.getDescriptor(), entry.getPluginClass());
           break;
         }
       }
@@ -1073,9 +1077,104 @@ public class ArtifactStore {
     }
   }
 
+  /**
+   * Returns the plugins that extend the given parent artifact, either from the given catalog, or by scanning
+   * the plugin table if there is no catalog.
+   */
+  private List<PluginCatalog.Entry> getPlugins(StructuredTableContext context, @Nullable PluginCatalog catalog,
+                                               String parentNamespace, String parentName,
+                                               @Nullable String type, @Nullable String name) throws IOException {
+    if (catalog != null) {
+      return catalog.getPlugins(parentNamespace, parentName, type, name);
+    }
+    StructuredTable pluginTable = getTable(context, StoreDefinition.ArtifactStore.PLUGIN_DATA_TABLE);
+    return scanPlugins(pluginTable, createPluginScanRange(parentNamespace, parentName, type, name));
+  }
+
+  /**
+   * Returns the universal plugins in the given namespace, either from the given catalog, or by scanning
+   * the universal plugin table if there is no catalog.
+   */
+  private List<PluginCatalog.Entry> getUniversalPlugins(StructuredTableContext context,
+                                                        @Nullable PluginCatalog catalog, String namespace,
+                                                        @Nullable String type,
+                                                        @Nullable String name) throws IOException {
+    if (catalog != null) {
+      return catalog.getUniversalPlugins(namespace, type, name);
+    }
+    StructuredTable uniPluginTable = getTable(context, StoreDefinition.ArtifactStore.UNIV_PLUGIN_DATA_TABLE);
+    return scanPlugins(uniPluginTable, createUniversalPluginScanRange(namespace, type, name));
+  }
+
+  private List<PluginCatalog.Entry> scanPlugins(StructuredTable table, Range range) throws IOException {
+    List<PluginCatalog.Entry> entries = new ArrayList<>();
+    try (CloseableIterator<StructuredRow> iterator = table.scan(range, Integer.MAX_VALUE)) {
+      while (iterator.hasNext()) {
+        entries.add(getPlugin(iterator.next()));
+      }
+    }
+    return entries;
+  }
+
+  /**
+   * Returns the current {@link PluginCatalog}, building a new one if there were changes since the last one
+   * was built, or if it has expired. Returns {@code null} if the catalog is disabled.
+   */
   @Nullable
-  private ImmutablePair<ArtifactDescriptor, PluginData> getPlugin(StructuredRow row,
-                                                                  Predicate<io.cdap.cdap.proto.id.ArtifactId> range) {
+  private PluginCatalog getPluginCatalog() throws IOException {
+    if (pluginCatalogTTLMillis <= 0) {
+      return null;
+    }
+    PluginCatalog catalog = pluginCatalog;
+    if (isCurrent(catalog)) {
+      metricsContext.increment("artifact.plugin.catalog.hits", 1);
+      return catalog;
+    }
+
+    synchronized (pluginCatalogLock) {
+      catalog = pluginCatalog;
+      if (isCurrent(catalog)) {
+        metricsContext.increment("artifact.plugin.catalog.hits", 1);
+        return catalog;
+      }
+      metricsContext.increment("artifact.plugin.catalog.misses", 1);
+
+      // The generation is read before scanning. If there are writes during the scan, the catalog will have
+      // an older generation and will be rebuilt on the next lookup.
+      long generation = pluginGeneration.get();
+      catalog = TransactionRunners.run(transactionRunner, context -> {
+        PluginCatalog.Builder builder = PluginCatalog.builder(generation);
+
+        StructuredTable pluginTable = getTable(context, StoreDefinition.ArtifactStore.PLUGIN_DATA_TABLE);
+        try (CloseableIterator<StructuredRow> iterator = pluginTable.scan(Range.all(), Integer.MAX_VALUE)) {
+          while (iterator.hasNext()) {
+            StructuredRow row = iterator.next();
+            builder.addPlugin(row.getString(StoreDefinition.ArtifactStore.PARENT_NAMESPACE_FIELD),
+                              row.getString(StoreDefinition.ArtifactStore.PARENT_NAME_FIELD), getPlugin(row));
+          }
+        }
+
+        StructuredTable uniPluginTable = getTable(context, StoreDefinition.ArtifactStore.UNIV_PLUGIN_DATA_TABLE);
+        try (CloseableIterator<StructuredRow> iterator = uniPluginTable.scan(Range.all(), Integer.MAX_VALUE)) {
+          while (iterator.hasNext()) {
+            StructuredRow row = iterator.next();
+            builder.addUniversalPlugin(row.getString(StoreDefinition.ArtifactStore.NAMESPACE_FIELD), getPlugin(row));
+          }
+        }
+        return builder.build();
+      }, IOException.class);
+
+      pluginCatalog = catalog;
+      return catalog;
+    }
+  }
+
+  private boolean isCurrent(@Nullable PluginCatalog catalog) {
+    return catalog != null && catalog.getGeneration() == pluginGeneration.get()
+      && System.currentTimeMillis() - catalog.getCreateTimeMillis() < pluginCatalogTTLMillis;
+  }
+
+  private PluginCatalog.Entry getPlugin(StructuredRow row) {
     // column is the artifact namespace, name, and version. value is the serialized PluginData
     Id.Namespace artifactNamespace =
       Id.Namespace.from(row.getString(StoreDefinition.ArtifactStore.ARTIFACT_NAMESPACE_FIELD));
@@ -1083,15 +1182,12 @@ public class ArtifactStore {
       Id.Artifact.from(artifactNamespace, row.getString(StoreDefinition.ArtifactStore.ARTIFACT_NAME_FIELD),
                        row.getString(StoreDefinition.ArtifactStore.ARTIFACT_VER_FIELD));
 
-    if (!range.test(artifactId.toEntityId())) {
-      return null;
-    }
     PluginData pluginData = GSON.fromJson(row.getString(StoreDefinition.ArtifactStore.PLUGIN_DATA_FIELD),
                                           PluginData.class);
-    return ImmutablePair.of(new ArtifactDescriptor(
+    ArtifactDescriptor descriptor = new ArtifactDescriptor(
       artifactId.toArtifactId(),
-      Locations.getLocationFromAbsolutePath(locationFactory, pluginData.getArtifactLocationPath())), pluginData);
-
+      Locations.getLocationFromAbsolutePath(locationFactory, pluginData.getArtifactLocationPath()));
+    return new PluginCatalog.Entry(artifactId.toEntityId(), descriptor, pluginData.pluginClass, pluginData.usableBy);
   }
 
   private Range createArtifactScanRange(NamespaceId namespace) {
@@ -1100,22 +1196,28 @@ public class ArtifactStore {
     return Range.singleton(Collections.singleton(stringField));
   }
 
-  private Range createPluginScanRange(Id.Artifact parentArtifactId, @Nullable String type) {
+  private Range createPluginScanRange(String parentNamespace, String parentName,
+                                      @Nullable String type, @Nullable String name) {
     List<Field<?>> keys = new ArrayList<>();
-    keys.add(Fields.stringField(StoreDefinition.ArtifactStore.PARENT_NAMESPACE_FIELD,
-                                parentArtifactId.getNamespace().getId()));
-    keys.add(Fields.stringField(StoreDefinition.ArtifactStore.PARENT_NAME_FIELD, parentArtifactId.getName()));
+    keys.add(Fields.stringField(StoreDefinition.ArtifactStore.PARENT_NAMESPACE_FIELD, parentNamespace));
+    keys.add(Fields.stringField(StoreDefinition.ArtifactStore.PARENT_NAME_FIELD, parentName));
     if (type != null) {
       keys.add(Fields.stringField(StoreDefinition.ArtifactStore.PLUGIN_TYPE_FIELD, type));
+      if (name != null) {
+        keys.add(Fields.stringField(StoreDefinition.ArtifactStore.PLUGIN_NAME_FIELD, name));
+      }
     }
     return Range.singleton(keys);
   }
 
-  private Range createUniversalPluginScanRange(String namespace, @Nullable String type) {
+  private Range createUniversalPluginScanRange(String namespace, @Nullable String type, @Nullable String name) {
     List<Field<?>> keys = new ArrayList<>();
     keys.add(Fields.stringField(StoreDefinition.ArtifactStore.NAMESPACE_FIELD, namespace));
     if (type != null) {
       keys.add(Fields.stringField(StoreDefinition.ArtifactStore.PLUGIN_TYPE_FIELD, type));
+      if (name != null) {
+        keys.add(Fields.stringField(StoreDefinition.ArtifactStore.PLUGIN_NAME_FIELD, name));
+      }
     }
     return Range.singleton(keys);
   }
@@ -1280,15 +1382,6 @@ public class ArtifactStore {
     String getArtifactLocationPath() {
       return artifactLocationPath == null ? artifactLocationURI.getPath() : artifactLocationPath;
     }
-
-    boolean isUsableBy(io.cdap.cdap.proto.id.ArtifactId artifactId) {
-      if (usableBy == null) {
-        return true;
-      }
-      return usableBy.getNamespace().equals(artifactId.getNamespace())
-        && usableBy.getName().equals(artifactId.getArtifact())
-        && usableBy.versionIsInRange(new ArtifactVersion(artifactId.getVersion()));
-    }
   }
 
   // Data that will be stored for an application class.
@@ -0,0 +1,215 @@
+/*
+ * Copyright © 2020 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package io.cdap.cdap.internal.app.runtime.artifact;
+
+import io.cdap.cdap.api.artifact.ArtifactRange;
+import io.cdap.cdap.api.artifact.ArtifactVersion;
+import io.cdap.cdap.api.plugin.PluginClass;
+import io.cdap.cdap.common.utils.ImmutablePair;
+import io.cdap.cdap.proto.id.ArtifactId;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.TreeMap;
+import java.util.stream.Collectors;
+import javax.annotation.Nullable;
+
+/**
+ * An immutable, in-memory snapshot of all the plugin rows in the {@link ArtifactStore}, indexed by
+ * parent artifact (or namespace for universal plugins), plugin type and plugin name. Entries with the same
+ * parent, type and name are kept in the same order as they are stored in the tables.
+ */
+final class PluginCatalog {
+
+  private final long generation;
+  private final long createTimeMillis;
+  private final Map<ImmutablePair<String, String>, NavigableMap<String, NavigableMap<String, List<Entry>>>> plugins;
+  private final Map<String, NavigableMap<String, NavigableMap<String, List<Entry>>>> universalPlugins;
+
+  private PluginCatalog(long generation, long createTimeMillis,
+                        Map<ImmutablePair<String, String>,
+                          NavigableMap<String, NavigableMap<String, List<Entry>>>> plugins,
+                        Map<String, NavigableMap<String, NavigableMap<String, List<Entry>>>> universalPlugins) {
+    this.generation = generation;
+    this.createTimeMillis = createTimeMillis;
+    this.plugins = plugins;
+    this.universalPlugins = universalPlugins;
+  }
+
+  /**
+   * Returns the artifact store generation that this catalog was built from.
+   */
+  long getGeneration() {
+    return generation;
+  }
+
+  /**
+   * Returns the time in milliseconds when this catalog was built.
+   */
+  long getCreateTimeMillis() {
+    return createTimeMillis;
+  }
+
+  /**
+   * Returns the plugins that extend the given parent artifact.
+   *
+   * @param parentNamespace namespace of the parent artifact
+   * @param parentName name of the parent artifact
+   * @param type the plugin type or {@code null} for any type
+   * @param name the plugin name or {@code null} for any name. It is only used if type is not {@code null}.
+   */
+  List<Entry> getPlugins(String parentNamespace, String parentName, @Nullable String type, @Nullable String name) {
+    return lookup(plugins.get(new ImmutablePair<>(parentNamespace, parentName)), type, name);
+  }
+
+  /**
+   * Returns the universal plugins in the given namespace.
+   *
+   * @param namespace namespace of the plugin artifacts
+   * @param type the plugin type or {@code null} for any type
+   * @param name the plugin name or {@code null} for any name. It is only used if type is not {@code null}.
+   */
+  List<Entry> getUniversalPlugins(String namespace, @Nullable String type, @Nullable String name) {
+    return lookup(universalPlugins.get(namespace), type, name);
+  }
+
+  private List<Entry> lookup(@Nullable NavigableMap<String, NavigableMap<String, List<Entry>>> typeIndex,
+                             @Nullable String type, @Nullable String name) {
+    if (typeIndex == null) {
+      return Collections.emptyList();
+    }
+    if (type == null) {
+      return flatten(typeIndex.values().stream()
+                       .flatMap(nameIndex -> nameIndex.values().stream())
+                       .collect(Collectors.toList()));
+    }
+    NavigableMap<String, List<Entry>> nameIndex = typeIndex.get(type);
+    if (nameIndex == null) {
+      return Collections.emptyList();
+    }
+    if (name == null) {
+      return flatten(nameIndex.values());
+    }
+    return nameIndex.getOrDefault(name, Collections.emptyList());
+  }
+
+  private List<Entry> flatten(Collection<List<Entry>> entries) {
+    if (entries.size() == 1) {
+      return entries.iterator().next();
+    }
+    return entries.stream().flatMap(List::stream).collect(Collectors.toList());
+  }
+
+  /**
+   * Creates a {@link Builder} for building a {@link PluginCatalog}.
+   *
+   * @param generation the artifact store generation that the catalog is built from
+   */
+  static Builder builder(long generation) {
+    return new Builder(generation);
+  }
+
+  /**
+   * A plugin class and the artifact that contains it.
+   */
+  static final class Entry {
+    private final ArtifactId artifactId;
+    private final ArtifactDescriptor descriptor;
+    private final PluginClass pluginClass;
+    @Nullable
+    private final ArtifactRange usableBy;
+
+    Entry(ArtifactId artifactId, ArtifactDescriptor descriptor, PluginClass pluginClass,
+          @Nullable ArtifactRange usableBy) {
+      this.artifactId = artifactId;
+      this.descriptor = descriptor;
+      this.pluginClass = pluginClass;
+      this.usableBy = usableBy;
+    }
+
+    ArtifactId getArtifactId() {
+      return artifactId;
+    }
+
+    ArtifactDescriptor getDescriptor() {
+      return descriptor;
+    }
+
+    PluginClass getPluginClass() {
+      return pluginClass;
+    }
+
+    /**
+     * Returns {@code true} if the plugin can be used by the given parent artifact.
+     */
+    boolean isUsableBy(ArtifactId parentArtifactId) {
+      if (usableBy == null) {
+        return true;
+      }
+      return usableBy.getNamespace().equals(parentArtifactId.getNamespace())
+        && usableBy.getName().equals(parentArtifactId.getArtifact())
+        && usableBy.versionIsInRange(new ArtifactVersion(parentArtifactId.getVersion()));
+    }
+  }
+
+  /**
+   * Builder for {@link PluginCatalog}. Entries must be added in the table order.
+   */
+  static final class Builder {
+    private final long generation;
+    private final Map<ImmutablePair<String, String>,
+      NavigableMap<String, NavigableMap<String, List<Entry>>>> plugins = new HashMap<>();
+    private final Map<String, NavigableMap<String, NavigableMap<String, List<Entry>>>> universalPlugins =
+      new HashMap<>();
+
+    private Builder(long generation) {
+      this.generation = generation;
+    }
+
+    /**
+     * Adds a plugin that extends the given parent artifact.
+     */
+    Builder addPlugin(String parentNamespace, String parentName, Entry entry) {
+      add(plugins.computeIfAbsent(new ImmutablePair<>(parentNamespace, parentName), k -> new TreeMap<>()), entry);
+      return this;
+    }
+
+    /**
+     * Adds a universal plugin in the given namespace.
+     */
+    Builder addUniversalPlugin(String namespace, Entry entry) {
+      add(universalPlugins.computeIfAbsent(namespace, k -> new TreeMap<>()), entry);
+      return this;
+    }
+
+    private void add(NavigableMap<String, NavigableMap<String, List<Entry>>> typeIndex, Entry entry) {
+      PluginClass pluginClass = entry.getPluginClass();
+      typeIndex.computeIfAbsent(pluginClass.getType(), k -> new TreeMap<>())
+        .computeIfAbsent(pluginClass.getName(), k -> new ArrayList<>())
+        .add(entry);
+    }
+
+    PluginCatalog build() {
+      return new PluginCatalog(generation, System.currentTimeMillis(), plugins, universalPlugins);
+    }
+  }
+}
@@ -0,0 +1,305 @@
+/*
+ * Copyright © 2020 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package io.cdap.cdap.internal.app.runtime.artifact;
+
+import com.google.common.annotations.VisibleForTesting;
+import com.google.common.base.Preconditions;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.hash.Hashing;
+import com.google.common.io.ByteStreams;
+import com.google.common.util.concurrent.AbstractIdleService;
+import com.google.inject.Inject;
+import com.google.inject.Singleton;
+import io.cdap.cdap.common.conf.CConfiguration;
+import io.cdap.cdap.common.conf.Constants;
+import io.cdap.cdap.common.io.Locations;
+import io.cdap.cdap.common.lang.jar.BundleJarUtil;
+import io.cdap.cdap.common.utils.DirUtils;
+import org.apache.twill.filesystem.Location;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Objects;
+
+/**
+ * A cache of unpacked artifact jars, shared by all users in the same process. Entries are keyed by the artifact
+ * file name and the checksum of the artifact content, hence the same artifact stored in different locations shares
+ * the same unpacked directory. Unpacked directories are reference counted and are only deleted when there is no
+ * reference to them. Directories that are not in use are evicted in least recently used order when the total size
+ * of the cache exceeds the configured maximum. If the configured maximum size is zero, unpacked directories are
+ * deleted as soon as they are no longer in use.
+ *
+ * The cache directory is created under a unique directory when the service starts and is deleted when the service
+ * stops. The service is started on first use if the owner of it has not started it yet.
+ */
+@Singleton
+public final class UnpackedArtifactCache extends AbstractIdleService {
+
+  private static final Logger LOG = LoggerFactory.getLogger(UnpackedArtifactCache.class);
+
+  private final File parentDir;
+  private final long maxSizeBytes;
+  // Entries in access order, for LRU eviction. Guarded by this.
+  private final LinkedHashMap<String, Entry> entries;
+  // Checksum of artifacts, keyed by the location, length and modification time of the artifact
+  private final Cache<LocationKey, String> checksums;
+  // Guarded by this.
+  private long totalSize;
+  private volatile File cacheDir;
+
+  @Inject
+  public UnpackedArtifactCache(CConfiguration cConf) {
+    this(new File(new File(cConf.get(Constants.CFG_LOCAL_DATA_DIR), cConf.get(Constants.AppFabric.TEMP_DIR)),
+                  "unpacked-artifacts").getAbsoluteFile(),
+         Math.max(0L, cConf.getLong(Constants.AppFabric.ARTIFACT_UNPACK_CACHE_MAX_SIZE_MB)) * 1024 * 1024);
+  }
+
+  @VisibleForTesting
+  UnpackedArtifactCache(File parentDir, long maxSizeBytes) {
+    this.parentDir = parentDir;
+    this.maxSizeBytes = maxSizeBytes;
+    this.entries = new LinkedHashMap<>(16, 0.75f, true);
+    this.checksums = CacheBuilder.newBuilder().maximumSize(1000).build();
+  }
+
+  @Override
+  protected void startUp() {
+    // Use a unique directory for each instance, so that no other process can be using the directories in the cache
+    cacheDir = DirUtils.createTempDir(parentDir);
+    LOG.debug("Unpacked artifact cache started with directory {}", cacheDir);
+  }
+
+  @Override
+  protected void shutDown() {
+    synchronized (this) {
+      entries.clear();
+      totalSize = 0L;
+    }
+    deleteQuietly(cacheDir);
+    LOG.debug("Unpacked artifact cache stopped and directory {} deleted", cacheDir);
+  }
+
+  /**
+   * Unpacks the given artifact jar or returns an existing unpacked directory of the same artifact content.
+   * The returned {@link UnpackedArtifact} must be closed when the directory is no longer needed.
+   *
+   * @param artifactLocation location of the artifact jar
+   * @return an {@link UnpackedArtifact} to access the unpacked directory
+   * @throws IOException if failed to read or unpack the artifact
+   */
+  public UnpackedArtifact unpack(Location artifactLocation) throws IOException {
+    // Start the cache if it is not yet started by its owner. It is a no-op if it is already running.
+    startAndWait();
+    Preconditions.checkState(isRunning(), "Unpacked artifact cache is not running");
+    String key = artifactLocation.getName() + "-" + getChecksum(artifactLocation);
+
+    Entry entry;
+    synchronized (this) {
+      entry = entries.computeIfAbsent(key, Entry::new);
+      entry.refCount++;
+    }
+
+    try {
+      // Only one thread populates an entry, other threads of the same entry wait for it
+      synchronized (entry) {
+        if (entry.directory == null) {
+          File dir = DirUtils.createTempDir(cacheDir);
+          try {
+            BundleJarUtil.unJar(artifactLocation, dir);
+          } catch (IOException | RuntimeException e) {
+            deleteQuietly(dir);
+            throw e;
+          }
+          long size = sizeOf(dir);
+          synchronized (this) {
+            entry.size = size;
+            totalSize += size;
+          }
+          entry.directory = dir;
+          LOG.debug("Unpacked artifact {} to {} with {} bytes", artifactLocation, dir, size);
+        }
+      }
+    } catch (IOException | RuntimeException e) {
+      release(entry);
+      throw e;
+    }
+
+    evict();
+    return new UnpackedArtifact(entry);
+  }
+
+  /**
+   * Returns the total size in bytes of the unpacked directories in the cache.
+   */
+  @VisibleForTesting
+  synchronized long getTotalSize() {
+    return totalSize;
+  }
+
+  /**
+   * Returns the number of unpacked directories in the cache.
+   */
+  @VisibleForTesting
+  synchronized int size() {
+    return entries.size();
+  }
+
+  private String getChecksum(Location location) throws IOException {
+    LocationKey locationKey = new LocationKey(location);
+    String checksum = checksums.getIfPresent(locationKey);
+    if (checksum == null) {
+      checksum = ByteStreams.hash(Locations.newInputSupplier(location), Hashing.sha256()).toString();
+      checksums.put(locationKey, checksum);
+    }
+    return checksum;
+  }
+
+  private void release(Entry entry) {
+    synchronized (this) {
+      entry.refCount--;
+      if (entry.refCount == 0 && entry.directory == null) {
+        // Failed to populate
+        entries.remove(entry.key);
+      }
+    }
+    evict();
+  }
+
+  /**
+   * Deletes unpacked directories that are not in use, in least recently used order, until the cache size is
+   * within the limit.
+   */
+  private void evict() {
+    List<Entry> evicted = new ArrayList<>();
+    synchronized (this) {
+      Iterator<Entry> iterator = entries.values().iterator();
+      while (totalSize > maxSizeBytes && iterator.hasNext()) {
+        Entry entry = iterator.next();
+        if (entry.refCount == 0 && entry.directory != null) {
+          iterator.remove();
+          totalSize -= entry.size;
+          evicted.add(entry);
+        }
+      }
+    }
+    for (Entry entry : evicted) {
+      LOG.debug("Evicting unpacked artifact directory {}", entry.directory);
+      deleteQuietly(entry.directory);
+    }
+  }
+
+  private static long sizeOf(File dir) {
+    long size = 0L;
+    for (File file : DirUtils.listFiles(dir)) {
+      size += file.isDirectory() ? sizeOf(file) : file.length();
+    }
+    return size;
+  }
+
+  private static void deleteQuietly(File dir) {
+    try {
+      DirUtils.deleteDirectoryContents(dir);
+    } catch (IOException e) {
+      LOG.warn("Failed to delete directory {}", dir, e);
+    }
+  }
+
+  /**
+   * An unpacked artifact directory acquired from the cache. Closing it releases the reference to the directory.
+   */
+  public final class UnpackedArtifact implements Closeable {
+
+    private final Entry entry;
+    private boolean closed;
+
+    private UnpackedArtifact(Entry entry) {
+      this.entry = entry;
+    }
+
+    /**
+     * Returns the directory of the unpacked artifact. The content of the directory must not be modified.
+     */
+    public File getDirectory() {
+      return entry.directory;
+    }
+
+    @Override
+    public void close() {
+      synchronized (this) {
+        if (closed) {
+          return;
+        }
+        closed = true;
+      }
+      release(entry);
+    }
+  }
+
+  /**
+   * A cache entry for an unpacked artifact directory.
+   */
+  private static final class Entry {
+    private final String key;
+    private volatile File directory;
+    private long size;
+    private int refCount;
+
+    Entry(String key) {
+      this.key = key;
+    }
+  }
+
+  /**
+   * Key for memorizing the checksum of an artifact location.
+   */
+  private static final class LocationKey {
+    private final String uri;
+    private final long length;
+    private final long lastModified;
+
+    LocationKey(Location location) throws IOException {
+      this.uri = location.toURI().toString();
+      this.length = location.length();
+      this.lastModified = location.lastModified();
+    }
+
+    @Override
+    public boolean equals(Object o) {
+      if (this == o) {
+        return true;
+      }
+      if (o == null || getClass() != o.getClass()) {
+        return false;
+      }
+      LocationKey other = (LocationKey) o;
+      return length == other.length && lastModified == other.lastModified && uri.equals(other.uri);
+    }
+
+    @Override
+    public int hashCode() {
+      return Objects.hash(uri, length, lastModified);
+    }
+  }
+}
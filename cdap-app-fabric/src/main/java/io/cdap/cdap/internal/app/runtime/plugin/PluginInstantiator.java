@@ -49,6 +49,7 @@ import io.cdap.cdap.common.lang.InstantiatorFactory;
 import io.cdap.cdap.common.lang.jar.BundleJarUtil;
 import io.cdap.cdap.common.utils.DirUtils;
 import io.cdap.cdap.internal.app.runtime.artifact.Artifacts;
+import io.cdap.cdap.internal.app.runtime.artifact.UnpackedArtifactCache;
 import io.cdap.cdap.internal.lang.FieldVisitor;
 import io.cdap.cdap.internal.lang.Fields;
 import io.cdap.cdap.internal.lang.Reflections;
@@ -81,7 +82,9 @@ import javax.annotation.Nullable;
  * This class helps creating new instances of plugins. It also contains a ClassLoader cache to
  * save ClassLoader creation.
  *
- * This class implements {@link Closeable} as well for cleanup of temporary directories created for the ClassLoaders.
+ * This class implements {@link Closeable} as well for releasing the expanded plugin directories used by the
+ * ClassLoaders. Plugin jars are expanded through the {@link UnpackedArtifactCache} if one is provided, otherwise
+ * they are expanded to a temporary directory owned by this instance.
  */
 public class PluginInstantiator implements Closeable {
   private static final Logger LOG = LoggerFactory.getLogger(PluginInstantiator.class);
@@ -100,6 +103,10 @@ public class PluginInstantiator implements Closeable {
 
   private final LoadingCache<ClassLoaderKey, PluginClassLoader> classLoaders;
   private final InstantiatorFactory instantiatorFactory;
+  @Nullable
+  private final UnpackedArtifactCache artifactCache;
+  private final List<UnpackedArtifactCache.UnpackedArtifact> unpackedArtifacts;
+  @Nullable
   private final File tmpDir;
   private final File pluginDir;
   private final ClassLoader parentClassLoader;
@@ -111,12 +118,17 @@ public class PluginInstantiator implements Closeable {
 
   public PluginInstantiator(CConfiguration cConf, ClassLoader parentClassLoader, File pluginDir,
                             boolean filterClassloader) {
-    this.instantiatorFactory = new InstantiatorFactory(false);
-    File tmpDir = new File(cConf.get(Constants.CFG_LOCAL_DATA_DIR),
-                           cConf.get(Constants.AppFabric.TEMP_DIR)).getAbsoluteFile();
+    this(cConf, parentClassLoader, pluginDir, filterClassloader, null);
+  }
 
+  public PluginInstantiator(CConfiguration cConf, ClassLoader parentClassLoader, File pluginDir,
+                            boolean filterClassloader, @Nullable UnpackedArtifactCache artifactCache) {
+    this.instantiatorFactory = new InstantiatorFactory(false);
     this.pluginDir = pluginDir;
-    this.tmpDir = DirUtils.createTempDir(tmpDir);
+    this.artifactCache = artifactCache;
+    this.tmpDir = artifactCache != null ? null : DirUtils.createTempDir(
+      new File(cConf.get(Constants.CFG_LOCAL_DATA_DIR), cConf.get(Constants.AppFabric.TEMP_DIR)).getAbsoluteFile());
+    this.unpackedArtifacts = Collections.synchronizedList(new ArrayList<>());
     this.classLoaders = CacheBuilder.newBuilder()
       .removalListener(new ClassLoaderRemovalListener())
       .build(new ClassLoaderCacheLoader());
@@ -399,16 +411,22 @@ public class PluginInstantiator implements Closeable {
 
   @Override
   public void close() throws IOException {
-    // Cleanup the ClassLoader cache and the temporary directory for the expanded plugin jar.
+    // Cleanup the ClassLoader cache and release the directories of the expanded plugin jars.
     classLoaders.invalidateAll();
     if (ownedParentClassLoader) {
       Closeables.closeQuietly((Closeable) parentClassLoader);
     }
-    try {
-      DirUtils.deleteDirectoryContents(tmpDir);
-    } catch (IOException e) {
-      // It's the cleanup step. Nothing much can be done if cleanup failed.
-      LOG.warn("Failed to delete directory {}", tmpDir);
+    synchronized (unpackedArtifacts) {
+      unpackedArtifacts.forEach(UnpackedArtifactCache.UnpackedArtifact::close);
+      unpackedArtifacts.clear();
+    }
+    if (tmpDir != null) {
+      try {
+        DirUtils.deleteDirectoryContents(tmpDir);
+      } catch (IOException e) {
+        // It's the cleanup step. Nothing much can be done if cleanup failed.
+        LOG.warn("Failed to delete directory {}", tmpDir);
+      }
     }
   }
 
@@ -455,9 +473,16 @@ public class PluginInstantiator implements Closeable {
 
     @Override
     public PluginClassLoader load(ClassLoaderKey key) throws Exception {
-      File unpackedDir = DirUtils.createTempDir(tmpDir);
       File artifact = new File(pluginDir, Artifacts.getFileName(key.artifact));
-      BundleJarUtil.unJar(Locations.toLocation(artifact), unpackedDir);
+      File unpackedDir;
+      if (artifactCache == null) {
+        unpackedDir = BundleJarUtil.unJar(Locations.toLocation(artifact), DirUtils.createTempDir(tmpDir));
+      } else {
+        // The unpacked directory is shared with other users of the same artifact, and is released on close
+        UnpackedArtifactCache.UnpackedArtifact unpacked = artifactCache.unpack(Locations.toLocation(artifact));
+        unpackedArtifacts.add(unpacked);
+        unpackedDir = unpacked.getDirectory();
+      }
 
       Iterator<ArtifactId> parentIter = key.parents.iterator();
       if (!parentIter.hasNext()) {
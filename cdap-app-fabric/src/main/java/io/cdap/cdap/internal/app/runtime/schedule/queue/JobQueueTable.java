@@ -16,7 +16,6 @@
 
 package io.cdap.cdap.internal.app.runtime.schedule.queue;
 
-import com.google.common.annotations.VisibleForTesting;
 import com.google.common.base.Joiner;
 import com.google.common.base.Preconditions;
 import com.google.common.collect.Iterators;
@@ -171,7 +170,7 @@ public class JobQueueTable implements JobQueue {
             writeJobObsolete(job, System.currentTimeMillis());
           } else {
             jobExists = true;
-            addNotification(job, notification);
+            writeJob(appendNotification(job, notification));
             break;
           }
         }
@@ -187,7 +186,77 @@ public class JobQueueTable implements JobQueue {
     }
   }
 
-  private void addNotification(Job job, Notification notification) throws IOException {
+  @Override
+  public void addNotifications(ProgramScheduleRecord record, List<Notification> notifications) throws IOException {
+    if (notifications.size() == 1) {
+      addNotification(record, notifications.get(0));
+      return;
+    }
+    // Only add notifications for enabled schedules
+    if (notifications.isEmpty() || record.getMeta().getStatus() != ProgramScheduleStatus.SCHEDULED) {
+      return;
+    }
+
+    ProgramSchedule schedule = record.getSchedule();
+    long scheduleLastUpdated = record.getMeta().getLastUpdated();
+
+    // Collect the jobs that can take notifications, in the same order as addNotification() would visit them
+    List<Job> candidates = new ArrayList<>();
+    int nextGenerationId = 0;
+    try (CloseableIterator<Job> jobs = getJobsForSchedule(schedule.getScheduleId())) {
+      while (jobs.hasNext()) {
+        Job job = jobs.next();
+        if (job.getGenerationId() >= nextGenerationId) {
+          nextGenerationId = job.getGenerationId() + 1;
+        }
+        // only update the job's notifications if it is in PENDING_TRIGGER, so as to avoid conflict with the
+        // ConstraintCheckerService. Jobs to be deleted are ignored, they will be deleted by ConstraintCheckerService
+        if (job.getState() == Job.State.PENDING_TRIGGER && !job.isToBeDeleted()) {
+          candidates.add(job);
+        }
+      }
+    }
+
+    // The job currently collecting notifications. It is written once it leaves PENDING_TRIGGER or at the end
+    Job current = null;
+    int candidateIdx = 0;
+    for (Notification notification : notifications) {
+      long now = System.currentTimeMillis();
+      while (current == null && candidateIdx < candidates.size()) {
+        Job job = candidates.get(candidateIdx++);
+        if (job.getScheduleLastUpdatedTime() != scheduleLastUpdated
+          || now - job.getCreationTime() > job.getSchedule().getTimeoutMillis()) {
+          // schedule has changed or job has timed out: this job is obsolete
+          writeJobObsolete(job, now);
+        } else {
+          current = job;
+        }
+      }
+
+      if (current == null) {
+        List<Notification> jobNotifications = Collections.singletonList(notification);
+        Job.State jobState = isTriggerSatisfied(schedule, jobNotifications)
+          ? Job.State.PENDING_CONSTRAINT : Job.State.PENDING_TRIGGER;
+        current = new SimpleJob(schedule, nextGenerationId++, now, jobNotifications, jobState, scheduleLastUpdated);
+      } else {
+        current = appendNotification(current, notification);
+      }
+
+      if (current.getState() != Job.State.PENDING_TRIGGER) {
+        writeJob(current);
+        current = null;
+      }
+    }
+    if (current != null) {
+      writeJob(current);
+    }
+  }
+
+  /**
+   * Returns a copy of the given job with the given notification appended, transitioning it to
+   * PENDING_CONSTRAINT if that satisfies its trigger.
+   */
+  private Job appendNotification(Job job, Notification notification) {
     List<Notification> notifications = new ArrayList<>(job.getNotifications());
     notifications.add(notification);
 
@@ -196,9 +265,8 @@ public class JobQueueTable implements JobQueue {
       newState = Job.State.PENDING_CONSTRAINT;
       job.getState().checkTransition(newState);
     }
-    Job newJob = new SimpleJob(job.getSchedule(), job.getGenerationId(), job.getCreationTime(), notifications, newState,
-                               job.getScheduleLastUpdatedTime());
-    writeJob(newJob);
+    return new SimpleJob(job.getSchedule(), job.getGenerationId(), job.getCreationTime(), notifications, newState,
+                         job.getScheduleLastUpdatedTime());
   }
 
   private boolean isTriggerSatisfied(ProgramSchedule schedule, List<Notification> notifications) {
@@ -400,8 +468,10 @@ public class JobQueueTable implements JobQueue {
     return keys;
   }
 
-  @VisibleForTesting
-  int getPartition(ScheduleId scheduleId) {
+  /**
+   * Returns the partition that the jobs of the given schedule belong to.
+   */
+  public int getPartition(ScheduleId scheduleId) {
     // Similar to ScheduleId#hashCode, but that is not consistent across runtimes due to how Enum#hashCode works.
     // Ensure that the hash won't change across runtimes:
     int hash = Hashing.murmur3_32().newHasher()
@@ -110,10 +110,18 @@ public class ProgramScheduleStoreDataset {
 
   private final StructuredTable scheduleStore;
   private final StructuredTable triggerStore;
+  @Nullable
+  private final ScheduleTriggerIndex.Writer indexWriter;
 
   ProgramScheduleStoreDataset(StructuredTable scheduleStore, StructuredTable triggerStore) {
+    this(scheduleStore, triggerStore, null);
+  }
+
+  ProgramScheduleStoreDataset(StructuredTable scheduleStore, StructuredTable triggerStore,
+                              @Nullable ScheduleTriggerIndex.Writer indexWriter) {
     this.scheduleStore = scheduleStore;
     this.triggerStore = triggerStore;
+    this.indexWriter = indexWriter;
   }
 
   /**
@@ -142,7 +150,8 @@ public class ProgramScheduleStoreDataset {
     if (existing.isPresent() && existing.get().getString(StoreDefinition.ProgramScheduleStore.SCHEDULE) != null) {
       throw new AlreadyExistsException(schedule.getScheduleId());
     }
-    
+    markModified(extractTriggerKeys(schedule));
+
     Collection<Field<?>> scheduleFields = new ArrayList<>(scheduleKeys);
     scheduleFields.add(Fields.stringField(StoreDefinition.ProgramScheduleStore.SCHEDULE, GSON.toJson(schedule)));
     scheduleFields.add(Fields.longField(StoreDefinition.ProgramScheduleStore.UPDATE_TIME, currentTime));
@@ -150,11 +159,13 @@ public class ProgramScheduleStoreDataset {
     scheduleStore.upsert(scheduleFields);
 
     int count = 0;
+    List<Collection<Field<?>>> triggerRows = new ArrayList<>();
     for (String triggerKey : extractTriggerKeys(schedule)) {
       Collection<Field<?>> triggerFields = getTriggerKeys(scheduleKeys, count++);
       triggerFields.add(Fields.stringField(StoreDefinition.ProgramScheduleStore.TRIGGER_KEY, triggerKey));
-      triggerStore.upsert(triggerFields);
+      triggerRows.add(triggerFields);
     }
+    triggerStore.multiUpsert(triggerRows);
   }
 
   /**
@@ -179,7 +190,8 @@ public class ProgramScheduleStoreDataset {
     throws NotFoundException, IOException {
     long currentTime = System.currentTimeMillis();
     // ensure it exists
-    readExistingScheduleRow(scheduleId);
+    StructuredRow existingRow = readExistingScheduleRow(scheduleId);
+    markModified(extractTriggerKeys(existingRow));
     // record current time
     Collection<Field<?>> scheduleFields = getScheduleKeys(scheduleId);
     scheduleFields.add(Fields.longField(StoreDefinition.ProgramScheduleStore.UPDATE_TIME, currentTime));
@@ -250,6 +262,7 @@ public class ProgramScheduleStoreDataset {
     }
     for (ScheduleId scheduleId : scheduleIds) {
       StructuredRow existingRow = readExistingScheduleRow(scheduleId);
+      markModified(extractTriggerKeys(existingRow));
       markScheduleAsDeleted(existingRow, deleteTime);
       Collection<Field<?>> scheduleKeys = getScheduleKeys(scheduleId);
       triggerStore.deleteAll(Range.singleton(scheduleKeys));
@@ -272,6 +285,7 @@ public class ProgramScheduleStoreDataset {
       while (iterator.hasNext()) {
         StructuredRow row = iterator.next();
         if (row.getString(StoreDefinition.ProgramScheduleStore.SCHEDULE) != null) {
+          markModified(extractTriggerKeys(row));
           markScheduleAsDeleted(row, deleteTime);
           deleted.add(rowToScheduleId(row));
         }
@@ -301,6 +315,7 @@ public class ProgramScheduleStoreDataset {
         if (serializedSchedule != null) {
           ProgramSchedule schedule = GSON.fromJson(serializedSchedule, ProgramSchedule.class);
           if (programId.equals(schedule.getProgramId())) {
+            markModified(extractTriggerKeys(schedule));
             markScheduleAsDeleted(row, deleteTime);
             Collection<Field<?>> deleteKeys = getScheduleKeys(row);
             triggerStore.deleteAll(Range.singleton(deleteKeys));
@@ -330,6 +345,7 @@ public class ProgramScheduleStoreDataset {
     }
     for (ProgramScheduleRecord scheduleRecord : scheduleRecords) {
       ProgramSchedule schedule = scheduleRecord.getSchedule();
+      markModified(extractTriggerKeys(schedule));
       markScheduleAsDeleted(schedule.getScheduleId(), deleteTime);
       triggerStore.deleteAll(Range.singleton(getScheduleKeys(schedule.getScheduleId())));
 
@@ -643,6 +659,37 @@ public class ProgramScheduleStoreDataset {
     return ((SatisfiableTrigger) schedule.getTrigger()).getTriggerKeys();
   }
 
+  /**
+   * Extracts all trigger keys from the schedule stored in the given row.
+   *
+   * @return the trigger keys, or {@code null} if they cannot be determined from the row
+   */
+  @Nullable
+  private static Set<String> extractTriggerKeys(StructuredRow row) {
+    String serializedSchedule = row.getString(StoreDefinition.ProgramScheduleStore.SCHEDULE);
+    if (serializedSchedule == null) {
+      return null;
+    }
+    try {
+      return extractTriggerKeys(GSON.fromJson(serializedSchedule, ProgramSchedule.class));
+    } catch (RuntimeException e) {
+      LOG.debug("Failed to extract trigger keys from schedule row {}", row, e);
+      return null;
+    }
+  }
+
+  /**
+   * Reports the modification of schedules with the given trigger keys to the {@link ScheduleTriggerIndex.Writer}
+   * of this store, if there is one.
+   *
+   * @param triggerKeys the modified trigger keys, or {@code null} to have all trigger keys invalidated
+   */
+  private void markModified(@Nullable Collection<String> triggerKeys) {
+    if (indexWriter != null) {
+      indexWriter.markModified(triggerKeys);
+    }
+  }
+
   private static Collection<Field<?>> getScheduleKeys(ScheduleId scheduleId) {
     List<Field<?>> keys = new ArrayList<>();
     keys.add(Fields.stringField(StoreDefinition.ProgramScheduleStore.NAMESPACE_FIELD, scheduleId.getNamespace()));
@@ -0,0 +1,179 @@
+/*
+ * Copyright © 2020 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+
+package io.cdap.cdap.internal.app.runtime.schedule.store;
+
+import com.google.inject.Inject;
+import com.google.inject.Singleton;
+import io.cdap.cdap.internal.app.runtime.schedule.ProgramScheduleRecord;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+import javax.annotation.Nullable;
+
+/**
+ * An in-memory index from trigger key to the {@link ProgramScheduleRecord}s that are triggered by it.
+ * It saves the schedule subscriber from scanning the trigger table and reading every matching schedule row
+ * for each notification it receives.
+ * <p>
+ * The index is populated lazily from the {@link ProgramScheduleStoreDataset} and is kept consistent with writes
+ * to the schedule store as follows:
+ * <ul>
+ *   <li>Every transaction that modifies schedules does so through a {@link Writer}, obtained from
+ *   {@link #newWriter()} before the transaction starts and closed after it has been committed or aborted.
+ *   The store reports the trigger keys of every schedule it adds, updates or deletes to the writer.</li>
+ *   <li>While any writer has reported a modification and is not yet closed, the index is bypassed.
+ *   When a writer closes, the trigger keys it reported are invalidated.</li>
+ *   <li>A reader must call {@link #getGeneration()} before starting its transaction. An entry loaded from the store
+ *   is only cached if no modification was reported since then, which guarantees that the transaction
+ *   snapshot it was loaded from is not older than any committed schedule change.</li>
+ * </ul>
+ * This relies on all schedule modifications of this process going through a {@link Writer}.
+ */
+@Singleton
+public class ScheduleTriggerIndex {
+
+  private static final int MAX_ENTRIES = 100000;
+
+  private final Map<String, Collection<ProgramScheduleRecord>> index;
+  private long generation;
+  private int activeWriters;
+
+  @Inject
+  public ScheduleTriggerIndex() {
+    this.index = new LinkedHashMap<String, Collection<ProgramScheduleRecord>>(16, 0.75f, true) {
+      @Override
+      protected boolean removeEldestEntry(Map.Entry<String, Collection<ProgramScheduleRecord>> eldest) {
+        return size() > MAX_ENTRIES;
+      }
+    };
+  }
+
+  /**
+   * Returns the current generation of the index. It must be called before the transaction that is used for
+   * {@link #findSchedules(ProgramScheduleStoreDataset, String, long)} is started.
+   */
+  public synchronized long getGeneration() {
+    return generation;
+  }
+
+  /**
+   * Find all schedules that have a trigger with a given trigger key, either from the index or from the given store.
+   *
+   * @param store the {@link ProgramScheduleStoreDataset} of the current transaction
+   * @param triggerKey the trigger key to look up
+   * @param generation the value returned by {@link #getGeneration()} before the current transaction started
+   * @return a collection of all schedules that are triggered by this key; never null
+   */
+  public Collection<ProgramScheduleRecord> findSchedules(ProgramScheduleStoreDataset store, String triggerKey,
+                                                         long generation) throws IOException {
+    synchronized (this) {
+      if (activeWriters == 0) {
+        Collection<ProgramScheduleRecord> records = index.get(triggerKey);
+        if (records != null) {
+          return records;
+        }
+      }
+    }
+
+    Collection<ProgramScheduleRecord> records = Collections.unmodifiableList(
+      new ArrayList<>(store.findSchedules(triggerKey)));
+
+    synchronized (this) {
+      if (activeWriters == 0 && this.generation == generation) {
+        index.put(triggerKey, records);
+      }
+    }
+    return records;
+  }
+
+  /**
+   * Creates a new {@link Writer} for a transaction that may modify schedules.
+   */
+  public Writer newWriter() {
+    return new Writer();
+  }
+
+  /**
+   * Returns the number of trigger keys currently indexed.
+   */
+  synchronized int size() {
+    return index.size();
+  }
+
+  private synchronized void writeStarted() {
+    activeWriters++;
+    generation++;
+  }
+
+  private synchronized void writeCompleted(@Nullable Set<String> triggerKeys) {
+    if (triggerKeys == null) {
+      index.clear();
+    } else {
+      index.keySet().removeAll(triggerKeys);
+    }
+    generation++;
+    activeWriters--;
+  }
+
+  /**
+   * Tracks the trigger keys modified by one transaction. It must be closed after the transaction completed,
+   * regardless of whether it was committed.
+   */
+  public final class Writer implements Closeable {
+
+    private boolean started;
+    private boolean invalidateAll;
+    private final Set<String> triggerKeys = new HashSet<>();
+
+    private Writer() {
+      // only created through newWriter()
+    }
+
+    /**
+     * Marks the given trigger keys as modified.
+     *
+     * @param keys the modified trigger keys, or {@code null} if the modified keys are not known
+     */
+    void markModified(@Nullable Collection<String> keys) {
+      if (!started) {
+        started = true;
+        writeStarted();
+      }
+      if (keys == null) {
+        invalidateAll = true;
+      } else if (!invalidateAll) {
+        triggerKeys.addAll(keys);
+      }
+    }
+
+    @Override
+    public void close() {
+      if (started) {
+        started = false;
+        writeCompleted(invalidateAll ? null : triggerKeys);
+      }
+    }
+  }
+}
@@ -38,6 +38,7 @@ import java.util.Arrays;
 import java.util.List;
 import java.util.Set;
 import java.util.concurrent.TimeUnit;
+import javax.annotation.Nullable;
 
 /**
  * Common utility methods for scheduling.
@@ -70,10 +71,20 @@ public class Schedulers {
   }
 
   public static ProgramScheduleStoreDataset getScheduleStore(StructuredTableContext context) {
+    return getScheduleStore(context, null);
+  }
+
+  /**
+   * Returns a {@link ProgramScheduleStoreDataset} that reports all schedule modifications to the given
+   * {@link ScheduleTriggerIndex.Writer}.
+   */
+  public static ProgramScheduleStoreDataset getScheduleStore(StructuredTableContext context,
+                                                             @Nullable ScheduleTriggerIndex.Writer indexWriter) {
     try {
       return new ProgramScheduleStoreDataset(
         context.getTable(StoreDefinition.ProgramScheduleStore.PROGRAM_SCHEDULE_TABLE),
-        context.getTable(StoreDefinition.ProgramScheduleStore.PROGRAM_TRIGGER_TABLE)
+        context.getTable(StoreDefinition.ProgramScheduleStore.PROGRAM_TRIGGER_TABLE),
+        indexWriter
       );
     } catch (TableNotFoundException e) {
       throw Throwables.propagate(e);
@@ -33,6 +33,7 @@ import io.cdap.cdap.common.logging.LoggingContextAccessor;
 import io.cdap.cdap.common.logging.ServiceLoggingContext;
 import io.cdap.cdap.common.metrics.MetricsReporterHook;
 import io.cdap.cdap.common.security.HttpsEnabler;
+import io.cdap.cdap.internal.app.runtime.artifact.UnpackedArtifactCache;
 import io.cdap.cdap.internal.app.store.AppMetadataStore;
 import io.cdap.cdap.internal.bootstrap.BootstrapService;
 import io.cdap.cdap.internal.provision.ProvisioningService;
@@ -77,6 +78,7 @@ public class AppFabricServer extends AbstractIdleService {
   private final ProvisioningService provisioningService;
   private final BootstrapService bootstrapService;
   private final SystemAppManagementService systemAppManagementService;
+  private final UnpackedArtifactCache unpackedArtifactCache;
   private final CConfiguration cConf;
   private final SConfiguration sConf;
   private final boolean sslEnabled;
@@ -105,7 +107,8 @@ public class AppFabricServer extends AbstractIdleService {
                          ProvisioningService provisioningService,
                          BootstrapService bootstrapService,
                          SystemAppManagementService systemAppManagementService,
-                         TransactionRunner transactionRunner) {
+                         TransactionRunner transactionRunner,
+                         UnpackedArtifactCache unpackedArtifactCache) {
     this.hostname = hostname;
     this.discoveryService = discoveryService;
     this.handlers = handlers;
@@ -123,6 +126,7 @@ public class AppFabricServer extends AbstractIdleService {
     this.provisioningService = provisioningService;
     this.bootstrapService = bootstrapService;
     this.systemAppManagementService = systemAppManagementService;
+    this.unpackedArtifactCache = unpackedArtifactCache;
     this.transactionRunner = transactionRunner;
   }
 
@@ -136,6 +140,7 @@ public class AppFabricServer extends AbstractIdleService {
                                                                        Constants.Service.APP_FABRIC_HTTP));
     Futures.allAsList(
       ImmutableList.of(
+        unpackedArtifactCache.start(),
         provisioningService.start(),
         applicationLifecycleService.start(),
         bootstrapService.start(),
@@ -189,6 +194,7 @@ public class AppFabricServer extends AbstractIdleService {
     programNotificationSubscriberService.stopAndWait();
     runRecordCorrectorService.stopAndWait();
     provisioningService.stopAndWait();
+    unpackedArtifactCache.stopAndWait();
   }
 
   private Cancellable startHttpService(NettyHttpService httpService) throws Exception {
@@ -17,6 +17,8 @@
 package io.cdap.cdap.metadata;
 
 import com.google.common.annotations.VisibleForTesting;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
 import com.google.common.collect.Collections2;
 import com.google.common.collect.HashMultimap;
 import com.google.common.collect.Iterables;
@@ -29,6 +31,8 @@ import io.cdap.cdap.api.workflow.WorkflowNode;
 import io.cdap.cdap.api.workflow.WorkflowSpecification;
 import io.cdap.cdap.app.store.Store;
 import io.cdap.cdap.common.app.RunIds;
+import io.cdap.cdap.common.conf.CConfiguration;
+import io.cdap.cdap.common.conf.Constants;
 import io.cdap.cdap.data2.metadata.lineage.AccessType;
 import io.cdap.cdap.data2.metadata.lineage.DefaultLineageStoreReader;
 import io.cdap.cdap.data2.metadata.lineage.Lineage;
@@ -64,6 +68,7 @@ import javax.annotation.Nullable;
 public class LineageAdmin {
 
   private static final Logger LOG = LoggerFactory.getLogger(LineageAdmin.class);
+  private static final int LINEAGE_CACHE_SIZE = 1000;
 
   private static final Function<Collection<Relation>, Collection<Relation>> COLLAPSE_UNKNOWN_TYPE_FUNCTION =
     relations -> {
@@ -76,11 +81,28 @@ public class LineageAdmin {
 
   private final LineageStoreReader lineageStoreReader;
   private final Store store;
+  // Cache of recently computed lineage, to serve repeated requests (e.g. from the UI) without traversing again
+  @Nullable
+  private final Cache<LineageCacheKey, Lineage> lineageCache;
 
-  @Inject
+  @VisibleForTesting
   LineageAdmin(LineageStoreReader lineageStoreReader, Store store) {
+    this(lineageStoreReader, store, 0L);
+  }
+
+  @Inject
+  LineageAdmin(CConfiguration cConf, LineageStoreReader lineageStoreReader, Store store) {
+    this(lineageStoreReader, store, cConf.getLong(Constants.Metadata.LINEAGE_CACHE_TTL_SECONDS));
+  }
+
+  @VisibleForTesting
+  LineageAdmin(LineageStoreReader lineageStoreReader, Store store, long cacheTTLSeconds) {
     this.lineageStoreReader = lineageStoreReader;
     this.store = store;
+    this.lineageCache = cacheTTLSeconds <= 0 ? null : CacheBuilder.newBuilder()
+      .expireAfterWrite(cacheTTLSeconds, TimeUnit.SECONDS)
+      .maximumSize(LINEAGE_CACHE_SIZE)
+      .build();
   }
 
   /**
@@ -114,9 +136,23 @@ public class LineageAdmin {
   private Lineage doComputeLineage(DatasetId sourceData,
                                    long startMillis, long endMillis,
                                    int levels, @Nullable String rollup) {
+    boolean rollUpWorkflow = rollup != null && rollup.contains("workflow");
+    if (lineageCache == null) {
+      return doComputeLineage(sourceData, startMillis, endMillis, levels, rollUpWorkflow);
+    }
+    LineageCacheKey key = new LineageCacheKey(sourceData, startMillis, endMillis, levels, rollUpWorkflow);
+    Lineage lineage = lineageCache.getIfPresent(key);
+    if (lineage == null) {
+      lineage = doComputeLineage(sourceData, startMillis, endMillis, levels, rollUpWorkflow);
+      lineageCache.put(key, lineage);
+    }
+    return lineage;
+  }
+
+  private Lineage doComputeLineage(DatasetId sourceData, long startMillis, long endMillis,
+                                   int levels, boolean rollUpWorkflow) {
     LOG.trace("Computing lineage for data {}, startMillis {}, endMillis {}, levels {}",
               sourceData, startMillis, endMillis, levels);
-    boolean rollUpWorkflow = rollup != null && rollup.contains("workflow");
 
     // Convert start time and end time period into scan keys in terms of program start times.
     Set<RunId> runningInRange = store.getRunningInRange(TimeUnit.MILLISECONDS.toSeconds(startMillis),
@@ -134,48 +170,50 @@ public class LineageAdmin {
     // this map is to map the inner program run id to the workflow run id, this is needed to collapse the inner
     // program and local datasets
     Map<ProgramRunId, ProgramRunId> programWorkflowMap = new HashMap<>();
+    // app specs fetched for the workflow roll up, shared across levels
+    Map<ApplicationId, ApplicationSpecification> appSpecs = new HashMap<>();
 
+    // Each level is expanded with one lookup for all the datasets and one lookup for all the programs in it
     toVisitDatasets.add(sourceData);
     for (int i = 0; i < levels; ++i) {
       LOG.trace("Level {}", i);
       toVisitPrograms.clear();
-      for (DatasetId d : toVisitDatasets) {
-        if (visitedDatasets.add(d)) {
-          LOG.trace("Visiting dataset {}", d);
-          // Fetch related programs, the programs will be the inner programs which access the datasets. For example,
-          // mapreduce or spark program in a workflow
-          Set<Relation> programRelations = lineageStoreReader.getRelations(d, scanRange.getStart(), scanRange.getEnd(),
-                                                                           scanRange.getFilter());
-          LOG.trace("Got program relations {}", programRelations);
-
-          // if we want to roll up lineage for workflow, we need to figure out what workflow these programs are related
-          // to and find out all the inner programs of that workflow, the workflow run id can also be used to
-          // determine if a dataset is local dataset. The local dataset always ends with the workflow run id
-          if (rollUpWorkflow) {
-            computeWorkflowInnerPrograms(toVisitPrograms, programWorkflowMap, programRelations);
-          }
-
-          // add to the relations, replace the inner program with the workflow using the map, ignore the
-          // local datasets relations, the local dataset always ends with the run id of the workflow
-          filterAndAddRelations(rollUpWorkflow, relations, programWorkflowMap, programRelations);
-          toVisitPrograms.addAll(programRelations.stream().map(Relation::getProgram).collect(Collectors.toSet()));
+      toVisitDatasets.removeAll(visitedDatasets);
+      if (!toVisitDatasets.isEmpty()) {
+        visitedDatasets.addAll(toVisitDatasets);
+        LOG.trace("Visiting datasets {}", toVisitDatasets);
+        // Fetch related programs, the programs will be the inner programs which access the datasets. For example,
+        // mapreduce or spark program in a workflow
+        Set<Relation> programRelations = lineageStoreReader.getDatasetRelations(toVisitDatasets, scanRange.getStart(),
+                                                                                scanRange.getEnd(),
+                                                                                scanRange.getFilter());
+        LOG.trace("Got program relations {}", programRelations);
+
+        // if we want to roll up lineage for workflow, we need to figure out what workflow these programs are related
+        // to and find out all the inner programs of that workflow, the workflow run id can also be used to
+        // determine if a dataset is local dataset. The local dataset always ends with the workflow run id
+        if (rollUpWorkflow) {
+          computeWorkflowInnerPrograms(toVisitPrograms, programWorkflowMap, appSpecs, programRelations);
         }
+
+        // add to the relations, replace the inner program with the workflow using the map, ignore the
+        // local datasets relations, the local dataset always ends with the run id of the workflow
+        filterAndAddRelations(rollUpWorkflow, relations, programWorkflowMap, programRelations);
+        toVisitPrograms.addAll(programRelations.stream().map(Relation::getProgram).collect(Collectors.toSet()));
       }
 
       toVisitDatasets.clear();
-      for (ProgramId p : toVisitPrograms) {
-        if (visitedPrograms.add(p)) {
-          LOG.trace("Visiting program {}", p);
-          // Fetch related datasets
-          Set<Relation> datasetRelations = lineageStoreReader.getRelations(p, scanRange.getStart(),
-                                                                           scanRange.getEnd(), scanRange.getFilter());
-          LOG.trace("Got data relations {}", datasetRelations);
-          Set<DatasetId> localDatasets = filterAndAddRelations(rollUpWorkflow, relations,
-                                                               programWorkflowMap, datasetRelations);
-          toVisitDatasets.addAll(
-            datasetRelations.stream().map(relation -> (DatasetId) relation.getData())
-              .filter(datasetId -> !localDatasets.contains(datasetId)).collect(Collectors.toSet()));
-        }
+      toVisitPrograms.removeAll(visitedPrograms);
+      if (!toVisitPrograms.isEmpty()) {
+        visitedPrograms.addAll(toVisitPrograms);
+        LOG.trace("Visiting programs {}", toVisitPrograms);
+        // Fetch related datasets
+        Set<Relation> datasetRelations = lineageStoreReader.getProgramRelations(toVisitPrograms, scanRange.getStart(),
+                                                                                scanRange.getEnd(),
+                                                                                scanRange.getFilter());
+        LOG.trace("Got data relations {}", datasetRelations);
+        toVisitDatasets.addAll(filterAndAddRelations(rollUpWorkflow, relations, programWorkflowMap,
+                                                     datasetRelations));
       }
     }
 
@@ -188,27 +226,27 @@ public class LineageAdmin {
   /**
    * Filter the relations based on the rollUp flag, if set to true, the method will replace the inner program with
    * the workflow using the map and ignore the local datasets relations. The local dataset always ends with the run
-   * id of the workflow. The set of filtered local datasets is returned
+   * id of the workflow. The set of datasets of the relations that are not filtered is returned
    */
   private Set<DatasetId> filterAndAddRelations(boolean rollUpWorkflow, Multimap<RelationKey, Relation> relations,
                                                Map<ProgramRunId, ProgramRunId> programWorkflowMap,
                                                Set<Relation> relationss) {
-    Set<DatasetId> localDatasets = new HashSet<>();
+    Set<DatasetId> datasets = new HashSet<>();
     for (Relation relation : relationss) {
+      DatasetId data = (DatasetId) relation.getData();
       if (rollUpWorkflow && programWorkflowMap.containsKey(relation.getProgramRunId())) {
         ProgramRunId workflowId = programWorkflowMap.get(relation.getProgramRunId());
         // skip the relation for local datasets, local datasets always end with the workflow run id
-        DatasetId data = (DatasetId) relation.getData();
         if (data.getDataset().endsWith(workflowId.getRun())) {
-          localDatasets.add(data);
           continue;
         }
         relation = new Relation(data, workflowId.getParent(), relation.getAccess(),
                                 RunIds.fromString(workflowId.getRun()));
       }
       relations.put(new RelationKey(relation), relation);
+      datasets.add(data);
     }
-    return localDatasets;
+    return datasets;
   }
 
   /**
@@ -216,15 +254,16 @@ public class LineageAdmin {
    *
    * @param toVisitPrograms the collection of next to visit programs
    * @param programWorkflowMap the program workflow run id map
-   * @param programRelations the program relations of the dataset
+   * @param appSpecs the application specifications that are already fetched
+   * @param programRelations the program relations of the datasets
    */
   private void computeWorkflowInnerPrograms(Set<ProgramId> toVisitPrograms,
                                             Map<ProgramRunId, ProgramRunId> programWorkflowMap,
+                                            Map<ApplicationId, ApplicationSpecification> appSpecs,
                                             Set<Relation> programRelations) {
     // Step 1 walk through the program relations, filter out the possible mapreduce and spark programs that
     // could be in the workflow, and get the appSpec for the program, to determine what other programs
     // are in the workflow
-    Map<ApplicationId, ApplicationSpecification> appSpecs = new HashMap<>();
     Set<ProgramRunId> possibleInnerPrograms = new HashSet<>();
     programRelations.forEach(relation -> {
       ProgramType type = relation.getProgram().getType();
@@ -350,6 +389,46 @@ public class LineageAdmin {
     }
   }
 
+  /**
+   * Key for the cache of computed lineage.
+   */
+  private static final class LineageCacheKey {
+    private final DatasetId dataset;
+    private final long startMillis;
+    private final long endMillis;
+    private final int levels;
+    private final boolean rollUpWorkflow;
+
+    private LineageCacheKey(DatasetId dataset, long startMillis, long endMillis, int levels, boolean rollUpWorkflow) {
+      this.dataset = dataset;
+      this.startMillis = startMillis;
+      this.endMillis = endMillis;
+      this.levels = levels;
+      this.rollUpWorkflow = rollUpWorkflow;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+      if (this == o) {
+        return true;
+      }
+      if (o == null || getClass() != o.getClass()) {
+        return false;
+      }
+      LineageCacheKey other = (LineageCacheKey) o;
+      return startMillis == other.startMillis
+        && endMillis == other.endMillis
+        && levels == other.levels
+        && rollUpWorkflow == other.rollUpWorkflow
+        && dataset.equals(other.dataset);
+    }
+
+    @Override
+    public int hashCode() {
+      return Objects.hash(dataset, startMillis, endMillis, levels, rollUpWorkflow);
+    }
+  }
+
   /**
    * This class helps collapsing access type of {@link Relation} by ignoring the access type in equals and hashCode
    * so that it can be used as the map key for Relations of different access types.
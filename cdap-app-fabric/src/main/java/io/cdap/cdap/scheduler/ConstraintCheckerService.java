@@ -54,7 +54,9 @@ import java.util.concurrent.Executors;
 import java.util.concurrent.TimeUnit;
 
 /**
- * Polls the JobQueue, checks the jobs for constraint satisfaction, and launches them.
+ * Scans the JobQueue, checks the jobs for constraint satisfaction, and launches them. Each partition of the
+ * JobQueue is scanned again when it is notified through the {@link JobQueueChangeNotifier}, when a constraint
+ * of one of its jobs may become satisfied, or at the latest after the configured full scan interval.
  */
 class ConstraintCheckerService extends AbstractIdleService {
   private static final Logger LOG = LoggerFactory.getLogger(ConstraintCheckerService.class);
@@ -65,6 +67,8 @@ class ConstraintCheckerService extends AbstractIdleService {
   private final NamespaceQueryAdmin namespaceQueryAdmin;
   private final CConfiguration cConf;
   private final TransactionRunner transactionRunner;
+  private final JobQueueChangeNotifier changeNotifier;
+  private final long fullScanIntervalMillis;
   private ScheduleTaskRunner taskRunner;
   private ListeningExecutorService taskExecutorService;
   private volatile boolean stopping = false;
@@ -74,13 +78,15 @@ class ConstraintCheckerService extends AbstractIdleService {
                            ProgramLifecycleService lifecycleService, PropertiesResolver propertiesResolver,
                            NamespaceQueryAdmin namespaceQueryAdmin,
                            CConfiguration cConf,
-                           TransactionRunner transactionRunner) {
+                           TransactionRunner transactionRunner, JobQueueChangeNotifier changeNotifier) {
     this.store = store;
     this.lifecycleService = lifecycleService;
     this.propertiesResolver = propertiesResolver;
     this.namespaceQueryAdmin = namespaceQueryAdmin;
     this.cConf = cConf;
     this.transactionRunner = transactionRunner;
+    this.changeNotifier = changeNotifier;
+    this.fullScanIntervalMillis = cConf.getLong(Constants.Scheduler.JOB_QUEUE_FULL_SCAN_INTERVAL_MILLIS);
   }
 
   @Override
@@ -121,6 +127,8 @@ class ConstraintCheckerService extends AbstractIdleService {
     private final Deque<Job> readyJobs = new ArrayDeque<>();
     private Job lastConsumed;
     private int failureCount;
+    // the earliest time at which a job seen in the current scan of the partition needs to be checked again
+    private long nextCheckTime = Long.MAX_VALUE;
 
     ConstraintCheckerThread(int partition) {
       // TODO: [CDAP-11370] Need to be configured in cdap-default.xml. Retry with delay ranging from 0.1s to 30s
@@ -135,13 +143,17 @@ class ConstraintCheckerService extends AbstractIdleService {
 
       while (!stopping) {
         try {
-          long sleepTime = checkJobQueue();
-          // Don't sleep if sleepTime returned is 0
-          if (sleepTime > 0) {
-            TimeUnit.MILLISECONDS.sleep(sleepTime);
+          long waitTime = checkJobQueue();
+          // Don't wait if waitTime returned is 0
+          if (waitTime > 0) {
+            if (failureCount > 0) {
+              TimeUnit.MILLISECONDS.sleep(waitTime);
+            } else {
+              changeNotifier.awaitChange(partition, waitTime);
+            }
           }
         } catch (InterruptedException e) {
-          // sleep is interrupted, just exit without doing anything
+          // wait is interrupted, just exit without doing anything
         }
       }
     }
@@ -149,12 +161,12 @@ class ConstraintCheckerService extends AbstractIdleService {
     /**
      * Check jobs in job queue for constraint satisfaction.
      *
-     * @return sleep time in milliseconds before next fetch
+     * @return wait time in milliseconds before next fetch
      */
     private long checkJobQueue() {
-      boolean emptyFetch = false;
+      boolean scanCompleted = false;
       try {
-        emptyFetch = TransactionRunners.run(transactionRunner, context -> {
+        scanCompleted = TransactionRunners.run(transactionRunner, context -> {
           return checkJobConstraints(JobQueueTable.getJobQueue(context, cConf));
         });
 
@@ -172,28 +184,46 @@ class ConstraintCheckerService extends AbstractIdleService {
         return scheduleStrategy.nextRetry(failureCount, 0);
       }
 
-      // Sleep for 2 seconds if there's no jobs in the queue
-      return emptyFetch && readyJobs.isEmpty() ? 2000L : 0L;
+      // Continue the scan right away if it was interrupted by the time limit
+      if (!scanCompleted || !readyJobs.isEmpty()) {
+        return 0L;
+      }
+      // Otherwise wait until the next job needs to be checked, or until the partition gets notified
+      long waitTime = Math.min(nextCheckTime - System.currentTimeMillis(), fullScanIntervalMillis);
+      nextCheckTime = Long.MAX_VALUE;
+      return Math.max(waitTime, 0L);
     }
 
+    /**
+     * Checks the jobs of the partition, starting after the last consumed job.
+     *
+     * @return whether the scan reached the end of the partition
+     */
     private boolean checkJobConstraints(JobQueue jobQueue) throws IOException {
-      boolean emptyScan = true;
-
+      if (lastConsumed == null) {
+        nextCheckTime = Long.MAX_VALUE;
+      }
       try (CloseableIterator<Job> jobQueueIter = jobQueue.getJobs(partition, lastConsumed)) {
         Stopwatch stopWatch = new Stopwatch().start();
         // limit the batches of the scan to 1000ms
         while (!stopping && stopWatch.elapsedMillis() < 1000) {
           if (!jobQueueIter.hasNext()) {
             lastConsumed = null;
-            return emptyScan;
+            return true;
           }
           Job job = jobQueueIter.next();
           lastConsumed = job;
-          emptyScan = false;
           checkAndUpdateJob(jobQueue, job);
         }
       }
-      return emptyScan;
+      return false;
+    }
+
+    /**
+     * Records that a job needs to be checked again at the given time.
+     */
+    private void checkAgainAt(long time) {
+      nextCheckTime = Math.min(nextCheckTime, time);
     }
 
     private void checkAndUpdateJob(JobQueue jobQueue, Job job) throws IOException {
@@ -209,15 +239,19 @@ class ConstraintCheckerService extends AbstractIdleService {
           (job.getState() == Job.State.PENDING_TRIGGER &&
             now - job.getDeleteTimeMillis() > 2 * Schedulers.SUBSCRIBER_TX_TIMEOUT_MILLIS))) {
           jobQueue.deleteJob(job);
+        } else if (job.getState() == Job.State.PENDING_TRIGGER) {
+          checkAgainAt(job.getDeleteTimeMillis() + 2 * Schedulers.SUBSCRIBER_TX_TIMEOUT_MILLIS + 1);
         }
         return;
       }
-      if (now - job.getCreationTime() >= job.getSchedule().getTimeoutMillis() +
-        2 * Schedulers.SUBSCRIBER_TX_TIMEOUT_MILLIS) {
+      long timeoutTime = job.getCreationTime() + job.getSchedule().getTimeoutMillis() +
+        2 * Schedulers.SUBSCRIBER_TX_TIMEOUT_MILLIS;
+      if (now >= timeoutTime) {
         LOG.info("Deleted job {}, due to timeout value of {}.", job.getJobKey(), job.getSchedule().getTimeoutMillis());
         jobQueue.deleteJob(job);
         return;
       }
+      checkAgainAt(timeoutTime);
       if (job.getState() != Job.State.PENDING_CONSTRAINT) {
         return;
       }
@@ -286,6 +320,8 @@ class ConstraintCheckerService extends AbstractIdleService {
     private ConstraintResult.SatisfiedState constraintsSatisfied(Job job, long now) {
       ConstraintResult.SatisfiedState satisfiedState = ConstraintResult.SatisfiedState.SATISFIED;
 
+      // the earliest time at which all constraints that are not satisfied now may become satisfied
+      long notSatisfiedUntil = now;
       ConstraintContext constraintContext = new ConstraintContext(job, now, store);
       for (Constraint constraint : job.getSchedule().getConstraints()) {
         if (!(constraint instanceof CheckableConstraint)) {
@@ -303,8 +339,12 @@ class ConstraintCheckerService extends AbstractIdleService {
         }
         if (result.getSatisfiedState() == ConstraintResult.SatisfiedState.NOT_SATISFIED) {
           satisfiedState = ConstraintResult.SatisfiedState.NOT_SATISFIED;
+          notSatisfiedUntil = Math.max(notSatisfiedUntil, result.getNextCheckTime());
         }
       }
+      if (satisfiedState == ConstraintResult.SatisfiedState.NOT_SATISFIED) {
+        checkAgainAt(notSatisfiedUntil);
+      }
       return satisfiedState;
     }
 
@@ -44,6 +44,7 @@ import io.cdap.cdap.internal.app.runtime.schedule.TimeSchedulerService;
 import io.cdap.cdap.internal.app.runtime.schedule.queue.Job;
 import io.cdap.cdap.internal.app.runtime.schedule.queue.JobQueueTable;
 import io.cdap.cdap.internal.app.runtime.schedule.store.ProgramScheduleStoreDataset;
+import io.cdap.cdap.internal.app.runtime.schedule.store.ScheduleTriggerIndex;
 import io.cdap.cdap.internal.app.runtime.schedule.store.Schedulers;
 import io.cdap.cdap.internal.app.store.profile.ProfileStore;
 import io.cdap.cdap.internal.profile.AdminEventPublisher;
@@ -68,9 +69,11 @@ import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Optional;
+import java.util.Set;
 import java.util.concurrent.CountDownLatch;
 import java.util.concurrent.Executor;
 import java.util.concurrent.TimeUnit;
@@ -94,6 +97,8 @@ public class CoreSchedulerService extends AbstractIdleService implements Schedul
   private final Store appMetaStore;
   private final Impersonator impersonator;
   private final TransactionRunner transactionRunner;
+  private final ScheduleTriggerIndex triggerIndex;
+  private final JobQueueChangeNotifier changeNotifier;
 
   @Inject
   CoreSchedulerService(TimeSchedulerService timeSchedulerService,
@@ -101,7 +106,8 @@ public class CoreSchedulerService extends AbstractIdleService implements Schedul
                        ConstraintCheckerService constraintCheckerService,
                        MessagingService messagingService,
                        CConfiguration cConf, Store store, Impersonator impersonator,
-                       TransactionRunner transactionRunner) {
+                       TransactionRunner transactionRunner, ScheduleTriggerIndex triggerIndex,
+                       JobQueueChangeNotifier changeNotifier) {
     this.startedLatch = new CountDownLatch(1);
     MultiThreadMessagingContext messagingContext = new MultiThreadMessagingContext(messagingService);
     this.timeSchedulerService = timeSchedulerService;
@@ -109,6 +115,8 @@ public class CoreSchedulerService extends AbstractIdleService implements Schedul
     this.appMetaStore = store;
     this.impersonator = impersonator;
     this.transactionRunner = transactionRunner;
+    this.triggerIndex = triggerIndex;
+    this.changeNotifier = changeNotifier;
     // Use a retry on failure service to make it resilience to transient service unavailability during startup
     this.internalService = new RetryOnStartFailureService(() -> new AbstractIdleService() {
 
@@ -319,6 +327,7 @@ public class CoreSchedulerService extends AbstractIdleService implements Schedul
   @Override
   public void disableSchedule(ScheduleId scheduleId) throws NotFoundException, ConflictException {
     checkStarted();
+    Set<Integer> changedPartitions = new HashSet<>();
     try {
       execute((StoreAndQueueTxRunnable<Void, Exception>) (store, queue) -> {
         ProgramScheduleRecord record = store.getScheduleRecord(scheduleId);
@@ -327,9 +336,10 @@ public class CoreSchedulerService extends AbstractIdleService implements Schedul
         }
         timeSchedulerService.suspendProgramSchedule(record.getSchedule());
         store.updateScheduleStatus(scheduleId, ProgramScheduleStatus.SUSPENDED);
-        queue.markJobsForDeletion(scheduleId, System.currentTimeMillis());
+        markJobsForDeletion(queue, scheduleId, System.currentTimeMillis(), changedPartitions);
         return null;
       }, Exception.class);
+      changedPartitions.forEach(changeNotifier::partitionChanged);
     } catch (NotFoundException | ConflictException e) {
       throw e;
     } catch (SchedulerException e) {
@@ -374,13 +384,14 @@ public class CoreSchedulerService extends AbstractIdleService implements Schedul
   @Override
   public void deleteSchedules(Iterable<? extends ScheduleId> scheduleIds) throws NotFoundException {
     checkStarted();
+    Set<Integer> changedPartitions = new HashSet<>();
     execute((StoreQueueAndProfileTxRunnable<Void, Exception>) (store, queue, profileDataset) -> {
       long deleteTime = System.currentTimeMillis();
       List<ProgramSchedule> toNotify = new ArrayList<>();
       for (ScheduleId scheduleId : scheduleIds) {
         ProgramSchedule schedule = store.getSchedule(scheduleId);
         deleteScheduleInScheduler(schedule);
-        queue.markJobsForDeletion(scheduleId, deleteTime);
+        markJobsForDeletion(queue, scheduleId, deleteTime, changedPartitions);
         toNotify.add(schedule);
         // if the deleted schedule has properties with profile assignment, remove the assignment
         Optional<ProfileId> profileId = SystemArguments.getProfileIdFromArgs(scheduleId.getNamespaceId(),
@@ -399,18 +410,20 @@ public class CoreSchedulerService extends AbstractIdleService implements Schedul
       toNotify.forEach(adminEventPublisher::publishScheduleDeletion);
       return null;
     }, NotFoundException.class);
+    changedPartitions.forEach(changeNotifier::partitionChanged);
   }
 
   @Override
   public void deleteSchedules(ApplicationId appId) {
     checkStarted();
+    Set<Integer> changedPartitions = new HashSet<>();
     execute((StoreQueueAndProfileTxRunnable<Void, Exception>) (store, queue, profileDataset) -> {
       long deleteTime = System.currentTimeMillis();
       List<ProgramSchedule> schedules = store.listSchedules(appId);
       deleteSchedulesInScheduler(schedules);
       List<ScheduleId> deleted = store.deleteSchedules(appId, deleteTime);
       for (ScheduleId scheduleId : deleted) {
-        queue.markJobsForDeletion(scheduleId, deleteTime);
+        markJobsForDeletion(queue, scheduleId, deleteTime, changedPartitions);
       }
       for (ProgramSchedule programSchedule : schedules) {
         ScheduleId scheduleId = programSchedule.getScheduleId();
@@ -430,18 +443,20 @@ public class CoreSchedulerService extends AbstractIdleService implements Schedul
       schedules.forEach(adminEventPublisher::publishScheduleDeletion);
       return null;
     }, RuntimeException.class);
+    changedPartitions.forEach(changeNotifier::partitionChanged);
   }
 
   @Override
   public void deleteSchedules(ProgramId programId) {
     checkStarted();
+    Set<Integer> changedPartitions = new HashSet<>();
     execute((StoreQueueAndProfileTxRunnable<Void, Exception>) (store, queue, profileDataset) -> {
       long deleteTime = System.currentTimeMillis();
       List<ProgramSchedule> schedules = store.listSchedules(programId);
       deleteSchedulesInScheduler(schedules);
       List<ScheduleId> deleted = store.deleteSchedules(programId, deleteTime);
       for (ScheduleId scheduleId : deleted) {
-        queue.markJobsForDeletion(scheduleId, deleteTime);
+        markJobsForDeletion(queue, scheduleId, deleteTime, changedPartitions);
       }
       for (ProgramSchedule programSchedule : schedules) {
         ScheduleId scheduleId = programSchedule.getScheduleId();
@@ -461,6 +476,7 @@ public class CoreSchedulerService extends AbstractIdleService implements Schedul
       schedules.forEach(adminEventPublisher::publishScheduleDeletion);
       return null;
     }, RuntimeException.class);
+    changedPartitions.forEach(changeNotifier::partitionChanged);
   }
 
   @Override
@@ -602,6 +618,16 @@ public class CoreSchedulerService extends AbstractIdleService implements Schedul
     store.updateScheduleStatus(scheduleId, ProgramScheduleStatus.SCHEDULED);
   }
 
+  /**
+   * Marks the jobs of the given schedule for deletion and records the job queue partition that changed, so that
+   * the constraint checker of the partition can be notified once the transaction is committed.
+   */
+  private void markJobsForDeletion(JobQueueTable queue, ScheduleId scheduleId, long markedTime,
+                                   Set<Integer> changedPartitions) throws IOException {
+    queue.markJobsForDeletion(scheduleId, markedTime);
+    changedPartitions.add(queue.getPartition(scheduleId));
+  }
+
   private interface StoreTxRunnable<V, T extends Throwable> {
     V run(ProgramScheduleStoreDataset store) throws T;
   }
@@ -620,40 +646,48 @@ public class CoreSchedulerService extends AbstractIdleService implements Schedul
 
   private <V, T extends Exception> V execute(StoreTxRunnable<V, ? extends Exception> runnable,
                                              Class<? extends T> tClass) throws T {
-    return TransactionRunners.run(transactionRunner, context -> {
-      ProgramScheduleStoreDataset store = Schedulers.getScheduleStore(context);
-      return runnable.run(store);
-    }, tClass);
+    try (ScheduleTriggerIndex.Writer indexWriter = triggerIndex.newWriter()) {
+      return TransactionRunners.run(transactionRunner, context -> {
+        ProgramScheduleStoreDataset store = Schedulers.getScheduleStore(context, indexWriter);
+        return runnable.run(store);
+      }, tClass);
+    }
   }
 
   @SuppressWarnings("UnusedReturnValue")
   private <V, T extends Exception> V execute(StoreAndQueueTxRunnable<V, ? extends Exception> runnable,
                                              Class<? extends T> tClass) throws T {
-    return TransactionRunners.run(transactionRunner, context -> {
-      ProgramScheduleStoreDataset store = Schedulers.getScheduleStore(context);
-      JobQueueTable queue = JobQueueTable.getJobQueue(context, cConf);
-      return runnable.run(store, queue);
-    }, tClass);
+    try (ScheduleTriggerIndex.Writer indexWriter = triggerIndex.newWriter()) {
+      return TransactionRunners.run(transactionRunner, context -> {
+        ProgramScheduleStoreDataset store = Schedulers.getScheduleStore(context, indexWriter);
+        JobQueueTable queue = JobQueueTable.getJobQueue(context, cConf);
+        return runnable.run(store, queue);
+      }, tClass);
+    }
   }
 
   @SuppressWarnings({"UnusedReturnValue", "SameParameterValue"})
   private <V, T extends Exception> V execute(StoreAndProfileTxRunnable<V, ? extends Exception> runnable,
                                              Class<? extends T> tClass) throws T {
-    return TransactionRunners.run(transactionRunner, context -> {
-      ProgramScheduleStoreDataset store = Schedulers.getScheduleStore(context);
-      ProfileStore profileStore = ProfileStore.get(context);
-      return runnable.run(store, profileStore);
-    }, tClass);
+    try (ScheduleTriggerIndex.Writer indexWriter = triggerIndex.newWriter()) {
+      return TransactionRunners.run(transactionRunner, context -> {
+        ProgramScheduleStoreDataset store = Schedulers.getScheduleStore(context, indexWriter);
+        ProfileStore profileStore = ProfileStore.get(context);
+        return runnable.run(store, profileStore);
+      }, tClass);
+    }
   }
 
   @SuppressWarnings("UnusedReturnValue")
   private <V, T extends Exception> V execute(StoreQueueAndProfileTxRunnable<V, ? extends Exception> runnable,
                                              Class<? extends T> tClass) throws T {
-    return TransactionRunners.run(transactionRunner, context -> {
-      ProgramScheduleStoreDataset store = Schedulers.getScheduleStore(context);
-      ProfileStore profileStore = ProfileStore.get(context);
-      JobQueueTable queue = JobQueueTable.getJobQueue(context, cConf);
-      return runnable.run(store, queue, profileStore);
-    }, tClass);
+    try (ScheduleTriggerIndex.Writer indexWriter = triggerIndex.newWriter()) {
+      return TransactionRunners.run(transactionRunner, context -> {
+        ProgramScheduleStoreDataset store = Schedulers.getScheduleStore(context, indexWriter);
+        ProfileStore profileStore = ProfileStore.get(context);
+        JobQueueTable queue = JobQueueTable.getJobQueue(context, cConf);
+        return runnable.run(store, queue, profileStore);
+      }, tClass);
+    }
   }
 }
@@ -0,0 +1,100 @@
+/*
+ * Copyright © 2020 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+
+package io.cdap.cdap.scheduler;
+
+import com.google.inject.Inject;
+import com.google.inject.Singleton;
+import io.cdap.cdap.common.conf.CConfiguration;
+import io.cdap.cdap.common.conf.Constants;
+
+/**
+ * Wakes up the constraint checker of a job queue partition when the jobs in that partition may have changed,
+ * or when the outcome of checking the constraints of those jobs may have changed.
+ * The notifications are only hints; the {@link ConstraintCheckerService} still rescans each partition periodically.
+ */
+@Singleton
+class JobQueueChangeNotifier {
+
+  private final PartitionSignal[] signals;
+
+  @Inject
+  JobQueueChangeNotifier(CConfiguration cConf) {
+    int numPartitions = cConf.getInt(Constants.Scheduler.JOB_QUEUE_NUM_PARTITIONS);
+    this.signals = new PartitionSignal[numPartitions];
+    for (int i = 0; i < numPartitions; i++) {
+      signals[i] = new PartitionSignal();
+    }
+  }
+
+  /**
+   * Notifies that the jobs of the given job queue partition have changed.
+   */
+  void partitionChanged(int partition) {
+    if (partition >= 0 && partition < signals.length) {
+      signals[partition].signal();
+    }
+  }
+
+  /**
+   * Notifies that the constraints of jobs in all partitions need to be checked again, for example because
+   * a program run completed.
+   */
+  void allPartitionsChanged() {
+    for (PartitionSignal signal : signals) {
+      signal.signal();
+    }
+  }
+
+  /**
+   * Waits until the given partition is notified about a change, or until the given timeout elapsed.
+   * Any pending notification is consumed by this call. It returns immediately if the partition was notified
+   * since the last call.
+   *
+   * @param partition the job queue partition
+   * @param timeoutMillis maximum time to wait in milliseconds
+   * @return {@code true} if the partition was notified, {@code false} if the timeout elapsed
+   */
+  boolean awaitChange(int partition, long timeoutMillis) throws InterruptedException {
+    return signals[partition].await(timeoutMillis);
+  }
+
+  /**
+   * A signal for a single partition. It starts as signaled so that the first check happens immediately.
+   */
+  private static final class PartitionSignal {
+
+    private boolean signaled = true;
+
+    synchronized void signal() {
+      signaled = true;
+      notifyAll();
+    }
+
+    synchronized boolean await(long timeoutMillis) throws InterruptedException {
+      long deadline = System.currentTimeMillis() + timeoutMillis;
+      long remaining = timeoutMillis;
+      while (!signaled && remaining > 0) {
+        wait(remaining);
+        remaining = deadline - System.currentTimeMillis();
+      }
+      boolean result = signaled;
+      signaled = false;
+      return result;
+    }
+  }
+}
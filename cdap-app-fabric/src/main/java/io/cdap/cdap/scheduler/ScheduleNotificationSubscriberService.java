@@ -32,6 +32,7 @@ import io.cdap.cdap.internal.app.runtime.ProgramOptionConstants;
 import io.cdap.cdap.internal.app.runtime.schedule.ProgramScheduleRecord;
 import io.cdap.cdap.internal.app.runtime.schedule.queue.JobQueueTable;
 import io.cdap.cdap.internal.app.runtime.schedule.store.ProgramScheduleStoreDataset;
+import io.cdap.cdap.internal.app.runtime.schedule.store.ScheduleTriggerIndex;
 import io.cdap.cdap.internal.app.runtime.schedule.store.Schedulers;
 import io.cdap.cdap.internal.app.services.AbstractNotificationSubscriberService;
 import io.cdap.cdap.messaging.MessagingService;
@@ -48,10 +49,15 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.io.IOException;
+import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashSet;
 import java.util.Iterator;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
 import java.util.concurrent.ExecutionException;
 import java.util.concurrent.Executors;
 import java.util.concurrent.ScheduledExecutorService;
@@ -68,14 +74,19 @@ public class ScheduleNotificationSubscriberService extends AbstractIdleService {
   private final CConfiguration cConf;
   private final MessagingService messagingService;
   private final MetricsCollectionService metricsCollectionService;
+  private final ScheduleTriggerIndex triggerIndex;
+  private final JobQueueChangeNotifier changeNotifier;
   private final List<Service> subscriberServices;
   private ScheduledExecutorService subscriberExecutor;
 
   @Inject
   ScheduleNotificationSubscriberService(CConfiguration cConf, MessagingService messagingService,
                                         MetricsCollectionService metricsCollectionService,
-                                        TransactionRunner transactionRunner) {
+                                        TransactionRunner transactionRunner, ScheduleTriggerIndex triggerIndex,
+                                        JobQueueChangeNotifier changeNotifier) {
     this.cConf = cConf;
+    this.triggerIndex = triggerIndex;
+    this.changeNotifier = changeNotifier;
     this.messagingService = messagingService;
     this.metricsCollectionService = metricsCollectionService;
     this.subscriberServices = Arrays.asList(new SchedulerEventSubscriberService(transactionRunner),
@@ -120,6 +131,11 @@ public class ScheduleNotificationSubscriberService extends AbstractIdleService {
    */
   private abstract class AbstractSchedulerSubscriberService extends AbstractNotificationSubscriberService {
 
+    // job queue partitions that have changed in the current transaction
+    private final Set<Integer> changedPartitions = new HashSet<>();
+    private long indexGeneration;
+    private boolean constraintsChanged;
+
     AbstractSchedulerSubscriberService(String name, String topic, int fetchSize,
                                        TransactionRunner transactionRunner) {
       super(name, cConf, topic, fetchSize, cConf.getLong(Constants.Scheduler.EVENT_POLL_DELAY_MILLIS),
@@ -137,27 +153,75 @@ public class ScheduleNotificationSubscriberService extends AbstractIdleService {
       getJobQueue(context).persistSubscriberState(getTopicId().getTopic(), messageId);
     }
 
+    @Nullable
+    @Override
+    protected String processMessages(Iterator<ImmutablePair<String, Notification>> messages) throws Exception {
+      // The trigger index generation must be captured before the transaction starts
+      indexGeneration = triggerIndex.getGeneration();
+      String messageId = super.processMessages(messages);
+
+      // Wake up the constraint checkers only after the transaction has been committed
+      if (constraintsChanged) {
+        changeNotifier.allPartitionsChanged();
+      } else {
+        changedPartitions.forEach(changeNotifier::partitionChanged);
+      }
+      return messageId;
+    }
+
     @Override
     protected void processMessages(StructuredTableContext structuredTableContext,
                                    Iterator<ImmutablePair<String, Notification>> messages) throws IOException {
       ProgramScheduleStoreDataset scheduleStore = getScheduleStore(structuredTableContext);
       JobQueueTable jobQueue = getJobQueue(structuredTableContext);
+      changedPartitions.clear();
+      constraintsChanged = false;
+
+      // Group the notifications by schedule, so that the jobs of each schedule are only read and written once
+      Map<ScheduleId, ImmutablePair<ProgramScheduleRecord, List<Notification>>> scheduleNotifications =
+        new LinkedHashMap<>();
+      NotificationCollector collector = (record, notification) ->
+        scheduleNotifications.computeIfAbsent(record.getSchedule().getScheduleId(),
+                                              id -> ImmutablePair.of(record, new ArrayList<>()))
+          .getSecond().add(notification);
 
       while (messages.hasNext()) {
-        processNotification(scheduleStore, jobQueue, messages.next().getSecond());
+        processNotification(scheduleStore, collector, messages.next().getSecond());
+      }
+      for (ImmutablePair<ProgramScheduleRecord, List<Notification>> entry : scheduleNotifications.values()) {
+        jobQueue.addNotifications(entry.getFirst(), entry.getSecond());
+        changedPartitions.add(jobQueue.getPartition(entry.getFirst().getSchedule().getScheduleId()));
       }
     }
 
+    /**
+     * Marks that the constraints of pending jobs in all partitions need to be checked again once the
+     * current transaction is committed.
+     */
+    protected void constraintsChanged() {
+      constraintsChanged = true;
+    }
+
+    /**
+     * Finds all schedules that have a trigger with the given trigger key, using the {@link ScheduleTriggerIndex}.
+     */
+    protected Collection<ProgramScheduleRecord> findSchedules(ProgramScheduleStoreDataset scheduleStore,
+                                                              String triggerKey) throws IOException {
+      return triggerIndex.findSchedules(scheduleStore, triggerKey, indexGeneration);
+    }
+
     @Override
     protected ScheduledExecutorService executor() {
       return subscriberExecutor;
     }
 
     /**
-     * Processes a single {@link Notification}.
+     * Processes a single {@link Notification}, passing it to the given {@link NotificationCollector} once for
+     * every schedule it should be added to.
      */
     protected abstract void processNotification(ProgramScheduleStoreDataset scheduleStore,
-                                                JobQueueTable jobQueue, Notification notification) throws IOException;
+                                                NotificationCollector collector,
+                                                Notification notification) throws IOException;
 
     private JobQueueTable getJobQueue(StructuredTableContext context) {
       return JobQueueTable.getJobQueue(context, cConf);
@@ -168,6 +232,13 @@ public class ScheduleNotificationSubscriberService extends AbstractIdleService {
     }
   }
 
+  /**
+   * Collects the notifications to be added to the jobs of schedules.
+   */
+  private interface NotificationCollector {
+    void add(ProgramScheduleRecord record, Notification notification);
+  }
+
   /**
    * Class responsible for time and stream size events.
    */
@@ -181,7 +252,8 @@ public class ScheduleNotificationSubscriberService extends AbstractIdleService {
 
     @Override
     protected void processNotification(ProgramScheduleStoreDataset scheduleStore,
-                                       JobQueueTable jobQueue, Notification notification) throws IOException {
+                                       NotificationCollector collector,
+                                       Notification notification) throws IOException {
 
       Map<String, String> properties = notification.getProperties();
       String scheduleIdString = properties.get(ProgramOptionConstants.SCHEDULE_ID);
@@ -206,7 +278,7 @@ public class ScheduleNotificationSubscriberService extends AbstractIdleService {
         LOG.warn("Ignore notification that doesn't have a schedule {} associated with, {}", scheduleId, notification);
         return;
       }
-      jobQueue.addNotification(record, notification);
+      collector.add(record, notification);
     }
   }
 
@@ -223,15 +295,16 @@ public class ScheduleNotificationSubscriberService extends AbstractIdleService {
 
     @Override
     protected void processNotification(ProgramScheduleStoreDataset scheduleStore,
-                                       JobQueueTable jobQueue, Notification notification) throws IOException {
+                                       NotificationCollector collector,
+                                       Notification notification) throws IOException {
       String datasetIdString = notification.getProperties().get(Notification.DATASET_ID);
       if (datasetIdString == null) {
         return;
       }
       DatasetId datasetId = DatasetId.fromString(datasetIdString);
       for (ProgramScheduleRecord schedule :
-        scheduleStore.findSchedules(Schedulers.triggerKeyForPartition(datasetId))) {
-        jobQueue.addNotification(schedule, notification);
+        findSchedules(scheduleStore, Schedulers.triggerKeyForPartition(datasetId))) {
+        collector.add(schedule, notification);
       }
     }
   }
@@ -249,7 +322,8 @@ public class ScheduleNotificationSubscriberService extends AbstractIdleService {
 
     @Override
     protected void processNotification(ProgramScheduleStoreDataset scheduleStore,
-                                       JobQueueTable jobQueue, Notification notification) throws IOException {
+                                       NotificationCollector collector,
+                                       Notification notification) throws IOException {
       String programRunIdString = notification.getProperties().get(ProgramOptionConstants.PROGRAM_RUN_ID);
       String programRunStatusString = notification.getProperties().get(ProgramOptionConstants.PROGRAM_STATUS);
 
@@ -266,12 +340,18 @@ public class ScheduleNotificationSubscriberService extends AbstractIdleService {
         return;
       }
 
+      // Completion of a program run may satisfy the concurrency constraint of pending jobs
+      if (programStatus == ProgramStatus.COMPLETED || programStatus == ProgramStatus.FAILED
+        || programStatus == ProgramStatus.KILLED) {
+        constraintsChanged();
+      }
+
       ProgramRunId programRunId = GSON.fromJson(programRunIdString, ProgramRunId.class);
       ProgramId programId = programRunId.getParent();
       String triggerKeyForProgramStatus = Schedulers.triggerKeyForProgramStatus(programId, programStatus);
 
-      for (ProgramScheduleRecord schedule : scheduleStore.findSchedules(triggerKeyForProgramStatus)) {
-        jobQueue.addNotification(schedule, notification);
+      for (ProgramScheduleRecord schedule : findSchedules(scheduleStore, triggerKeyForProgramStatus)) {
+        collector.add(schedule, notification);
       }
     }
   }
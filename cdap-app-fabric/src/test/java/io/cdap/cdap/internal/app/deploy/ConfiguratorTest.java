@@ -41,6 +41,7 @@ import io.cdap.cdap.internal.app.runtime.artifact.AuthorizationArtifactRepositor
 import io.cdap.cdap.internal.app.runtime.artifact.DefaultArtifactRepository;
 import io.cdap.cdap.internal.app.runtime.artifact.LocalPluginFinder;
 import io.cdap.cdap.internal.app.runtime.artifact.PluginFinder;
+import io.cdap.cdap.internal.app.runtime.artifact.UnpackedArtifactCache;
 import io.cdap.cdap.internal.app.runtime.schedule.trigger.ProgramStatusTrigger;
 import io.cdap.cdap.security.auth.context.AuthenticationContextModules;
 import io.cdap.cdap.security.authorization.AuthorizationEnforcementModule;
@@ -100,7 +101,8 @@ public class ConfiguratorTest {
                                                                         null,
                                                                         null,
                                                                         new DummyProgramRunnerFactory(),
-                                                                        new DefaultImpersonator(cConf, null));
+                                                                        new DefaultImpersonator(cConf, null),
+                                                                        new UnpackedArtifactCache(conf));
     ArtifactRepository artifactRepo = new AuthorizationArtifactRepository(baseArtifactRepo,
                                                                           authEnforcer, authenticationContext);
     PluginFinder pluginFinder = new LocalPluginFinder(artifactRepo);
@@ -143,7 +145,8 @@ public class ConfiguratorTest {
                                                                         null,
                                                                         null,
                                                                         new DummyProgramRunnerFactory(),
-                                                                        new DefaultImpersonator(cConf, null));
+                                                                        new DefaultImpersonator(cConf, null),
+                                                                        new UnpackedArtifactCache(conf));
     ArtifactRepository artifactRepo = new AuthorizationArtifactRepository(baseArtifactRepo,
                                                                           authEnforcer, authenticationContext);
     PluginFinder pluginFinder = new LocalPluginFinder(artifactRepo);
@@ -59,6 +59,8 @@ import org.junit.ClassRule;
 import org.junit.Test;
 import org.junit.experimental.categories.Category;
 import org.junit.rules.TemporaryFolder;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 
 import java.io.File;
 import java.io.IOException;
@@ -79,6 +81,7 @@ import java.util.concurrent.CyclicBarrier;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
 import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
 import java.util.function.Predicate;
 import java.util.stream.Collectors;
 
@@ -91,6 +94,8 @@ public abstract class ArtifactStoreTest {
   @ClassRule
   public static final TemporaryFolder TEMP_FOLDER = new TemporaryFolder();
 
+  private static final Logger LOG = LoggerFactory.getLogger(ArtifactStoreTest.class);
+
   protected static ArtifactStore artifactStore;
 
   @After
@@ -1239,6 +1244,56 @@ public abstract class ArtifactStoreTest {
     }
   }
 
+  @Category(SlowTests.class)
+  @Test
+  public void testManyPluginArtifacts() throws Exception {
+    Id.Artifact parentArtifactId = Id.Artifact.from(Id.Namespace.DEFAULT, "parent", "1.0.0");
+    writeArtifact(parentArtifactId, new ArtifactMeta(ArtifactClasses.builder().build()), "content");
+    ArtifactRange parentArtifacts = new ArtifactRange(
+      NamespaceId.DEFAULT.getNamespace(), "parent", new ArtifactVersion("1.0.0"), new ArtifactVersion("2.0.0"));
+
+    // Half of the plugin artifacts extend the parent, the other half are universal plugins
+    int numArtifacts = 2000;
+    for (int i = 0; i < numArtifacts; i++) {
+      String type = i % 4 < 2 ? "source" : "sink";
+      PluginClass pluginClass = new PluginClass(type, "plugin" + i, "", "classname", "cfg",
+                                                ImmutableMap.<String, PluginPropertyField>of());
+      Set<ArtifactRange> usableBy = i % 2 == 0 ? ImmutableSet.of(parentArtifacts) : ImmutableSet.of();
+      writeArtifact(Id.Artifact.from(Id.Namespace.DEFAULT, "plugins" + i, "1.0.0"),
+                    new ArtifactMeta(ArtifactClasses.builder().addPlugin(pluginClass).build(), usableBy), "c" + i);
+    }
+
+    long startTime = System.nanoTime();
+    int numLookups = 100;
+    for (int i = 0; i < numLookups; i++) {
+      Assert.assertEquals(numArtifacts, artifactStore.getPluginClasses(NamespaceId.DEFAULT, parentArtifactId).size());
+      Assert.assertEquals(numArtifacts / 2,
+                          artifactStore.getPluginClasses(NamespaceId.DEFAULT, parentArtifactId, "sink").size());
+
+      int pluginIdx = i * numArtifacts / numLookups;
+      String type = pluginIdx % 4 < 2 ? "source" : "sink";
+      SortedMap<ArtifactDescriptor, PluginClass> plugins =
+        artifactStore.getPluginClasses(NamespaceId.DEFAULT, parentArtifactId, type, "plugin" + pluginIdx,
+                                       null, Integer.MAX_VALUE, ArtifactSortOrder.UNORDERED);
+      Assert.assertEquals(1, plugins.size());
+      Assert.assertEquals("plugins" + pluginIdx, plugins.firstKey().getArtifactId().getName());
+    }
+    LOG.info("Took {} ms for {} plugin lookups with {} plugin artifacts",
+             TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startTime), numLookups * 3, numArtifacts);
+
+    // Changes should be reflected right away
+    artifactStore.delete(Id.Artifact.from(Id.Namespace.DEFAULT, "plugins0", "1.0.0"));
+    Assert.assertEquals(numArtifacts - 1,
+                        artifactStore.getPluginClasses(NamespaceId.DEFAULT, parentArtifactId).size());
+    try {
+      artifactStore.getPluginClasses(NamespaceId.DEFAULT, parentArtifactId, "source", "plugin0",
+                                     null, Integer.MAX_VALUE, ArtifactSortOrder.UNORDERED);
+      Assert.fail();
+    } catch (PluginNotExistsException e) {
+      // expected
+    }
+  }
+
   @Category(SlowTests.class)
   @Test
   public void testConcurrentWrite() throws Exception {
@@ -0,0 +1,167 @@
+/*
+ * Copyright © 2020 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package io.cdap.cdap.internal.app.runtime.artifact;
+
+import io.cdap.cdap.common.io.Locations;
+import org.apache.twill.filesystem.Location;
+import org.junit.Assert;
+import org.junit.ClassRule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.jar.JarEntry;
+import java.util.jar.JarOutputStream;
+
+/**
+ * Unit test for {@link UnpackedArtifactCache}.
+ */
+public class UnpackedArtifactCacheTest {
+
+  @ClassRule
+  public static final TemporaryFolder TMP_FOLDER = new TemporaryFolder();
+
+  @Test
+  public void testSharedContent() throws Exception {
+    UnpackedArtifactCache cache = new UnpackedArtifactCache(TMP_FOLDER.newFolder(), 1024 * 1024);
+
+    // Same content in different locations should share the same directory
+    Location jar1 = createJar("test-1.0.0.jar", "content");
+    Location jar2 = Locations.toLocation(new File(TMP_FOLDER.newFolder(), "test-1.0.0.jar"));
+    Locations.linkOrCopy(jar1, new File(jar2.toURI()));
+
+    File dir;
+    try (UnpackedArtifactCache.UnpackedArtifact unpacked1 = cache.unpack(jar1);
+         UnpackedArtifactCache.UnpackedArtifact unpacked2 = cache.unpack(jar2)) {
+      dir = unpacked1.getDirectory();
+      Assert.assertEquals(dir, unpacked2.getDirectory());
+      Assert.assertTrue(new File(dir, "file.txt").isFile());
+    }
+
+    // The directory is kept after release
+    Assert.assertEquals(1, cache.size());
+    try (UnpackedArtifactCache.UnpackedArtifact unpacked = cache.unpack(jar1)) {
+      Assert.assertEquals(dir, unpacked.getDirectory());
+    }
+
+    // Different content should be in a different directory
+    Location jar3 = createJar("test-1.0.0.jar", "new content");
+    try (UnpackedArtifactCache.UnpackedArtifact unpacked = cache.unpack(jar3)) {
+      Assert.assertNotEquals(dir, unpacked.getDirectory());
+    }
+    Assert.assertEquals(2, cache.size());
+  }
+
+  @Test
+  public void testEviction() throws Exception {
+    // A cache that can only hold one artifact
+    Location jar1 = createJar("test1-1.0.0.jar", "content1");
+    Location jar2 = createJar("test2-1.0.0.jar", "content2");
+    UnpackedArtifactCache cache = new UnpackedArtifactCache(TMP_FOLDER.newFolder(), 10);
+
+    UnpackedArtifactCache.UnpackedArtifact unpacked1 = cache.unpack(jar1);
+    UnpackedArtifactCache.UnpackedArtifact unpacked2 = cache.unpack(jar2);
+    File dir1 = unpacked1.getDirectory();
+    File dir2 = unpacked2.getDirectory();
+
+    // Directories in use are not evicted
+    Assert.assertEquals(2, cache.size());
+    Assert.assertTrue(dir1.isDirectory());
+
+    // Once released, the least recently used one is evicted
+    unpacked1.close();
+    Assert.assertEquals(1, cache.size());
+    Assert.assertFalse(dir1.exists());
+    Assert.assertEquals(8L, cache.getTotalSize());
+
+    // Closing again has no effect
+    unpacked1.close();
+    Assert.assertTrue(dir2.isDirectory());
+
+    unpacked2.close();
+    Assert.assertTrue(dir2.isDirectory());
+  }
+
+  @Test
+  public void testConcurrentUnpack() throws Exception {
+    Location jar = createJar("test-1.0.0.jar", "content");
+    UnpackedArtifactCache cache = new UnpackedArtifactCache(TMP_FOLDER.newFolder(), 1024 * 1024);
+
+    ExecutorService executor = Executors.newFixedThreadPool(10);
+    try {
+      List<Future<UnpackedArtifactCache.UnpackedArtifact>> futures = new ArrayList<>();
+      for (int i = 0; i < 10; i++) {
+        futures.add(executor.submit(() -> cache.unpack(jar)));
+      }
+      Set<File> dirs = new HashSet<>();
+      for (Future<UnpackedArtifactCache.UnpackedArtifact> future : futures) {
+        try (UnpackedArtifactCache.UnpackedArtifact unpacked = future.get()) {
+          dirs.add(unpacked.getDirectory());
+        }
+      }
+      Assert.assertEquals(1, dirs.size());
+      Assert.assertEquals(1, cache.size());
+    } finally {
+      executor.shutdownNow();
+    }
+  }
+
+  @Test
+  public void testStop() throws Exception {
+    Location jar = createJar("test-1.0.0.jar", "content");
+    UnpackedArtifactCache cache = new UnpackedArtifactCache(TMP_FOLDER.newFolder(), 1024 * 1024);
+    cache.startAndWait();
+
+    File dir;
+    try (UnpackedArtifactCache.UnpackedArtifact unpacked = cache.unpack(jar)) {
+      dir = unpacked.getDirectory();
+    }
+    Assert.assertTrue(dir.isDirectory());
+
+    // Stopping the cache removes everything it has unpacked
+    cache.stopAndWait();
+    Assert.assertFalse(dir.exists());
+    Assert.assertEquals(0, cache.size());
+
+    try {
+      cache.unpack(jar);
+      Assert.fail("Expected failure when unpacking with a stopped cache");
+    } catch (IllegalStateException e) {
+      // expected
+    }
+  }
+
+  private Location createJar(String name, String content) throws IOException {
+    File file = new File(TMP_FOLDER.newFolder(), name);
+    try (JarOutputStream output = new JarOutputStream(new FileOutputStream(file))) {
+      output.putNextEntry(new JarEntry("file.txt"));
+      output.write(content.getBytes(StandardCharsets.UTF_8));
+      output.closeEntry();
+    }
+    return Locations.toLocation(file);
+  }
+}
@@ -23,6 +23,7 @@ import com.google.common.collect.ImmutableSet;
 import com.google.common.collect.Lists;
 import com.google.common.collect.Multimap;
 import io.cdap.cdap.api.dataset.lib.CloseableIterator;
+import io.cdap.cdap.api.dataset.lib.PartitionKey;
 import io.cdap.cdap.api.schedule.Trigger;
 import io.cdap.cdap.common.conf.CConfiguration;
 import io.cdap.cdap.internal.app.runtime.schedule.ProgramSchedule;
@@ -51,6 +52,7 @@ import org.slf4j.LoggerFactory;
 import java.io.IOException;
 import java.util.ArrayList;
 import java.util.Collections;
+import java.util.Comparator;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Set;
@@ -293,6 +295,65 @@ public abstract class JobQueueTableTest {
     });
   }
 
+  @Test
+  public void testAddNotificationsInBatch() {
+    TransactionRunners.run(transactionRunner, context -> {
+      JobQueueTable jobQueue = JobQueueTable.getJobQueue(context, getCConf());
+      Assert.assertEquals(0, getAllJobs(jobQueue, false).size());
+
+      // two identical schedules, one receives the notifications one by one, the other one as a batch
+      ProgramSchedule sequentialSchedule = new ProgramSchedule("SEQUENTIAL", "two partitions schedule", WORKFLOW_ID,
+                                                               ImmutableMap.of(), new PartitionTrigger(DATASET_ID, 2),
+                                                               ImmutableList.of());
+      ProgramSchedule batchSchedule = new ProgramSchedule("BATCH", "two partitions schedule", WORKFLOW_ID,
+                                                          ImmutableMap.of(), new PartitionTrigger(DATASET_ID, 2),
+                                                          ImmutableList.of());
+      List<Notification> notifications = new ArrayList<>();
+      for (int i = 0; i < 5; i++) {
+        PartitionKey partitionKey = PartitionKey.builder().addField("i", i).build();
+        notifications.add(Notification.forPartitions(DATASET_ID, ImmutableList.of(partitionKey)));
+      }
+
+      // each schedule has an existing job that was created before the schedule got updated
+      for (ProgramSchedule schedule : ImmutableList.of(sequentialSchedule, batchSchedule)) {
+        jobQueue.put(new SimpleJob(schedule, 0, System.currentTimeMillis(), Lists.newArrayList(),
+                                   Job.State.PENDING_TRIGGER, 0L));
+      }
+
+      ProgramScheduleMeta meta = new ProgramScheduleMeta(ProgramScheduleStatus.SCHEDULED, 1L);
+      for (Notification notification : notifications) {
+        jobQueue.addNotification(new ProgramScheduleRecord(sequentialSchedule, meta), notification);
+      }
+      jobQueue.addNotifications(new ProgramScheduleRecord(batchSchedule, meta), notifications);
+
+      List<Job> sequentialJobs = new ArrayList<>(toSet(jobQueue.getJobsForSchedule(sequentialSchedule.getScheduleId()),
+                                                       true));
+      List<Job> batchJobs = new ArrayList<>(toSet(jobQueue.getJobsForSchedule(batchSchedule.getScheduleId()), true));
+      sequentialJobs.sort(Comparator.comparingInt(Job::getGenerationId));
+      batchJobs.sort(Comparator.comparingInt(Job::getGenerationId));
+
+      // the obsolete job, two satisfied jobs and one job that is still pending
+      Assert.assertEquals(4, batchJobs.size());
+      Assert.assertTrue(batchJobs.get(0).isToBeDeleted());
+      Assert.assertEquals(notifications.subList(0, 2), batchJobs.get(1).getNotifications());
+      Assert.assertEquals(Job.State.PENDING_CONSTRAINT, batchJobs.get(1).getState());
+      Assert.assertEquals(notifications.subList(2, 4), batchJobs.get(2).getNotifications());
+      Assert.assertEquals(Job.State.PENDING_CONSTRAINT, batchJobs.get(2).getState());
+      Assert.assertEquals(notifications.subList(4, 5), batchJobs.get(3).getNotifications());
+      Assert.assertEquals(Job.State.PENDING_TRIGGER, batchJobs.get(3).getState());
+
+      Assert.assertEquals(sequentialJobs.size(), batchJobs.size());
+      for (int i = 0; i < batchJobs.size(); i++) {
+        Job sequentialJob = sequentialJobs.get(i);
+        Job batchJob = batchJobs.get(i);
+        Assert.assertEquals(sequentialJob.getGenerationId(), batchJob.getGenerationId());
+        Assert.assertEquals(sequentialJob.getState(), batchJob.getState());
+        Assert.assertEquals(sequentialJob.isToBeDeleted(), batchJob.isToBeDeleted());
+        Assert.assertEquals(sequentialJob.getNotifications(), batchJob.getNotifications());
+      }
+    });
+  }
+
   @Test
   public void testAddConcurrentNotifications() throws Exception {
     TransactionRunners.run(transactionRunner, context -> {
@@ -190,6 +190,70 @@ public abstract class ProgramScheduleStoreDatasetTest extends AppFabricTestBase
     );
   }
 
+  @Test
+  public void testTriggerIndex() {
+    TransactionRunner transactionRunner = getTransactionRunner();
+    ScheduleTriggerIndex index = new ScheduleTriggerIndex();
+    String triggerKey = Schedulers.triggerKeyForPartition(DS1_ID);
+
+    final ProgramSchedule sched1 = new ProgramSchedule("sched1", "one partition schedule", PROG1_ID,
+      Collections.emptyMap(), new PartitionTrigger(DS1_ID, 1), Collections.emptyList());
+
+    // an empty result is indexed as well
+    long generation = index.getGeneration();
+    TransactionRunners.run(transactionRunner, context -> {
+      Assert.assertTrue(index.findSchedules(Schedulers.getScheduleStore(context), triggerKey, generation).isEmpty());
+    });
+    Assert.assertEquals(1, index.size());
+
+    // adding a schedule invalidates its trigger keys once the writer is closed
+    try (ScheduleTriggerIndex.Writer writer = index.newWriter()) {
+      TransactionRunners.run(transactionRunner, context -> {
+        Schedulers.getScheduleStore(context, writer).addSchedule(sched1);
+      });
+      // while the write is in progress, the index is bypassed and nothing gets indexed
+      TransactionRunners.run(transactionRunner, context -> {
+        Assert.assertEquals(1, index.findSchedules(Schedulers.getScheduleStore(context), triggerKey,
+                                                   index.getGeneration()).size());
+      });
+    }
+    Assert.assertEquals(0, index.size());
+
+    // a lookup that started before a write completed must not be indexed
+    long staleGeneration = index.getGeneration();
+    try (ScheduleTriggerIndex.Writer writer = index.newWriter()) {
+      TransactionRunners.run(transactionRunner, context -> {
+        Schedulers.getScheduleStore(context, writer).updateScheduleStatus(sched1.getScheduleId(),
+                                                                          ProgramScheduleStatus.SCHEDULED);
+      });
+    }
+    TransactionRunners.run(transactionRunner, context -> {
+      Collection<ProgramScheduleRecord> records = index.findSchedules(Schedulers.getScheduleStore(context),
+                                                                      triggerKey, staleGeneration);
+      Assert.assertEquals(ProgramScheduleStatus.SCHEDULED, records.iterator().next().getMeta().getStatus());
+    });
+    Assert.assertEquals(0, index.size());
+
+    long currentGeneration = index.getGeneration();
+    TransactionRunners.run(transactionRunner, context -> {
+      index.findSchedules(Schedulers.getScheduleStore(context), triggerKey, currentGeneration);
+    });
+    Assert.assertEquals(1, index.size());
+
+    // deleting the schedules of the app invalidates the trigger key again
+    try (ScheduleTriggerIndex.Writer writer = index.newWriter()) {
+      TransactionRunners.run(transactionRunner, context -> {
+        Schedulers.getScheduleStore(context, writer).deleteSchedules(APP1_ID, System.currentTimeMillis());
+      });
+    }
+    Assert.assertEquals(0, index.size());
+    long finalGeneration = index.getGeneration();
+    TransactionRunners.run(transactionRunner, context -> {
+      Assert.assertTrue(index.findSchedules(Schedulers.getScheduleStore(context), triggerKey,
+                                            finalGeneration).isEmpty());
+    });
+  }
+
   @Test
   public void testFindSchedulesByEventAndUpdateSchedule() {
     TransactionRunner transactionRunner = getTransactionRunner();
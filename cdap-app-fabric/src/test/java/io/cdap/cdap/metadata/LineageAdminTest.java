@@ -296,6 +296,33 @@ public class LineageAdminTest extends AppFabricTestBase {
     Assert.assertEquals(expectedLineage, lineageAdmin.computeLineage(dataset1, 500, 20000, 100));
   }
 
+  @Test
+  public void testLineageCache() {
+    TransactionRunner transactionRunner = getInjector().getInstance(TransactionRunner.class);
+    LineageStoreReader lineageReader = new DefaultLineageStoreReader(transactionRunner);
+    LineageWriter lineageWriter = new BasicLineageWriter(transactionRunner);
+
+    Store store = getInjector().getInstance(Store.class);
+    LineageAdmin lineageAdmin = new LineageAdmin(lineageReader, store, 3600L);
+
+    addRuns(store, run1, run2, run3, run4, run5);
+    lineageWriter.addAccess(run1, dataset1, AccessType.READ);
+
+    Lineage lineage = new Lineage(ImmutableSet.of(new Relation(dataset1, program1, AccessType.READ,
+                                                               twillRunId(run1))));
+    Assert.assertEquals(lineage, lineageAdmin.computeLineage(dataset1, 500, 20000, 100));
+
+    // The same request should be served from the cache
+    lineageWriter.addAccess(run2, dataset1, AccessType.WRITE);
+    Assert.assertEquals(lineage, lineageAdmin.computeLineage(dataset1, 500, 20000, 100));
+
+    // A different request should compute the lineage again
+    Assert.assertEquals(
+      new Lineage(ImmutableSet.of(new Relation(dataset1, program1, AccessType.READ, twillRunId(run1)),
+                                  new Relation(dataset1, program2, AccessType.WRITE, twillRunId(run2)))),
+      lineageAdmin.computeLineage(dataset1, 500, 20000, 99));
+  }
+
   @Test
   public void testBranchLineage() {
     // Lineage for:
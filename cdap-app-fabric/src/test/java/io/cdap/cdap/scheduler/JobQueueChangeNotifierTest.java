@@ -0,0 +1,64 @@
+/*
+ * Copyright © 2020 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+
+package io.cdap.cdap.scheduler;
+
+import io.cdap.cdap.common.conf.CConfiguration;
+import io.cdap.cdap.common.conf.Constants;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Tests for {@link JobQueueChangeNotifier}.
+ */
+public class JobQueueChangeNotifierTest {
+
+  @Test
+  public void testAwaitChange() throws Exception {
+    CConfiguration cConf = CConfiguration.create();
+    cConf.setInt(Constants.Scheduler.JOB_QUEUE_NUM_PARTITIONS, 2);
+    JobQueueChangeNotifier notifier = new JobQueueChangeNotifier(cConf);
+
+    // the first wait returns immediately, so that partitions are scanned on startup
+    Assert.assertTrue(notifier.awaitChange(0, TimeUnit.MINUTES.toMillis(1)));
+    Assert.assertTrue(notifier.awaitChange(1, TimeUnit.MINUTES.toMillis(1)));
+
+    // without notification, the wait times out
+    Assert.assertFalse(notifier.awaitChange(0, 10));
+
+    // a notification received before waiting is not lost, and only affects its own partition
+    notifier.partitionChanged(0);
+    Assert.assertFalse(notifier.awaitChange(1, 10));
+    Assert.assertTrue(notifier.awaitChange(0, TimeUnit.MINUTES.toMillis(1)));
+    Assert.assertFalse(notifier.awaitChange(0, 10));
+
+    // a notification wakes up a waiting thread
+    CompletableFuture<Boolean> waiting = CompletableFuture.supplyAsync(() -> {
+      try {
+        return notifier.awaitChange(1, TimeUnit.MINUTES.toMillis(1));
+      } catch (InterruptedException e) {
+        throw new RuntimeException(e);
+      }
+    });
+    notifier.allPartitionsChanged();
+    Assert.assertTrue(waiting.get(10, TimeUnit.SECONDS));
+    Assert.assertTrue(notifier.awaitChange(0, TimeUnit.MINUTES.toMillis(1)));
+  }
+}
@@ -677,7 +677,7 @@ public class SmartWorkflow extends AbstractWorkflow {
         connectorDatasets.put(connectorName, datasetName);
         phaseConnectorDatasets.put(connectorName, datasetName);
         // add the local dataset
-        ConnectorSource connectorSource = new MultiConnectorSource(datasetName, null);
+        ConnectorSource connectorSource = new MultiConnectorSource(datasetName);
         connectorSource.configure(getConfigurer());
       } else {
         phaseConnectorDatasets.put(connectorName, connectorDatasets.get(connectorName));
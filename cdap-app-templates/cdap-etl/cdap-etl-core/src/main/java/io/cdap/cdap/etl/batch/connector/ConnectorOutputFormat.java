@@ -0,0 +1,46 @@
+/*
+ * Copyright © 2020 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package io.cdap.cdap.etl.batch.connector;
+
+import io.cdap.cdap.api.data.format.StructuredRecord;
+import io.cdap.cdap.etl.common.RecordInfo;
+import org.apache.hadoop.fs.FSDataOutputStream;
+import org.apache.hadoop.fs.Path;
+import org.apache.hadoop.io.NullWritable;
+import org.apache.hadoop.mapreduce.RecordWriter;
+import org.apache.hadoop.mapreduce.TaskAttemptContext;
+import org.apache.hadoop.mapreduce.lib.output.FileOutputFormat;
+
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+
+/**
+ * Output format used by connectors to write records between pipeline phases.
+ * Records are written in a binary format where each schema is only written once per file.
+ * See {@link ConnectorRecordWriter} for the file layout.
+ */
+public class ConnectorOutputFormat extends FileOutputFormat<NullWritable, RecordInfo<StructuredRecord>> {
+
+  @Override
+  public RecordWriter<NullWritable, RecordInfo<StructuredRecord>> getRecordWriter(TaskAttemptContext context)
+    throws IOException {
+    Path file = getDefaultWorkFile(context, "");
+    FSDataOutputStream output = file.getFileSystem(context.getConfiguration()).create(file, false);
+    // the encoder writes a byte at a time, hence buffer the writes to the file
+    return new ConnectorRecordWriter(new BufferedOutputStream(output));
+  }
+}
@@ -0,0 +1,165 @@
+/*
+ * Copyright © 2020 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package io.cdap.cdap.etl.batch.connector;
+
+import com.google.common.io.CountingInputStream;
+import io.cdap.cdap.api.data.format.StructuredRecord;
+import io.cdap.cdap.api.data.schema.Schema;
+import io.cdap.cdap.common.io.BinaryDecoder;
+import io.cdap.cdap.common.io.Decoder;
+import io.cdap.cdap.etl.common.RecordInfo;
+import io.cdap.cdap.etl.common.RecordType;
+import io.cdap.cdap.format.io.StructuredRecordDatumReader;
+import org.apache.hadoop.fs.Path;
+import org.apache.hadoop.io.NullWritable;
+import org.apache.hadoop.mapreduce.InputSplit;
+import org.apache.hadoop.mapreduce.RecordReader;
+import org.apache.hadoop.mapreduce.TaskAttemptContext;
+import org.apache.hadoop.mapreduce.lib.input.CombineFileSplit;
+
+import java.io.BufferedInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Reads a single file written by {@link ConnectorRecordWriter}. This is used through a
+ * {@link org.apache.hadoop.mapreduce.lib.input.CombineFileRecordReader}, which creates one reader for each file
+ * in a {@link CombineFileSplit}.
+ */
+public class ConnectorRecordReader extends RecordReader<NullWritable, RecordInfo<StructuredRecord>> {
+
+  private static final RecordType[] RECORD_TYPES = RecordType.values();
+
+  private final Path path;
+  private final StructuredRecordDatumReader datumReader;
+  private final List<Schema> schemas;
+  private final List<String> stages;
+  private long length;
+  private CountingInputStream input;
+  private Decoder decoder;
+  private RecordInfo<StructuredRecord> currentValue;
+
+  /**
+   * Constructor called by {@link org.apache.hadoop.mapreduce.lib.input.CombineFileRecordReader}.
+   */
+  public ConnectorRecordReader(CombineFileSplit split, TaskAttemptContext context, Integer index) {
+    this(split.getPath(index), split.getLength(index));
+  }
+
+  ConnectorRecordReader() {
+    this(null, 0L);
+  }
+
+  private ConnectorRecordReader(Path path, long length) {
+    this.path = path;
+    this.length = length;
+    this.datumReader = new StructuredRecordDatumReader();
+    this.schemas = new ArrayList<>();
+    this.stages = new ArrayList<>();
+  }
+
+  @Override
+  public void initialize(InputSplit split, TaskAttemptContext context) throws IOException {
+    initialize(path.getFileSystem(context.getConfiguration()).open(path), length);
+  }
+
+  void initialize(InputStream inputStream, long length) throws IOException {
+    this.length = length;
+    this.input = new CountingInputStream(new BufferedInputStream(inputStream));
+    this.decoder = new BinaryDecoder(input);
+
+    byte[] magic = new byte[ConnectorRecordWriter.MAGIC.length];
+    int bytesRead = 0;
+    while (bytesRead < magic.length) {
+      int len = input.read(magic, bytesRead, magic.length - bytesRead);
+      if (len < 0) {
+        break;
+      }
+      bytesRead += len;
+    }
+    if (!Arrays.equals(magic, ConnectorRecordWriter.MAGIC)) {
+      throw new IOException(String.format("File %s is not a connector file.", path));
+    }
+    int version = decoder.readInt();
+    if (version != ConnectorRecordWriter.VERSION) {
+      throw new IOException(String.format("Unsupported connector file version %d in file %s.", version, path));
+    }
+  }
+
+  @Override
+  public boolean nextKeyValue() throws IOException {
+    int tag;
+    while ((tag = input.read()) >= 0) {
+      switch (tag) {
+        case ConnectorRecordWriter.SCHEMA_ENTRY:
+          addEntry(schemas, decoder.readInt(), Schema.parseJson(decoder.readString()));
+          break;
+        case ConnectorRecordWriter.STAGE_ENTRY:
+          addEntry(stages, decoder.readInt(), decoder.readString());
+          break;
+        case ConnectorRecordWriter.RECORD_ENTRY:
+          Schema schema = schemas.get(decoder.readInt());
+          String stageName = stages.get(decoder.readInt());
+          RecordType recordType = RECORD_TYPES[decoder.readInt()];
+          StructuredRecord record = datumReader.read(decoder, schema);
+          currentValue = RecordInfo.builder(record, stageName, recordType).build();
+          return true;
+        default:
+          throw new IOException(String.format("Invalid entry tag %d in connector file %s.", tag, path));
+      }
+    }
+    currentValue = null;
+    return false;
+  }
+
+  @Override
+  public NullWritable getCurrentKey() {
+    return NullWritable.get();
+  }
+
+  @Override
+  public RecordInfo<StructuredRecord> getCurrentValue() {
+    return currentValue;
+  }
+
+  @Override
+  public float getProgress() {
+    if (length <= 0 || input == null) {
+      return 0f;
+    }
+    return Math.min(1.0f, (float) input.getCount() / length);
+  }
+
+  @Override
+  public void close() throws IOException {
+    if (input != null) {
+      input.close();
+    }
+  }
+
+  private <T> void addEntry(List<T> entries, int id, T entry) throws IOException {
+    // ids are assigned sequentially by the writer
+    if (id != entries.size()) {
+      throw new IOException(String.format("Unexpected entry id %d in connector file %s. Expected %d.",
+                                          id, path, entries.size()));
+    }
+    entries.add(entry);
+  }
+}
@@ -0,0 +1,124 @@
+/*
+ * Copyright © 2020 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package io.cdap.cdap.etl.batch.connector;
+
+import io.cdap.cdap.api.data.format.StructuredRecord;
+import io.cdap.cdap.api.data.schema.Schema;
+import io.cdap.cdap.api.data.schema.SchemaHash;
+import io.cdap.cdap.common.io.BinaryEncoder;
+import io.cdap.cdap.common.io.Encoder;
+import io.cdap.cdap.etl.common.RecordInfo;
+import io.cdap.cdap.format.io.StructuredRecordDatumWriter;
+import org.apache.hadoop.io.NullWritable;
+import org.apache.hadoop.mapreduce.RecordWriter;
+import org.apache.hadoop.mapreduce.TaskAttemptContext;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Writes {@link RecordInfo} of {@link StructuredRecord} in the binary connector format.
+ *
+ * A file starts with {@link #MAGIC} and the format version, followed by a sequence of entries. Each entry starts
+ * with a single tag byte:
+ *
+ * <ul>
+ *   <li>{@link #SCHEMA_ENTRY}: schema id followed by the schema json. Written once per distinct schema.</li>
+ *   <li>{@link #STAGE_ENTRY}: stage id followed by the stage name. Written once per distinct stage.</li>
+ *   <li>{@link #RECORD_ENTRY}: schema id, stage id, record type and the binary encoded record.</li>
+ * </ul>
+ *
+ * Schemas are looked up by their {@link SchemaHash} fingerprint, so records from different stages that share
+ * the same schema share the same schema entry.
+ */
+public class ConnectorRecordWriter extends RecordWriter<NullWritable, RecordInfo<StructuredRecord>> {
+
+  static final byte[] MAGIC = new byte[] { 'C', 'D', 'C', 'N' };
+  static final int VERSION = 1;
+  static final int SCHEMA_ENTRY = 0;
+  static final int STAGE_ENTRY = 1;
+  static final int RECORD_ENTRY = 2;
+
+  private final OutputStream output;
+  private final Encoder encoder;
+  private final StructuredRecordDatumWriter datumWriter;
+  private final Map<SchemaHash, Integer> schemaIds;
+  private final Map<String, Integer> stageIds;
+  // fast path for the common case of consecutive records having the same schema instance
+  private Schema lastSchema;
+  private int lastSchemaId;
+
+  ConnectorRecordWriter(OutputStream output) throws IOException {
+    this.output = output;
+    this.encoder = new BinaryEncoder(output);
+    this.datumWriter = new StructuredRecordDatumWriter();
+    this.schemaIds = new HashMap<>();
+    this.stageIds = new HashMap<>();
+    output.write(MAGIC);
+    encoder.writeInt(VERSION);
+  }
+
+  @Override
+  public void write(NullWritable key, RecordInfo<StructuredRecord> value) throws IOException {
+    StructuredRecord record = value.getValue();
+    int schemaId = getSchemaId(record.getSchema());
+    int stageId = getStageId(value.getFromStage());
+
+    output.write(RECORD_ENTRY);
+    encoder.writeInt(schemaId);
+    encoder.writeInt(stageId);
+    encoder.writeInt(value.getType().ordinal());
+    datumWriter.encode(record, encoder);
+  }
+
+  @Override
+  public void close(TaskAttemptContext context) throws IOException {
+    output.close();
+  }
+
+  private int getSchemaId(Schema schema) throws IOException {
+    if (schema == lastSchema) {
+      return lastSchemaId;
+    }
+    SchemaHash hash = schema.getSchemaHash();
+    Integer schemaId = schemaIds.get(hash);
+    if (schemaId == null) {
+      schemaId = schemaIds.size();
+      schemaIds.put(hash, schemaId);
+      output.write(SCHEMA_ENTRY);
+      encoder.writeInt(schemaId);
+      encoder.writeString(schema.toString());
+    }
+    lastSchema = schema;
+    lastSchemaId = schemaId;
+    return schemaId;
+  }
+
+  private int getStageId(String stageName) throws IOException {
+    Integer stageId = stageIds.get(stageName);
+    if (stageId == null) {
+      stageId = stageIds.size();
+      stageIds.put(stageName, stageId);
+      output.write(STAGE_ENTRY);
+      encoder.writeInt(stageId);
+      encoder.writeString(stageName);
+    }
+    return stageId;
+  }
+}
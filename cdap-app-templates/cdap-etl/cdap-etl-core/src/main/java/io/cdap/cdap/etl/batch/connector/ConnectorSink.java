@@ -17,12 +17,13 @@
 package io.cdap.cdap.etl.batch.connector;
 
 import io.cdap.cdap.api.data.batch.Output;
+import io.cdap.cdap.api.data.format.StructuredRecord;
 import io.cdap.cdap.api.dataset.lib.FileSetArguments;
 import io.cdap.cdap.etl.api.batch.BatchSink;
 import io.cdap.cdap.etl.api.batch.BatchSinkContext;
 import io.cdap.cdap.etl.common.Constants;
+import io.cdap.cdap.etl.common.RecordInfo;
 import org.apache.hadoop.io.NullWritable;
-import org.apache.hadoop.io.Text;
 
 import java.util.HashMap;
 import java.util.Map;
@@ -39,11 +40,11 @@ import java.util.Map;
  * This is because we don't want this to show up as a plugin that users can select and use, and also because
  * it uses features not exposed in the etl api (local workflow datasets).
  *
- * TODO: improve storage format. It is currently a json of the record but that is obviously not ideal
+ * Records are written through the {@link ConnectorOutputFormat}, which stores each schema only once per file.
  *
  * @param <T> type of input object
  */
-public abstract class ConnectorSink<T> extends BatchSink<T, NullWritable, Text> {
+public abstract class ConnectorSink<T> extends BatchSink<T, NullWritable, RecordInfo<StructuredRecord>> {
   private final String datasetName;
   private final String phaseName;
 
@@ -58,4 +59,8 @@ public abstract class ConnectorSink<T> extends BatchSink<T, NullWritable, Text>
     FileSetArguments.setOutputPath(arguments, Constants.Connector.DATA_DIR + "/" + phaseName);
     context.addOutput(Output.ofDataset(datasetName, arguments));
   }
+
+  protected String getPhaseName() {
+    return phaseName;
+  }
 }
@@ -17,6 +17,7 @@
 package io.cdap.cdap.etl.batch.connector;
 
 import io.cdap.cdap.api.data.batch.Input;
+import io.cdap.cdap.api.data.format.StructuredRecord;
 import io.cdap.cdap.api.dataset.lib.FileSet;
 import io.cdap.cdap.api.dataset.lib.FileSetArguments;
 import io.cdap.cdap.api.dataset.lib.FileSetProperties;
@@ -24,11 +25,9 @@ import io.cdap.cdap.api.workflow.WorkflowConfigurer;
 import io.cdap.cdap.etl.api.batch.BatchSource;
 import io.cdap.cdap.etl.api.batch.BatchSourceContext;
 import io.cdap.cdap.etl.common.Constants;
-import org.apache.hadoop.io.LongWritable;
-import org.apache.hadoop.io.Text;
-import org.apache.hadoop.mapreduce.lib.input.CombineTextInputFormat;
+import io.cdap.cdap.etl.common.RecordInfo;
+import org.apache.hadoop.io.NullWritable;
 import org.apache.hadoop.mapreduce.lib.input.FileInputFormat;
-import org.apache.hadoop.mapreduce.lib.output.TextOutputFormat;
 
 import java.util.HashMap;
 import java.util.Map;
@@ -47,7 +46,7 @@ import java.util.Map;
  *
  * @param <T> type of output object
  */
-public class ConnectorSource<T> extends BatchSource<LongWritable, Text, T> {
+public class ConnectorSource<T> extends BatchSource<NullWritable, RecordInfo<StructuredRecord>, T> {
   // you can't read from the basedir of a FileSet so adding an arbitrary directory where data will be stored/read.
   static final String DATA_DIR = "data";
   private final String datasetName;
@@ -61,9 +60,9 @@ public class ConnectorSource<T> extends BatchSource<LongWritable, Text, T> {
   public void configure(WorkflowConfigurer workflowConfigurer) {
     workflowConfigurer.createLocalDataset(datasetName, FileSet.class,
                                           FileSetProperties.builder()
-                                            .setInputFormat(CombineTextInputFormat.class)
+                                            .setInputFormat(ConnectorInputFormat.class)
                                             .setInputProperty(FileInputFormat.INPUT_DIR_RECURSIVE, "true")
-                                            .setOutputFormat(TextOutputFormat.class)
+                                            .setOutputFormat(ConnectorOutputFormat.class)
                                             .build());
   }
 
@@ -23,7 +23,7 @@ public class MultiConnectorFactory implements ConnectorFactory {
 
   @Override
   public ConnectorSource createSource(String datasetName) {
-    return new MultiConnectorSource(datasetName, null);
+    return new MultiConnectorSource(datasetName);
   }
 
   @Override
@@ -17,15 +17,10 @@
 package io.cdap.cdap.etl.batch.connector;
 
 import io.cdap.cdap.api.data.format.StructuredRecord;
-import io.cdap.cdap.api.data.schema.Schema;
 import io.cdap.cdap.api.dataset.lib.KeyValue;
 import io.cdap.cdap.etl.api.Emitter;
 import io.cdap.cdap.etl.common.RecordInfo;
-import io.cdap.cdap.format.StructuredRecordStringConverter;
 import org.apache.hadoop.io.NullWritable;
-import org.apache.hadoop.io.Text;
-
-import java.io.IOException;
 
 /**
  * Connector sink that needs to preserve which stage each record came from and the record type.
@@ -39,21 +34,8 @@ public class MultiConnectorSink extends ConnectorSink<RecordInfo<StructuredRecor
   }
 
   @Override
-  public void transform(RecordInfo<StructuredRecord> input, Emitter<KeyValue<NullWritable, Text>> emitter)
-    throws Exception {
-    StructuredRecord modifiedRecord = modifyRecord(input);
-    emitter.emit(new KeyValue<>(NullWritable.get(),
-                                new Text(StructuredRecordStringConverter.toJsonString(modifiedRecord))));
-  }
-
-  private StructuredRecord modifyRecord(RecordInfo<StructuredRecord> input) throws IOException {
-    String stageName = input.getFromStage();
-    Schema inputSchema = input.getValue().getSchema();
-    return StructuredRecord.builder(MultiConnectorSource.RECORD_WITH_SCHEMA)
-      .set("stageName", stageName)
-      .set("type", input.getType().name())
-      .set("schema", inputSchema.toString())
-      .set("record", StructuredRecordStringConverter.toJsonString(input.getValue()))
-      .build();
+  public void transform(RecordInfo<StructuredRecord> input,
+                        Emitter<KeyValue<NullWritable, RecordInfo<StructuredRecord>>> emitter) {
+    emitter.emit(new KeyValue<>(NullWritable.get(), input));
   }
 }
@@ -17,51 +17,24 @@
 package io.cdap.cdap.etl.batch.connector;
 
 import io.cdap.cdap.api.data.format.StructuredRecord;
-import io.cdap.cdap.api.data.schema.Schema;
 import io.cdap.cdap.api.dataset.lib.KeyValue;
 import io.cdap.cdap.etl.api.Emitter;
 import io.cdap.cdap.etl.common.RecordInfo;
-import io.cdap.cdap.etl.common.RecordType;
-import io.cdap.cdap.format.StructuredRecordStringConverter;
-import org.apache.hadoop.io.LongWritable;
-import org.apache.hadoop.io.Text;
-
-import javax.annotation.Nullable;
+import org.apache.hadoop.io.NullWritable;
 
 /**
  * Used to read data written by {@link MultiConnectorSink}.
  */
 public class MultiConnectorSource extends ConnectorSource<RecordInfo<StructuredRecord>> {
-  static final Schema RECORD_WITH_SCHEMA = Schema.recordOf(
-    "record",
-    Schema.Field.of("stageName", Schema.of(Schema.Type.STRING)),
-    Schema.Field.of("type", Schema.of(Schema.Type.STRING)),
-    Schema.Field.of("schema", Schema.of(Schema.Type.STRING)),
-    Schema.Field.of("record", Schema.of(Schema.Type.STRING)));
-  @Nullable
-  private final Schema schema;
 
-  public MultiConnectorSource(String datasetName, @Nullable Schema schema) {
+  public MultiConnectorSource(String datasetName) {
     super(datasetName);
-    this.schema = schema;
   }
 
   @Override
-  public void transform(KeyValue<LongWritable, Text> input,
-                        Emitter<RecordInfo<StructuredRecord>> emitter) throws Exception {
-    StructuredRecord output;
-    String inputStr = input.getValue().toString();
-    StructuredRecord recordWithSchema =
-      StructuredRecordStringConverter.fromJsonString(inputStr, RECORD_WITH_SCHEMA);
-    String stageName = recordWithSchema.get("stageName");
-    if (schema == null) {
-      Schema outputSchema = Schema.parseJson((String) recordWithSchema.get("schema"));
-      output = StructuredRecordStringConverter.fromJsonString((String) recordWithSchema.get("record"), outputSchema);
-    } else {
-      output = StructuredRecordStringConverter.fromJsonString(inputStr, schema);
-    }
-    RecordType recordType = RecordType.valueOf((String) recordWithSchema.get("type"));
-    emitter.emit(RecordInfo.builder(output, stageName, recordType).build());
+  public void transform(KeyValue<NullWritable, RecordInfo<StructuredRecord>> input,
+                        Emitter<RecordInfo<StructuredRecord>> emitter) {
+    emitter.emit(input.getValue());
   }
 
 }
@@ -23,7 +23,7 @@ public class SingleConnectorFactory implements ConnectorFactory {
 
   @Override
   public ConnectorSource createSource(String datasetName) {
-    return new SingleConnectorSource(datasetName, null);
+    return new SingleConnectorSource(datasetName);
   }
 
   @Override
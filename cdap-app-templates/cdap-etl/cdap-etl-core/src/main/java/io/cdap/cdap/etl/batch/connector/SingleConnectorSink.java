@@ -17,14 +17,11 @@
 package io.cdap.cdap.etl.batch.connector;
 
 import io.cdap.cdap.api.data.format.StructuredRecord;
-import io.cdap.cdap.api.data.schema.Schema;
 import io.cdap.cdap.api.dataset.lib.KeyValue;
 import io.cdap.cdap.etl.api.Emitter;
-import io.cdap.cdap.format.StructuredRecordStringConverter;
+import io.cdap.cdap.etl.common.RecordInfo;
+import io.cdap.cdap.etl.common.RecordType;
 import org.apache.hadoop.io.NullWritable;
-import org.apache.hadoop.io.Text;
-
-import java.io.IOException;
 
 /**
  * Connector sink that only writes a single type of record.
@@ -37,18 +34,10 @@ public class SingleConnectorSink extends ConnectorSink<StructuredRecord> {
   }
 
   @Override
-  public void transform(StructuredRecord input, Emitter<KeyValue<NullWritable, Text>> emitter)
-    throws Exception {
-    StructuredRecord modifiedRecord = modifyRecord(input);
-    emitter.emit(new KeyValue<>(NullWritable.get(),
-                                new Text(StructuredRecordStringConverter.toJsonString(modifiedRecord))));
-  }
-
-  private StructuredRecord modifyRecord(StructuredRecord input) throws IOException {
-    Schema inputSchema = input.getSchema();
-    return StructuredRecord.builder(SingleConnectorSource.RECORD_WITH_SCHEMA)
-      .set("schema", inputSchema.toString())
-      .set("record", StructuredRecordStringConverter.toJsonString(input))
-      .build();
+  public void transform(StructuredRecord input,
+                        Emitter<KeyValue<NullWritable, RecordInfo<StructuredRecord>>> emitter) {
+    // the stage name is not needed when reading, but is required by the file format
+    RecordInfo<StructuredRecord> recordInfo = RecordInfo.builder(input, getPhaseName(), RecordType.OUTPUT).build();
+    emitter.emit(new KeyValue<>(NullWritable.get(), recordInfo));
   }
 }
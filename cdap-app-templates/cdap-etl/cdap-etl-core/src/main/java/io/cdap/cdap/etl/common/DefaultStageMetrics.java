@@ -16,6 +16,8 @@
 
 package io.cdap.cdap.etl.common;
 
+import io.cdap.cdap.api.metrics.Counter;
+import io.cdap.cdap.api.metrics.Gauge;
 import io.cdap.cdap.api.metrics.Metrics;
 import io.cdap.cdap.etl.api.StageMetrics;
 import io.cdap.cdap.etl.common.plugin.Caller;
@@ -71,6 +73,17 @@ public class DefaultStageMetrics implements StageMetrics, Externalizable {
     });
   }
 
+  @Override
+  public Counter counter(String metricName) {
+    // the returned handle only aggregates values in memory, hence it doesn't need to be wrapped by the caller
+    return caller.callUnchecked(() -> metrics.counter(prefix + metricName));
+  }
+
+  @Override
+  public Gauge gauge(String metricName) {
+    return caller.callUnchecked(() -> metrics.gauge(prefix + metricName));
+  }
+
   @Override
   public Metrics child(Map<String, String> tags) {
     return metrics.child(tags);
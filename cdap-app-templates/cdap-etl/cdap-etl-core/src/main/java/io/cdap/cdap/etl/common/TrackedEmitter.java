@@ -16,6 +16,7 @@
 
 package io.cdap.cdap.etl.common;
 
+import io.cdap.cdap.api.metrics.Counter;
 import io.cdap.cdap.api.preview.DataTracer;
 import io.cdap.cdap.etl.api.Emitter;
 import io.cdap.cdap.etl.api.InvalidEntry;
@@ -34,6 +35,10 @@ public class TrackedEmitter<T> implements Emitter<T> {
   private final String emitMetricName;
   private final DataTracer dataTracer;
   private final StageStatisticsCollector collector;
+  private final Counter emitCounter;
+  private final boolean countOutputRecords;
+  private Counter errorCounter;
+  private Counter alertCounter;
 
   public TrackedEmitter(Emitter<T> delegate, StageMetrics stageMetrics, String emitMetricName, DataTracer dataTracer,
                         StageStatisticsCollector collector) {
@@ -42,12 +47,21 @@ public class TrackedEmitter<T> implements Emitter<T> {
     this.emitMetricName = emitMetricName;
     this.dataTracer = dataTracer;
     this.collector = collector;
+    this.emitCounter = stageMetrics.counter(emitMetricName);
+    this.countOutputRecords = emitMetricName.equals(Constants.Metrics.RECORDS_OUT);
+  }
+
+  /**
+   * Returns the emitter that this emitter delegates to.
+   */
+  Emitter<T> getDelegate() {
+    return delegate;
   }
 
   @Override
   public void emit(T value) {
-    stageMetrics.count(emitMetricName, 1);
-    if (emitMetricName.equals(Constants.Metrics.RECORDS_OUT)) {
+    emitCounter.increment(1);
+    if (countOutputRecords) {
       collector.incrementOutputRecordCount();
     }
     if (dataTracer.isEnabled()) {
@@ -58,7 +72,10 @@ public class TrackedEmitter<T> implements Emitter<T> {
 
   @Override
   public void emitError(InvalidEntry<T> value) {
-    stageMetrics.count(Constants.Metrics.RECORDS_ERROR, 1);
+    if (errorCounter == null) {
+      errorCounter = stageMetrics.counter(Constants.Metrics.RECORDS_ERROR);
+    }
+    errorCounter.increment(1);
     collector.incrementErrorRecordCount();
     if (dataTracer.isEnabled()) {
       dataTracer.info(Constants.Metrics.RECORDS_ERROR, value);
@@ -68,7 +85,10 @@ public class TrackedEmitter<T> implements Emitter<T> {
 
   @Override
   public void emitAlert(Map<String, String> payload) {
-    stageMetrics.count(Constants.Metrics.RECORDS_ALERT, 1);
+    if (alertCounter == null) {
+      alertCounter = stageMetrics.counter(Constants.Metrics.RECORDS_ALERT);
+    }
+    alertCounter.increment(1);
     if (dataTracer.isEnabled()) {
       dataTracer.info(Constants.Metrics.RECORDS_ALERT, payload);
     }
@@ -16,6 +16,7 @@
 
 package io.cdap.cdap.etl.common;
 
+import io.cdap.cdap.api.metrics.Counter;
 import io.cdap.cdap.api.preview.DataTracer;
 import io.cdap.cdap.etl.api.Destroyable;
 import io.cdap.cdap.etl.api.Emitter;
@@ -38,6 +39,10 @@ public class TrackedTransform<IN, OUT> implements Transformation<IN, OUT>, Destr
   private final String metricOutName;
   private final DataTracer dataTracer;
   private final StageStatisticsCollector collector;
+  private final Counter inCounter;
+  private final boolean countInputRecords;
+  // the emitter wrapping the last emitter given to transform, since the same emitter is usually used for all records
+  private TrackedEmitter<OUT> trackedEmitter;
 
   public TrackedTransform(Transformation<IN, OUT> transform, StageMetrics metrics, DataTracer dataTracer) {
     this(transform, metrics, dataTracer, new NoopStageStatisticsCollector());
@@ -61,18 +66,26 @@ public class TrackedTransform<IN, OUT> implements Transformation<IN, OUT>, Destr
     this.metricOutName = metricOutName;
     this.dataTracer = dataTracer;
     this.collector = collector;
+    this.inCounter = metricInName == null ? null : metrics.counter(metricInName);
+    this.countInputRecords = Constants.Metrics.RECORDS_IN.equals(metricInName);
   }
 
   @Override
   public void transform(IN input, Emitter<OUT> emitter) throws Exception {
-    if (metricInName != null) {
-      metrics.count(metricInName, 1);
-      if (metricInName.equals(Constants.Metrics.RECORDS_IN)) {
+    if (inCounter != null) {
+      inCounter.increment(1);
+      if (countInputRecords) {
         collector.incrementInputRecordCount();
       }
     }
-    transform.transform(input, metricOutName == null ? emitter :
-      new TrackedEmitter<>(emitter, metrics, metricOutName, dataTracer, collector));
+    transform.transform(input, metricOutName == null ? emitter : getTrackedEmitter(emitter));
+  }
+
+  private Emitter<OUT> getTrackedEmitter(Emitter<OUT> emitter) {
+    if (trackedEmitter == null || trackedEmitter.getDelegate() != emitter) {
+      trackedEmitter = new TrackedEmitter<>(emitter, metrics, metricOutName, dataTracer, collector);
+    }
+    return trackedEmitter;
   }
 
   @Override
@@ -0,0 +1,233 @@
+/*
+ * Copyright © 2020 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package io.cdap.cdap.etl.batch.connector;
+
+import io.cdap.cdap.api.data.format.StructuredRecord;
+import io.cdap.cdap.api.data.schema.Schema;
+import io.cdap.cdap.api.dataset.lib.KeyValue;
+import io.cdap.cdap.etl.common.DefaultEmitter;
+import io.cdap.cdap.etl.common.RecordInfo;
+import io.cdap.cdap.etl.common.RecordType;
+import io.cdap.cdap.format.StructuredRecordStringConverter;
+import org.apache.hadoop.io.NullWritable;
+import org.junit.Assert;
+import org.junit.Test;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Tests for {@link ConnectorRecordWriter} and {@link ConnectorRecordReader}.
+ */
+public class ConnectorRecordFormatTest {
+
+  private static final Logger LOG = LoggerFactory.getLogger(ConnectorRecordFormatTest.class);
+
+  private static final Schema SCHEMA1 = Schema.recordOf(
+    "purchase",
+    Schema.Field.of("id", Schema.of(Schema.Type.LONG)),
+    Schema.Field.of("user", Schema.of(Schema.Type.STRING)),
+    Schema.Field.of("item", Schema.nullableOf(Schema.of(Schema.Type.STRING))),
+    Schema.Field.of("price", Schema.of(Schema.Type.DOUBLE)),
+    Schema.Field.of("tags", Schema.arrayOf(Schema.of(Schema.Type.STRING))));
+  private static final Schema SCHEMA2 = Schema.recordOf(
+    "user",
+    Schema.Field.of("name", Schema.of(Schema.Type.STRING)),
+    Schema.Field.of("age", Schema.of(Schema.Type.INT)));
+
+  // the json format used by connectors before the binary format was introduced
+  private static final Schema RECORD_WITH_SCHEMA = Schema.recordOf(
+    "record",
+    Schema.Field.of("stageName", Schema.of(Schema.Type.STRING)),
+    Schema.Field.of("type", Schema.of(Schema.Type.STRING)),
+    Schema.Field.of("schema", Schema.of(Schema.Type.STRING)),
+    Schema.Field.of("record", Schema.of(Schema.Type.STRING)));
+
+  @Test
+  public void testRoundTrip() throws IOException {
+    List<RecordInfo<StructuredRecord>> expected = new ArrayList<>();
+    for (int i = 0; i < 100; i++) {
+      expected.add(RecordInfo.builder(createPurchase(i), "purchases", RecordType.OUTPUT).build());
+      expected.add(RecordInfo.builder(createUser(i), "users" + (i % 3), RecordType.OUTPUT).build());
+      if (i % 10 == 0) {
+        // a different stage with the same schema should reuse the schema entry
+        expected.add(RecordInfo.builder(createPurchase(i), "errors", RecordType.ERROR).build());
+      }
+    }
+
+    byte[] bytes = writeBinary(expected);
+    List<RecordInfo<StructuredRecord>> actual = readBinary(bytes);
+
+    Assert.assertEquals(expected.size(), actual.size());
+    for (int i = 0; i < expected.size(); i++) {
+      Assert.assertEquals(expected.get(i).getValue(), actual.get(i).getValue());
+      Assert.assertEquals(expected.get(i).getFromStage(), actual.get(i).getFromStage());
+      Assert.assertEquals(expected.get(i).getType(), actual.get(i).getType());
+    }
+  }
+
+  @Test
+  public void testSingleConnectorSink() throws Exception {
+    // the single connector sink is used by the spark engine for connectors of conditions
+    SingleConnectorSink sink = new SingleConnectorSink(null, "condition");
+    DefaultEmitter<KeyValue<NullWritable, RecordInfo<StructuredRecord>>> emitter = new DefaultEmitter<>();
+    for (int i = 0; i < 10; i++) {
+      sink.transform(createPurchase(i), emitter);
+    }
+    List<RecordInfo<StructuredRecord>> expected = new ArrayList<>();
+    for (KeyValue<NullWritable, RecordInfo<StructuredRecord>> entry : emitter.getEntries()) {
+      expected.add(entry.getValue());
+    }
+
+    List<RecordInfo<StructuredRecord>> actual = readBinary(writeBinary(expected));
+    Assert.assertEquals(10, actual.size());
+    for (int i = 0; i < actual.size(); i++) {
+      Assert.assertEquals(createPurchase(i), actual.get(i).getValue());
+      Assert.assertEquals("condition", actual.get(i).getFromStage());
+    }
+  }
+
+  @Test
+  public void testEmptyFile() throws IOException {
+    Assert.assertTrue(readBinary(writeBinary(new ArrayList<>())).isEmpty());
+  }
+
+  @Test(expected = IOException.class)
+  public void testInvalidFile() throws IOException {
+    readBinary("{\"schema\":\"\"}".getBytes(StandardCharsets.UTF_8));
+  }
+
+  /**
+   * Compares the binary connector format against the json lines previously written by connectors.
+   */
+  @Test
+  public void testCompareWithJson() throws IOException {
+    int numRecords = 20000;
+    List<RecordInfo<StructuredRecord>> records = new ArrayList<>(numRecords);
+    for (int i = 0; i < numRecords; i++) {
+      records.add(RecordInfo.builder(createPurchase(i), "purchases", RecordType.OUTPUT).build());
+    }
+
+    // warm up both paths before measuring
+    readJson(writeJson(records.subList(0, 1000)));
+    readBinary(writeBinary(records.subList(0, 1000)));
+
+    long start = System.nanoTime();
+    byte[] json = writeJson(records);
+    long jsonWriteNanos = System.nanoTime() - start;
+    start = System.nanoTime();
+    Assert.assertEquals(numRecords, readJson(json).size());
+    long jsonReadNanos = System.nanoTime() - start;
+
+    start = System.nanoTime();
+    byte[] binary = writeBinary(records);
+    long binaryWriteNanos = System.nanoTime() - start;
+    start = System.nanoTime();
+    Assert.assertEquals(numRecords, readBinary(binary).size());
+    long binaryReadNanos = System.nanoTime() - start;
+
+    LOG.info("json: {} bytes, write {} records/sec, read {} records/sec",
+             json.length, recordsPerSec(numRecords, jsonWriteNanos), recordsPerSec(numRecords, jsonReadNanos));
+    LOG.info("binary: {} bytes, write {} records/sec, read {} records/sec",
+             binary.length, recordsPerSec(numRecords, binaryWriteNanos), recordsPerSec(numRecords, binaryReadNanos));
+    Assert.assertTrue(binary.length < json.length);
+  }
+
+  private long recordsPerSec(int numRecords, long nanos) {
+    return numRecords * 1000000000L / Math.max(1L, nanos);
+  }
+
+  private StructuredRecord createPurchase(int i) {
+    List<String> tags = new ArrayList<>();
+    for (int j = 0; j < i % 4; j++) {
+      tags.add("tag" + j);
+    }
+    return StructuredRecord.builder(SCHEMA1)
+      .set("id", (long) i)
+      .set("user", "user" + i)
+      .set("item", i % 2 == 0 ? null : "item" + i)
+      .set("price", i * 1.5d)
+      .set("tags", tags)
+      .build();
+  }
+
+  private StructuredRecord createUser(int i) {
+    return StructuredRecord.builder(SCHEMA2).set("name", "name" + i).set("age", i).build();
+  }
+
+  private byte[] writeBinary(List<RecordInfo<StructuredRecord>> records) throws IOException {
+    ByteArrayOutputStream os = new ByteArrayOutputStream();
+    ConnectorRecordWriter writer = new ConnectorRecordWriter(os);
+    for (RecordInfo<StructuredRecord> record : records) {
+      writer.write(NullWritable.get(), record);
+    }
+    writer.close(null);
+    return os.toByteArray();
+  }
+
+  private List<RecordInfo<StructuredRecord>> readBinary(byte[] bytes) throws IOException {
+    List<RecordInfo<StructuredRecord>> records = new ArrayList<>();
+    ConnectorRecordReader reader = new ConnectorRecordReader();
+    try {
+      reader.initialize(new ByteArrayInputStream(bytes), bytes.length);
+      while (reader.nextKeyValue()) {
+        records.add(reader.getCurrentValue());
+      }
+      Assert.assertEquals(1.0f, reader.getProgress(), 0.0001f);
+    } finally {
+      reader.close();
+    }
+    return records;
+  }
+
+  private byte[] writeJson(List<RecordInfo<StructuredRecord>> records) throws IOException {
+    ByteArrayOutputStream os = new ByteArrayOutputStream();
+    try (Writer writer = new OutputStreamWriter(os, StandardCharsets.UTF_8)) {
+      for (RecordInfo<StructuredRecord> record : records) {
+        StructuredRecord withSchema = StructuredRecord.builder(RECORD_WITH_SCHEMA)
+          .set("stageName", record.getFromStage())
+          .set("type", record.getType().name())
+          .set("schema", record.getValue().getSchema().toString())
+          .set("record", StructuredRecordStringConverter.toJsonString(record.getValue()))
+          .build();
+        writer.write(StructuredRecordStringConverter.toJsonString(withSchema));
+        writer.write('\n');
+      }
+    }
+    return os.toByteArray();
+  }
+
+  private List<RecordInfo<StructuredRecord>> readJson(byte[] bytes) throws IOException {
+    List<RecordInfo<StructuredRecord>> records = new ArrayList<>();
+    for (String line : new String(bytes, StandardCharsets.UTF_8).split("\n")) {
+      StructuredRecord withSchema = StructuredRecordStringConverter.fromJsonString(line, RECORD_WITH_SCHEMA);
+      Schema schema = Schema.parseJson((String) withSchema.get("schema"));
+      StructuredRecord record = StructuredRecordStringConverter.fromJsonString(withSchema.get("record"), schema);
+      records.add(RecordInfo.builder(record, withSchema.get("stageName"),
+                                     RecordType.valueOf(withSchema.get("type"))).build());
+    }
+    return records;
+  }
+}
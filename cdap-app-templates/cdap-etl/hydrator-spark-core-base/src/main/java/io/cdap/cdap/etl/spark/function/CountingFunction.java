@@ -16,9 +16,9 @@
 
 package io.cdap.cdap.etl.spark.function;
 
+import io.cdap.cdap.api.metrics.Counter;
 import io.cdap.cdap.api.metrics.Metrics;
 import io.cdap.cdap.api.preview.DataTracer;
-import io.cdap.cdap.etl.api.StageMetrics;
 import io.cdap.cdap.etl.common.DefaultStageMetrics;
 import org.apache.spark.api.java.function.Function;
 
@@ -34,7 +34,7 @@ public class CountingFunction<T> implements Function<T, T> {
   private final Metrics metrics;
   private final String metricName;
   private final DataTracer dataTracer;
-  private transient StageMetrics stageMetrics;
+  private transient Counter counter;
 
   // DataTracer is null for records.in
   public CountingFunction(String stageName, Metrics metrics, String metricName, @Nullable DataTracer dataTracer) {
@@ -46,14 +46,14 @@ public class CountingFunction<T> implements Function<T, T> {
 
   @Override
   public T call(T in) throws Exception {
-    if (stageMetrics == null) {
-      stageMetrics = new DefaultStageMetrics(metrics, stageName);
+    if (counter == null) {
+      counter = new DefaultStageMetrics(metrics, stageName).counter(metricName);
     }
     // we only want to trace the data for records.out
     if (dataTracer != null && dataTracer.isEnabled()) {
       dataTracer.info(metricName, in);
     }
-    stageMetrics.count(metricName, 1);
+    counter.increment(1);
     return in;
   }
 }
@@ -95,11 +95,12 @@ public class PluginFunctionContext implements Serializable {
   public <T> T createPlugin() throws Exception {
     if (Constants.Connector.PLUGIN_TYPE.equals(stageSpec.getPluginType())) {
       String connectorType = stageSpec.getPlugin().getProperties().get(Constants.Connector.TYPE);
-      // ok to pass in null to constructors here since we are only going to use the transform method
+      // ok to pass in null dataset names here since we are only going to use the transform method.
+      // the sink still needs a stage name, since it is written with every record
       if (connectorType.equals(Constants.Connector.SOURCE_TYPE)) {
-        return (T) new SingleConnectorSource(null, null);
+        return (T) new SingleConnectorSource(null);
       } else {
-        return (T) new SingleConnectorSink(null, null);
+        return (T) new SingleConnectorSink(null, stageSpec.getName());
       }
     }
     MacroEvaluator macroEvaluator = new DefaultMacroEvaluator(arguments, logicalStartTime, secureStore, namespace);
@@ -186,6 +186,7 @@ public final class Constants {
     public static final String SERVER_ANNOUNCE_PORT = "app.announce.port";
     public static final String OUTPUT_DIR = "app.output.dir";
     public static final String TEMP_DIR = "app.temp.dir";
+    public static final String ARTIFACT_UNPACK_CACHE_MAX_SIZE_MB = "app.artifact.unpack.cache.max.size.mb";
     public static final String REST_PORT = "app.rest.port";
     public static final String PROGRAM_JVM_OPTS = "app.program.jvm.opts";
     public static final String BACKLOG_CONNECTIONS = "app.connection.backlog";
@@ -204,6 +205,7 @@ public final class Constants {
     public static final String LOCAL_DATASET_DELETER_INITIAL_DELAY_SECONDS
       = "app.program.local.dataset.deleter.initial.delay";
     public static final String SYSTEM_ARTIFACTS_DIR = "app.artifact.dir";
+    public static final String ARTIFACT_PLUGIN_CATALOG_TTL_SECONDS = "app.artifact.plugin.catalog.ttl.seconds";
     public static final String PROGRAM_EXTRA_CLASSPATH = "app.program.extra.classpath";
     public static final String SPARK_YARN_CLIENT_REWRITE = "app.program.spark.yarn.client.rewrite.enabled";
     public static final String SPARK_EVENT_LOGS_ENABLED = "app.program.spark.event.logs.enabled";
@@ -372,6 +374,7 @@ public final class Constants {
     public static final String PROGRAM_STATUS_EVENT_FETCH_SIZE = "scheduler.program.status.event.fetch.size";
 
     public static final String JOB_QUEUE_NUM_PARTITIONS = "scheduler.job.queue.num.partitions";
+    public static final String JOB_QUEUE_FULL_SCAN_INTERVAL_MILLIS = "scheduler.job.queue.full.scan.interval.millis";
   }
 
   /**
@@ -471,6 +474,8 @@ public final class Constants {
     public static final String DATA_STORAGE_SQL_PASSWORD = "data.storage.sql.jdbc.password";
     public static final String DATA_STORAGE_SQL_PROPERTY_PREFIX = "data.storage.sql.jdbc.property.";
     public static final String DATA_STORAGE_SQL_CONNECTION_SIZE = "data.storage.sql.jdbc.connection.pool.size";
+    public static final String DATA_STORAGE_SQL_STATEMENT_CACHE_SIZE = "data.storage.sql.jdbc.statement.cache.size";
+    public static final String DATA_STORAGE_SQL_SCAN_FETCH_SIZE = "data.storage.sql.scan.fetch.size";
 
     // used for Guice named bindings
     public static final String TABLE_TYPE = "table.type";
@@ -573,6 +578,9 @@ public final class Constants {
     public static final String SERVER_BOSS_THREADS = "router.server.boss.threads";
     public static final String SERVER_WORKER_THREADS = "router.server.worker.threads";
     public static final String CONNECTION_TIMEOUT_SECS = "router.connection.idle.timeout.secs";
+    public static final String UPSTREAM_MAX_CONNECTIONS = "router.upstream.max.connections";
+    public static final String UPSTREAM_ACQUIRE_TIMEOUT_SECS = "router.upstream.acquire.timeout.secs";
+    public static final String PIPELINING_MAX_REQUESTS = "router.pipelining.max.requests";
     public static final String ROUTER_AUDIT_PATH_CHECK_ENABLED = "router.audit.path.check.enabled";
     public static final String ROUTER_AUDIT_LOG_ENABLED = "router.audit.log.enabled";
 
@@ -604,12 +612,18 @@ public final class Constants {
     public static final String SERVICE_DESCRIPTION = "Service to handle metrics requests.";
     public static final String PROCESSOR_MAX_DELAY_MS = "metrics.processor.max.delay.ms";
     public static final String QUEUE_SIZE = "metrics.processor.queue.size";
+    public static final String PROCESSOR_FLUSH_INTERVAL_MS = "metrics.processor.flush.interval.ms";
 
     public static final String ENTITY_TABLE_NAME = "metrics.data.entity.tableName";
     public static final String METRICS_TABLE_PREFIX = "metrics.data.table.prefix";
     public static final String TIME_SERIES_TABLE_ROLL_TIME = "metrics.data.table.ts.rollTime";
 
     public static final String METRICS_MINIMUM_RESOLUTION_SECONDS = "metrics.minimum.resolution.seconds";
+    public static final String QUERY_BATCH_THREADS = "metrics.query.batch.threads";
+    public static final String QUERY_MAX_RECORDS_TO_SCAN = "metrics.query.max.records.scan";
+    public static final String QUERY_CACHE_MAX_ENTRIES = "metrics.query.cache.max.entries";
+    public static final String QUERY_CACHE_TTL_SECONDS = "metrics.query.cache.ttl.seconds";
+    public static final String QUERY_CACHE_CLOSED_DELAY_SECONDS = "metrics.query.cache.closed.delay.seconds";
     public static final String MINIMUM_RESOLUTION_RETENTION_SECONDS =
       "metrics.data.table.retention.minimum.resolution.seconds";
     // Key prefix for retention seconds. The actual key is suffixed by the table resolution.
@@ -798,6 +812,9 @@ public final class Constants {
       public static final String ACTIVE_CONNECTIONS = "structured.table.connection.active";
       public static final String IDLE_CONNECTIONS = "structured.table.connection.idle";
       public static final String ERROR_CONNECTIONS = "structured.table.connection.error";
+      public static final String STATEMENT_CACHE_HIT = "structured.table.statement.cache.hit";
+      public static final String STATEMENT_CACHE_MISS = "structured.table.statement.cache.miss";
+      public static final String STATEMENT_PREPARE_TIME = "structured.table.statement.prepare.time";
     }
 
     /**
@@ -945,6 +962,10 @@ public final class Constants {
     public static final String PIPELINE_LOGGER_CACHE_SIZE = "log.process.pipeline.logger.cache.size";
     public static final String PIPELINE_LOGGER_CACHE_EXPIRATION_MS = "log.process.pipeline.logger.cache.expiration.ms";
 
+    // log reader configs
+    public static final String LOG_READER_PREFETCH_FILES = "log.reader.prefetch.files";
+    public static final String LOG_READER_PREFETCH_BUFFER_SIZE = "log.reader.prefetch.buffer.size";
+
     // log appender configs
     public static final String LOG_APPENDER_PROVIDER = "app.program.log.appender.provider";
     public static final String LOG_APPENDER_PROVISIONERS = "app.program.log.appender.provisioners";
@@ -1064,6 +1085,10 @@ public final class Constants {
       public static final String CACHE_TTL_SECS = "security.authorization.cache.ttl.secs";
       /** Maximum number of entries the authorization cache will hold */
       public static final String CACHE_MAX_ENTRIES = "security.authorization.cache.max.entries";
+      /** TTL for entries in master's authorization decision cache */
+      public static final String MASTER_CACHE_TTL_SECS = "security.authorization.master.cache.ttl.secs";
+      /** Maximum number of entries the master authorization decision cache will hold */
+      public static final String MASTER_CACHE_MAX_ENTRIES = "security.authorization.master.cache.max.entries";
       /** Batch size for query for the visibility of entities */
       public static final int VISIBLE_BATCH_SIZE = 500;
       /** Upper limit on extension operation time after which the time is logged as WARN rather than TRACE */
@@ -1330,6 +1355,7 @@ public final class Constants {
     public static final String SERVICE_EXEC_THREADS = "metadata.service.exec.threads";
     public static final String HANDLERS_NAME = "metadata.handlers";
     public static final String MAX_CHARS_ALLOWED = "metadata.max.allowed.chars";
+    public static final String LINEAGE_CACHE_TTL_SECONDS = "metadata.lineage.cache.ttl.seconds";
 
     public static final String MESSAGING_TOPIC = "metadata.messaging.topic";
     public static final String MESSAGING_FETCH_SIZE = "metadata.messaging.fetch.size";
@@ -1360,6 +1386,8 @@ public final class Constants {
     public static final String LOCAL_DATA_CLEANUP_FREQUENCY = "messaging.local.data.cleanup.frequency.secs";
 
     public static final String CACHE_SIZE_MB = "messaging.cache.size.mb";
+    public static final String CACHE_OFF_HEAP_ENABLED = "messaging.cache.offheap.enabled";
+    public static final String CACHE_OFF_HEAP_SEGMENT_SIZE_KB = "messaging.cache.offheap.segment.size.kb";
 
     public static final String HBASE_MAX_SCAN_THREADS = "messaging.hbase.max.scan.threads";
     public static final String HBASE_SCAN_CACHE_ROWS = "messaging.hbase.scan.cache.rows";
@@ -1372,6 +1400,9 @@ public final class Constants {
     public static final String TABLE_CACHE_EXPIRATION_SECONDS = "messaging.table.expiration.seconds";
     public static final String TABLE_HBASE_SPLIT_POLICY = "messaging.table.hbase.split.policy";
     public static final String TOPIC_DEFAULT_TTL_SECONDS = "messaging.topic.default.ttl.seconds";
+    public static final String PUBLISH_COMMITTER_THREADS = "messaging.publish.committer.threads";
+    public static final String PUBLISH_MAX_BATCH_SIZE = "messaging.publish.max.batch.size";
+    public static final String PUBLISH_BATCH_LINGER_MS = "messaging.publish.batch.linger.ms";
     public static final String COPROCESSOR_METADATA_CACHE_UPDATE_FREQUENCY_SECONDS =
       "messaging.coprocessor.metadata.cache.update.frequency.seconds";
 
@@ -1379,6 +1410,8 @@ public final class Constants {
     public static final String HTTP_SERVER_EXECUTOR_THREADS = "messaging.http.server.executor.threads";
     public static final String HTTP_SERVER_MAX_REQUEST_SIZE_MB = "messaging.http.server.max.request.size.mb";
     public static final String HTTP_SERVER_CONSUME_CHUNK_SIZE = "messaging.http.server.consume.chunk.size";
+    public static final String HTTP_SERVER_POLL_THREADS = "messaging.http.server.poll.threads";
+    public static final String HTTP_SERVER_MAX_POLL_TIMEOUT_MS = "messaging.http.server.max.poll.timeout.ms";
     public static final String HTTP_COMPRESS_PAYLOAD = "messaging.http.compress.payload";
 
     // Distributed mode related configurations
@@ -0,0 +1,47 @@
+/*
+ * Copyright 2020 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package io.cdap.cdap.data2.dataset2.lib.cube;
+
+import io.cdap.cdap.api.dataset.lib.cube.CubeQuery;
+import io.cdap.cdap.api.dataset.lib.cube.TimeSeries;
+
+import java.util.Collection;
+
+/**
+ * Result of a {@link CubeQuery} executed by {@link DefaultCube}.
+ */
+public final class CubeQueryResult {
+  private final Collection<TimeSeries> timeSeries;
+  private final boolean truncated;
+
+  public CubeQueryResult(Collection<TimeSeries> timeSeries, boolean truncated) {
+    this.timeSeries = timeSeries;
+    this.truncated = truncated;
+  }
+
+  public Collection<TimeSeries> getTimeSeries() {
+    return timeSeries;
+  }
+
+  /**
+   * Returns {@code true} if the scan stopped at the maximum number of records to scan before all records matching
+   * the query were read.
+   */
+  public boolean isTruncated() {
+    return truncated;
+  }
+}
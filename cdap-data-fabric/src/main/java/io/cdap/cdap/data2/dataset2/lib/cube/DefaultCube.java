@@ -16,7 +16,6 @@
 
 package io.cdap.cdap.data2.dataset2.lib.cube;
 
-import com.google.common.collect.HashBasedTable;
 import com.google.common.collect.ImmutableList;
 import com.google.common.collect.Iterables;
 import com.google.common.collect.Iterators;
@@ -24,7 +23,6 @@ import com.google.common.collect.Lists;
 import com.google.common.collect.Maps;
 import com.google.common.collect.PeekingIterator;
 import com.google.common.collect.Sets;
-import com.google.common.collect.Table;
 import com.google.common.util.concurrent.Uninterruptibles;
 import io.cdap.cdap.api.dataset.lib.cube.AggregationFunction;
 import io.cdap.cdap.api.dataset.lib.cube.AggregationOption;
@@ -51,7 +49,6 @@ import org.slf4j.LoggerFactory;
 import java.io.IOException;
 import java.util.ArrayList;
 import java.util.Collection;
-import java.util.Collections;
 import java.util.Comparator;
 import java.util.EnumSet;
 import java.util.HashMap;
@@ -73,9 +70,10 @@ import javax.annotation.Nullable;
 public class DefaultCube implements Cube, MeteredDataset {
   private static final Logger LOG = LoggerFactory.getLogger(DefaultCube.class);
 
+  // default limit on max records to scan for a query
+  public static final int DEFAULT_MAX_RECORDS_TO_SCAN = 100 * 1000;
+
   private static final DimensionValueComparator DIMENSION_VALUE_COMPARATOR = new DimensionValueComparator();
-  // hard-limit on max records to scan
-  private static final int MAX_RECORDS_TO_SCAN = 100 * 1000;
   private static final EnumSet<AggregationOption> PARTITION_AGG_OPTIONS = EnumSet.of(AggregationOption.LATEST,
                                                                                      AggregationOption.SUM);
 
@@ -83,6 +81,7 @@ public class DefaultCube implements Cube, MeteredDataset {
   private final Map<String, ? extends Aggregation> aggregations;
   private final Map<String, AggregationAlias> aggregationAliasMap;
   private final ExecutorService executorService;
+  private final int maxRecordsToScan;
 
   @Nullable
   private MetricsCollector metrics;
@@ -90,12 +89,25 @@ public class DefaultCube implements Cube, MeteredDataset {
   public DefaultCube(int[] resolutions, FactTableSupplier factTableSupplier,
                      Map<String, ? extends Aggregation> aggregations,
                      Map<String, AggregationAlias> aggregationAliasMap) {
+    this(resolutions, factTableSupplier, aggregations, aggregationAliasMap, DEFAULT_MAX_RECORDS_TO_SCAN);
+  }
+
+  /**
+   * Creates a new instance.
+   *
+   * @param maxRecordsToScan maximum number of records to scan for a single query, results of queries that match more
+   *                         records are truncated
+   */
+  public DefaultCube(int[] resolutions, FactTableSupplier factTableSupplier,
+                     Map<String, ? extends Aggregation> aggregations,
+                     Map<String, AggregationAlias> aggregationAliasMap, int maxRecordsToScan) {
     this.aggregations = aggregations;
     this.resolutionToFactTable = Maps.newHashMap();
     for (int resolution : resolutions) {
       resolutionToFactTable.put(resolution, factTableSupplier.get(resolution, 3600));
     }
     this.aggregationAliasMap = aggregationAliasMap;
+    this.maxRecordsToScan = maxRecordsToScan;
     this.executorService = new ThreadPoolExecutor(0, resolutions.length, 30, TimeUnit.SECONDS,
                                                   new LinkedBlockingQueue<>(),
                                                   Threads.createDaemonThreadFactory("metrics-table-%d"));
@@ -171,6 +183,14 @@ public class DefaultCube implements Cube, MeteredDataset {
 
   @Override
   public Collection<TimeSeries> query(CubeQuery query) {
+    return execute(query).getTimeSeries();
+  }
+
+  /**
+   * Executes the given query. Unlike {@link #query(CubeQuery)}, the result tells whether the scan stopped at the
+   * maximum number of records to scan, in which case the time series only contain part of the matching data.
+   */
+  public CubeQueryResult execute(CubeQuery query) {
     /*
       CubeQuery example: "dataset read ops for app per dataset". Or:
 
@@ -204,7 +224,8 @@ public class DefaultCube implements Cube, MeteredDataset {
       'measureType'='COUNTER'
 
       3) While scanning build a table: dimension values -> time -> value. Use measureType as values aggregate
-         function if needed.
+         function if needed. Values are accumulated into primitive arrays indexed by time bucket,
+         see TimeSeriesAggregator.
     */
 
     incrementMetric("cube.query.request.count", 1);
@@ -255,15 +276,21 @@ public class DefaultCube implements Cube, MeteredDataset {
     // 3) execute scan query
     FactTable table = resolutionToFactTable.get(query.getResolution());
     FactScanner scanner = table.scan(scan);
-    Table<Map<String, String>, String, Map<Long, Long>> resultMap = getTimeSeries(query, scanner);
+    TimeSeriesAggregator aggregator = new TimeSeriesAggregator(query.getGroupByDimensions(), query.getResolution());
+    boolean truncated = aggregate(query, scanner, aggregator);
+
+    List<TimeSeries> result = new ArrayList<>(aggregator.size());
+    long resultSize = 0;
+    for (TimeSeriesAggregator.Series series : aggregator) {
+      TimeSeries timeSeries = toTimeSeries(query, series);
+      result.add(timeSeries);
+      resultSize += timeSeries.getTimeValues().size();
+    }
 
     incrementMetric("cube.query.request.success.count", 1);
-    incrementMetric("cube.query.result.size", resultMap.size());
-
-    Collection<TimeSeries> timeSeries = convertToQueryResult(query, resultMap);
-    incrementMetric("cube.query.result.timeseries.count", timeSeries.size());
-
-    return timeSeries;
+    incrementMetric("cube.query.result.size", resultSize);
+    incrementMetric("cube.query.result.timeseries.count", result.size());
+    return new CubeQueryResult(result, truncated);
   }
 
   @Override
@@ -374,133 +401,107 @@ public class DefaultCube implements Cube, MeteredDataset {
     return currentBest;
   }
 
-  private Table<Map<String, String>, String, Map<Long, Long>> getTimeSeries(CubeQuery query, FactScanner scanner) {
-    // {dimension values, measure} -> {time -> value}s
-    Table<Map<String, String>, String, Map<Long, Long>> result = HashBasedTable.create();
+  /**
+   * Aggregates the scanned records into the given {@link TimeSeriesAggregator}, which maps
+   * {dimension values, measure} to {time -> value}s.
+   *
+   * @return {@code true} if the scan stopped at the maximum number of records to scan before reading all records
+   */
+  private boolean aggregate(CubeQuery query, FactScanner scanner, TimeSeriesAggregator aggregator) {
+    List<String> groupByDimensions = query.getGroupByDimensions();
 
-    int count = 0;
+    long count = 0;
+    long skipped = 0;
+    int aggregated = 0;
+    boolean truncated = false;
     while (scanner.hasNext()) {
       FactScanResult next = scanner.next();
-      incrementMetric("cube.query.scan.records.count", 1);
+      count++;
 
       boolean skip = false;
-      // using tree map, as we are using it as a key for a map
-      Map<String, String> seriesDimensions = Maps.newTreeMap();
-      for (String dimensionName : query.getGroupByDimensions()) {
+      String[] seriesDimensions = aggregator.getDimensionValues();
+      for (int i = 0; i < groupByDimensions.size(); i++) {
+        String dimensionName = groupByDimensions.get(i);
         // todo: use Map<String, String> instead of List<DimensionValue> into a String, String, everywhere
         for (DimensionValue dimensionValue : next.getDimensionValues()) {
           if (dimensionName.equals(dimensionValue.getName())) {
             if (dimensionValue.getValue() == null) {
               // Currently, we do NOT return null as grouped by value.
-              // Depending on whether dimension is required or not the records with null value in it may or may not be
-              // in aggregation. At this moment, the choosing of the aggregation for query doesn't look at this, so
-              // potentially null may or may not be included in results, depending on the aggregation selected
-              // querying. We don't want to produce inconsistent results varying due to different aggregations selected,
-              // so don't return nulls in any of those cases.
+              // Depending on whether dimension is required or not the records with null value in it may or may not
+              // be in aggregation. At this moment, the choosing of the aggregation for query doesn't look at this,
+              // so potentially null may or may not be included in results, depending on the aggregation selected
+              // querying. We don't want to produce inconsistent results varying due to different aggregations
+              // selected, so don't return nulls in any of those cases.
               skip = true;
               continue;
             }
-            seriesDimensions.put(dimensionName, dimensionValue.getValue());
+            seriesDimensions[i] = dimensionValue.getValue();
             break;
           }
         }
       }
 
       if (skip) {
-        incrementMetric("cube.query.scan.skipped.count", 1);
+        skipped++;
         continue;
       }
 
-      for (TimeValue timeValue : next) {
-        Map<Long, Long> timeValues = result.get(seriesDimensions, next.getMeasureName());
-        if (timeValues == null) {
-          result.put(seriesDimensions, next.getMeasureName(), Maps.<Long, Long>newHashMap());
-        }
-
-        AggregationFunction function = query.getMeasurements().get(next.getMeasureName());
-        if (AggregationFunction.SUM == function) {
-          Long value =  result.get(seriesDimensions, next.getMeasureName()).get(timeValue.getTimestamp());
-          value = value == null ? 0 : value;
-          value += timeValue.getValue();
-          result.get(seriesDimensions, next.getMeasureName()).put(timeValue.getTimestamp(), value);
-        } else if (AggregationFunction.MAX == function) {
-          Long value = result.get(seriesDimensions, next.getMeasureName()).get(timeValue.getTimestamp());
-          value = value != null && value > timeValue.getValue() ? value : timeValue.getValue();
-          result.get(seriesDimensions, next.getMeasureName()).put(timeValue.getTimestamp(), value);
-        } else if (AggregationFunction.MIN == function) {
-          Long value =  result.get(seriesDimensions, next.getMeasureName()).get(timeValue.getTimestamp());
-          value = value != null && value < timeValue.getValue() ? value : timeValue.getValue();
-          result.get(seriesDimensions, next.getMeasureName()).put(timeValue.getTimestamp(), value);
-        } else if (AggregationFunction.LATEST == function) {
-          result.get(seriesDimensions, next.getMeasureName()).put(timeValue.getTimestamp(), timeValue.getValue());
-        } else {
-          // should never happen: developer error
-          throw new RuntimeException("Unknown MeasureType: " + function);
-        }
-      }
-      if (++count >= MAX_RECORDS_TO_SCAN) {
+      aggregator.add(next.getMeasureName(), query.getMeasurements().get(next.getMeasureName()), next);
+      if (++aggregated >= maxRecordsToScan && scanner.hasNext()) {
+        LOG.debug("Stopped scanning after {} records for query {}", aggregated, query);
+        incrementMetric("cube.query.scan.truncated.count", 1);
+        truncated = true;
         break;
       }
     }
-    return result;
+    incrementMetric("cube.query.scan.records.count", count);
+    incrementMetric("cube.query.scan.skipped.count", skipped);
+    return truncated;
   }
 
-  private Collection<TimeSeries> convertToQueryResult(
-    CubeQuery query, Table<Map<String, String>, String, Map<Long, Long>> resultTable) {
-    List<TimeSeries> result = new ArrayList<>();
-    // iterating each groupValue dimensions
-    for (Map.Entry<Map<String, String>, Map<String, Map<Long, Long>>> row : resultTable.rowMap().entrySet()) {
-      // iterating each measure
-      for (Map.Entry<String, Map<Long, Long>> measureEntry : row.getValue().entrySet()) {
-        // generating time series for a grouping and a measure
-        int count = 0;
-        List<TimeValue> timeValues = new ArrayList<>();
-        for (Map.Entry<Long, Long> timeValue : measureEntry.getValue().entrySet()) {
-          timeValues.add(new TimeValue(timeValue.getKey(), timeValue.getValue()));
-        }
-        Collections.sort(timeValues);
-        List<TimeValue> resultTimeValues = new ArrayList<>();
+  private TimeSeries toTimeSeries(CubeQuery query, TimeSeriesAggregator.Series series) {
+    // generating time series for a grouping and a measure
+    int count = 0;
+    List<TimeValue> timeValues = series.getTimeValues();
+    List<TimeValue> resultTimeValues = new ArrayList<>();
 
-        AggregationOption aggregationOption = query.getAggregationOption();
-        // this should not happen in production, since the check has been made in the handler
-        if (query.getLimit() <= 0) {
-          throw new IllegalArgumentException("The query limit cannot be less than 0");
+    AggregationOption aggregationOption = query.getAggregationOption();
+    // this should not happen in production, since the check has been made in the handler
+    if (query.getLimit() <= 0) {
+      throw new IllegalArgumentException("The query limit cannot be less than 0");
+    }
+    // only partition the data points if the data points are larger than the required limit and only do it for
+    // option LATEST and SUM.
+    if (query.getLimit() < timeValues.size() && PARTITION_AGG_OPTIONS.contains(aggregationOption)) {
+      int partitionSize = timeValues.size() / query.getLimit();
+      int remainder = timeValues.size() % query.getLimit();
+      // ignore the first reminderth data points
+      for (List<TimeValue> interval : Iterables.partition(timeValues.subList(remainder,
+                                                                             timeValues.size()), partitionSize)) {
+        // for LATEST we only need to get the last data point in the interval
+        if (aggregationOption.equals(AggregationOption.LATEST)) {
+          resultTimeValues.add(interval.get(interval.size() - 1));
+          continue;
         }
-        // only partition the data points if the data points are larger than the required limit and only do it for
-        // option LATEST and SUM.
-        if (query.getLimit() < timeValues.size() && PARTITION_AGG_OPTIONS.contains(aggregationOption)) {
-          int partitionSize = timeValues.size() / query.getLimit();
-          int remainder = timeValues.size() % query.getLimit();
-          // ignore the first reminderth data points
-          for (List<TimeValue> interval : Iterables.partition(timeValues.subList(remainder,
-                                                                                 timeValues.size()), partitionSize)) {
-            // for LATEST we only need to get the last data point in the interval
-            if (aggregationOption.equals(AggregationOption.LATEST)) {
-              resultTimeValues.add(interval.get(interval.size() - 1));
-              continue;
-            }
-            // for SUM we want to sum up all the values in the interval
-            if (aggregationOption.equals(AggregationOption.SUM)) {
-              long sum = interval.stream().mapToLong(TimeValue::getValue).sum();
-              resultTimeValues.add(new TimeValue(interval.get(interval.size() - 1).getTimestamp(), sum));
-            }
-          }
-        } else {
-          // TODO: CDAP-15565 remove the interpolation logic since it is never maintained and adds huge complexity
-          PeekingIterator<TimeValue> timeValueItor = Iterators.peekingIterator(
-            new TimeSeriesInterpolator(timeValues, query.getInterpolator(), query.getResolution()).iterator());
-          while (timeValueItor.hasNext()) {
-            TimeValue timeValue = timeValueItor.next();
-            resultTimeValues.add(new TimeValue(timeValue.getTimestamp(), timeValue.getValue()));
-            if (++count >= query.getLimit()) {
-              break;
-            }
-          }
+        // for SUM we want to sum up all the values in the interval
+        if (aggregationOption.equals(AggregationOption.SUM)) {
+          long sum = interval.stream().mapToLong(TimeValue::getValue).sum();
+          resultTimeValues.add(new TimeValue(interval.get(interval.size() - 1).getTimestamp(), sum));
+        }
+      }
+    } else {
+      // TODO: CDAP-15565 remove the interpolation logic since it is never maintained and adds huge complexity
+      PeekingIterator<TimeValue> timeValueItor = Iterators.peekingIterator(
+        new TimeSeriesInterpolator(timeValues, query.getInterpolator(), query.getResolution()).iterator());
+      while (timeValueItor.hasNext()) {
+        TimeValue timeValue = timeValueItor.next();
+        resultTimeValues.add(new TimeValue(timeValue.getTimestamp(), timeValue.getValue()));
+        if (++count >= query.getLimit()) {
+          break;
         }
-        result.add(new TimeSeries(measureEntry.getKey(), row.getKey(), resultTimeValues));
       }
     }
-    return result;
+    return new TimeSeries(series.getMeasureName(), series.getDimensionValues(), resultTimeValues);
   }
 
   @Override
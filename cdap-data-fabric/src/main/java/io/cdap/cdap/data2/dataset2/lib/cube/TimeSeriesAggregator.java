@@ -0,0 +1,353 @@
+/*
+ * Copyright © 2020 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package io.cdap.cdap.data2.dataset2.lib.cube;
+
+import com.google.common.collect.HashBasedTable;
+import com.google.common.collect.Iterators;
+import com.google.common.collect.Table;
+import io.cdap.cdap.api.dataset.lib.cube.AggregationFunction;
+import io.cdap.cdap.api.dataset.lib.cube.TimeValue;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.TreeMap;
+import javax.annotation.Nullable;
+
+/**
+ * Aggregates scanned time values into time series without allocating objects per data point. Each distinct
+ * combination of group by dimension values and measure name is interned once, and the values are accumulated into
+ * primitive long arrays per fixed range of time buckets. The arrays grow with the number of buckets that have a value,
+ * so that sparse series don't pay for the buckets without values.
+ */
+final class TimeSeriesAggregator implements Iterable<TimeSeriesAggregator.Series> {
+
+  // number of time buckets per chunk, as a power of two
+  private static final int CHUNK_BITS = 8;
+  private static final int CHUNK_SIZE = 1 << CHUNK_BITS;
+  private static final int CHUNK_MASK = CHUNK_SIZE - 1;
+
+  private final List<String> groupByDimensions;
+  private final int resolution;
+  private final Map<SeriesKey, Series> series;
+  private final SeriesKey probeKey;
+
+  /**
+   * Creates a new instance.
+   *
+   * @param groupByDimensions names of the dimensions that the time series are grouped by
+   * @param resolution resolution in seconds of the time values
+   */
+  TimeSeriesAggregator(List<String> groupByDimensions, int resolution) {
+    this.groupByDimensions = groupByDimensions;
+    this.resolution = resolution;
+    this.series = new LinkedHashMap<>();
+    this.probeKey = new SeriesKey(new String[groupByDimensions.size()]);
+  }
+
+  /**
+   * Returns the array to fill with the group by dimension values of the next record, in the order of the group by
+   * dimensions. A {@code null} element means the record doesn't have the dimension. The array is reused across
+   * records.
+   */
+  String[] getDimensionValues() {
+    Arrays.fill(probeKey.dimensionValues, null);
+    return probeKey.dimensionValues;
+  }
+
+  /**
+   * Adds the time values of a record to the series identified by the given measure and the dimension values
+   * previously set in the array returned by {@link #getDimensionValues()}.
+   *
+   * @param measureName name of the measure
+   * @param function the function to aggregate values with the same timestamp
+   * @param timeValues the time values to add
+   */
+  void add(String measureName, @Nullable AggregationFunction function, Iterable<TimeValue> timeValues) {
+    Iterator<TimeValue> iterator = timeValues.iterator();
+    if (!iterator.hasNext()) {
+      return;
+    }
+    if (function == null) {
+      // should never happen: developer error
+      throw new RuntimeException("Unknown MeasureType: " + function);
+    }
+
+    probeKey.setMeasureName(measureName);
+    Series target = series.get(probeKey);
+    if (target == null) {
+      SeriesKey key = probeKey.copy();
+      target = new Series(measureName, createDimensionMap(key.dimensionValues), function);
+      series.put(key, target);
+    }
+
+    while (iterator.hasNext()) {
+      TimeValue timeValue = iterator.next();
+      target.add(timeValue.getTimestamp(), timeValue.getValue());
+    }
+  }
+
+  /**
+   * Returns the number of distinct series.
+   */
+  int size() {
+    return series.size();
+  }
+
+  /**
+   * Returns an iterator over the aggregated series, grouped by dimension values. Series returned by the iterator are
+   * released from this aggregator.
+   */
+  @Override
+  public Iterator<Series> iterator() {
+    // group with a hash based table, to keep the same result ordering as before the values were kept in primitives
+    Table<Map<String, String>, String, Series> table = HashBasedTable.create();
+    for (Series s : series.values()) {
+      table.put(s.getDimensionValues(), s.getMeasureName(), s);
+    }
+    series.clear();
+
+    List<Series> result = new LinkedList<>();
+    for (Map<String, Series> row : table.rowMap().values()) {
+      result.addAll(row.values());
+    }
+    return Iterators.consumingIterator(result.iterator());
+  }
+
+  private Map<String, String> createDimensionMap(String[] dimensionValues) {
+    // using tree map to have the same ordering as the dimension values of the query
+    Map<String, String> dimensions = new TreeMap<>();
+    for (int i = 0; i < dimensionValues.length; i++) {
+      if (dimensionValues[i] != null) {
+        dimensions.put(groupByDimensions.get(i), dimensionValues[i]);
+      }
+    }
+    return Collections.unmodifiableMap(dimensions);
+  }
+
+  /**
+   * Aggregated values of a single time series.
+   */
+  final class Series {
+    private final String measureName;
+    private final Map<String, String> dimensionValues;
+    private final AggregationFunction function;
+    // chunk index -> values of the buckets in the chunk
+    private final Map<Long, Chunk> chunks;
+    // values with timestamps that are not aligned with the resolution, which is not expected
+    private NavigableMap<Long, Long> unalignedValues;
+    private int size;
+    // the last chunk used, since consecutive values mostly fall into the same chunk
+    private long lastChunkIndex;
+    private Chunk lastChunk;
+
+    private Series(String measureName, Map<String, String> dimensionValues, AggregationFunction function) {
+      this.measureName = measureName;
+      this.dimensionValues = dimensionValues;
+      this.function = function;
+      this.chunks = new HashMap<>();
+    }
+
+    String getMeasureName() {
+      return measureName;
+    }
+
+    Map<String, String> getDimensionValues() {
+      return dimensionValues;
+    }
+
+    /**
+     * Returns the number of data points in this series.
+     */
+    int size() {
+      return size;
+    }
+
+    /**
+     * Returns the data points of this series, sorted by timestamp.
+     */
+    List<TimeValue> getTimeValues() {
+      List<TimeValue> result = new ArrayList<>(size);
+      List<Long> chunkIndexes = new ArrayList<>(chunks.keySet());
+      Collections.sort(chunkIndexes);
+      for (long chunkIndex : chunkIndexes) {
+        Chunk chunk = chunks.get(chunkIndex);
+        for (int i = 0; i < chunk.size; i++) {
+          result.add(new TimeValue(((chunkIndex << CHUNK_BITS) + chunk.getBucket(i)) * resolution, chunk.values[i]));
+        }
+      }
+      if (unalignedValues != null) {
+        for (Map.Entry<Long, Long> entry : unalignedValues.entrySet()) {
+          result.add(new TimeValue(entry.getKey(), entry.getValue()));
+        }
+        Collections.sort(result);
+      }
+      return result;
+    }
+
+    private void add(long timestamp, long value) {
+      long bucket = Math.floorDiv(timestamp, resolution);
+      if (bucket * resolution != timestamp) {
+        addUnaligned(timestamp, value);
+        return;
+      }
+      long chunkIndex = bucket >> CHUNK_BITS;
+      Chunk chunk = lastChunk;
+      if (chunk == null || lastChunkIndex != chunkIndex) {
+        chunk = chunks.computeIfAbsent(chunkIndex, k -> new Chunk());
+        lastChunk = chunk;
+        lastChunkIndex = chunkIndex;
+      }
+      int bucketInChunk = (int) (bucket & CHUNK_MASK);
+      int idx = chunk.indexOf(bucketInChunk);
+      if (idx >= 0) {
+        chunk.values[idx] = aggregate(chunk.values[idx], value);
+      } else {
+        chunk.insert(-idx - 1, bucketInChunk, value);
+        size++;
+      }
+    }
+
+    private void addUnaligned(long timestamp, long value) {
+      if (unalignedValues == null) {
+        unalignedValues = new TreeMap<>();
+      }
+      Long current = unalignedValues.get(timestamp);
+      if (current == null) {
+        size++;
+      }
+      unalignedValues.put(timestamp, current == null ? value : aggregate(current, value));
+    }
+
+    private long aggregate(long current, long value) {
+      switch (function) {
+        case SUM:
+          return current + value;
+        case MAX:
+          return Math.max(current, value);
+        case MIN:
+          return Math.min(current, value);
+        case LATEST:
+          return value;
+        default:
+          // should never happen: developer error
+          throw new RuntimeException("Unknown MeasureType: " + function);
+      }
+    }
+  }
+
+  /**
+   * Values of a fixed number of consecutive time buckets. Only the buckets that have a value are stored, sorted by
+   * bucket, in arrays that grow on demand up to the chunk size.
+   */
+  private static final class Chunk {
+    // offsets of the buckets in the chunk, as unsigned bytes
+    private byte[] buckets = new byte[1];
+    private long[] values = new long[1];
+    private int size;
+
+    int getBucket(int idx) {
+      return buckets[idx] & 0xff;
+    }
+
+    /**
+     * Returns the index of the given bucket, or {@code (-(insertion point) - 1)} if the bucket has no value.
+     */
+    int indexOf(int bucket) {
+      // values mostly come in time order, hence check the last one first
+      if (size == 0 || getBucket(size - 1) < bucket) {
+        return -size - 1;
+      }
+      int low = 0;
+      int high = size - 1;
+      while (low <= high) {
+        int mid = (low + high) >>> 1;
+        int midBucket = getBucket(mid);
+        if (midBucket < bucket) {
+          low = mid + 1;
+        } else if (midBucket > bucket) {
+          high = mid - 1;
+        } else {
+          return mid;
+        }
+      }
+      return -low - 1;
+    }
+
+    void insert(int idx, int bucket, long value) {
+      if (size == values.length) {
+        int capacity = Math.min(CHUNK_SIZE, size * 2);
+        buckets = Arrays.copyOf(buckets, capacity);
+        values = Arrays.copyOf(values, capacity);
+      }
+      System.arraycopy(buckets, idx, buckets, idx + 1, size - idx);
+      System.arraycopy(values, idx, values, idx + 1, size - idx);
+      buckets[idx] = (byte) bucket;
+      values[idx] = value;
+      size++;
+    }
+  }
+
+  /**
+   * Key of a series. A single mutable instance is used for lookups, and copied when a new series is created.
+   */
+  private static final class SeriesKey {
+    private final String[] dimensionValues;
+    private String measureName;
+
+    private SeriesKey(String[] dimensionValues) {
+      this.dimensionValues = dimensionValues;
+    }
+
+    private SeriesKey(String[] dimensionValues, String measureName) {
+      this.dimensionValues = dimensionValues;
+      this.measureName = measureName;
+    }
+
+    void setMeasureName(String measureName) {
+      this.measureName = measureName;
+    }
+
+    SeriesKey copy() {
+      return new SeriesKey(dimensionValues.clone(), measureName);
+    }
+
+    @Override
+    public boolean equals(Object o) {
+      if (this == o) {
+        return true;
+      }
+      if (o == null || getClass() != o.getClass()) {
+        return false;
+      }
+      SeriesKey that = (SeriesKey) o;
+      return measureName.equals(that.measureName) && Arrays.equals(dimensionValues, that.dimensionValues);
+    }
+
+    @Override
+    public int hashCode() {
+      return 31 * measureName.hashCode() + Arrays.hashCode(dimensionValues);
+    }
+  }
+}
@@ -0,0 +1,897 @@
+/*
+ * Copyright © 2020 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+
+package io.cdap.cdap.data2.dataset2.lib.table;
+
+import com.google.common.annotations.VisibleForTesting;
+import com.google.common.collect.AbstractIterator;
+import com.google.common.collect.Maps;
+import io.cdap.cdap.api.common.Bytes;
+import io.cdap.cdap.api.dataset.DataSetException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.BufferedOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.PriorityQueue;
+import java.util.TreeMap;
+import javax.annotation.Nullable;
+
+/**
+ * {@link TableBuffer} that keeps the changes in sorted, append-only byte arenas, instead of a map entry and a few
+ * objects for every changed column, so that transactions with many changes need much less heap.
+ * <p>
+ * Recent changes are kept in a small map. Once it holds a given number of cells, it is encoded into an immutable
+ * sorted run: one byte array holding the cells one after another, and an array of the offsets of the cells. The
+ * newest run is merged with the previous one as long as it is at least half the size of it, which keeps the number
+ * of runs logarithmic in the number of cells. When the runs in memory exceed a given size, they are spilled to local
+ * files and only the offsets of the cells are kept in memory. Once there are too many spilled runs, they are merged
+ * into a single file, which bounds the number of open files and of runs to search. Spill files are unlinked right
+ * after they are opened where the platform allows it, so that they don't outlive the process.
+ * <p>
+ * Changes of the same cell in different runs and in the recent changes are merged from the oldest to the newest
+ * with {@link Updates#mergeUpdates(Update, Update)} when read.
+ * <p>
+ * This class is not thread safe.
+ */
+final class ArenaTableBuffer implements TableBuffer {
+
+  private static final Logger LOG = LoggerFactory.getLogger(ArenaTableBuffer.class);
+
+  private static final byte TYPE_PUT = 0;
+  private static final byte TYPE_DELETE = 1;
+  private static final byte TYPE_INCREMENT = 2;
+
+  private static final byte[] EMPTY = new byte[0];
+  // runs are not merged beyond this size, to stay within the limits of a byte array
+  private static final long MAX_RUN_BYTES = 1L << 30;
+  // spilled runs are merged into one once there are more than this number of them
+  @VisibleForTesting
+  static final int MAX_FILE_RUNS = 8;
+
+  private final int maxRecentCells;
+  private final long spillThresholdBytes;
+  private final File spillDir;
+  // sorted runs, from the oldest to the newest
+  private final List<Run> runs;
+  // recent changes that are not in any run yet
+  private NavigableMap<byte[], NavigableMap<byte[], Update>> recent;
+  private int recentCells;
+
+  /**
+   * Creates a new instance.
+   *
+   * @param maxRecentCells number of changed cells to keep in the map of recent changes before writing them into a run.
+   *                       This is also the number of cells in each of the batches returned by {@link #getBatches()}.
+   * @param spillThresholdBytes size of the runs in memory above which they are spilled to disk, or a non-positive
+   *                            value to never spill
+   * @param spillDir directory to write the spilled runs to
+   */
+  ArenaTableBuffer(int maxRecentCells, long spillThresholdBytes, File spillDir) {
+    if (maxRecentCells <= 0) {
+      throw new IllegalArgumentException("Number of recent cells must be positive: " + maxRecentCells);
+    }
+    this.maxRecentCells = maxRecentCells;
+    this.spillThresholdBytes = spillThresholdBytes;
+    this.spillDir = spillDir;
+    this.runs = new ArrayList<>();
+    this.recent = new TreeMap<>(Bytes.BYTES_COMPARATOR);
+  }
+
+  @Override
+  public boolean isEmpty() {
+    return recent.isEmpty() && runs.isEmpty();
+  }
+
+  @Nullable
+  @Override
+  public NavigableMap<byte[], Update> getRow(byte[] row) {
+    NavigableMap<byte[], Update> result = null;
+    Record record = new Record();
+    for (Run run : runs) {
+      for (int i = run.lowerBound(row, EMPTY, record); i < run.size(); i++) {
+        run.read(i, record);
+        if (!record.rowEquals(row)) {
+          break;
+        }
+        result = merge(result, record.getColumn(), record.getUpdate());
+      }
+    }
+    NavigableMap<byte[], Update> recentRow = recent.get(row);
+    if (recentRow != null) {
+      for (Map.Entry<byte[], Update> column : recentRow.entrySet()) {
+        result = merge(result, column.getKey(), column.getValue());
+      }
+    }
+    return result;
+  }
+
+  @Override
+  public void put(byte[] row, byte[][] columns, byte[][] values) {
+    if (columns.length == 0) {
+      return;
+    }
+    NavigableMap<byte[], Update> colVals = getRecentRow(row);
+    for (int i = 0; i < columns.length; i++) {
+      if (colVals.put(copy(columns[i]), new PutValue(copy(values[i]))) == null) {
+        recentCells++;
+      }
+    }
+    flushIfNeeded();
+  }
+
+  @Override
+  public void increment(byte[] row, byte[][] columns, long[] amounts) {
+    if (columns.length == 0) {
+      return;
+    }
+    NavigableMap<byte[], Update> colVals = getRecentRow(row);
+    Record record = new Record();
+    for (int i = 0; i < columns.length; i++) {
+      IncrementValue increment = new IncrementValue(amounts[i]);
+      Update existing = colVals.get(columns[i]);
+      if (existing == null) {
+        // fail the same way as if the runs were merged, if the increment cannot be applied to the value in the runs
+        Updates.mergeUpdates(findLatestPut(row, columns[i], record), increment);
+        colVals.put(copy(columns[i]), increment);
+        recentCells++;
+      } else {
+        colVals.put(columns[i], Updates.mergeUpdates(existing, increment));
+      }
+    }
+    flushIfNeeded();
+  }
+
+  @Override
+  public Iterator<Map.Entry<byte[], NavigableMap<byte[], Update>>> getRows(@Nullable byte[] startRow,
+                                                                           @Nullable byte[] stopRow) {
+    // runs are immutable, hence the rows can be read from them while more changes are buffered
+    flush();
+    return new RowIterator(new ArrayList<>(runs), startRow, stopRow);
+  }
+
+  @Override
+  public Iterable<NavigableMap<byte[], NavigableMap<byte[], Update>>> getBatches() {
+    return () -> new AbstractIterator<NavigableMap<byte[], NavigableMap<byte[], Update>>>() {
+
+      private final Iterator<Map.Entry<byte[], NavigableMap<byte[], Update>>> rows = getRows(null, null);
+
+      @Override
+      protected NavigableMap<byte[], NavigableMap<byte[], Update>> computeNext() {
+        NavigableMap<byte[], NavigableMap<byte[], Update>> batch = new TreeMap<>(Bytes.BYTES_COMPARATOR);
+        int cells = 0;
+        while (cells < maxRecentCells && rows.hasNext()) {
+          Map.Entry<byte[], NavigableMap<byte[], Update>> row = rows.next();
+          batch.put(row.getKey(), row.getValue());
+          cells += row.getValue().size();
+        }
+        return batch.isEmpty() ? endOfData() : batch;
+      }
+    };
+  }
+
+  @Override
+  public void clear() {
+    recent = new TreeMap<>(Bytes.BYTES_COMPARATOR);
+    recentCells = 0;
+    for (Run run : runs) {
+      run.release();
+    }
+    runs.clear();
+  }
+
+  @Override
+  public void close() {
+    clear();
+  }
+
+  /**
+   * Returns the number of runs spilled to files.
+   */
+  @VisibleForTesting
+  int getSpilledRuns() {
+    int count = 0;
+    for (Run run : runs) {
+      if (run instanceof FileRun) {
+        count++;
+      }
+    }
+    return count;
+  }
+
+  private NavigableMap<byte[], Update> getRecentRow(byte[] row) {
+    NavigableMap<byte[], Update> colVals = recent.get(row);
+    if (colVals == null) {
+      colVals = new TreeMap<>(Bytes.BYTES_COMPARATOR);
+      recent.put(copy(row), colVals);
+    }
+    return colVals;
+  }
+
+  /**
+   * Returns the latest put of the given cell in the runs, or {@code null} if there is none.
+   */
+  @Nullable
+  private Update findLatestPut(byte[] row, byte[] column, Record record) {
+    for (int i = runs.size() - 1; i >= 0; i--) {
+      Update update = runs.get(i).get(row, column, record);
+      if (update instanceof PutValue) {
+        return update;
+      }
+    }
+    return null;
+  }
+
+  private void flushIfNeeded() {
+    if (recentCells >= maxRecentCells) {
+      flush();
+    }
+  }
+
+  /**
+   * Writes the recent changes into a new run.
+   */
+  private void flush() {
+    if (recent.isEmpty()) {
+      return;
+    }
+    RunWriter writer = new RunWriter(recentCells);
+    for (Map.Entry<byte[], NavigableMap<byte[], Update>> row : recent.entrySet()) {
+      for (Map.Entry<byte[], Update> column : row.getValue().entrySet()) {
+        writer.append(row.getKey(), column.getKey(), column.getValue());
+      }
+    }
+    recent = new TreeMap<>(Bytes.BYTES_COMPARATOR);
+    recentCells = 0;
+    runs.add(writer.build());
+
+    mergeRuns();
+    spillIfNeeded();
+    mergeFileRunsIfNeeded();
+  }
+
+  /**
+   * Merges the newest run with the previous one while it is at least half the size of the previous one.
+   */
+  private void mergeRuns() {
+    while (runs.size() > 1) {
+      Run newer = runs.get(runs.size() - 1);
+      Run older = runs.get(runs.size() - 2);
+      if (!(older instanceof MemoryRun) || newer.size() * 2L < older.size()
+        || older.getByteSize() + newer.getByteSize() > MAX_RUN_BYTES) {
+        return;
+      }
+      runs.remove(runs.size() - 1);
+      runs.set(runs.size() - 1, merge(older, newer));
+    }
+  }
+
+  private void spillIfNeeded() {
+    if (spillThresholdBytes <= 0) {
+      return;
+    }
+    long bytes = 0L;
+    for (Run run : runs) {
+      if (run instanceof MemoryRun) {
+        bytes += run.getByteSize();
+      }
+    }
+    if (bytes <= spillThresholdBytes) {
+      return;
+    }
+    for (int i = 0; i < runs.size(); i++) {
+      Run run = runs.get(i);
+      if (run instanceof MemoryRun) {
+        try {
+          runs.set(i, FileRun.spill((MemoryRun) run, spillDir));
+        } catch (IOException e) {
+          throw new DataSetException("Failed to spill buffered changes to " + spillDir, e);
+        }
+      }
+    }
+  }
+
+  /**
+   * Merges the spilled runs into a single spilled run if there are more than {@link #MAX_FILE_RUNS} of them. The
+   * spilled runs are always the oldest runs, since all the runs in memory are spilled together.
+   */
+  private void mergeFileRunsIfNeeded() {
+    int fileRuns = 0;
+    while (fileRuns < runs.size() && runs.get(fileRuns) instanceof FileRun) {
+      fileRuns++;
+    }
+    if (fileRuns <= MAX_FILE_RUNS) {
+      return;
+    }
+    List<Run> toMerge = runs.subList(0, fileRuns);
+    FileRun merged;
+    try {
+      merged = FileRun.merge(toMerge, spillDir);
+    } catch (IOException e) {
+      throw new DataSetException("Failed to merge spilled buffered changes in " + spillDir, e);
+    }
+    for (Run run : toMerge) {
+      run.release();
+    }
+    toMerge.clear();
+    runs.add(0, merged);
+  }
+
+  /**
+   * Merges two runs into a new run.
+   */
+  private static MemoryRun merge(Run older, Run newer) {
+    RunWriter writer = new RunWriter(older.size() + newer.size());
+    Record olderRecord = new Record();
+    Record newerRecord = new Record();
+    int i = 0;
+    int j = 0;
+    while (i < older.size() && j < newer.size()) {
+      older.read(i, olderRecord);
+      newer.read(j, newerRecord);
+      int cmp = olderRecord.compareTo(newerRecord);
+      if (cmp < 0) {
+        writer.append(olderRecord);
+        i++;
+      } else if (cmp > 0) {
+        writer.append(newerRecord);
+        j++;
+      } else {
+        writer.append(olderRecord.getRow(), olderRecord.getColumn(),
+                      Updates.mergeUpdates(olderRecord.getUpdate(), newerRecord.getUpdate()));
+        i++;
+        j++;
+      }
+    }
+    for (; i < older.size(); i++) {
+      older.read(i, olderRecord);
+      writer.append(olderRecord);
+    }
+    for (; j < newer.size(); j++) {
+      newer.read(j, newerRecord);
+      writer.append(newerRecord);
+    }
+    return writer.build();
+  }
+
+  private static NavigableMap<byte[], Update> merge(@Nullable NavigableMap<byte[], Update> row,
+                                                    byte[] column, Update update) {
+    NavigableMap<byte[], Update> result = row == null ? new TreeMap<>(Bytes.BYTES_COMPARATOR) : row;
+    result.put(column, Updates.mergeUpdates(result.get(column), update));
+    return result;
+  }
+
+  private static byte[] copy(@Nullable byte[] bytes) {
+    return bytes == null ? null : Arrays.copyOf(bytes, bytes.length);
+  }
+
+  /**
+   * Iterates the rows in a range of a list of runs, merging the changes of the same cell from the oldest to the
+   * newest run.
+   */
+  private static final class RowIterator extends AbstractIterator<Map.Entry<byte[], NavigableMap<byte[], Update>>> {
+
+    private final PriorityQueue<Cursor> cursors;
+    private final byte[] stopRow;
+
+    private RowIterator(List<Run> runs, @Nullable byte[] startRow, @Nullable byte[] stopRow) {
+      // cursors on the same cell are ordered from the oldest to the newest run
+      this.cursors = new PriorityQueue<>(Math.max(1, runs.size()), (c1, c2) -> {
+        int cmp = c1.record.compareTo(c2.record);
+        return cmp == 0 ? Integer.compare(c1.runIndex, c2.runIndex) : cmp;
+      });
+      this.stopRow = stopRow;
+      for (int i = 0; i < runs.size(); i++) {
+        Run run = runs.get(i);
+        Cursor cursor = new Cursor(run, i);
+        cursor.index = startRow == null ? 0 : run.lowerBound(startRow, EMPTY, cursor.record);
+        if (cursor.advance()) {
+          cursors.add(cursor);
+        }
+      }
+    }
+
+    @Override
+    protected Map.Entry<byte[], NavigableMap<byte[], Update>> computeNext() {
+      Cursor first = cursors.peek();
+      if (first == null) {
+        return endOfData();
+      }
+      byte[] row = first.record.getRow();
+      if (stopRow != null && Bytes.compareTo(row, stopRow) >= 0) {
+        return endOfData();
+      }
+      NavigableMap<byte[], Update> columns = null;
+      while (!cursors.isEmpty() && cursors.peek().record.rowEquals(row)) {
+        Cursor cursor = cursors.poll();
+        columns = merge(columns, cursor.record.getColumn(), cursor.record.getUpdate());
+        if (cursor.advance()) {
+          cursors.add(cursor);
+        }
+      }
+      return Maps.immutableEntry(row, columns);
+    }
+  }
+
+  /**
+   * Position in a {@link Run}.
+   */
+  private static final class Cursor {
+    private final Run run;
+    private final int runIndex;
+    private final Record record;
+    // index of the next cell to read
+    private int index;
+
+    private Cursor(Run run, int runIndex) {
+      this.run = run;
+      this.runIndex = runIndex;
+      this.record = new Record();
+    }
+
+    /**
+     * Reads the next cell into the record.
+     *
+     * @return {@code false} if there is no more cell
+     */
+    private boolean advance() {
+      if (index >= run.size()) {
+        return false;
+      }
+      run.read(index++, record);
+      return true;
+    }
+  }
+
+  /**
+   * An immutable sorted run of cells. Each cell is encoded as
+   * {@code <row length><row><column length><column><type>[<value length><value>|<increment>]}, where the
+   * lengths are variable length encoded integers, and the increment is a long.
+   */
+  private abstract static class Run {
+
+    /**
+     * Returns the number of cells in this run.
+     */
+    abstract int size();
+
+    /**
+     * Returns the number of bytes used by the cells.
+     */
+    abstract long getByteSize();
+
+    /**
+     * Reads the cell at the given index into the given record.
+     */
+    abstract void read(int index, Record record);
+
+    /**
+     * Releases the resources held by this run.
+     */
+    void release() {
+      // no-op by default
+    }
+
+    /**
+     * Returns the index of the first cell that is not less than the given cell.
+     */
+    int lowerBound(byte[] row, byte[] column, Record record) {
+      int low = 0;
+      int high = size();
+      while (low < high) {
+        int mid = (low + high) >>> 1;
+        read(mid, record);
+        if (record.compareTo(row, column) < 0) {
+          low = mid + 1;
+        } else {
+          high = mid;
+        }
+      }
+      return low;
+    }
+
+    /**
+     * Returns the update of the given cell, or {@code null} if the cell is not in this run.
+     */
+    @Nullable
+    Update get(byte[] row, byte[] column, Record record) {
+      int index = lowerBound(row, column, record);
+      if (index >= size()) {
+        return null;
+      }
+      read(index, record);
+      return record.compareTo(row, column) == 0 ? record.getUpdate() : null;
+    }
+  }
+
+  /**
+   * A {@link Run} in memory.
+   */
+  private static final class MemoryRun extends Run {
+    private final byte[] data;
+    // offsets of the cells, followed by the end of the last cell
+    private final int[] offsets;
+
+    private MemoryRun(byte[] data, int[] offsets) {
+      this.data = data;
+      this.offsets = offsets;
+    }
+
+    @Override
+    int size() {
+      return offsets.length - 1;
+    }
+
+    @Override
+    long getByteSize() {
+      return data.length + (long) offsets.length * Integer.BYTES;
+    }
+
+    @Override
+    void read(int index, Record record) {
+      record.parse(data, offsets[index]);
+    }
+  }
+
+  /**
+   * A {@link Run} spilled to a local file. Only the offsets of the cells are kept in memory.
+   */
+  private static final class FileRun extends Run {
+    // number of cells encoded at a time when merging runs into a file
+    private static final int MERGE_BATCH_CELLS = 1024;
+
+    private final File file;
+    private final RandomAccessFile randomAccessFile;
+    private final FileChannel channel;
+    // offsets of the cells, followed by the end of the last cell
+    private final long[] offsets;
+
+    static FileRun spill(MemoryRun run, File dir) throws IOException {
+      File file = File.createTempFile("table-buffer-", ".run", dir);
+      try {
+        try (OutputStream os = new FileOutputStream(file)) {
+          os.write(run.data);
+        }
+        long[] offsets = new long[run.offsets.length];
+        for (int i = 0; i < offsets.length; i++) {
+          offsets[i] = run.offsets[i];
+        }
+        return new FileRun(file, offsets);
+      } catch (IOException e) {
+        deleteFile(file);
+        throw e;
+      }
+    }
+
+    /**
+     * Merges the given runs, ordered from the oldest to the newest, into a new spilled run.
+     */
+    static FileRun merge(List<Run> runs, File dir) throws IOException {
+      long totalCells = 0L;
+      for (Run run : runs) {
+        totalCells += run.size();
+      }
+      File file = File.createTempFile("table-buffer-", ".run", dir);
+      try {
+        long[] offsets = new long[Math.toIntExact(totalCells + 1)];
+        int cells = 0;
+        long position = 0L;
+        // cells are encoded in batches, which are appended to the file
+        RunWriter writer = new RunWriter(MERGE_BATCH_CELLS);
+        try (OutputStream os = new BufferedOutputStream(new FileOutputStream(file))) {
+          Iterator<Map.Entry<byte[], NavigableMap<byte[], Update>>> rows = new RowIterator(runs, null, null);
+          while (rows.hasNext()) {
+            Map.Entry<byte[], NavigableMap<byte[], Update>> row = rows.next();
+            for (Map.Entry<byte[], Update> column : row.getValue().entrySet()) {
+              writer.append(row.getKey(), column.getKey(), column.getValue());
+            }
+            if (writer.cells >= MERGE_BATCH_CELLS || !rows.hasNext()) {
+              long bytes = writer.size;
+              cells += writer.drainTo(os, position, offsets, cells);
+              position += bytes;
+            }
+          }
+        }
+        offsets[cells] = position;
+        return new FileRun(file, Arrays.copyOf(offsets, cells + 1));
+      } catch (IOException | RuntimeException e) {
+        deleteFile(file);
+        throw e;
+      }
+    }
+
+    private FileRun(File file, long[] offsets) throws IOException {
+      this.file = file;
+      this.randomAccessFile = new RandomAccessFile(file, "r");
+      this.channel = randomAccessFile.getChannel();
+      this.offsets = offsets;
+      // the open file stays readable after it is unlinked, otherwise delete it when the process exits
+      if (!file.delete()) {
+        file.deleteOnExit();
+      }
+    }
+
+    @Override
+    int size() {
+      return offsets.length - 1;
+    }
+
+    @Override
+    long getByteSize() {
+      return offsets[offsets.length - 1];
+    }
+
+    @Override
+    void read(int index, Record record) {
+      int length = (int) (offsets[index + 1] - offsets[index]);
+      ByteBuffer buffer = ByteBuffer.wrap(record.getBuffer(length), 0, length);
+      long position = offsets[index];
+      try {
+        while (buffer.hasRemaining()) {
+          int read = channel.read(buffer, position);
+          if (read < 0) {
+            throw new EOFException("Unexpected end of file " + file);
+          }
+          position += read;
+        }
+      } catch (IOException e) {
+        throw new DataSetException("Failed to read spilled buffered changes from " + file, e);
+      }
+      record.parse(buffer.array(), 0);
+    }
+
+    @Override
+    void release() {
+      try {
+        randomAccessFile.close();
+      } catch (IOException e) {
+        LOG.warn("Failed to close spilled buffered changes file {}", file, e);
+      }
+      deleteFile(file);
+    }
+
+    private static void deleteFile(File file) {
+      if (!file.delete() && file.exists()) {
+        LOG.warn("Failed to delete spilled buffered changes file {}", file);
+      }
+    }
+  }
+
+  /**
+   * Writes cells in sorted order into a {@link MemoryRun}.
+   */
+  private static final class RunWriter {
+    private byte[] data;
+    private int size;
+    private int[] offsets;
+    private int cells;
+
+    private RunWriter(int expectedCells) {
+      this.data = new byte[Math.max(16, expectedCells * 16)];
+      this.offsets = new int[expectedCells + 1];
+    }
+
+    void append(byte[] row, byte[] column, Update update) {
+      byte[] value = null;
+      byte type;
+      if (update instanceof IncrementValue) {
+        type = TYPE_INCREMENT;
+      } else {
+        value = ((PutValue) update).getValue();
+        type = value == null ? TYPE_DELETE : TYPE_PUT;
+      }
+      int length = 2 * 5 + row.length + column.length + 1 + 5 + (value == null ? Long.BYTES : value.length);
+      int offset = startCell(length);
+      offset = writeBytes(row, offset);
+      offset = writeBytes(column, offset);
+      data[offset++] = type;
+      if (type == TYPE_PUT) {
+        offset = writeBytes(value, offset);
+      } else if (type == TYPE_INCREMENT) {
+        offset = Bytes.putLong(data, offset, ((IncrementValue) update).getValue());
+      }
+      size = offset;
+    }
+
+    void append(Record record) {
+      int offset = startCell(record.getLength());
+      System.arraycopy(record.buffer, record.offset, data, offset, record.getLength());
+      size = offset + record.getLength();
+    }
+
+    /**
+     * Writes the cells appended so far to the given output stream and resets this writer.
+     *
+     * @param os the output stream to write to
+     * @param position position in the output of the first cell written
+     * @param target array to record the positions in the output of the written cells
+     * @param targetIndex index in the target array of the first cell written
+     * @return the number of cells written
+     */
+    int drainTo(OutputStream os, long position, long[] target, int targetIndex) throws IOException {
+      os.write(data, 0, size);
+      for (int i = 0; i < cells; i++) {
+        target[targetIndex + i] = position + offsets[i];
+      }
+      int drained = cells;
+      size = 0;
+      cells = 0;
+      return drained;
+    }
+
+    MemoryRun build() {
+      int[] runOffsets = Arrays.copyOf(offsets, cells + 1);
+      runOffsets[cells] = size;
+      return new MemoryRun(Arrays.copyOf(data, size), runOffsets);
+    }
+
+    /**
+     * Records the offset of a new cell and makes sure there is enough space for the given number of bytes.
+     *
+     * @return the offset to write the cell to
+     */
+    private int startCell(int length) {
+      if (cells + 1 >= offsets.length) {
+        offsets = Arrays.copyOf(offsets, offsets.length * 2);
+      }
+      offsets[cells++] = size;
+      if (size + length > data.length) {
+        data = Arrays.copyOf(data, Math.max(data.length * 2, size + length));
+      }
+      return size;
+    }
+
+    private int writeBytes(byte[] bytes, int offset) {
+      int length = bytes.length;
+      while ((length & ~0x7F) != 0) {
+        data[offset++] = (byte) ((length & 0x7F) | 0x80);
+        length >>>= 7;
+      }
+      data[offset++] = (byte) length;
+      System.arraycopy(bytes, 0, data, offset, bytes.length);
+      return offset + bytes.length;
+    }
+  }
+
+  /**
+   * A view of a cell encoded in a byte array.
+   */
+  private static final class Record {
+    private byte[] buffer;
+    private int offset;
+    private int rowOffset;
+    private int rowLength;
+    private int columnOffset;
+    private int columnLength;
+    private byte type;
+    private int valueOffset;
+    private int valueLength;
+    private int end;
+    // buffer for cells read from files
+    private byte[] readBuffer;
+
+    /**
+     * Returns a buffer of at least the given length to read a cell into.
+     */
+    byte[] getBuffer(int length) {
+      if (readBuffer == null || readBuffer.length < length) {
+        readBuffer = new byte[Math.max(length, 64)];
+      }
+      return readBuffer;
+    }
+
+    void parse(byte[] buffer, int offset) {
+      this.buffer = buffer;
+      this.offset = offset;
+      int pos = offset;
+
+      rowLength = readLength(pos);
+      pos = skipLength(pos);
+      rowOffset = pos;
+      pos += rowLength;
+
+      columnLength = readLength(pos);
+      pos = skipLength(pos);
+      columnOffset = pos;
+      pos += columnLength;
+
+      type = buffer[pos++];
+      if (type == TYPE_PUT) {
+        valueLength = readLength(pos);
+        pos = skipLength(pos);
+      } else if (type == TYPE_INCREMENT) {
+        valueLength = Long.BYTES;
+      } else {
+        valueLength = 0;
+      }
+      valueOffset = pos;
+      end = pos + valueLength;
+    }
+
+    int getLength() {
+      return end - offset;
+    }
+
+    byte[] getRow() {
+      return Arrays.copyOfRange(buffer, rowOffset, rowOffset + rowLength);
+    }
+
+    byte[] getColumn() {
+      return Arrays.copyOfRange(buffer, columnOffset, columnOffset + columnLength);
+    }
+
+    Update getUpdate() {
+      switch (type) {
+        case TYPE_PUT:
+          return new PutValue(Arrays.copyOfRange(buffer, valueOffset, valueOffset + valueLength));
+        case TYPE_DELETE:
+          return new PutValue(null);
+        case TYPE_INCREMENT:
+          return new IncrementValue(Bytes.toLong(buffer, valueOffset));
+        default:
+          throw new IllegalStateException("Unknown type of buffered change: " + type);
+      }
+    }
+
+    boolean rowEquals(byte[] row) {
+      return Bytes.equals(buffer, rowOffset, rowLength, row, 0, row.length);
+    }
+
+    int compareTo(byte[] row, byte[] column) {
+      int cmp = Bytes.compareTo(buffer, rowOffset, rowLength, row, 0, row.length);
+      return cmp != 0 ? cmp : Bytes.compareTo(buffer, columnOffset, columnLength, column, 0, column.length);
+    }
+
+    int compareTo(Record other) {
+      int cmp = Bytes.compareTo(buffer, rowOffset, rowLength, other.buffer, other.rowOffset, other.rowLength);
+      return cmp != 0 ? cmp : Bytes.compareTo(buffer, columnOffset, columnLength,
+                                              other.buffer, other.columnOffset, other.columnLength);
+    }
+
+    private int readLength(int pos) {
+      int length = 0;
+      int shift = 0;
+      byte b;
+      do {
+        b = buffer[pos++];
+        length |= (b & 0x7F) << shift;
+        shift += 7;
+      } while ((b & 0x80) != 0);
+      return length;
+    }
+
+    private int skipLength(int pos) {
+      while ((buffer[pos++] & 0x80) != 0) {
+        // skip the continuation bytes
+      }
+      return pos;
+    }
+  }
+}
@@ -0,0 +1,81 @@
+/*
+ * Copyright © 2020 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+
+package io.cdap.cdap.data2.dataset2.lib.table;
+
+import java.io.Closeable;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.NavigableMap;
+import javax.annotation.Nullable;
+
+/**
+ * Buffer of the changes made to a {@link BufferingTable} that are not yet persisted. Changes are organized as
+ * row->(column->update), where an update is either a {@link PutValue}, with {@code null} value for a deleted column,
+ * or an {@link IncrementValue}.
+ */
+interface TableBuffer extends Closeable {
+
+  /**
+   * Returns {@code true} if there is no change in this buffer.
+   */
+  boolean isEmpty();
+
+  /**
+   * Returns the changes of the given row, or {@code null} if the row has no change. The returned map must not be
+   * modified.
+   */
+  @Nullable
+  NavigableMap<byte[], Update> getRow(byte[] row);
+
+  /**
+   * Buffers puts of the given columns of a row. A {@code null} value deletes the column. The given arrays are copied.
+   */
+  void put(byte[] row, byte[][] columns, byte[][] values);
+
+  /**
+   * Buffers increments of the given columns of a row, merging them with the changes already buffered for the columns.
+   *
+   * @throws NumberFormatException if a buffered value of a column is not a long
+   */
+  void increment(byte[] row, byte[][] columns, long[] amounts);
+
+  /**
+   * Returns the changes of the rows in the given range, ordered by row.
+   *
+   * @param startRow the first row, inclusive, or {@code null} to start from the first row
+   * @param stopRow the last row, exclusive, or {@code null} to stop after the last row
+   */
+  Iterator<Map.Entry<byte[], NavigableMap<byte[], Update>>> getRows(@Nullable byte[] startRow,
+                                                                    @Nullable byte[] stopRow);
+
+  /**
+   * Returns all the changes, ordered by row, in batches that can be persisted one after another.
+   */
+  Iterable<NavigableMap<byte[], NavigableMap<byte[], Update>>> getBatches();
+
+  /**
+   * Removes all changes from this buffer.
+   */
+  void clear();
+
+  /**
+   * Removes all changes and releases all resources held by this buffer.
+   */
+  @Override
+  void close();
+}
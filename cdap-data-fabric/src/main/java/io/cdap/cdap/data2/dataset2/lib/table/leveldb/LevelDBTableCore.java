@@ -17,6 +17,7 @@
 package io.cdap.cdap.data2.dataset2.lib.table.leveldb;
 
 import com.google.common.base.Throwables;
+import com.google.common.collect.Lists;
 import io.cdap.cdap.api.common.Bytes;
 import io.cdap.cdap.api.dataset.table.Result;
 import io.cdap.cdap.api.dataset.table.Row;
@@ -34,13 +35,16 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.io.IOException;
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.Iterator;
+import java.util.List;
 import java.util.Map;
 import java.util.NavigableMap;
 import java.util.TreeMap;
+import java.util.concurrent.locks.Lock;
 import javax.annotation.Nullable;
 
 /**
@@ -84,8 +88,17 @@ public class LevelDBTableCore {
     return service.getWriteOptions();
   }
 
+  public boolean swap(byte[] row, byte[] column, byte[] oldValue, byte[] newValue) throws IOException {
+    Lock lock = service.getRowLock(tableName, row);
+    lock.lock();
+    try {
+      return swapUnderLock(row, column, oldValue, newValue);
+    } finally {
+      lock.unlock();
+    }
+  }
 
-  public synchronized boolean swap(byte[] row, byte[] column, byte[] oldValue, byte[] newValue) throws IOException {
+  private boolean swapUnderLock(byte[] row, byte[] column, byte[] oldValue, byte[] newValue) throws IOException {
     byte[] existing = getRow(row, new byte[][] { column }, null, null, -1, null).get(column);
     // verify
     if (oldValue == null && existing != null) {
@@ -104,7 +117,17 @@ public class LevelDBTableCore {
     return true;
   }
 
-  public synchronized Map<byte[], Long> increment(byte[] row, Map<byte[], Long> increments) throws IOException {
+  public Map<byte[], Long> increment(byte[] row, Map<byte[], Long> increments) throws IOException {
+    Lock lock = service.getRowLock(tableName, row);
+    lock.lock();
+    try {
+      return incrementUnderLock(row, increments);
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  private Map<byte[], Long> incrementUnderLock(byte[] row, Map<byte[], Long> increments) throws IOException {
     Map<byte[], Long> result = new TreeMap<>(Bytes.BYTES_COMPARATOR);
 
     DB db = getDB();
@@ -125,12 +148,29 @@ public class LevelDBTableCore {
     return result;
   }
 
-
-  public synchronized void increment(NavigableMap<byte[], NavigableMap<byte[], Long>> updates) throws IOException {
+  public void increment(NavigableMap<byte[], NavigableMap<byte[], Long>> updates) throws IOException {
     if (updates.isEmpty()) {
       return;
     }
 
+    // Locks are ordered by stripe, hence acquiring all of them upfront cannot deadlock with other writers
+    Iterable<Lock> locks = service.getRowLocks(tableName, updates.keySet());
+    List<Lock> acquired = new ArrayList<>();
+    try {
+      for (Lock lock : locks) {
+        lock.lock();
+        acquired.add(lock);
+      }
+      incrementUnderLock(updates);
+    } finally {
+      for (Lock lock : Lists.reverse(acquired)) {
+        lock.unlock();
+      }
+    }
+  }
+
+  private void incrementUnderLock(NavigableMap<byte[], NavigableMap<byte[], Long>> updates) throws IOException {
+
     DB db = getDB();
     WriteBatch writeBatch = db.createWriteBatch();
     try (Snapshot snapshot = db.getSnapshot()) {
@@ -23,8 +23,10 @@ import com.google.common.collect.ImmutableList;
 import com.google.common.collect.ImmutableMap;
 import com.google.common.collect.Maps;
 import com.google.common.io.Closeables;
+import com.google.common.util.concurrent.Striped;
 import com.google.inject.Inject;
 import com.google.inject.Singleton;
+import io.cdap.cdap.api.common.Bytes;
 import io.cdap.cdap.common.conf.CConfiguration;
 import io.cdap.cdap.common.conf.Constants;
 import io.cdap.cdap.data2.util.TableId;
@@ -40,9 +42,12 @@ import java.io.IOException;
 import java.io.UnsupportedEncodingException;
 import java.net.URLDecoder;
 import java.net.URLEncoder;
+import java.util.ArrayList;
 import java.util.Collection;
+import java.util.List;
 import java.util.Map;
 import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.locks.Lock;
 
 import static org.iq80.leveldb.impl.Iq80DBFactory.factory;
 
@@ -54,6 +59,9 @@ public class LevelDBTableService implements AutoCloseable {
 
   private static final Logger LOG = LoggerFactory.getLogger(LevelDBTableService.class);
 
+  // number of lock stripes used to serialize read-modify-write operations on the same row
+  private static final int ROW_LOCK_STRIPES = 1024;
+
   private int blockSize;
   private long cacheSize;
   private String basePath;
@@ -61,6 +69,7 @@ public class LevelDBTableService implements AutoCloseable {
   private boolean isClosed;
 
   private final ConcurrentMap<String, DB> tables = Maps.newConcurrentMap();
+  private final Striped<Lock> rowLocks = Striped.lock(ROW_LOCK_STRIPES);
 
   /**
    * To avoid database locking issues make sure that the single LevelDBTableService instance
@@ -102,6 +111,31 @@ public class LevelDBTableService implements AutoCloseable {
     tables.clear();
   }
 
+  /**
+   * Returns the lock guarding read-modify-write operations on the given row of the given table.
+   * The lock is shared by all {@link LevelDBTableCore} instances of the same table.
+   */
+  Lock getRowLock(String tableName, byte[] row) {
+    return rowLocks.get(getRowLockKey(tableName, row));
+  }
+
+  /**
+   * Returns the locks guarding read-modify-write operations on the given rows of the given table.
+   * The locks are returned in a consistent order, so acquiring them in iteration order cannot deadlock
+   * with other callers. The same lock may appear more than once if rows share a stripe.
+   */
+  Iterable<Lock> getRowLocks(String tableName, Collection<byte[]> rows) {
+    List<Integer> keys = new ArrayList<>(rows.size());
+    for (byte[] row : rows) {
+      keys.add(getRowLockKey(tableName, row));
+    }
+    return rowLocks.bulkGet(keys);
+  }
+
+  private static Integer getRowLockKey(String tableName, byte[] row) {
+    return 31 * tableName.hashCode() + Bytes.hashCode(row);
+  }
+
   private void ensureOpen() {
     Preconditions.checkState(!isClosed, "%s has already been closed.", getClass().getSimpleName());
   }
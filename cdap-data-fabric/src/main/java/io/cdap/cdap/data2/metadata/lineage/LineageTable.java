@@ -40,10 +40,13 @@ import org.slf4j.LoggerFactory;
 
 import java.io.IOException;
 import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
 import java.util.List;
 import java.util.Set;
 import java.util.concurrent.TimeUnit;
 import java.util.function.Predicate;
+import java.util.stream.Collectors;
 
 /**
  * Dataset to store/retrieve Dataset accesses of a Program.
@@ -149,10 +152,26 @@ public class LineageTable {
    */
   public Set<Relation> getRelations(DatasetId datasetInstance, long start, long end, Predicate<Relation> filter)
     throws IOException {
-    return scanRelations(getDatasetTable(),
-                         getDatasetScanStartKey(datasetInstance, end),
-                         getDatasetScanEndKey(datasetInstance, start),
-                         filter);
+    return getDatasetRelations(Collections.singleton(datasetInstance), start, end, filter);
+  }
+
+  /**
+   * Fetch program-dataset access information for a set of datasets for a given period. All the datasets are
+   * fetched with a single scan.
+   *
+   * @param datasetInstances datasets for which to fetch access information
+   * @param start start time period
+   * @param end end time period
+   * @param filter filter to be applied on result set
+   * @return program-dataset access information of all the given datasets
+   */
+  public Set<Relation> getDatasetRelations(Collection<DatasetId> datasetInstances, long start, long end,
+                                           Predicate<Relation> filter) throws IOException {
+    List<Range> ranges = datasetInstances.stream()
+      .map(datasetInstance -> Range.create(getDatasetScanStartKey(datasetInstance, end), Range.Bound.INCLUSIVE,
+                                           getDatasetScanEndKey(datasetInstance, start), Range.Bound.INCLUSIVE))
+      .collect(Collectors.toList());
+    return scanRelations(getDatasetTable(), ranges, filter);
   }
 
   /**
@@ -166,10 +185,26 @@ public class LineageTable {
    */
   public Set<Relation> getRelations(ProgramId program, long start, long end, Predicate<Relation> filter)
     throws IOException {
-    return scanRelations(getProgramTable(),
-                         getProgramScanStartKey(program, end),
-                         getProgramScanEndKey(program, start),
-                         filter);
+    return getProgramRelations(Collections.singleton(program), start, end, filter);
+  }
+
+  /**
+   * Fetch program-dataset access information for a set of programs for a given period. All the programs are
+   * fetched with a single scan.
+   *
+   * @param programs programs for which to fetch access information
+   * @param start start time period
+   * @param end end time period
+   * @param filter filter to be applied on result set
+   * @return program-dataset access information of all the given programs
+   */
+  public Set<Relation> getProgramRelations(Collection<ProgramId> programs, long start, long end,
+                                           Predicate<Relation> filter) throws IOException {
+    List<Range> ranges = programs.stream()
+      .map(program -> Range.create(getProgramScanStartKey(program, end), Range.Bound.INCLUSIVE,
+                                   getProgramScanEndKey(program, start), Range.Bound.INCLUSIVE))
+      .collect(Collectors.toList());
+    return scanRelations(getProgramTable(), ranges, filter);
   }
 
   /**
@@ -191,11 +226,15 @@ public class LineageTable {
     return builder.build();
   }
 
-  private Set<Relation> scanRelations(StructuredTable table, List<Field<?>> startKey, List<Field<?>> endKey,
+  private Set<Relation> scanRelations(StructuredTable table, List<Range> ranges,
                                       Predicate<Relation> filter) throws IOException {
+    if (ranges.isEmpty()) {
+      return Collections.emptySet();
+    }
     ImmutableSet.Builder<Relation> builder = ImmutableSet.builder();
-    try (CloseableIterator<StructuredRow> iterator =
-      table.scan(Range.create(startKey, Range.Bound.INCLUSIVE, endKey, Range.Bound.INCLUSIVE), Integer.MAX_VALUE)) {
+    try (CloseableIterator<StructuredRow> iterator = ranges.size() == 1
+      ? table.scan(ranges.get(0), Integer.MAX_VALUE)
+      : table.multiScan(ranges, Integer.MAX_VALUE)) {
       while (iterator.hasNext()) {
         StructuredRow row = iterator.next();
         Relation relation = toRelation(row);
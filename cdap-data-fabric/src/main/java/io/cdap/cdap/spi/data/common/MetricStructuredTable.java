@@ -66,6 +66,26 @@ public class MetricStructuredTable implements StructuredTable {
     }
   }
 
+  @Override
+  public void multiUpsert(Collection<? extends Collection<Field<?>>> multiFields)
+    throws InvalidFieldException, IOException {
+    try {
+      if (!emitTimeMetrics) {
+        structuredTable.multiUpsert(multiFields);
+      } else {
+        long curTime = System.nanoTime();
+        structuredTable.multiUpsert(multiFields);
+        long duration = System.nanoTime() - curTime;
+        metricsCollector.increment(metricPrefix + "multi.upsert.time", duration);
+      }
+      metricsCollector.increment(metricPrefix + "multi.upsert.count", 1L);
+      metricsCollector.increment(metricPrefix + "upsert.count", multiFields.size());
+    } catch (Exception e) {
+      metricsCollector.increment(metricPrefix + "multi.upsert.error", 1L);
+      throw e;
+    }
+  }
+
   @Override
   public Optional<StructuredRow> read(Collection<Field<?>> keys) throws InvalidFieldException, IOException {
     try {
@@ -148,13 +168,18 @@ public class MetricStructuredTable implements StructuredTable {
 
   @Override
   public CloseableIterator<StructuredRow> scan(Field<?> index) throws InvalidFieldException, IOException {
+    return scan(index, Integer.MAX_VALUE);
+  }
+
+  @Override
+  public CloseableIterator<StructuredRow> scan(Field<?> index, int limit) throws InvalidFieldException, IOException {
     try {
       CloseableIterator<StructuredRow> result;
       if (!emitTimeMetrics) {
-        result = structuredTable.scan(index);
+        result = structuredTable.scan(index, limit);
       } else {
         long curTime = System.nanoTime();
-        result = structuredTable.scan(index);
+        result = structuredTable.scan(index, limit);
         long duration = System.nanoTime() - curTime;
         metricsCollector.increment(metricPrefix + "index.scan.time", duration);
       }
@@ -245,6 +270,26 @@ public class MetricStructuredTable implements StructuredTable {
     }
   }
 
+  @Override
+  public void multiDelete(Collection<? extends Collection<Field<?>>> multiKeys)
+    throws InvalidFieldException, IOException {
+    try {
+      if (!emitTimeMetrics) {
+        structuredTable.multiDelete(multiKeys);
+      } else {
+        long curTime = System.nanoTime();
+        structuredTable.multiDelete(multiKeys);
+        long duration = System.nanoTime() - curTime;
+        metricsCollector.increment(metricPrefix + "multi.delete.time", duration);
+      }
+      metricsCollector.increment(metricPrefix + "multi.delete.count", 1L);
+      metricsCollector.increment(metricPrefix + "delete.count", multiKeys.size());
+    } catch (Exception e) {
+      metricsCollector.increment(metricPrefix + "multi.delete.error", 1L);
+      throw e;
+    }
+  }
+
   @Override
   public void deleteAll(Range keyRange) throws InvalidFieldException, IOException {
     try {
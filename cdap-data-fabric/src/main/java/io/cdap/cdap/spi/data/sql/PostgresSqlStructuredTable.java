@@ -39,6 +39,7 @@ import java.sql.ResultSetMetaData;
 import java.sql.SQLException;
 import java.sql.Statement;
 import java.sql.Types;
+import java.util.AbstractMap;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Collections;
@@ -60,16 +61,29 @@ import javax.annotation.Nullable;
  */
 public class PostgresSqlStructuredTable implements StructuredTable {
   private static final Logger LOG = LoggerFactory.getLogger(PostgresSqlStructuredTable.class);
-  private static final int SCAN_FETCH_SIZE = 100;
+  static final int DEFAULT_SCAN_FETCH_SIZE = 100;
 
   private final Connection connection;
   private final StructuredTableSchema tableSchema;
   private final FieldValidator fieldValidator;
+  private final int scanFetchSize;
 
   public PostgresSqlStructuredTable(Connection connection, StructuredTableSchema tableSchema) {
+    this(connection, tableSchema, DEFAULT_SCAN_FETCH_SIZE);
+  }
+
+  /**
+   * Creates a table using the given connection.
+   *
+   * @param connection the sql connection to use
+   * @param tableSchema the schema of the table
+   * @param scanFetchSize the max number of rows to fetch in one round trip when scanning
+   */
+  public PostgresSqlStructuredTable(Connection connection, StructuredTableSchema tableSchema, int scanFetchSize) {
     this.connection = connection;
     this.tableSchema = tableSchema;
     this.fieldValidator = new FieldValidator(tableSchema);
+    this.scanFetchSize = scanFetchSize;
   }
 
   @Override
@@ -84,6 +98,29 @@ public class PostgresSqlStructuredTable implements StructuredTable {
     upsertInternal(fields);
   }
 
+  @Override
+  public void multiUpsert(Collection<? extends Collection<Field<?>>> multiFields)
+    throws InvalidFieldException, IOException {
+    LOG.trace("Table {}: Write multiple fields {}", tableSchema.getTableId(), multiFields);
+
+    // Consecutive rows with the same set of fields share the same statement, hence they can be written with one batch.
+    // Rows are not grouped across different statements, so that writes to the same key are applied in order.
+    List<Map.Entry<String, List<Collection<Field<?>>>>> batches = new ArrayList<>();
+    for (Collection<Field<?>> fields : multiFields) {
+      Set<String> fieldNames = fields.stream().map(Field::getName).collect(Collectors.toSet());
+      if (!fieldNames.containsAll(tableSchema.getPrimaryKeys())) {
+        throw new InvalidFieldException(tableSchema.getTableId(), fields,
+                                        String.format("Given fields %s do not contain all the " +
+                                                        "primary keys %s", fieldNames, tableSchema.getPrimaryKeys()));
+      }
+      addToBatches(batches, getWriteSqlQuery(fields, null), fields);
+    }
+
+    for (Map.Entry<String, List<Collection<Field<?>>>> batch : batches) {
+      executeBatch(batch.getKey(), batch.getValue(), "Failed to write to table %s with multiple fields %s");
+    }
+  }
+
   @Override
   public Optional<StructuredRow> read(Collection<Field<?>> keys) throws InvalidFieldException, IOException {
     return readRow(keys, null);
@@ -194,7 +231,7 @@ public class PostgresSqlStructuredTable implements StructuredTable {
     // We don't close the statement here because once it is closed, the result set is also closed.
     try {
       PreparedStatement statement = connection.prepareStatement(scanQuery);
-      statement.setFetchSize(SCAN_FETCH_SIZE);
+      statement.setFetchSize(getFetchSize(limit));
       setStatementFieldByRange(keyRange, statement);
       LOG.trace("SQL statement: {}", statement);
 
@@ -294,7 +331,7 @@ public class PostgresSqlStructuredTable implements StructuredTable {
     query.append(" LIMIT ").append(limit).append(";");
 
     PreparedStatement statement = connection.prepareStatement(query.toString());
-    statement.setFetchSize(SCAN_FETCH_SIZE);
+    statement.setFetchSize(getFetchSize(limit));
 
     // Set the parameters
     int index = setFields(statement, keyFields.values().stream().flatMap(Collection::stream)::iterator, 1);
@@ -306,17 +343,22 @@ public class PostgresSqlStructuredTable implements StructuredTable {
 
   @Override
   public CloseableIterator<StructuredRow> scan(Field<?> index) throws InvalidFieldException, IOException {
-    LOG.trace("Table {}: Scan index {}", tableSchema.getTableId(), index);
+    return scan(index, Integer.MAX_VALUE);
+  }
+
+  @Override
+  public CloseableIterator<StructuredRow> scan(Field<?> index, int limit) throws InvalidFieldException, IOException {
+    LOG.trace("Table {}: Scan index {} with limit {}", tableSchema.getTableId(), index, limit);
     fieldValidator.validateField(index);
     if (!tableSchema.isIndexColumn(index.getName())) {
       throw new InvalidFieldException(tableSchema.getTableId(), index.getName(), "is not an indexed column");
     }
 
-    String sql = getReadQuery(Collections.singleton(index), null, false);
+    String sql = getIndexScanQuery(index, limit);
     // We don't close the statement here because once it is closed, the result set is also closed.
     try {
       PreparedStatement statement = connection.prepareStatement(sql);
-      statement.setFetchSize(SCAN_FETCH_SIZE);
+      statement.setFetchSize(getFetchSize(limit));
       setField(statement, index, 1);
       LOG.trace("SQL statement: {}", statement);
       ResultSet resultSet = statement.executeQuery();
@@ -441,6 +483,22 @@ public class PostgresSqlStructuredTable implements StructuredTable {
     }
   }
 
+  @Override
+  public void multiDelete(Collection<? extends Collection<Field<?>>> multiKeys)
+    throws InvalidFieldException, IOException {
+    LOG.trace("Table {}: Delete with multiple keys {}", tableSchema.getTableId(), multiKeys);
+
+    List<Map.Entry<String, List<Collection<Field<?>>>>> batches = new ArrayList<>();
+    for (Collection<Field<?>> keys : multiKeys) {
+      fieldValidator.validatePrimaryKeys(keys, false);
+      addToBatches(batches, getDeleteQuery(keys), keys);
+    }
+
+    for (Map.Entry<String, List<Collection<Field<?>>>> batch : batches) {
+      executeBatch(batch.getKey(), batch.getValue(), "Failed to delete the rows from table %s with multiple keys %s");
+    }
+  }
+
   @Override
   public void deleteAll(Range keyRange) throws InvalidFieldException, IOException {
     LOG.trace("Table {}: DeleteAll with range {}", tableSchema.getTableId(), keyRange);
@@ -505,6 +563,48 @@ public class PostgresSqlStructuredTable implements StructuredTable {
     }
   }
 
+  /**
+   * Returns the fetch size for a scan with the given limit. Fetching more rows than the limit only wastes memory,
+   * hence the fetch size is capped by the limit.
+   */
+  private int getFetchSize(int limit) {
+    return Math.max(1, Math.min(limit, scanFetchSize));
+  }
+
+  /**
+   * Adds the given statement parameters to the last batch if it has the same sql query, or to a new batch otherwise.
+   */
+  private static void addToBatches(List<Map.Entry<String, List<Collection<Field<?>>>>> batches, String sqlQuery,
+                                   Collection<Field<?>> fields) {
+    Map.Entry<String, List<Collection<Field<?>>>> last = batches.isEmpty() ? null : batches.get(batches.size() - 1);
+    if (last == null || !last.getKey().equals(sqlQuery)) {
+      last = new AbstractMap.SimpleImmutableEntry<>(sqlQuery, new ArrayList<>());
+      batches.add(last);
+    }
+    last.getValue().add(fields);
+  }
+
+  /**
+   * Executes the given statement with each of the given collection of fields as parameters in a single JDBC batch.
+   *
+   * @param sqlQuery the statement to execute
+   * @param multiFields the statement parameters of each batch entry
+   * @param errorFormat the format of the error message, taking the table name and the fields as arguments
+   */
+  private void executeBatch(String sqlQuery, List<Collection<Field<?>>> multiFields,
+                            String errorFormat) throws IOException {
+    try (PreparedStatement statement = connection.prepareStatement(sqlQuery)) {
+      for (Collection<Field<?>> fields : multiFields) {
+        setFields(statement, fields, 1);
+        statement.addBatch();
+      }
+      LOG.trace("SQL statement: {} with batch size {}", sqlQuery, multiFields.size());
+      statement.executeBatch();
+    } catch (SQLException e) {
+      throw new IOException(String.format(errorFormat, tableSchema.getTableId().getName(), multiFields), e);
+    }
+  }
+
   /**
    * Read a row from the table. Null columns mean read from all columns.
    *
@@ -685,6 +785,24 @@ public class PostgresSqlStructuredTable implements StructuredTable {
         .append(";").toString();
   }
 
+  /**
+   * Get the query to scan the rows matching the given index value, ordered by the primary keys.
+   *
+   * @param index the index value
+   * @param limit limit number of row, {@link Integer#MAX_VALUE} for no limit
+   * @return the index scan query
+   */
+  private String getIndexScanQuery(Field<?> index, int limit) {
+    StringBuilder queryString = new StringBuilder("SELECT * FROM ")
+      .append(tableSchema.getTableId().getName())
+      .append(" WHERE ").append(getEqualsClause(Collections.singleton(index)))
+      .append(getOrderByClause(tableSchema.getPrimaryKeys()));
+    if (limit != Integer.MAX_VALUE) {
+      queryString.append(" LIMIT ").append(limit);
+    }
+    return queryString.append(";").toString();
+  }
+
   /**
    * Get the scan query for the range given. For example, if the range provides key1, key2 as the begin and end to
    * scan, both rows are inclusive, it will generate the following query:
@@ -17,6 +17,7 @@
 package io.cdap.cdap.spi.data.sql.jdbc;
 
 
+import com.google.common.annotations.VisibleForTesting;
 import com.google.common.base.Throwables;
 import com.google.inject.Inject;
 import com.google.inject.Provider;
@@ -92,16 +93,42 @@ public class DataSourceProvider implements Provider<DataSource> {
     Properties properties = retrieveJDBCConnectionProperties();
     LOG.info("Creating the DataSource with jdbc url: {}", jdbcUrl);
 
-    ConnectionFactory connectionFactory = new DriverManagerConnectionFactory(jdbcUrl, properties);
+    ConnectionFactory driverConnectionFactory = new DriverManagerConnectionFactory(jdbcUrl, properties);
+    this.dataSource = createDataSource(driverConnectionFactory,
+                                       cConf.getInt(Constants.Dataset.DATA_STORAGE_SQL_CONNECTION_SIZE),
+                                       cConf.getInt(Constants.Dataset.DATA_STORAGE_SQL_STATEMENT_CACHE_SIZE),
+                                       metricsCollectionService);
+    return this.dataSource;
+  }
+
+  /**
+   * Creates a pooling {@link DataSource} that emits metrics, with connections created by the given factory.
+   *
+   * @param driverConnectionFactory the factory to create physical connections
+   * @param maxConnections maximum number of connections in the pool
+   * @param statementCacheSize maximum number of prepared statements cached per connection, or 0 to disable the cache
+   * @param metricsCollectionService the service to emit metrics to
+   */
+  @VisibleForTesting
+  static DataSource createDataSource(ConnectionFactory driverConnectionFactory, int maxConnections,
+                                     int statementCacheSize, MetricsCollectionService metricsCollectionService) {
+    ConnectionFactory connectionFactory =
+      () -> new PreparedStatementCountingConnection(driverConnectionFactory.createConnection());
     PoolableConnectionFactory poolableConnectionFactory = new PoolableConnectionFactory(connectionFactory, null);
+
+    // Cache prepared statements per connection, keyed by the sql string. Since each sql string is generated from
+    // the table and the shape of the operation, repeated operations reuse the statement prepared in the database.
+    if (statementCacheSize > 0) {
+      poolableConnectionFactory.setPoolStatements(true);
+      poolableConnectionFactory.setMaxOpenPreparedStatements(statementCacheSize);
+    }
     // The GenericObjectPool is thread safe according to the javadoc,
     // the PoolingDataSource will be thread safe as long as the connectin pool is thread-safe
     GenericObjectPool<PoolableConnection> connectionPool = new GenericObjectPool<>(poolableConnectionFactory);
     poolableConnectionFactory.setPool(connectionPool);
-    connectionPool.setMaxTotal(cConf.getInt(Constants.Dataset.DATA_STORAGE_SQL_CONNECTION_SIZE));
+    connectionPool.setMaxTotal(maxConnections);
     PoolingDataSource<PoolableConnection> dataSource = new PoolingDataSource<>(connectionPool);
-    this.dataSource = new MetricsDataSource(dataSource, metricsCollectionService, connectionPool);
-    return this.dataSource;
+    return new MetricsDataSource(dataSource, metricsCollectionService, connectionPool);
   }
 
   private Properties retrieveJDBCConnectionProperties() {
@@ -0,0 +1,73 @@
+/*
+ * Copyright © 2020 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+
+package io.cdap.cdap.spi.data.sql.jdbc;
+
+import io.cdap.cdap.api.metrics.MetricsContext;
+import io.cdap.cdap.common.conf.Constants;
+import org.apache.commons.dbcp2.DelegatingConnection;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import javax.annotation.Nullable;
+
+/**
+ * A {@link Connection} handed out by the {@link MetricsDataSource}, which emits metrics about the prepared
+ * statement cache.
+ */
+final class MetricsConnection extends DelegatingConnection<Connection> {
+
+  private final MetricsContext metricsContext;
+  private final PreparedStatementCountingConnection countingConnection;
+
+  MetricsConnection(Connection connection, MetricsContext metricsContext) {
+    super(connection);
+    this.metricsContext = metricsContext;
+    this.countingConnection = findCountingConnection(connection);
+  }
+
+  @Override
+  public PreparedStatement prepareStatement(String sql) throws SQLException {
+    if (countingConnection == null) {
+      return super.prepareStatement(sql);
+    }
+
+    long preparedCount = countingConnection.getPreparedCount();
+    long startTime = System.nanoTime();
+    PreparedStatement statement = super.prepareStatement(sql);
+    metricsContext.increment(Constants.Metrics.StructuredTable.STATEMENT_PREPARE_TIME, System.nanoTime() - startTime);
+
+    // If the statement was served from the cache, no statement was prepared with the physical connection
+    if (countingConnection.getPreparedCount() == preparedCount) {
+      metricsContext.increment(Constants.Metrics.StructuredTable.STATEMENT_CACHE_HIT, 1L);
+    } else {
+      metricsContext.increment(Constants.Metrics.StructuredTable.STATEMENT_CACHE_MISS, 1L);
+    }
+    return statement;
+  }
+
+  @Nullable
+  private static PreparedStatementCountingConnection findCountingConnection(Connection connection) {
+    try {
+      return connection.unwrap(PreparedStatementCountingConnection.class);
+    } catch (SQLException e) {
+      // The connection is not created by the DataSourceProvider, hence no statement cache metrics
+      return null;
+    }
+  }
+}
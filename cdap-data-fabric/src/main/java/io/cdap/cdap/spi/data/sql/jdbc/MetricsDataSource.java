@@ -29,7 +29,7 @@ import java.util.logging.Logger;
 import javax.sql.DataSource;
 
 /**
- * A metrics data source that will emit metrics about the number of connections.
+ * A metrics data source that will emit metrics about the number of connections and the prepared statement cache.
  */
 public class MetricsDataSource implements DataSource {
   private final DataSource dataSource;
@@ -50,7 +50,7 @@ public class MetricsDataSource implements DataSource {
       Connection connection = dataSource.getConnection();
       metricsCollector.gauge(Constants.Metrics.StructuredTable.ACTIVE_CONNECTIONS, objectPool.getNumActive());
       metricsCollector.gauge(Constants.Metrics.StructuredTable.IDLE_CONNECTIONS, objectPool.getNumIdle());
-      return connection;
+      return new MetricsConnection(connection, metricsCollector);
     } catch (SQLException e) {
       metricsCollector.increment(Constants.Metrics.StructuredTable.ERROR_CONNECTIONS, 1L);
       throw e;
@@ -64,7 +64,7 @@ public class MetricsDataSource implements DataSource {
       Connection connection = dataSource.getConnection(username, password);
       metricsCollector.gauge(Constants.Metrics.StructuredTable.ACTIVE_CONNECTIONS, objectPool.getNumActive());
       metricsCollector.gauge(Constants.Metrics.StructuredTable.IDLE_CONNECTIONS, objectPool.getNumIdle());
-      return connection;
+      return new MetricsConnection(connection, metricsCollector);
     } catch (SQLException e) {
       metricsCollector.increment(Constants.Metrics.StructuredTable.ERROR_CONNECTIONS, 1L);
       throw e;
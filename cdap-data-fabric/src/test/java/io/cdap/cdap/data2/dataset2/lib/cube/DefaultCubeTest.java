@@ -16,33 +16,157 @@
 
 package io.cdap.cdap.data2.dataset2.lib.cube;
 
+import com.google.common.collect.ImmutableList;
 import com.google.common.collect.ImmutableMap;
+import io.cdap.cdap.api.dataset.lib.cube.AggregationFunction;
 import io.cdap.cdap.api.dataset.lib.cube.Cube;
+import io.cdap.cdap.api.dataset.lib.cube.CubeFact;
+import io.cdap.cdap.api.dataset.lib.cube.CubeQuery;
+import io.cdap.cdap.api.dataset.lib.cube.MeasureType;
+import io.cdap.cdap.api.dataset.lib.cube.TimeSeries;
+import io.cdap.cdap.api.dataset.lib.cube.TimeValue;
 import io.cdap.cdap.data2.dataset2.lib.table.inmemory.InMemoryMetricsTable;
 import io.cdap.cdap.data2.dataset2.lib.table.inmemory.InMemoryTableService;
 import io.cdap.cdap.data2.dataset2.lib.timeseries.EntityTable;
 import io.cdap.cdap.data2.dataset2.lib.timeseries.FactTable;
 
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
+import java.util.NavigableMap;
+import java.util.TreeMap;
+import java.util.concurrent.TimeUnit;
 
 /**
  *
  */
 public class DefaultCubeTest extends AbstractCubeTest {
 
+  @Test
+  public void testScanLimit() throws Exception {
+    Map<String, Aggregation> aggregations = ImmutableMap.of("agg",
+                                                            new DefaultAggregation(ImmutableList.of("dim1")));
+    // roll every second, so that each data point is scanned as a separate record
+    int numPoints = 1000;
+    DefaultCube cube = createCube("scanLimitCube", new int[] {1}, 1, aggregations, 4 * numPoints);
+    DefaultCube limitedCube = createCube("scanLimitCube", new int[] {1}, 1, aggregations, 1500);
+
+    List<CubeFact> facts = new ArrayList<>();
+    for (int ts = 0; ts < numPoints; ts++) {
+      for (String dim : new String[] {"a", "b"}) {
+        facts.add(new CubeFact(ts).addDimensionValue("dim1", dim)
+                    .addMeasurement("metric", MeasureType.COUNTER, ts % 10)
+                    .addMeasurement("gauge", MeasureType.GAUGE, ts));
+      }
+    }
+    cube.add(facts);
+
+    CubeQuery query = CubeQuery.builder()
+      .select()
+        .measurement("metric", AggregationFunction.SUM)
+        .measurement("gauge", AggregationFunction.MAX)
+      .from("agg").resolution(1, TimeUnit.SECONDS)
+      .where()
+        .timeRange(0, numPoints)
+      .groupBy()
+        .dimension("dim1")
+      .limit(Integer.MAX_VALUE)
+      .build();
+
+    // All records are within the scan limit, which is exactly the number of records
+    CubeQueryResult fullResult = cube.execute(query);
+    Assert.assertFalse(fullResult.isTruncated());
+    Map<String, TimeSeries> result = new HashMap<>();
+    for (TimeSeries timeSeries : fullResult.getTimeSeries()) {
+      result.put(timeSeries.getMeasureName() + ":" + timeSeries.getDimensionValues().get("dim1"), timeSeries);
+    }
+    Assert.assertEquals(4, result.size());
+    for (String dim : new String[] {"a", "b"}) {
+      List<TimeValue> sums = result.get("metric:" + dim).getTimeValues();
+      List<TimeValue> maxes = result.get("gauge:" + dim).getTimeValues();
+      Assert.assertEquals(numPoints, sums.size());
+      Assert.assertEquals(numPoints, maxes.size());
+      for (int ts = 0; ts < numPoints; ts++) {
+        Assert.assertEquals(new TimeValue(ts, ts % 10), sums.get(ts));
+        Assert.assertEquals(new TimeValue(ts, ts), maxes.get(ts));
+      }
+    }
+
+    // The scan stops at the limit of the cube, which is reported in the result
+    CubeQueryResult limitedResult = limitedCube.execute(query);
+    Assert.assertTrue(limitedResult.isTruncated());
+    int count = 0;
+    for (TimeSeries timeSeries : limitedResult.getTimeSeries()) {
+      count += timeSeries.getTimeValues().size();
+    }
+    Assert.assertEquals(1500, count);
+  }
+
+  @Test
+  public void testSparseAndUnorderedValues() throws Exception {
+    DefaultCube cube = createCube("sparseCube", new int[] {1}, 1,
+                                  ImmutableMap.of("agg", new DefaultAggregation(ImmutableList.of("dim1", "dim2"))),
+                                  DefaultCube.DEFAULT_MAX_RECORDS_TO_SCAN);
+
+    // The records of dim2 "y" are scanned after the ones of "x", and fall in between and after them
+    NavigableMap<Long, Long> expected = new TreeMap<>();
+    List<CubeFact> facts = new ArrayList<>();
+    for (long ts : new long[] {0, 2, 4, 10, 300, 302, 100000}) {
+      facts.add(new CubeFact(ts).addDimensionValues(ImmutableMap.of("dim1", "a", "dim2", "x"))
+                  .addMeasurement("metric", MeasureType.COUNTER, 1));
+      expected.merge(ts, 1L, Long::sum);
+    }
+    for (long ts : new long[] {1, 2, 3, 255, 256, 301, 5000000}) {
+      facts.add(new CubeFact(ts).addDimensionValues(ImmutableMap.of("dim1", "a", "dim2", "y"))
+                  .addMeasurement("metric", MeasureType.COUNTER, 10));
+      expected.merge(ts, 10L, Long::sum);
+    }
+    cube.add(facts);
+
+    CubeQuery query = CubeQuery.builder()
+      .select()
+        .measurement("metric", AggregationFunction.SUM)
+      .from("agg").resolution(1, TimeUnit.SECONDS)
+      .where()
+        .timeRange(0, 5000001)
+      .groupBy()
+        .dimension("dim1")
+      .limit(Integer.MAX_VALUE)
+      .build();
+
+    Collection<TimeSeries> result = cube.query(query);
+    Assert.assertEquals(1, result.size());
+    List<TimeValue> expectedValues = new ArrayList<>();
+    for (Map.Entry<Long, Long> entry : expected.entrySet()) {
+      expectedValues.add(new TimeValue(entry.getKey(), entry.getValue()));
+    }
+    Assert.assertEquals(expectedValues, result.iterator().next().getTimeValues());
+  }
+
   @Override
   protected Cube getCube(final String name, int[] resolutions, Map<String, ? extends Aggregation> aggregations) {
-    FactTableSupplier supplier = (resolution, rollTime) -> {
+    return createCube(name, resolutions, null, aggregations, DefaultCube.DEFAULT_MAX_RECORDS_TO_SCAN);
+  }
+
+  private DefaultCube createCube(String name, int[] resolutions, Integer rollTime,
+                                 Map<String, ? extends Aggregation> aggregations, int maxRecordsToScan) {
+    FactTableSupplier supplier = (resolution, defaultRollTime) -> {
       String entityTableName = "EntityTable-" + name;
       InMemoryTableService.create(entityTableName);
       String dataTableName = "DataTable-" + name + "-" + resolution;
       InMemoryTableService.create(dataTableName);
       return new FactTable(new InMemoryMetricsTable(dataTableName),
                            new EntityTable(new InMemoryMetricsTable(entityTableName)),
-                           resolution, rollTime);
+                           resolution, rollTime == null ? defaultRollTime : rollTime);
 
     };
 
-    return new DefaultCube(resolutions, supplier, aggregations, ImmutableMap.<String, AggregationAlias>of());
+    return new DefaultCube(resolutions, supplier, aggregations, ImmutableMap.<String, AggregationAlias>of(),
+                           maxRecordsToScan);
   }
 }
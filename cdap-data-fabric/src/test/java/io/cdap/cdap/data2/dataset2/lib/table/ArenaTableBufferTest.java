@@ -0,0 +1,269 @@
+/*
+ * Copyright © 2020 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+
+package io.cdap.cdap.data2.dataset2.lib.table;
+
+import io.cdap.cdap.api.common.Bytes;
+import org.junit.Assert;
+import org.junit.ClassRule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.Random;
+import java.util.TreeMap;
+import javax.annotation.Nullable;
+
+/**
+ * Tests for {@link ArenaTableBuffer}.
+ */
+public class ArenaTableBufferTest {
+
+  @ClassRule
+  public static final TemporaryFolder TMP_FOLDER = new TemporaryFolder();
+
+  @Test
+  public void testPutDelete() throws Exception {
+    try (ArenaTableBuffer buffer = new ArenaTableBuffer(2, 0L, TMP_FOLDER.newFolder())) {
+      Assert.assertTrue(buffer.isEmpty());
+      buffer.put(b("r1"), new byte[][] { b("c1"), b("c2") }, new byte[][] { b("v1"), b("v2") });
+      Assert.assertFalse(buffer.isEmpty());
+      // overwrite and delete columns that are already written into runs
+      buffer.put(b("r1"), new byte[][] { b("c1"), b("c2") }, new byte[][] { b("v3"), null });
+      buffer.put(b("r2"), new byte[][] { b("c1") }, new byte[][] { b("") });
+
+      Assert.assertEquals(toString(row("c1", "put:v3", "c2", "delete")), toString(buffer.getRow(b("r1"))));
+      Assert.assertEquals(toString(row("c1", "put:")), toString(buffer.getRow(b("r2"))));
+      Assert.assertNull(buffer.getRow(b("r0")));
+      Assert.assertNull(buffer.getRow(b("r3")));
+
+      buffer.clear();
+      Assert.assertTrue(buffer.isEmpty());
+      Assert.assertNull(buffer.getRow(b("r1")));
+    }
+  }
+
+  @Test
+  public void testIncrement() throws Exception {
+    try (ArenaTableBuffer buffer = new ArenaTableBuffer(1, 0L, TMP_FOLDER.newFolder())) {
+      buffer.increment(b("r"), new byte[][] { b("c1") }, new long[] { 1L });
+      buffer.increment(b("r"), new byte[][] { b("c1") }, new long[] { 2L });
+      Assert.assertEquals(toString(row("c1", "increment:3")), toString(buffer.getRow(b("r"))));
+
+      // increment on top of a put is a put of the sum
+      buffer.put(b("r"), new byte[][] { b("c2") }, new byte[][] { Bytes.toBytes(10L) });
+      buffer.increment(b("r"), new byte[][] { b("c2") }, new long[] { 5L });
+      Assert.assertEquals(15L, Bytes.toLong(((PutValue) buffer.getRow(b("r")).get(b("c2"))).getValue()));
+
+      // increment on top of a value that is not a long must fail, even if the value is in a run already
+      buffer.put(b("r"), new byte[][] { b("c3") }, new byte[][] { b("abc") });
+      try {
+        buffer.increment(b("r"), new byte[][] { b("c3") }, new long[] { 1L });
+        Assert.fail("Expected NumberFormatException");
+      } catch (NumberFormatException e) {
+        // expected
+      }
+    }
+  }
+
+  @Test
+  public void testScan() throws Exception {
+    try (ArenaTableBuffer buffer = new ArenaTableBuffer(3, 0L, TMP_FOLDER.newFolder())) {
+      for (int i = 9; i >= 0; i--) {
+        buffer.put(b("r" + i), new byte[][] { b("c" + i), b("d") }, new byte[][] { b("v" + i), b("w" + i) });
+      }
+      buffer.put(b("r5"), new byte[][] { b("d") }, new byte[][] { null });
+
+      Assert.assertEquals(10, countRows(buffer.getRows(null, null)));
+      Assert.assertEquals(3, countRows(buffer.getRows(b("r7"), null)));
+      Assert.assertEquals(4, countRows(buffer.getRows(null, b("r4"))));
+      Assert.assertEquals(2, countRows(buffer.getRows(b("r4"), b("r6"))));
+      Assert.assertEquals(0, countRows(buffer.getRows(b("s"), null)));
+
+      Iterator<Map.Entry<byte[], NavigableMap<byte[], Update>>> rows = buffer.getRows(b("r5"), b("r6"));
+      Map.Entry<byte[], NavigableMap<byte[], Update>> row = rows.next();
+      Assert.assertArrayEquals(b("r5"), row.getKey());
+      Assert.assertEquals(toString(row("c5", "put:v5", "d", "delete")), toString(row.getValue()));
+      Assert.assertFalse(rows.hasNext());
+
+      // batches cover all changes in order
+      List<String> batched = new ArrayList<>();
+      for (NavigableMap<byte[], NavigableMap<byte[], Update>> batch : buffer.getBatches()) {
+        Assert.assertFalse(batch.isEmpty());
+        for (Map.Entry<byte[], NavigableMap<byte[], Update>> entry : batch.entrySet()) {
+          batched.add(Bytes.toString(entry.getKey()) + toString(entry.getValue()));
+        }
+      }
+      List<String> scanned = new ArrayList<>();
+      rows = buffer.getRows(null, null);
+      while (rows.hasNext()) {
+        Map.Entry<byte[], NavigableMap<byte[], Update>> entry = rows.next();
+        scanned.add(Bytes.toString(entry.getKey()) + toString(entry.getValue()));
+      }
+      Assert.assertEquals(scanned, batched);
+    }
+  }
+
+  @Test
+  public void testSpill() throws Exception {
+    File spillDir = TMP_FOLDER.newFolder();
+    try (ArenaTableBuffer buffer = new ArenaTableBuffer(16, 256L, spillDir)) {
+      for (int i = 0; i < 1000; i++) {
+        buffer.put(Bytes.toBytes(i % 100), new byte[][] { Bytes.toBytes(i) }, new byte[][] { Bytes.toBytes("v" + i) });
+        buffer.increment(Bytes.toBytes(i % 100), new byte[][] { b("count") }, new long[] { 1L });
+      }
+      // spilled runs are merged once there are too many of them
+      Assert.assertTrue(buffer.getSpilledRuns() > 0);
+      Assert.assertTrue(buffer.getSpilledRuns() <= ArenaTableBuffer.MAX_FILE_RUNS);
+
+      Assert.assertEquals(100, countRows(buffer.getRows(null, null)));
+      NavigableMap<byte[], Update> row = buffer.getRow(Bytes.toBytes(42));
+      Assert.assertNotNull(row);
+      Assert.assertEquals(11, row.size());
+      Assert.assertEquals(10L, (long) ((IncrementValue) row.get(b("count"))).getValue());
+      Assert.assertEquals("v542", Bytes.toString(((PutValue) row.get(Bytes.toBytes(542))).getValue()));
+    }
+    // spilled files don't stay in the spill directory
+    String[] files = spillDir.list();
+    Assert.assertNotNull(files);
+    Assert.assertEquals(0, files.length);
+  }
+
+  @Test
+  public void testSameAsMapBuffer() throws Exception {
+    Random random = new Random(1234L);
+    File spillDir = TMP_FOLDER.newFolder();
+    for (long spillThreshold : new long[] { 0L, 1024L }) {
+      try (
+        TableBuffer expected = new MapTableBuffer();
+        TableBuffer actual = new ArenaTableBuffer(7, spillThreshold, spillDir)
+      ) {
+        for (int i = 0; i < 5000; i++) {
+          byte[] row = Bytes.toBytes("r" + random.nextInt(50));
+          byte[][] columns = new byte[1 + random.nextInt(3)][];
+          for (int j = 0; j < columns.length; j++) {
+            columns[j] = Bytes.toBytes("c" + random.nextInt(10));
+          }
+          if (random.nextInt(3) == 0) {
+            long[] amounts = new long[columns.length];
+            for (int j = 0; j < amounts.length; j++) {
+              amounts[j] = random.nextInt(100);
+            }
+            Exception expectedFailure = increment(expected, row, columns, amounts);
+            Exception actualFailure = increment(actual, row, columns, amounts);
+            Assert.assertEquals(expectedFailure == null, actualFailure == null);
+          } else {
+            byte[][] values = new byte[columns.length][];
+            for (int j = 0; j < values.length; j++) {
+              int choice = random.nextInt(4);
+              values[j] = choice == 0 ? null : choice == 1 ? Bytes.toBytes((long) i) : Bytes.toBytes("v" + i);
+            }
+            expected.put(row, columns, values);
+            actual.put(row, columns, values);
+          }
+          if (i % 500 == 0) {
+            byte[] readRow = Bytes.toBytes("r" + random.nextInt(50));
+            Assert.assertEquals(toString(expected.getRow(readRow)), toString(actual.getRow(readRow)));
+          }
+        }
+        Assert.assertEquals(toString(expected.getRows(null, null)), toString(actual.getRows(null, null)));
+        Assert.assertEquals(toString(expected.getRows(b("r2"), b("r3"))), toString(actual.getRows(b("r2"), b("r3"))));
+      }
+    }
+  }
+
+  @Nullable
+  private static Exception increment(TableBuffer buffer, byte[] row, byte[][] columns, long[] amounts) {
+    try {
+      // increment the columns one by one, since a failure leaves the preceding columns incremented
+      for (int i = 0; i < columns.length; i++) {
+        buffer.increment(row, new byte[][] { columns[i] }, new long[] { amounts[i] });
+      }
+      return null;
+    } catch (NumberFormatException e) {
+      return e;
+    }
+  }
+
+  private static int countRows(Iterator<?> rows) {
+    int count = 0;
+    while (rows.hasNext()) {
+      rows.next();
+      count++;
+    }
+    return count;
+  }
+
+  private static String toString(Iterator<Map.Entry<byte[], NavigableMap<byte[], Update>>> rows) {
+    StringBuilder builder = new StringBuilder();
+    while (rows.hasNext()) {
+      Map.Entry<byte[], NavigableMap<byte[], Update>> row = rows.next();
+      builder.append(Bytes.toStringBinary(row.getKey())).append(toString(row.getValue())).append('\n');
+    }
+    return builder.toString();
+  }
+
+  @Nullable
+  private static String toString(@Nullable Map<byte[], Update> row) {
+    if (row == null) {
+      return null;
+    }
+    StringBuilder builder = new StringBuilder("{");
+    for (Map.Entry<byte[], Update> column : row.entrySet()) {
+      builder.append(Bytes.toStringBinary(column.getKey())).append('=');
+      Update update = column.getValue();
+      if (update instanceof IncrementValue) {
+        builder.append("increment:").append(((IncrementValue) update).getValue());
+      } else if (((PutValue) update).getValue() == null) {
+        builder.append("delete");
+      } else {
+        builder.append("put:").append(Bytes.toStringBinary(((PutValue) update).getValue()));
+      }
+      builder.append(',');
+    }
+    return builder.append('}').toString();
+  }
+
+  private static byte[] b(String str) {
+    return Bytes.toBytes(str);
+  }
+
+  /**
+   * Builds the changes of a row from column names and their rendered updates.
+   */
+  private static Map<byte[], Update> row(String... columnsAndUpdates) {
+    Map<byte[], Update> row = new TreeMap<>(Bytes.BYTES_COMPARATOR);
+    for (int i = 0; i < columnsAndUpdates.length; i += 2) {
+      String update = columnsAndUpdates[i + 1];
+      Update value;
+      if (update.equals("delete")) {
+        value = new PutValue(null);
+      } else if (update.startsWith("increment:")) {
+        value = new IncrementValue(Long.parseLong(update.substring("increment:".length())));
+      } else {
+        value = new PutValue(b(update.substring("put:".length())));
+      }
+      row.put(b(columnsAndUpdates[i]), value);
+    }
+    return row;
+  }
+}
@@ -0,0 +1,53 @@
+/*
+ * Copyright © 2020 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+
+package io.cdap.cdap.data2.dataset2.lib.table.inmemory;
+
+import io.cdap.cdap.api.dataset.DatasetContext;
+import io.cdap.cdap.api.dataset.DatasetProperties;
+import io.cdap.cdap.api.dataset.DatasetSpecification;
+import io.cdap.cdap.common.conf.CConfiguration;
+import io.cdap.cdap.data2.dataset2.lib.table.BufferingTable;
+import org.junit.ClassRule;
+import org.junit.rules.TemporaryFolder;
+
+import java.util.Map;
+
+/**
+ * Runs the {@link InMemoryTableTest} with the changes buffered in compact buffers, which are flushed and spilled
+ * to disk frequently.
+ */
+public class InMemoryCompactBufferTableTest extends InMemoryTableTest {
+
+  @ClassRule
+  public static final TemporaryFolder TMP_FOLDER = new TemporaryFolder();
+
+  private static final CConfiguration cConf = CConfiguration.create();
+
+  @Override
+  protected InMemoryTable getTable(DatasetContext datasetContext, String name,
+                                   DatasetProperties props, Map<String, String> runtimeArguments) throws Exception {
+    DatasetSpecification spec = DatasetSpecification.builder(name, "table")
+      .properties(props.getProperties())
+      .property(BufferingTable.PROPERTY_COMPACT_BUFFER, "true")
+      .property(BufferingTable.PROPERTY_BUFFER_FLUSH_CELLS, "4")
+      .property(BufferingTable.PROPERTY_BUFFER_SPILL_THRESHOLD_BYTES, "256")
+      .property(BufferingTable.PROPERTY_BUFFER_SPILL_DIR, TMP_FOLDER.getRoot().getAbsolutePath())
+      .build();
+    return new InMemoryTable(datasetContext, spec, cConf);
+  }
+}
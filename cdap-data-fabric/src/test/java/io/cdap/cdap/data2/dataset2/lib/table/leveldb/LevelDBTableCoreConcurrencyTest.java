@@ -0,0 +1,192 @@
+/*
+ * Copyright © 2020 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+
+package io.cdap.cdap.data2.dataset2.lib.table.leveldb;
+
+import com.google.common.collect.ImmutableMap;
+import io.cdap.cdap.api.common.Bytes;
+import io.cdap.cdap.common.conf.CConfiguration;
+import io.cdap.cdap.common.conf.Constants;
+import org.junit.AfterClass;
+import org.junit.Assert;
+import org.junit.BeforeClass;
+import org.junit.ClassRule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.NavigableMap;
+import java.util.TreeMap;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Tests concurrent read-modify-write operations of {@link LevelDBTableCore} and compares the throughput
+ * of the per-row locking with a single table-wide lock.
+ */
+public class LevelDBTableCoreConcurrencyTest {
+
+  private static final Logger LOG = LoggerFactory.getLogger(LevelDBTableCoreConcurrencyTest.class);
+
+  private static final byte[] COLUMN = Bytes.toBytes("c");
+  private static final int THREADS = 8;
+  private static final int ROWS = 50;
+  private static final int INCREMENTS_PER_THREAD = 500;
+
+  @ClassRule
+  public static final TemporaryFolder TMP_FOLDER = new TemporaryFolder();
+
+  private static LevelDBTableService service;
+
+  @BeforeClass
+  public static void init() throws Exception {
+    CConfiguration cConf = CConfiguration.create();
+    cConf.set(Constants.CFG_DATA_LEVELDB_DIR, TMP_FOLDER.newFolder().getAbsolutePath());
+    service = LevelDBTableService.getInstance();
+    service.setConfiguration(cConf);
+  }
+
+  @AfterClass
+  public static void finish() {
+    service.close();
+  }
+
+  @Test
+  public void testConcurrentIncrements() throws Exception {
+    String tableName = "testConcurrentIncrements";
+    service.ensureTableExists(tableName);
+
+    // Each thread uses its own LevelDBTableCore to verify that locking is shared across instances of the same table
+    runConcurrently(THREADS, threadId -> {
+      LevelDBTableCore core = new LevelDBTableCore(tableName, service);
+      for (int i = 0; i < INCREMENTS_PER_THREAD; i++) {
+        if (i % 2 == 0) {
+          core.increment(Bytes.toBytes(i % ROWS), ImmutableMap.of(COLUMN, 1L));
+        } else {
+          // multi-row increments touching two rows in different order across threads
+          NavigableMap<byte[], NavigableMap<byte[], Long>> updates = new TreeMap<>(Bytes.BYTES_COMPARATOR);
+          NavigableMap<byte[], Long> columns = new TreeMap<>(Bytes.BYTES_COMPARATOR);
+          columns.put(COLUMN, 1L);
+          updates.put(Bytes.toBytes(i % ROWS), columns);
+          updates.put(Bytes.toBytes((i + threadId + 1) % ROWS), columns);
+          core.increment(updates);
+        }
+      }
+    });
+
+    LevelDBTableCore core = new LevelDBTableCore(tableName, service);
+    long total = 0;
+    for (int i = 0; i < ROWS; i++) {
+      total += Bytes.toLong(core.getRow(Bytes.toBytes(i), new byte[][] { COLUMN }, null, null, -1, null).get(COLUMN));
+    }
+    // even iterations increment one row, odd iterations increment two rows
+    Assert.assertEquals(THREADS * (INCREMENTS_PER_THREAD / 2) * 3L, total);
+  }
+
+  @Test
+  public void testConcurrentSwaps() throws Exception {
+    String tableName = "testConcurrentSwaps";
+    service.ensureTableExists(tableName);
+    byte[] row = Bytes.toBytes("row");
+    new LevelDBTableCore(tableName, service).swap(row, COLUMN, null, Bytes.toBytes(0L));
+
+    // Implements a counter with compare-and-swap. Lost updates would make the final count lower.
+    runConcurrently(THREADS, threadId -> {
+      LevelDBTableCore core = new LevelDBTableCore(tableName, service);
+      for (int i = 0; i < INCREMENTS_PER_THREAD / 10; i++) {
+        while (true) {
+          byte[] existing = core.getRow(row, new byte[][] { COLUMN }, null, null, -1, null).get(COLUMN);
+          if (core.swap(row, COLUMN, existing, Bytes.toBytes(Bytes.toLong(existing) + 1))) {
+            break;
+          }
+        }
+      }
+    });
+
+    byte[] value = new LevelDBTableCore(tableName, service).getRow(row, new byte[][] { COLUMN },
+                                                                   null, null, -1, null).get(COLUMN);
+    Assert.assertEquals(THREADS * (INCREMENTS_PER_THREAD / 10), Bytes.toLong(value));
+  }
+
+  @Test
+  public void testIncrementThroughput() throws Exception {
+    String tableName = "testIncrementThroughput";
+    service.ensureTableExists(tableName);
+    LevelDBTableCore core = new LevelDBTableCore(tableName, service);
+
+    // The single lock emulates the previous behavior of synchronizing every increment on the table
+    Object tableLock = new Object();
+    long singleLockNanos = runConcurrently(THREADS, threadId -> {
+      for (int i = 0; i < INCREMENTS_PER_THREAD; i++) {
+        synchronized (tableLock) {
+          core.increment(Bytes.toBytes(threadId * ROWS + i % ROWS), ImmutableMap.of(COLUMN, 1L));
+        }
+      }
+    });
+    long rowLockNanos = runConcurrently(THREADS, threadId -> {
+      for (int i = 0; i < INCREMENTS_PER_THREAD; i++) {
+        core.increment(Bytes.toBytes(threadId * ROWS + i % ROWS), ImmutableMap.of(COLUMN, 1L));
+      }
+    });
+
+    long ops = (long) THREADS * INCREMENTS_PER_THREAD;
+    LOG.info("Increment throughput with {} threads: table lock {} ops/s, row locks {} ops/s", THREADS,
+             ops * TimeUnit.SECONDS.toNanos(1) / singleLockNanos, ops * TimeUnit.SECONDS.toNanos(1) / rowLockNanos);
+
+    for (int row = 0; row < THREADS * ROWS; row++) {
+      byte[] value = core.getRow(Bytes.toBytes(row), new byte[][] { COLUMN }, null, null, -1, null).get(COLUMN);
+      Assert.assertEquals(2L * INCREMENTS_PER_THREAD / ROWS, Bytes.toLong(value));
+    }
+  }
+
+  /**
+   * Runs the given task concurrently in the given number of threads and returns the elapsed time in nanoseconds.
+   */
+  private long runConcurrently(int threads, ThreadTask task) throws Exception {
+    ExecutorService executor = Executors.newFixedThreadPool(threads);
+    try {
+      List<Callable<Void>> callables = new ArrayList<>();
+      for (int i = 0; i < threads; i++) {
+        int threadId = i;
+        callables.add(() -> {
+          task.run(threadId);
+          return null;
+        });
+      }
+      long startTime = System.nanoTime();
+      for (Future<Void> future : executor.invokeAll(callables)) {
+        future.get();
+      }
+      return System.nanoTime() - startTime;
+    } finally {
+      executor.shutdownNow();
+    }
+  }
+
+  /**
+   * Task to be executed by each thread in {@link #runConcurrently(int, ThreadTask)}.
+   */
+  private interface ThreadTask {
+    void run(int threadId) throws Exception;
+  }
+}
@@ -0,0 +1,70 @@
+/*
+ * Copyright © 2020 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package io.cdap.cdap.spi.data.common;
+
+import io.cdap.cdap.api.metrics.MetricsContext;
+import io.cdap.cdap.common.metrics.NoOpMetricsCollectionService;
+
+import java.util.Collections;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * A metrics collection service for tests that sums up the increments of each metric, regardless of the context.
+ */
+public class CountingMetricsCollectionService extends NoOpMetricsCollectionService {
+
+  private final ConcurrentMap<String, Long> counts = new ConcurrentHashMap<>();
+
+  /**
+   * Returns the sum of the increments of the given metric.
+   */
+  public long getCount(String metricName) {
+    return counts.getOrDefault(metricName, 0L);
+  }
+
+  @Override
+  public MetricsContext getContext(Map<String, String> tags) {
+    return new MetricsContext() {
+      @Override
+      public void increment(String metricName, long value) {
+        counts.merge(metricName, value, Long::sum);
+      }
+
+      @Override
+      public void gauge(String metricName, long value) {
+        // no-op
+      }
+
+      @Override
+      public MetricsContext childContext(Map<String, String> tags) {
+        return this;
+      }
+
+      @Override
+      public MetricsContext childContext(String tagName, String tagValue) {
+        return this;
+      }
+
+      @Override
+      public Map<String, String> getTags() {
+        return Collections.emptyMap();
+      }
+    };
+  }
+}
@@ -26,12 +26,14 @@ import io.cdap.cdap.data2.dataset2.DatasetFrameworkTestUtil;
 import io.cdap.cdap.data2.dataset2.lib.table.MDSKey;
 import io.cdap.cdap.spi.data.StructuredTableAdmin;
 import io.cdap.cdap.spi.data.StructuredTableTest;
+import io.cdap.cdap.spi.data.common.CountingMetricsCollectionService;
 import io.cdap.cdap.spi.data.table.StructuredTableRegistry;
 import io.cdap.cdap.spi.data.table.StructuredTableSchema;
 import io.cdap.cdap.spi.data.transaction.TransactionRunner;
 import org.apache.hadoop.conf.Configuration;
 import org.apache.hadoop.hbase.HBaseConfiguration;
 import org.apache.tephra.TransactionManager;
+import org.apache.tephra.TransactionSystemClient;
 import org.junit.AfterClass;
 import org.junit.Assert;
 import org.junit.BeforeClass;
@@ -92,6 +94,22 @@ public class NoSqlStructuredTableTest extends StructuredTableTest {
     }
   }
 
+  @Test
+  public void testBatchWritesThroughContext() throws Exception {
+    CountingMetricsCollectionService metricsCollectionService = new CountingMetricsCollectionService();
+    TransactionRunner runner = new NoSqlTransactionRunner(
+      noSqlTableAdmin, dsFrameworkUtil.getInjector().getInstance(TransactionSystemClient.class),
+      metricsCollectionService, dsFrameworkUtil.getConfiguration());
+    writeAndDeleteInBatches(runner, 10);
+
+    // the batches are passed to the table as a whole instead of being written row by row
+    String prefix = Constants.Metrics.StructuredTable.METRICS_PREFIX + SIMPLE_TABLE.getName() + ".";
+    Assert.assertEquals(1L, metricsCollectionService.getCount(prefix + "multi.upsert.count"));
+    Assert.assertEquals(10L, metricsCollectionService.getCount(prefix + "upsert.count"));
+    Assert.assertEquals(1L, metricsCollectionService.getCount(prefix + "multi.delete.count"));
+    Assert.assertEquals(10L, metricsCollectionService.getCount(prefix + "delete.count"));
+  }
+
   @Test
   public void testScannerIteratorSingle() throws Exception {
     testScannerIterator(1);
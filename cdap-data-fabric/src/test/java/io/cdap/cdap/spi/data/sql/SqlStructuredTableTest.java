@@ -20,20 +20,21 @@ package io.cdap.cdap.spi.data.sql;
 import com.google.inject.AbstractModule;
 import com.google.inject.Guice;
 import com.google.inject.Injector;
-import com.google.inject.Scopes;
 import com.opentable.db.postgres.embedded.EmbeddedPostgres;
 import io.cdap.cdap.api.metrics.MetricsCollectionService;
 import io.cdap.cdap.common.conf.CConfiguration;
+import io.cdap.cdap.common.conf.Constants;
 import io.cdap.cdap.common.guice.ConfigModule;
-import io.cdap.cdap.common.metrics.NoOpMetricsCollectionService;
 import io.cdap.cdap.data.runtime.StorageModule;
 import io.cdap.cdap.spi.data.StructuredTableAdmin;
 import io.cdap.cdap.spi.data.StructuredTableTest;
+import io.cdap.cdap.spi.data.common.CountingMetricsCollectionService;
 import io.cdap.cdap.spi.data.table.StructuredTableRegistry;
 import io.cdap.cdap.spi.data.transaction.TransactionRunner;
 import org.junit.AfterClass;
 import org.junit.Assert;
 import org.junit.BeforeClass;
+import org.junit.Test;
 
 import java.io.IOException;
 
@@ -44,11 +45,13 @@ public class SqlStructuredTableTest extends StructuredTableTest {
   private static EmbeddedPostgres pg;
   private static StructuredTableAdmin tableAdmin;
   private static TransactionRunner transactionRunner;
+  private static CountingMetricsCollectionService metricsCollectionService;
 
   @BeforeClass
   public static void beforeClass() throws Exception {
     CConfiguration cConf = CConfiguration.create();
     pg = PostgresInstantiator.createAndStart(cConf, TEMP_FOLDER.newFolder());
+    metricsCollectionService = new CountingMetricsCollectionService();
 
     Injector injector = Guice.createInjector(
       new ConfigModule(cConf),
@@ -56,7 +59,7 @@ public class SqlStructuredTableTest extends StructuredTableTest {
       new AbstractModule() {
         @Override
         protected void configure() {
-          bind(MetricsCollectionService.class).to(NoOpMetricsCollectionService.class).in(Scopes.SINGLETON);
+          bind(MetricsCollectionService.class).toInstance(metricsCollectionService);
         }
       }
     );
@@ -76,6 +79,23 @@ public class SqlStructuredTableTest extends StructuredTableTest {
     }
   }
 
+  @Test
+  public void testBatchWritesThroughContext() throws Exception {
+    String prefix = Constants.Metrics.StructuredTable.METRICS_PREFIX + SIMPLE_TABLE.getName() + ".";
+    long multiUpserts = metricsCollectionService.getCount(prefix + "multi.upsert.count");
+    long upserts = metricsCollectionService.getCount(prefix + "upsert.count");
+    long multiDeletes = metricsCollectionService.getCount(prefix + "multi.delete.count");
+    long deletes = metricsCollectionService.getCount(prefix + "delete.count");
+
+    writeAndDeleteInBatches(transactionRunner, 10);
+
+    // the batches are passed to the table as a whole instead of being written row by row
+    Assert.assertEquals(multiUpserts + 1, metricsCollectionService.getCount(prefix + "multi.upsert.count"));
+    Assert.assertEquals(upserts + 10, metricsCollectionService.getCount(prefix + "upsert.count"));
+    Assert.assertEquals(multiDeletes + 1, metricsCollectionService.getCount(prefix + "multi.delete.count"));
+    Assert.assertEquals(deletes + 10, metricsCollectionService.getCount(prefix + "delete.count"));
+  }
+
   @Override
   protected StructuredTableAdmin getStructuredTableAdmin() {
     return tableAdmin;
@@ -0,0 +1,184 @@
+/*
+ * Copyright © 2020 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+
+package io.cdap.cdap.spi.data.sql.jdbc;
+
+import io.cdap.cdap.api.metrics.MetricsContext;
+import io.cdap.cdap.common.conf.Constants;
+import io.cdap.cdap.common.metrics.NoOpMetricsCollectionService;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.util.Collections;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import javax.sql.DataSource;
+
+/**
+ * Tests for the prepared statement cache and the metrics of the {@link DataSource} created by the
+ * {@link DataSourceProvider}.
+ */
+public class MetricsDataSourceTest {
+
+  @Test
+  public void testStatementCacheHit() throws Exception {
+    AtomicInteger prepared = new AtomicInteger();
+    Map<String, AtomicLong> metrics = new ConcurrentHashMap<>();
+    DataSource dataSource = DataSourceProvider.createDataSource(() -> createConnection(prepared), 1, 10,
+                                                                new TestMetricsCollectionService(metrics));
+
+    try (Connection connection = dataSource.getConnection()) {
+      for (int i = 0; i < 3; i++) {
+        connection.prepareStatement("SELECT * FROM t1;").close();
+      }
+    }
+    // the statement is cached across connection checkouts
+    try (Connection connection = dataSource.getConnection()) {
+      connection.prepareStatement("SELECT * FROM t1;").close();
+      connection.prepareStatement("SELECT * FROM t2;").close();
+    }
+
+    Assert.assertEquals(2, prepared.get());
+    Assert.assertEquals(2L, getMetric(metrics, Constants.Metrics.StructuredTable.STATEMENT_CACHE_MISS));
+    Assert.assertEquals(3L, getMetric(metrics, Constants.Metrics.StructuredTable.STATEMENT_CACHE_HIT));
+    Assert.assertTrue(metrics.containsKey(Constants.Metrics.StructuredTable.STATEMENT_PREPARE_TIME));
+  }
+
+  @Test
+  public void testStatementCacheEviction() throws Exception {
+    AtomicInteger prepared = new AtomicInteger();
+    Map<String, AtomicLong> metrics = new ConcurrentHashMap<>();
+    DataSource dataSource = DataSourceProvider.createDataSource(() -> createConnection(prepared), 1, 2,
+                                                                new TestMetricsCollectionService(metrics));
+
+    try (Connection connection = dataSource.getConnection()) {
+      for (int i = 1; i <= 3; i++) {
+        connection.prepareStatement("SELECT * FROM t" + i + ";").close();
+      }
+      Assert.assertEquals(3, prepared.get());
+
+      // the cache only holds two statements, hence some statement was evicted and has to be prepared again
+      for (int i = 1; i <= 3; i++) {
+        connection.prepareStatement("SELECT * FROM t" + i + ";").close();
+      }
+      Assert.assertTrue(prepared.get() > 3);
+    }
+    Assert.assertEquals(prepared.get(), getMetric(metrics, Constants.Metrics.StructuredTable.STATEMENT_CACHE_MISS));
+    Assert.assertEquals(6L - prepared.get(), getMetric(metrics, Constants.Metrics.StructuredTable.STATEMENT_CACHE_HIT));
+  }
+
+  @Test
+  public void testStatementCacheDisabled() throws Exception {
+    AtomicInteger prepared = new AtomicInteger();
+    Map<String, AtomicLong> metrics = new ConcurrentHashMap<>();
+    DataSource dataSource = DataSourceProvider.createDataSource(() -> createConnection(prepared), 1, 0,
+                                                                new TestMetricsCollectionService(metrics));
+
+    try (Connection connection = dataSource.getConnection()) {
+      connection.prepareStatement("SELECT * FROM t1;").close();
+      connection.prepareStatement("SELECT * FROM t1;").close();
+    }
+    Assert.assertEquals(2, prepared.get());
+    Assert.assertEquals(2L, getMetric(metrics, Constants.Metrics.StructuredTable.STATEMENT_CACHE_MISS));
+    Assert.assertEquals(0L, getMetric(metrics, Constants.Metrics.StructuredTable.STATEMENT_CACHE_HIT));
+  }
+
+  private static long getMetric(Map<String, AtomicLong> metrics, String name) {
+    AtomicLong value = metrics.get(name);
+    return value == null ? 0L : value.get();
+  }
+
+  /**
+   * Creates a {@link Connection} that counts the prepared statements and otherwise does nothing.
+   */
+  private static Connection createConnection(AtomicInteger prepared) throws SQLException {
+    return (Connection) Proxy.newProxyInstance(
+      MetricsDataSourceTest.class.getClassLoader(), new Class<?>[] { Connection.class }, (proxy, method, args) -> {
+        if (method.getName().equals("prepareStatement")) {
+          prepared.incrementAndGet();
+          return Proxy.newProxyInstance(MetricsDataSourceTest.class.getClassLoader(),
+                                        new Class<?>[] { PreparedStatement.class },
+                                        (stmt, stmtMethod, stmtArgs) -> defaultValue(stmtMethod.getReturnType()));
+        }
+        if (method.getName().equals("getAutoCommit")) {
+          return true;
+        }
+        return defaultValue(method.getReturnType());
+      });
+  }
+
+  private static Object defaultValue(Class<?> type) {
+    if (type == boolean.class) {
+      return false;
+    }
+    if (type == int.class) {
+      return 0;
+    }
+    if (type == long.class) {
+      return 0L;
+    }
+    return null;
+  }
+
+  /**
+   * A metrics collection service that collects all the increments.
+   */
+  private static final class TestMetricsCollectionService extends NoOpMetricsCollectionService {
+
+    private final Map<String, AtomicLong> metrics;
+
+    TestMetricsCollectionService(Map<String, AtomicLong> metrics) {
+      this.metrics = metrics;
+    }
+
+    @Override
+    public MetricsContext getContext(Map<String, String> tags) {
+      return new MetricsContext() {
+        @Override
+        public void increment(String metricName, long value) {
+          metrics.computeIfAbsent(metricName, k -> new AtomicLong()).addAndGet(value);
+        }
+
+        @Override
+        public void gauge(String metricName, long value) {
+          // no-op
+        }
+
+        @Override
+        public MetricsContext childContext(Map<String, String> tags) {
+          return this;
+        }
+
+        @Override
+        public MetricsContext childContext(String tagName, String tagValue) {
+          return this;
+        }
+
+        @Override
+        public Map<String, String> getTags() {
+          return Collections.emptyMap();
+        }
+      };
+    }
+  }
+}
@@ -0,0 +1,101 @@
+/*
+ * Copyright © 2020 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package io.cdap.cdap.format.io;
+
+import io.cdap.cdap.api.data.schema.Schema;
+
+import java.util.List;
+
+/**
+ * The field layout of a flat record schema, shared by {@link FlatStructuredRecordDatumWriter} and
+ * {@link FlatStructuredRecordDatumReader}.
+ */
+final class FlatRecordLayout {
+
+  private final String[] names;
+  private final Schema.Type[] types;
+  // index of the null schema in the union for nullable fields, or -1 for non-nullable fields
+  private final int[] nullIndices;
+
+  FlatRecordLayout(Schema schema) {
+    if (!isFlat(schema)) {
+      throw new IllegalArgumentException("Schema is not a flat record schema: " + schema);
+    }
+    List<Schema.Field> fields = schema.getFields();
+    names = new String[fields.size()];
+    types = new Schema.Type[fields.size()];
+    nullIndices = new int[fields.size()];
+
+    int i = 0;
+    for (Schema.Field field : fields) {
+      Schema fieldSchema = field.getSchema();
+      names[i] = field.getName();
+      nullIndices[i] = -1;
+      if (fieldSchema.getType() == Schema.Type.UNION) {
+        List<Schema> unionSchemas = fieldSchema.getUnionSchemas();
+        nullIndices[i] = unionSchemas.get(0).getType() == Schema.Type.NULL ? 0 : 1;
+        fieldSchema = unionSchemas.get(1 - nullIndices[i]);
+      }
+      types[i] = fieldSchema.getType();
+      i++;
+    }
+  }
+
+  static boolean isFlat(Schema schema) {
+    if (schema.getType() != Schema.Type.RECORD) {
+      return false;
+    }
+    for (Schema.Field field : schema.getFields()) {
+      Schema fieldSchema = field.getSchema();
+      if (fieldSchema.getType() == Schema.Type.UNION) {
+        // only allow nullable of a simple type, which is a union of null and a non-null simple type
+        List<Schema> unionSchemas = fieldSchema.getUnionSchemas();
+        if (unionSchemas.size() != 2) {
+          return false;
+        }
+        Schema first = unionSchemas.get(0);
+        Schema second = unionSchemas.get(1);
+        if (first.getType() == Schema.Type.NULL) {
+          fieldSchema = second;
+        } else if (second.getType() == Schema.Type.NULL) {
+          fieldSchema = first;
+        } else {
+          return false;
+        }
+        if (fieldSchema.getType() == Schema.Type.NULL) {
+          return false;
+        }
+      }
+      if (!fieldSchema.getType().isSimpleType()) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  String[] getNames() {
+    return names;
+  }
+
+  Schema.Type[] getTypes() {
+    return types;
+  }
+
+  int[] getNullIndices() {
+    return nullIndices;
+  }
+}
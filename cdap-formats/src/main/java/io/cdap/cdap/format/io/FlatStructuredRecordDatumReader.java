@@ -0,0 +1,89 @@
+/*
+ * Copyright © 2020 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package io.cdap.cdap.format.io;
+
+import io.cdap.cdap.api.data.format.StructuredRecord;
+import io.cdap.cdap.api.data.schema.Schema;
+import io.cdap.cdap.common.io.DatumReader;
+import io.cdap.cdap.common.io.Decoder;
+
+import java.io.IOException;
+
+/**
+ * A {@link DatumReader} for flat {@link StructuredRecord} written by either {@link StructuredRecordDatumWriter} or
+ * {@link FlatStructuredRecordDatumWriter}. The field layout is resolved once when the reader is created,
+ * hence it can only be used to read records of the schema that it was created with.
+ */
+public final class FlatStructuredRecordDatumReader implements DatumReader<StructuredRecord> {
+
+  private final Schema schema;
+  private final FlatRecordLayout layout;
+
+  /**
+   * Creates a reader for records of the given schema.
+   *
+   * @param schema the record schema
+   * @throws IllegalArgumentException if the schema is not a flat record schema
+   */
+  public FlatStructuredRecordDatumReader(Schema schema) {
+    this.schema = schema;
+    this.layout = new FlatRecordLayout(schema);
+  }
+
+  @Override
+  public StructuredRecord read(Decoder decoder, Schema sourceSchema) throws IOException {
+    if (!schema.equals(sourceSchema)) {
+      throw new IOException("Reader created for schema " + schema + " cannot read records of schema " + sourceSchema);
+    }
+    String[] names = layout.getNames();
+    Schema.Type[] types = layout.getTypes();
+    int[] nullIndices = layout.getNullIndices();
+
+    StructuredRecord.Builder builder = StructuredRecord.builder(schema);
+    for (int i = 0; i < names.length; i++) {
+      int nullIndex = nullIndices[i];
+      if (nullIndex >= 0 && decoder.readInt() == nullIndex) {
+        continue;
+      }
+      builder.set(names[i], decodeValue(decoder, types[i]));
+    }
+    return builder.build();
+  }
+
+  private Object decodeValue(Decoder decoder, Schema.Type type) throws IOException {
+    switch (type) {
+      case NULL:
+        return decoder.readNull();
+      case BOOLEAN:
+        return decoder.readBool();
+      case INT:
+        return decoder.readInt();
+      case LONG:
+        return decoder.readLong();
+      case FLOAT:
+        return decoder.readFloat();
+      case DOUBLE:
+        return decoder.readDouble();
+      case STRING:
+        return decoder.readString();
+      case BYTES:
+        return decoder.readBytes();
+    }
+    // Never happen, as it is guarded by the FlatRecordLayout
+    throw new IOException("Unsupported type " + type + " for flat record");
+  }
+}
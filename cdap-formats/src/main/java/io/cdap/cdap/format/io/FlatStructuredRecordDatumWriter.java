@@ -0,0 +1,125 @@
+/*
+ * Copyright © 2020 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package io.cdap.cdap.format.io;
+
+import io.cdap.cdap.api.data.format.StructuredRecord;
+import io.cdap.cdap.api.data.schema.Schema;
+import io.cdap.cdap.common.io.DatumWriter;
+import io.cdap.cdap.common.io.Encoder;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+
+/**
+ * A {@link DatumWriter} for flat {@link StructuredRecord}, which are records that only contain fields of simple
+ * types or nullable simple types. The field layout is resolved once when the writer is created, so that encoding
+ * a record doesn't need to inspect the schema or the value types.
+ *
+ * The encoded bytes are the same as the ones produced by {@link StructuredRecordDatumWriter}, hence they can be
+ * decoded by either {@link StructuredRecordDatumReader} or {@link FlatStructuredRecordDatumReader}.
+ */
+public final class FlatStructuredRecordDatumWriter implements DatumWriter<StructuredRecord> {
+
+  private final FlatRecordLayout layout;
+
+  /**
+   * Creates a writer for records of the given schema.
+   *
+   * @param schema the record schema
+   * @throws IllegalArgumentException if the schema is not a flat record schema
+   */
+  public FlatStructuredRecordDatumWriter(Schema schema) {
+    this.layout = new FlatRecordLayout(schema);
+  }
+
+  /**
+   * Returns {@code true} if the given schema is a record schema that only contains fields of simple types or
+   * nullable simple types.
+   */
+  public static boolean isFlat(Schema schema) {
+    return FlatRecordLayout.isFlat(schema);
+  }
+
+  @Override
+  public void encode(StructuredRecord record, Encoder encoder) throws IOException {
+    String[] names = layout.getNames();
+    Schema.Type[] types = layout.getTypes();
+    int[] nullIndices = layout.getNullIndices();
+
+    for (int i = 0; i < names.length; i++) {
+      Object value = record.get(names[i]);
+      int nullIndex = nullIndices[i];
+      if (nullIndex >= 0) {
+        // nullable field is a union of two schemas, write the union index of the actual value
+        if (value == null) {
+          encoder.writeInt(nullIndex);
+          continue;
+        }
+        encoder.writeInt(1 - nullIndex);
+      }
+      try {
+        encodeValue(encoder, types[i], value);
+      } catch (ClassCastException | NullPointerException e) {
+        throw new IllegalArgumentException(
+          String.format("A value for field '%s' is of type '%s', which does not match schema type '%s'.",
+                        names[i], value == null ? null : value.getClass().getName(), types[i]), e);
+      }
+    }
+  }
+
+  private void encodeValue(Encoder encoder, Schema.Type type, Object value) throws IOException {
+    switch (type) {
+      case NULL:
+        encoder.writeNull();
+        break;
+      case BOOLEAN:
+        encoder.writeBool((Boolean) value);
+        break;
+      case INT:
+        encoder.writeInt((Integer) value);
+        break;
+      case LONG:
+        encoder.writeLong((Long) value);
+        break;
+      case FLOAT:
+        encoder.writeFloat((Float) value);
+        break;
+      case DOUBLE:
+        encoder.writeDouble((Double) value);
+        break;
+      case STRING:
+        encoder.writeString((String) value);
+        break;
+      case BYTES:
+        if (value instanceof ByteBuffer) {
+          ByteBuffer buffer = (ByteBuffer) value;
+          if (buffer.hasArray()) {
+            encoder.writeBytes(buffer.array(), buffer.arrayOffset() + buffer.position(), buffer.remaining());
+          } else {
+            encoder.writeBytes(buffer);
+          }
+        } else {
+          byte[] bytes = (byte[]) value;
+          encoder.writeBytes(bytes, 0, bytes.length);
+        }
+        break;
+      default:
+        // Never happen, as it is guarded by the FlatRecordLayout
+        throw new IOException("Unsupported type " + type + " for flat record");
+    }
+  }
+}
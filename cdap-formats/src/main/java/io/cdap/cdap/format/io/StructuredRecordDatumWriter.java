@@ -153,6 +153,7 @@ public class StructuredRecordDatumWriter implements DatumWriter<StructuredRecord
 
   /**
    * Encodes the ending of an array. This method writes out {@code 0} to signal the end of the array.
+   * Nothing is written for an empty array, since the size written in the beginning already signals the end.
    * Sub-class can override this to have different behavior
    *
    * @param encoder The encoder to use
@@ -161,7 +162,9 @@ public class StructuredRecordDatumWriter implements DatumWriter<StructuredRecord
    * @throws IOException If failed to encode
    */
   protected void encodeArrayEnd(Encoder encoder, Schema elementSchema, int size) throws IOException {
-    encoder.writeInt(0);
+    if (size > 0) {
+      encoder.writeInt(0);
+    }
   }
 
   /**
@@ -197,6 +200,7 @@ public class StructuredRecordDatumWriter implements DatumWriter<StructuredRecord
 
   /**
    * Encodes the ending of a {@link Map}. This method writes out {@code 0} to signal the end of the map.
+   * Nothing is written for an empty map, since the size written in the beginning already signals the end.
    * Sub-class can override this to have different behavior.
    *
    * @param encoder The encoder to use
@@ -206,7 +210,9 @@ public class StructuredRecordDatumWriter implements DatumWriter<StructuredRecord
    * @throws IOException If failed to encode
    */
   protected void encodeMapEnd(Encoder encoder, Schema keySchema, Schema valueSchema, int size) throws IOException {
-    encoder.writeInt(0);
+    if (size > 0) {
+      encoder.writeInt(0);
+    }
   }
 
   /**
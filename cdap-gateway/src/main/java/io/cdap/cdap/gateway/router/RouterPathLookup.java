@@ -17,14 +17,22 @@
 package io.cdap.cdap.gateway.router;
 
 import com.google.common.annotations.VisibleForTesting;
-import com.google.common.base.Splitter;
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.ImmutableSet;
 import io.cdap.cdap.common.conf.Constants;
 import io.cdap.cdap.common.service.ServiceDiscoverable;
 import io.cdap.cdap.proto.ProgramType;
 import io.cdap.http.AbstractHttpHandler;
 import io.netty.handler.codec.http.HttpRequest;
 
-import java.util.stream.StreamSupport;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Function;
+import java.util.stream.Collectors;
 import javax.annotation.Nullable;
 
 /**
@@ -53,6 +61,31 @@ public final class RouterPathLookup extends AbstractHttpHandler {
   public static final RouteDestination RUNTIME = new RouteDestination(Constants.Service.RUNTIME);
   public static final RouteDestination DONT_ROUTE = new RouteDestination(Constants.Router.DONT_ROUTE_SERVICE);
 
+  /**
+   * Destinations of the /v3/system/services/{service-id}/status and /v3/system/services/{service-id}/stacks calls.
+   */
+  private static final Map<String, RouteDestination> SYSTEM_SERVICES = ImmutableMap.<String, RouteDestination>builder()
+    .put(Constants.Service.LOGSAVER, LOG_SAVER)
+    .put(Constants.Service.TRANSACTION, TRANSACTION)
+    .put(Constants.Service.METRICS_PROCESSOR, METRICS_PROCESSOR)
+    .put(Constants.Service.METRICS, METRICS)
+    .put(Constants.Service.APP_FABRIC_HTTP, APP_FABRIC_HTTP)
+    .put(Constants.Service.DATASET_EXECUTOR, DATASET_EXECUTOR)
+    .put(Constants.Service.METADATA_SERVICE, METADATA_SERVICE)
+    .put(Constants.Service.EXPLORE_HTTP_USER_SERVICE, EXPLORE_HTTP_USER_SERVICE)
+    .put(Constants.Service.MESSAGING_SERVICE, MESSAGING)
+    .put(Constants.Service.RUNTIME, RUNTIME)
+    .build();
+
+  /**
+   * All the {@link RouteDestination} that are not specific to the request path.
+   */
+  static final Set<RouteDestination> STATIC_DESTINATIONS = ImmutableSet.of(
+    APP_FABRIC_HTTP, METRICS, DATASET_MANAGER, METADATA_SERVICE, EXPLORE_HTTP_USER_SERVICE, PREVIEW_HTTP,
+    TRANSACTION, LOG_QUERY, LOG_SAVER, METRICS_PROCESSOR, DATASET_EXECUTOR, MESSAGING, RUNTIME);
+
+  private static final RouteTable V3_ROUTES = createV3Routes();
+
   /**
    * Returns the CDAP service which will handle the HttpRequest
    *
@@ -65,12 +98,10 @@ public final class RouterPathLookup extends AbstractHttpHandler {
     try {
       String method = httpRequest.method().name();
       AllowedMethod requestMethod = AllowedMethod.valueOf(method);
-      String[] uriParts = StreamSupport
-        .stream(Splitter.on('/').omitEmptyStrings().split(requestPath).spliterator(), false)
-        .toArray(String[]::new);
+      String[] uriParts = splitPath(requestPath);
 
       if (uriParts[0].equals(Constants.Gateway.API_VERSION_3_TOKEN)) {
-        return getV3RoutingService(uriParts, requestMethod);
+        return V3_ROUTES.lookup(uriParts, requestMethod);
       }
     } catch (Exception e) {
       // Ignore exception. Default routing to app-fabric.
@@ -78,124 +109,107 @@ public final class RouterPathLookup extends AbstractHttpHandler {
     return APP_FABRIC_HTTP;
   }
 
-  private boolean isUserServiceType(String uriPart) {
-    for (ProgramType type : ServiceDiscoverable.getUserServiceTypes()) {
-      if (type.getCategoryName().equals(uriPart)) {
-        return true;
+  /**
+   * Splits the given path into non-empty parts separated by '/'.
+   */
+  private static String[] splitPath(String path) {
+    List<String> parts = new ArrayList<>();
+    int start = 0;
+    int length = path.length();
+    for (int i = 0; i <= length; i++) {
+      if (i == length || path.charAt(i) == '/') {
+        if (i > start) {
+          parts.add(path.substring(start, i));
+        }
+        start = i + 1;
       }
     }
-    return false;
+    return parts.toArray(new String[0]);
   }
 
-  @Nullable
-  private RouteDestination getV3RoutingService(String [] uriParts, AllowedMethod requestMethod) {
-    if ((uriParts.length >= 2) && uriParts[1].equals("feeds")) {
+  /**
+   * Creates the {@link RouteTable} for the /v3 paths. Routes are listed in the order of precedence.
+   */
+  private static RouteTable createV3Routes() {
+    Set<String> userServiceTypes = ServiceDiscoverable.getUserServiceTypes().stream()
+      .map(ProgramType::getCategoryName)
+      .collect(Collectors.toSet());
+
+    return new RouteTable(APP_FABRIC_HTTP)
       // TODO(Rohit) find a better way to handle that - this looks hackish
       // This needs to now changed especially metadata since now it can have custom parts
-      return null;
-    } else if ("bootstrap".equals(uriParts[1])) {
-      return APP_FABRIC_HTTP;
-    } else if ((uriParts.length >= 11) && "versions".equals(uriParts[5]) && isUserServiceType(uriParts[7])
-      && "methods".equals(uriParts[9])) {
+      .add(Anchor.PREFIX, parts -> null, "v3", "feeds")
+      .add(Anchor.PREFIX, parts -> APP_FABRIC_HTTP, "v3", "bootstrap")
       // User defined services (version specific) handle methods on them:
       //Path: "/v3/namespaces/{namespace-id}/apps/{app-id}/versions/{version-id}/services/{service-id}/methods/
       //       <user-defined-method-path>"
-      String serviceName = ServiceDiscoverable.getName(uriParts[2], uriParts[4],
-                                                       ProgramType.valueOfCategoryName(uriParts[7]), uriParts[8]);
-      String version = uriParts[6];
-      return new RouteDestination(serviceName, version);
-    } else if ((uriParts.length >= 9) && isUserServiceType(uriParts[5]) && "methods".equals(uriParts[7])) {
+      .add(Anchor.PREFIX,
+           parts -> new RouteDestination(ServiceDiscoverable.getName(parts[2], parts[4],
+                                                                     ProgramType.valueOfCategoryName(parts[7]),
+                                                                     parts[8]), parts[6]),
+           "v3", null, null, null, null, "versions", null, userServiceTypes, null, "methods", null)
       //User defined services handle methods on them:
       //Path: "/v3/namespaces/{namespace-id}/apps/{app-id}/services/{service-id}/methods/<user-defined-method-path>"
-      return new RouteDestination(ServiceDiscoverable.getName(uriParts[2], uriParts[4],
-                                                              ProgramType.valueOfCategoryName(uriParts[5]),
-                                                              uriParts[6]));
-    } else if (beginsWith(uriParts, "v3", "system", "services", null, "logs")) {
+      .add(Anchor.PREFIX,
+           parts -> new RouteDestination(ServiceDiscoverable.getName(parts[2], parts[4],
+                                                                     ProgramType.valueOfCategoryName(parts[5]),
+                                                                     parts[6])),
+           "v3", null, null, null, null, userServiceTypes, null, "methods", null)
       //Log Handler Path /v3/system/services/<service-id>/logs
-      return LOG_QUERY;
-    } else if ((!beginsWith(uriParts, "v3", "namespaces", null, "securekeys")) && (endsWith(uriParts, "metadata") ||
+      .add(Anchor.PREFIX, parts -> LOG_QUERY, "v3", "system", "services", null, "logs")
       // do no intercept the namespaces/<namespace-name>/securekeys/<key>/metadata as that is handled by the
-      // SecureStoreHandler
-      endsWith(uriParts, "metadata", "properties") || endsWith(uriParts, "metadata", "properties", null) ||
-      endsWith(uriParts, "metadata", "tags") || endsWith(uriParts, "metadata", "tags", null) ||
-      endsWith(uriParts, "metadata", "search") ||
-      beginsWith(uriParts, "v3", "namespaces", null, "datasets", null, "lineage") ||
-      beginsWith(uriParts, "v3", "metadata", "search"))) {
-      return METADATA_SERVICE;
-    } else if (beginsWith(uriParts, "v3", "security", "authorization") ||
-      beginsWith(uriParts, "v3", "namespaces", null, "securekeys")) {
+      // SecureStoreHandler, which currently runs in App Fabric
+      .add(Anchor.PREFIX, parts -> APP_FABRIC_HTTP, "v3", "namespaces", null, "securekeys")
+      .add(Anchor.SUFFIX, parts -> METADATA_SERVICE, "metadata")
+      .add(Anchor.SUFFIX, parts -> METADATA_SERVICE, "metadata", "properties")
+      .add(Anchor.SUFFIX, parts -> METADATA_SERVICE, "metadata", "properties", null)
+      .add(Anchor.SUFFIX, parts -> METADATA_SERVICE, "metadata", "tags")
+      .add(Anchor.SUFFIX, parts -> METADATA_SERVICE, "metadata", "tags", null)
+      .add(Anchor.SUFFIX, parts -> METADATA_SERVICE, "metadata", "search")
+      .add(Anchor.PREFIX, parts -> METADATA_SERVICE, "v3", "namespaces", null, "datasets", null, "lineage")
+      .add(Anchor.PREFIX, parts -> METADATA_SERVICE, "v3", "metadata", "search")
       // Authorization and Secure Store Handlers currently run in App Fabric
-      return APP_FABRIC_HTTP;
-    } else if (beginsWith(uriParts, "v3", "security", "store", "namespaces", null)) {
-      return APP_FABRIC_HTTP;
-    } else if (beginsWith(uriParts, "v3", "namespaces", null, "data", "datasets", null, "programs") &&
-      requestMethod.equals(AllowedMethod.GET)) {
-      return APP_FABRIC_HTTP;
-    } else if (beginsWith(uriParts, "v3", "namespaces", null, "profiles") ||
-      beginsWith(uriParts, "v3", "profiles")) {
-      return APP_FABRIC_HTTP;
-    } else if (beginsWith(uriParts, "v3", "namespaces", null, "runs")) {
-      return APP_FABRIC_HTTP;
-    } else if (beginsWith(uriParts, "v3", "namespaces", null, "previews")) {
-      return PREVIEW_HTTP;
-    } else if (beginsWith(uriParts, "v3", "system", "serviceproviders")) {
-      return APP_FABRIC_HTTP;
-    } else if ((uriParts.length >= 8 && uriParts[7].equals("logs")) ||
-      (uriParts.length >= 10 && uriParts[9].equals("logs")) ||
-      (uriParts.length >= 6 && uriParts[5].equals("logs"))) {
+      .add(Anchor.PREFIX, parts -> APP_FABRIC_HTTP, "v3", "security", "authorization")
+      .add(Anchor.PREFIX, parts -> APP_FABRIC_HTTP, "v3", "security", "store", "namespaces", null)
+      .add(Anchor.PREFIX, AllowedMethod.GET, parts -> APP_FABRIC_HTTP,
+           "v3", "namespaces", null, "data", "datasets", null, "programs")
+      .add(Anchor.PREFIX, parts -> APP_FABRIC_HTTP, "v3", "namespaces", null, "profiles")
+      .add(Anchor.PREFIX, parts -> APP_FABRIC_HTTP, "v3", "profiles")
+      .add(Anchor.PREFIX, parts -> APP_FABRIC_HTTP, "v3", "namespaces", null, "runs")
+      .add(Anchor.PREFIX, parts -> PREVIEW_HTTP, "v3", "namespaces", null, "previews")
+      .add(Anchor.PREFIX, parts -> APP_FABRIC_HTTP, "v3", "system", "serviceproviders")
       //Log Handler Paths:
       // /v3/namespaces/<namespaceid>/apps/<appid>/<programid-type>/<programid>/logs
       // /v3/namespaces/{namespace-id}/apps/{app-id}/{program-type}/{program-id}/runs/{run-id}/logs
-      return LOG_QUERY;
-    } else if (uriParts.length >= 2 && uriParts[1].equals("metrics")) {
+      .add(Anchor.PREFIX, parts -> LOG_QUERY, "v3", null, null, null, null, null, null, "logs")
+      .add(Anchor.PREFIX, parts -> LOG_QUERY, "v3", null, null, null, null, null, null, null, null, "logs")
+      .add(Anchor.PREFIX, parts -> LOG_QUERY, "v3", null, null, null, null, "logs")
       //Metrics Search Handler Path /v3/metrics
-      return METRICS;
-    } else if (uriParts.length >= 5 && uriParts[1].equals("data") && uriParts[2].equals("explore") &&
-      (uriParts[3].equals("queries") || uriParts[3].equals("jdbc") || uriParts[3].equals("namespaces"))) {
+      .add(Anchor.PREFIX, parts -> METRICS, "v3", "metrics")
       // non-namespaced explore operations. For example, /v3/data/explore/queries/{id}
-      return EXPLORE_HTTP_USER_SERVICE;
-    } else if (uriParts.length >= 6 && uriParts[3].equals("data") && uriParts[4].equals("explore") &&
-      (uriParts[5].equals("queries") || uriParts[5].equals("datasets")
-        || uriParts[5].equals("tables") || uriParts[5].equals("jdbc"))) {
+      .add(Anchor.PREFIX, parts -> EXPLORE_HTTP_USER_SERVICE,
+           "v3", "data", "explore", ImmutableSet.of("queries", "jdbc", "namespaces"), null)
       // namespaced explore operations. For example, /v3/namespaces/{namespace-id}/data/explore/datasets/{ds}/enable
-      return EXPLORE_HTTP_USER_SERVICE;
-    } else if ((uriParts.length == 3) && uriParts[1].equals("explore") && uriParts[2].equals("status")) {
-      return EXPLORE_HTTP_USER_SERVICE;
-    } else if (beginsWith(uriParts, "v3", "system", "services", null, "status")
-      || beginsWith(uriParts, "v3", "system", "services", null, "stacks")) {
-      switch (uriParts[3]) {
-        case Constants.Service.LOGSAVER: return LOG_SAVER;
-        case Constants.Service.TRANSACTION: return TRANSACTION;
-        case Constants.Service.METRICS_PROCESSOR: return METRICS_PROCESSOR;
-        case Constants.Service.METRICS: return METRICS;
-        case Constants.Service.APP_FABRIC_HTTP: return APP_FABRIC_HTTP;
-        case Constants.Service.DATASET_EXECUTOR: return DATASET_EXECUTOR;
-        case Constants.Service.METADATA_SERVICE: return METADATA_SERVICE;
-        case Constants.Service.EXPLORE_HTTP_USER_SERVICE: return EXPLORE_HTTP_USER_SERVICE;
-        case Constants.Service.MESSAGING_SERVICE: return MESSAGING;
-        case Constants.Service.RUNTIME: return RUNTIME;
-        default: return null;
-      }
-    } else if (uriParts.length == 7 && uriParts[3].equals("data") && uriParts[4].equals("datasets") &&
-      (uriParts[6].equals("flows") || uriParts[6].equals("workers") || uriParts[6].equals("mapreduce"))) {
+      .add(Anchor.PREFIX, parts -> EXPLORE_HTTP_USER_SERVICE,
+           "v3", null, null, "data", "explore", ImmutableSet.of("queries", "datasets", "tables", "jdbc"))
+      .add(Anchor.EXACT, parts -> EXPLORE_HTTP_USER_SERVICE, "v3", "explore", "status")
+      .add(Anchor.PREFIX, parts -> SYSTEM_SERVICES.get(parts[3]),
+           "v3", "system", "services", null, ImmutableSet.of("status", "stacks"))
       // namespaced app fabric data operations:
       // /v3/namespaces/{namespace-id}/data/datasets/{name}/flows
       // /v3/namespaces/{namespace-id}/data/datasets/{name}/workers
       // /v3/namespaces/{namespace-id}/data/datasets/{name}/mapreduce
-      return APP_FABRIC_HTTP;
-    } else if ((uriParts.length >= 4) && uriParts[3].equals("data")) {
+      .add(Anchor.EXACT, parts -> APP_FABRIC_HTTP,
+           "v3", null, null, "data", "datasets", null, ImmutableSet.of("flows", "workers", "mapreduce"))
       // other data operations. For example:
       // /v3/namespaces/{namespace-id}/data/datasets
       // /v3/namespaces/{namespace-id}/data/datasets/{name}
       // /v3/namespaces/{namespace-id}/data/datasets/{name}/properties
       // /v3/namespaces/{namespace-id}/data/datasets/{name}/admin/{method}
-      return DATASET_MANAGER;
-    } else if ((uriParts.length == 3) && uriParts[1].equals("metadata-internals")) {
+      .add(Anchor.PREFIX, parts -> DATASET_MANAGER, "v3", null, null, "data")
       // we don't want to expose endpoints for direct metadata mutation from CDAP master
       // /v3/metadata-internals/{mutation-type}
-      return DONT_ROUTE;
-    }
-    return APP_FABRIC_HTTP;
+      .add(Anchor.EXACT, parts -> DONT_ROUTE, "v3", "metadata-internals", null);
   }
 
   /**
@@ -263,4 +277,166 @@ public final class RouterPathLookup extends AbstractHttpHandler {
     }
     return true;
   }
+
+  /**
+   * How a route pattern is matched against the request path parts.
+   */
+  private enum Anchor {
+    /**
+     * The beginning of the path matches the pattern. The path may be longer than the pattern.
+     */
+    PREFIX,
+
+    /**
+     * The end of the path matches the pattern. The path may be longer than the pattern.
+     */
+    SUFFIX,
+
+    /**
+     * The whole path matches the pattern.
+     */
+    EXACT
+  }
+
+  /**
+   * A route table compiled into path segment tries. Prefix and exact routes are stored in a trie keyed by the path
+   * parts from the beginning, while suffix routes are stored in a trie keyed by the path parts from the end.
+   * A lookup walks both tries once and picks the matching route that was added first.
+   */
+  private static final class RouteTable {
+
+    private final RouteDestination defaultDestination;
+    private final Node prefixRoot = new Node();
+    private final Node suffixRoot = new Node();
+    private int routeCount;
+
+    RouteTable(RouteDestination defaultDestination) {
+      this.defaultDestination = defaultDestination;
+    }
+
+    RouteTable add(Anchor anchor, Function<String[], RouteDestination> destination, Object... pattern) {
+      return add(anchor, null, destination, pattern);
+    }
+
+    /**
+     * Adds a route to this table. Routes added earlier take precedence over the ones added later.
+     *
+     * @param anchor how the pattern is matched
+     * @param method the request method that the route accepts or {@code null} to accept all methods
+     * @param destination a {@link Function} to compute the {@link RouteDestination} from the path parts
+     * @param pattern the pattern to match. Each element is either a {@link String} to match a path part exactly,
+     *                a {@link Set} of {@link String} to match any one of them, or {@code null} to match any part.
+     */
+    RouteTable add(Anchor anchor, @Nullable AllowedMethod method,
+                   Function<String[], RouteDestination> destination, Object... pattern) {
+      Route route = new Route(routeCount++, method, destination);
+      if (anchor == Anchor.SUFFIX) {
+        Object[] reversed = new Object[pattern.length];
+        for (int i = 0; i < pattern.length; i++) {
+          reversed[i] = pattern[pattern.length - 1 - i];
+        }
+        insert(suffixRoot, reversed, 0, route, false);
+      } else {
+        insert(prefixRoot, pattern, 0, route, anchor == Anchor.EXACT);
+      }
+      return this;
+    }
+
+    /**
+     * Returns the {@link RouteDestination} for the given path parts.
+     */
+    @Nullable
+    RouteDestination lookup(String[] parts, AllowedMethod method) {
+      Route route = find(prefixRoot, parts, 0, false, method, null);
+      route = find(suffixRoot, parts, 0, true, method, route);
+      return route == null ? defaultDestination : route.destination.apply(parts);
+    }
+
+    private void insert(Node node, Object[] pattern, int depth, Route route, boolean exact) {
+      node.minPriority = Math.min(node.minPriority, route.priority);
+      if (depth == pattern.length) {
+        (exact ? node.exactRoutes : node.routes).add(route);
+        return;
+      }
+
+      Object part = pattern[depth];
+      if (part == null) {
+        if (node.wildcard == null) {
+          node.wildcard = new Node();
+        }
+        insert(node.wildcard, pattern, depth + 1, route, exact);
+      } else if (part instanceof String) {
+        insert(node.children.computeIfAbsent((String) part, k -> new Node()), pattern, depth + 1, route, exact);
+      } else if (part instanceof Set) {
+        for (Object alternative : (Set<?>) part) {
+          insert(node.children.computeIfAbsent((String) alternative, k -> new Node()),
+                 pattern, depth + 1, route, exact);
+        }
+      } else {
+        throw new IllegalArgumentException("Unsupported route pattern " + Arrays.toString(pattern));
+      }
+    }
+
+    /**
+     * Finds the matching {@link Route} with the highest precedence in the sub-tree of the given node.
+     */
+    @Nullable
+    private Route find(Node node, String[] parts, int depth, boolean reverse,
+                       AllowedMethod method, @Nullable Route best) {
+      // Nothing in this sub-tree can be better than the one already found
+      if (best != null && node.minPriority >= best.priority) {
+        return best;
+      }
+      best = select(node.routes, method, best);
+      if (depth == parts.length) {
+        return select(node.exactRoutes, method, best);
+      }
+
+      String part = parts[reverse ? parts.length - 1 - depth : depth];
+      Node child = node.children.get(part);
+      if (child != null) {
+        best = find(child, parts, depth + 1, reverse, method, best);
+      }
+      if (node.wildcard != null) {
+        best = find(node.wildcard, parts, depth + 1, reverse, method, best);
+      }
+      return best;
+    }
+
+    @Nullable
+    private Route select(List<Route> routes, AllowedMethod method, @Nullable Route best) {
+      for (Route route : routes) {
+        if ((best == null || route.priority < best.priority) && (route.method == null || route.method == method)) {
+          best = route;
+        }
+      }
+      return best;
+    }
+  }
+
+  /**
+   * A node in the route trie.
+   */
+  private static final class Node {
+    private final Map<String, Node> children = new HashMap<>();
+    private final List<Route> routes = new ArrayList<>();
+    private final List<Route> exactRoutes = new ArrayList<>();
+    private Node wildcard;
+    private int minPriority = Integer.MAX_VALUE;
+  }
+
+  /**
+   * A route in the {@link RouteTable}.
+   */
+  private static final class Route {
+    private final int priority;
+    private final AllowedMethod method;
+    private final Function<String[], RouteDestination> destination;
+
+    Route(int priority, @Nullable AllowedMethod method, Function<String[], RouteDestination> destination) {
+      this.priority = priority;
+      this.method = method;
+      this.destination = destination;
+    }
+  }
 }
@@ -33,6 +33,8 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.net.URI;
+import java.util.HashMap;
+import java.util.Map;
 import java.util.concurrent.ExecutionException;
 import java.util.concurrent.TimeUnit;
 import javax.annotation.Nullable;
@@ -44,6 +46,7 @@ public class RouterServiceLookup {
   private static final Logger LOG = LoggerFactory.getLogger(RouterServiceLookup.class);
 
   private final DiscoveryServiceClient discoveryServiceClient;
+  private final Map<RouteDestination, EndpointStrategy> staticStrategies;
   private final LoadingCache<RouteDestination, EndpointStrategy> discoverableCache;
   private final RouterPathLookup routerPathLookup;
 
@@ -52,6 +55,13 @@ public class RouterServiceLookup {
                       RouterPathLookup routerPathLookup) {
     this.discoveryServiceClient = discoveryServiceClient;
     this.routerPathLookup = routerPathLookup;
+
+    // Destinations of system services are known upfront, hence no need to go through the cache
+    Map<RouteDestination, EndpointStrategy> strategies = new HashMap<>();
+    for (RouteDestination destination : RouterPathLookup.STATIC_DESTINATIONS) {
+      strategies.put(destination, discover(destination));
+    }
+    this.staticStrategies = strategies;
     this.discoverableCache = CacheBuilder.newBuilder()
       .expireAfterAccess(1, TimeUnit.HOURS)
       .build(new CacheLoader<RouteDestination, EndpointStrategy>() {
@@ -83,7 +93,8 @@ public class RouterServiceLookup {
 
       LOG.trace("Request was routed from {} to: {}", path, destService);
 
-      return discoverableCache.get(destService);
+      EndpointStrategy strategy = staticStrategies.get(destService);
+      return strategy == null ? discoverableCache.get(destService) : strategy;
     } catch (ExecutionException e) {
       return null;
     }
@@ -30,28 +30,31 @@ import io.netty.handler.codec.http.HttpContent;
 import io.netty.handler.codec.http.HttpMethod;
 import io.netty.handler.codec.http.HttpRequest;
 import io.netty.handler.codec.http.HttpResponse;
+import io.netty.handler.codec.http.HttpStatusClass;
 import io.netty.handler.codec.http.LastHttpContent;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.nio.charset.StandardCharsets;
+import java.util.ArrayDeque;
+import java.util.Deque;
 import java.util.Set;
 
 /**
  * A {@link ChannelDuplexHandler} that captures {@link HttpRequest} and corresponding {@link HttpResponse}
  * over the forwarding connections from router to CDAP services (via the client bootstrap) for audit log purpose.
- * The router logic guarantees that the same forwarding connection won't have more than one request on the fly
- * (i.e. no HTTP pipeline), hence it's safe to use fields to remember the {@link AuditLogEntry}
- * and have it tied back with the {@link HttpRequest} when a {@link HttpResponse} is received.
+ * Since HTTP pipelining is supported, there can be multiple requests on the fly. The router logic guarantees
+ * the responses are written in the same order as the requests, hence a queue is used to remember the
+ * {@link AuditLogEntry} and have it tied back with the {@link HttpRequest} when a {@link HttpResponse} is written.
  */
 public class AuditLogHandler extends ChannelDuplexHandler {
 
   private static final Logger AUDIT_LOGGER = LoggerFactory.getLogger(Constants.Router.AUDIT_LOGGER_NAME);
   private static final Set<HttpMethod> AUDIT_LOG_LOOKUP_METHOD = ImmutableSet.of(HttpMethod.PUT, HttpMethod.DELETE,
                                                                                  HttpMethod.POST);
-  private AuditLogEntry logEntry;
-  private boolean logRequestBody;
-  private boolean logResponseBody;
+  private final Deque<PendingEntry> pendingEntries = new ArrayDeque<>();
+  private PendingEntry responseEntry;
+  private boolean informationalResponse;
 
   @Override
   public void channelRead(ChannelHandlerContext ctx, Object msg) throws Exception {
@@ -64,17 +67,19 @@ public class AuditLogHandler extends ChannelDuplexHandler {
         ? RouterAuditLookUp.getInstance().getAuditLogContent(request.uri(), request.method()) : null;
 
       if (logConfig == null) {
-        logEntry = new AuditLogEntry(request, Networks.getIP(ctx.channel().remoteAddress()));
+        pendingEntries.add(new PendingEntry(new AuditLogEntry(request, Networks.getIP(ctx.channel().remoteAddress())),
+                                            false, false));
       } else {
-        logEntry = new AuditLogEntry(request, Networks.getIP(ctx.channel().remoteAddress()),
-                                     logConfig.getHeaderNames());
-        logRequestBody = logConfig.isLogRequestBody();
-        logResponseBody = logConfig.isLogResponseBody();
+        pendingEntries.add(new PendingEntry(new AuditLogEntry(request, Networks.getIP(ctx.channel().remoteAddress()),
+                                                              logConfig.getHeaderNames()),
+                                            logConfig.isLogRequestBody(), logConfig.isLogResponseBody()));
       }
-    } else if (msg instanceof HttpContent && logEntry != null) {
+    } else if (msg instanceof HttpContent && !pendingEntries.isEmpty()) {
+      // Request body always belongs to the latest request
+      PendingEntry entry = pendingEntries.peekLast();
       ByteBuf content = ((HttpContent) msg).content();
-      if (logRequestBody && content.isReadable()) {
-        logEntry.appendRequestBody(content.toString(StandardCharsets.UTF_8));
+      if (entry.logRequestBody && content.isReadable()) {
+        entry.logEntry.appendRequestBody(content.toString(StandardCharsets.UTF_8));
       }
     }
 
@@ -83,28 +88,38 @@ public class AuditLogHandler extends ChannelDuplexHandler {
 
   @Override
   public void write(ChannelHandlerContext ctx, Object msg, ChannelPromise promise) throws Exception {
-    if (logEntry == null) {
-      ctx.write(msg, promise);
-      return;
-    }
-
     if (msg instanceof HttpResponse) {
       HttpResponse response = (HttpResponse) msg;
-      logEntry.setResponse(response);
 
-      // If no need to log the response body, we can emit the audit log
-      if (!logResponseBody) {
-        emitAuditLog();
-      }
-    } else if (msg instanceof HttpContent && logResponseBody) {
-      ByteBuf content = ((HttpContent) msg).content();
-      if (content.isReadable()) {
-        logEntry.appendResponseBody(content.toString(StandardCharsets.UTF_8));
+      // Informational response (e.g. 100-continue) is not the actual response of the request
+      informationalResponse = response.status().codeClass() == HttpStatusClass.INFORMATIONAL;
+      if (!informationalResponse) {
+        responseEntry = pendingEntries.poll();
+        if (responseEntry != null) {
+          responseEntry.logEntry.setResponse(response);
+
+          // If no need to log the response body, we can emit the audit log
+          if (!responseEntry.logResponseBody) {
+            emitAuditLog(responseEntry);
+          }
+        }
       }
+    }
 
-      // If need to log the response body, emit the audit log when all response contents are received
+    if (msg instanceof HttpContent && responseEntry != null && !informationalResponse) {
+      if (responseEntry.logResponseBody) {
+        ByteBuf content = ((HttpContent) msg).content();
+        if (content.isReadable()) {
+          responseEntry.logEntry.appendResponseBody(content.toString(StandardCharsets.UTF_8));
+        }
+
+        // If need to log the response body, emit the audit log when all response contents are received
+        if (msg instanceof LastHttpContent) {
+          emitAuditLog(responseEntry);
+        }
+      }
       if (msg instanceof LastHttpContent) {
-        emitAuditLog();
+        responseEntry = null;
       }
     }
 
@@ -113,17 +128,33 @@ public class AuditLogHandler extends ChannelDuplexHandler {
 
   @Override
   public void channelInactive(ChannelHandlerContext ctx) throws Exception {
-    if (logEntry != null) {
-      emitAuditLog();
+    if (responseEntry != null && responseEntry.logResponseBody) {
+      emitAuditLog(responseEntry);
+    }
+    responseEntry = null;
+    for (PendingEntry entry : pendingEntries) {
+      emitAuditLog(entry);
     }
+    pendingEntries.clear();
     ctx.fireChannelInactive();
   }
 
-  private void emitAuditLog() {
-    try {
-      AUDIT_LOGGER.trace(logEntry.toString());
-    } finally {
-      logEntry = null;
+  private void emitAuditLog(PendingEntry entry) {
+    AUDIT_LOGGER.trace(entry.logEntry.toString());
+  }
+
+  /**
+   * An {@link AuditLogEntry} of a request that is waiting for the response to be written.
+   */
+  private static final class PendingEntry {
+    private final AuditLogEntry logEntry;
+    private final boolean logRequestBody;
+    private final boolean logResponseBody;
+
+    PendingEntry(AuditLogEntry logEntry, boolean logRequestBody, boolean logResponseBody) {
+      this.logEntry = logEntry;
+      this.logRequestBody = logRequestBody;
+      this.logResponseBody = logResponseBody;
     }
   }
 }
@@ -20,193 +20,149 @@ import io.cdap.cdap.common.HandlerException;
 import io.cdap.cdap.common.conf.CConfiguration;
 import io.cdap.cdap.common.conf.Constants;
 import io.cdap.cdap.common.discovery.EndpointStrategy;
-import io.cdap.cdap.common.discovery.URIScheme;
 import io.cdap.cdap.common.http.Channels;
 import io.cdap.cdap.gateway.router.RouterServiceLookup;
-import io.netty.bootstrap.Bootstrap;
-import io.netty.buffer.ByteBufAllocator;
 import io.netty.channel.Channel;
-import io.netty.channel.ChannelDuplexHandler;
-import io.netty.channel.ChannelFuture;
 import io.netty.channel.ChannelFutureListener;
 import io.netty.channel.ChannelHandlerContext;
 import io.netty.channel.ChannelInboundHandler;
-import io.netty.channel.ChannelInitializer;
-import io.netty.channel.ChannelOption;
-import io.netty.channel.ChannelPipeline;
-import io.netty.channel.ChannelPromise;
-import io.netty.channel.socket.SocketChannel;
-import io.netty.channel.socket.nio.NioSocketChannel;
+import io.netty.channel.ChannelInboundHandlerAdapter;
 import io.netty.handler.codec.http.DefaultFullHttpResponse;
 import io.netty.handler.codec.http.FullHttpResponse;
-import io.netty.handler.codec.http.HttpClientCodec;
 import io.netty.handler.codec.http.HttpRequest;
 import io.netty.handler.codec.http.HttpResponse;
 import io.netty.handler.codec.http.HttpResponseStatus;
 import io.netty.handler.codec.http.HttpUtil;
 import io.netty.handler.codec.http.HttpVersion;
 import io.netty.handler.codec.http.LastHttpContent;
-import io.netty.handler.ssl.SslContext;
-import io.netty.handler.ssl.SslContextBuilder;
-import io.netty.handler.ssl.SslHandler;
-import io.netty.handler.ssl.util.InsecureTrustManagerFactory;
-import io.netty.handler.timeout.IdleStateHandler;
 import io.netty.util.ReferenceCountUtil;
+import io.netty.util.concurrent.Future;
 import org.apache.twill.discovery.Discoverable;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
-import java.io.Closeable;
-import java.io.Flushable;
 import java.nio.channels.ClosedChannelException;
 import java.nio.charset.StandardCharsets;
-import java.util.HashMap;
-import java.util.LinkedList;
-import java.util.Map;
+import java.util.ArrayDeque;
+import java.util.Deque;
 import java.util.Queue;
 import java.util.concurrent.TimeUnit;
 import javax.annotation.Nullable;
-import javax.net.ssl.SSLException;
 
 /**
  * A {@link ChannelInboundHandler} for forwarding incoming request to appropriate CDAP service endpoint
  * based on the request. This class doesn't need to be thread safe as Netty will make sure there is no
  * concurrent calls to ChannelHandler and each call always have a happens-before relationship to the previous call.
+ *
+ * Requests are sent through connections acquired from the {@link UpstreamConnectionPool}. Pipelined requests are
+ * forwarded concurrently, while the responses are written back to the client in the same order as the requests.
+ * Reading from an upstream connection is paused while the response of an earlier request is still in progress,
+ * so that at most one batch of read per upstream connection is buffered.
  */
-public class HttpRequestRouter extends ChannelDuplexHandler {
+public class HttpRequestRouter extends ChannelInboundHandlerAdapter {
 
   private static final Logger LOG = LoggerFactory.getLogger(HttpRequestRouter.class);
 
-  private final CConfiguration cConf;
   private final RouterServiceLookup serviceLookup;
-  private final Map<Discoverable, Queue<MessageSender>> messageSenders;
-  private int inflightRequests;
-  private MessageSender currentMessageSender;
-  private ChannelFutureListener failureResponseListener;
-
-  public HttpRequestRouter(CConfiguration cConf, RouterServiceLookup serviceLookup) {
-    this.cConf = cConf;
+  private final UpstreamConnectionPool connectionPool;
+  private final int maxPipelinedRequests;
+  private final Deque<Exchange> exchanges;
+  private ChannelHandlerContext context;
+  private Exchange currentExchange;
+  private boolean inboundClosed;
+
+  public HttpRequestRouter(CConfiguration cConf, RouterServiceLookup serviceLookup,
+                           UpstreamConnectionPool connectionPool) {
     this.serviceLookup = serviceLookup;
-    this.messageSenders = new HashMap<>();
+    this.connectionPool = connectionPool;
+    this.maxPipelinedRequests = Math.max(1, cConf.getInt(Constants.Router.PIPELINING_MAX_REQUESTS));
+    this.exchanges = new ArrayDeque<>();
   }
 
   @Override
-  public void channelRead(final ChannelHandlerContext ctx, final Object msg) throws Exception {
-    try {
-      final Channel inboundChannel = ctx.channel();
-      ChannelFutureListener writeCompletedListener = getFailureResponseListener(inboundChannel);
-
-      if (msg instanceof HttpRequest) {
-        HttpRequest request = (HttpRequest) msg;
-
-        // For "/" request, response with 200. This is for load balancer health check
-        if ("/".equals(request.uri())) {
-          HttpResponse response = new DefaultFullHttpResponse(request.protocolVersion(), HttpResponseStatus.OK);
-          HttpUtil.setContentLength(response, 0L);
-          inboundChannel.writeAndFlush(response);
-          return;
-        }
+  public void handlerAdded(ChannelHandlerContext ctx) {
+    this.context = ctx;
+  }
 
-        inflightRequests++;
-        if (inflightRequests != 1) {
-          // This means there is concurrent request via HTTP pipelining.
-          // Simply return
-          // At the end of the first response, we'll respond to all the other requests as well
-          return;
-        }
+  @Override
+  public void channelRead(ChannelHandlerContext ctx, Object msg) throws Exception {
+    if (inboundClosed) {
+      // Either the client connection is closed or failed. Nothing more will be routed.
+      ReferenceCountUtil.release(msg);
+      return;
+    }
+    if (!(msg instanceof HttpRequest)) {
+      if (currentExchange == null) {
+        ReferenceCountUtil.release(msg);
+      } else {
+        currentExchange.sendRequest(msg);
+      }
+      return;
+    }
+
+    HttpRequest request = (HttpRequest) msg;
 
-        // Disable read until sending of this request object is completed successfully
-        // This is for handling the initial connection delay
-        inboundChannel.config().setAutoRead(false);
-        writeCompletedListener = new ChannelFutureListener() {
-          @Override
-          public void operationComplete(ChannelFuture future) throws Exception {
-            if (future.isSuccess()) {
-              inboundChannel.config().setAutoRead(true);
-            } else {
-              getFailureResponseListener(inboundChannel).operationComplete(future);
-            }
-          }
-        };
-
-        currentMessageSender = getMessageSender(
-          inboundChannel, getDiscoverable(request)
-        );
-      }
-
-      if (inflightRequests == 1 && currentMessageSender != null) {
-        ReferenceCountUtil.retain(msg);
-        currentMessageSender.send(msg, writeCompletedListener);
-      }
-    } finally {
+    // For "/" request, response with 200. This is for load balancer health check
+    if ("/".equals(request.uri())) {
+      HttpResponse response = new DefaultFullHttpResponse(request.protocolVersion(), HttpResponseStatus.OK);
+      HttpUtil.setContentLength(response, 0L);
+      startExchange(new Exchange(response, HttpUtil.isKeepAlive(request)));
       ReferenceCountUtil.release(msg);
+      return;
     }
-  }
 
-  @Override
-  public void channelReadComplete(ChannelHandlerContext ctx) {
-    if (currentMessageSender != null) {
-      currentMessageSender.flush();
+    Discoverable discoverable;
+    try {
+      discoverable = getDiscoverable(request);
+    } catch (HandlerException e) {
+      startExchange(new Exchange(e.createFailureResponse(), false));
+      ReferenceCountUtil.release(msg);
+      return;
     }
-    ctx.fireChannelReadComplete();
+
+    Exchange exchange = new Exchange(discoverable);
+    startExchange(exchange);
+    exchange.sendRequest(msg);
+    exchange.acquire();
   }
 
   @Override
-  public void write(ChannelHandlerContext ctx, Object msg, ChannelPromise promise) {
-    ctx.writeAndFlush(msg, promise);
-
-    // When the response for the first request is completed, write N failure responses for pipelining requests (if any).
-    if (msg instanceof LastHttpContent) {
-      for (int i = 0; i < inflightRequests - 1; i++) {
-        ctx.writeAndFlush(createPipeliningNotSupported());
-      }
-      inflightRequests = 0;
-
-      // Recycle the message sender
-      if (currentMessageSender != null) {
-        messageSenders.get(currentMessageSender.getDiscoverable()).add(currentMessageSender);
-      }
+  public void channelReadComplete(ChannelHandlerContext ctx) {
+    if (currentExchange != null) {
+      currentExchange.flushRequest();
     }
+    ctx.fireChannelReadComplete();
   }
 
   @Override
   public void exceptionCaught(ChannelHandlerContext ctx, Throwable cause) {
-    HttpResponse response = cause instanceof HandlerException
-      ? ((HandlerException) cause).createFailureResponse()
-      : createErrorResponse(cause);
-    HttpUtil.setKeepAlive(response, false);
-    ctx.writeAndFlush(response).addListener(ChannelFutureListener.CLOSE);
+    if (inboundClosed) {
+      LOG.trace("Ignore exception raised after the client connection failed", cause);
+      return;
+    }
+    // Stop reading from the client. The error response is written in order after the responses of all earlier
+    // requests, followed by closing the connection.
+    inboundClosed = true;
+    ctx.channel().config().setAutoRead(false);
+    if (currentExchange != null && !currentExchange.requestCompleted) {
+      // The request in progress cannot be completed, hence fail it with the error response
+      currentExchange.failed(cause);
+    } else {
+      startExchange(new Exchange(createErrorResponse(cause), false));
+    }
   }
 
   @Override
   public void channelInactive(ChannelHandlerContext ctx) {
-    if (currentMessageSender != null) {
-      currentMessageSender.close();
-    }
-    for (Map.Entry<Discoverable, Queue<MessageSender>> entry : messageSenders.entrySet()) {
-      for (MessageSender sender : entry.getValue()) {
-        sender.close();
-      }
+    inboundClosed = true;
+    for (Exchange exchange : exchanges) {
+      exchange.abort();
     }
+    exchanges.clear();
+    currentExchange = null;
     ctx.fireChannelInactive();
   }
 
-  private ChannelFutureListener getFailureResponseListener(final Channel inboundChannel) {
-    if (failureResponseListener == null) {
-      failureResponseListener = new ChannelFutureListener() {
-        @Override
-        public void operationComplete(ChannelFuture future) {
-          if (!future.isSuccess()) {
-            HttpResponse response = createErrorResponse(future.cause());
-            HttpUtil.setKeepAlive(response, false);
-            inboundChannel.writeAndFlush(response).addListener(ChannelFutureListener.CLOSE);
-          }
-        }
-      };
-    }
-    return failureResponseListener;
-  }
-
   /**
    * Finds the {@link Discoverable} for the given {@link HttpRequest} to route to.
    */
@@ -233,40 +189,65 @@ public class HttpRequestRouter extends ChannelDuplexHandler {
     return discoverable;
   }
 
+  private String getRequestLine(HttpRequest request) {
+    return request.method() + " " + request.uri() + " " + request.protocolVersion();
+  }
+
   /**
-   * Returns the {@link MessageSender} for writing messages to the endpoint represented by the given
-   * {@link Discoverable}.
+   * Adds a new {@link Exchange} for a request just received.
    */
-  private MessageSender getMessageSender(Channel inboundChannel,
-                                         Discoverable discoverable) {
-    Queue<MessageSender> senders = messageSenders.computeIfAbsent(discoverable, k -> new LinkedList<>());
-
-    MessageSender sender = senders.poll();
-
-    // Found a MessageSender to reuse, return it
-    if (sender != null) {
-      LOG.trace("Reuse message sender for {}", discoverable);
-      return sender;
+  private void startExchange(Exchange exchange) {
+    exchanges.add(exchange);
+    currentExchange = exchange;
+    if (exchanges.size() == 1) {
+      exchange.writeBufferedResponse();
+      if (exchange.responseCompleted) {
+        completeResponses();
+        return;
+      }
     }
-
-    // Create new MessageSender
-    sender = new MessageSender(cConf, inboundChannel, discoverable);
-    LOG.trace("Create new message sender for {}", discoverable);
-    return sender;
+    updateAutoRead();
   }
 
-  private String getRequestLine(HttpRequest request) {
-    return request.method() + " " + request.uri() + " " + request.protocolVersion();
+  /**
+   * Removes all the completed exchanges from the head of the queue and writes out the buffered responses of
+   * the next one.
+   */
+  private void completeResponses() {
+    Exchange head = exchanges.peekFirst();
+    while (head != null && head.responseCompleted) {
+      exchanges.pollFirst();
+      if (head.closeAfterResponse) {
+        // Close the connection after the response is written. Requests behind it are discarded.
+        Channels.closeOnFlush(context.channel());
+        return;
+      }
+      head = exchanges.peekFirst();
+      if (head != null) {
+        head.writeBufferedResponse();
+      }
+    }
+    context.flush();
+    updateAutoRead();
   }
 
-  private HttpResponse createPipeliningNotSupported() {
-    FullHttpResponse response = new DefaultFullHttpResponse(HttpVersion.HTTP_1_1, HttpResponseStatus.NOT_IMPLEMENTED);
-    response.content().writeCharSequence("HTTP pipelining is not supported", StandardCharsets.UTF_8);
-    HttpUtil.setContentLength(response, response.content().readableBytes());
-    return response;
+  /**
+   * Only reads more from the client if the number of outstanding requests is within limit and the upstream
+   * connection of the current request is ready and writable.
+   */
+  private void updateAutoRead() {
+    if (inboundClosed) {
+      return;
+    }
+    boolean autoRead = exchanges.size() < maxPipelinedRequests
+      && (currentExchange == null || currentExchange.isRequestWritable());
+    context.channel().config().setAutoRead(autoRead);
   }
 
   private static HttpResponse createErrorResponse(Throwable cause) {
+    if (cause instanceof HandlerException) {
+      return ((HandlerException) cause).createFailureResponse();
+    }
     FullHttpResponse response = new DefaultFullHttpResponse(HttpVersion.HTTP_1_1,
                                                             HttpResponseStatus.INTERNAL_SERVER_ERROR);
     if (cause.getMessage() != null) {
@@ -277,186 +258,268 @@ public class HttpRequestRouter extends ChannelDuplexHandler {
   }
 
   /**
-   * For sending messages to outbound channel while maintaining the order of messages according to
-   * the order that {@link #send(Object, ChannelFutureListener)} method is called.
+   * Represents one request and its response. The response is either generated locally or received from
+   * an upstream connection. Response messages are buffered until all previous exchanges are completed.
    */
-  private static final class MessageSender implements Flushable, Closeable {
+  private final class Exchange implements OutboundHandler.ResponseHandler {
 
+    @Nullable
     private final Discoverable discoverable;
-    private final Queue<OutboundMessage> pendingMessages;
-    private final Bootstrap clientBootstrap;
-    private volatile SslContext sslContext;
+    private final Queue<Object> pendingRequest;
+    private final Queue<Object> pendingResponse;
+    private final ChannelFutureListener writeFailureListener = future -> {
+      if (!future.isSuccess()) {
+        failed(future.cause());
+      }
+    };
     private Channel outboundChannel;
-    private boolean closed;
-    private boolean connecting;
+    private boolean acquiring;
+    private boolean requestCompleted;
+    private boolean responseStarted;
+    private boolean responseCompleted;
+    private boolean closeAfterResponse;
+    private boolean aborted;
 
-    private MessageSender(final CConfiguration cConf, final Channel inboundChannel, final Discoverable discoverable) {
+    /**
+     * Creates an exchange that forwards the request to the given endpoint.
+     */
+    Exchange(Discoverable discoverable) {
       this.discoverable = discoverable;
-      this.pendingMessages = new LinkedList<>();
-
-      // A channel listener for resetting the state of this message sender on closing of outbound channel
-      final ChannelFutureListener onCloseResetListener = new ChannelFutureListener() {
-        @Override
-        public void operationComplete(ChannelFuture future) {
-          outboundChannel = null;
-          connecting = false;
-        }
-      };
-
-      // Create a client Bootstrap for connecting to internal services
-      // It must be create using the same EventLoopGroup as the inbound channel to make
-      // sure thread safety between the inbound and outbound channels callbacks.
-      this.clientBootstrap = new Bootstrap()
-        .group(inboundChannel.eventLoop())
-        .channel(NioSocketChannel.class)
-        .option(ChannelOption.SO_KEEPALIVE, true)
-        .handler(new ChannelInitializer<SocketChannel>() {
-          @Override
-          protected void initChannel(SocketChannel ch) throws Exception {
-            ch.closeFuture().addListener(onCloseResetListener);
-            ChannelPipeline pipeline = ch.pipeline();
-
-            SslHandler sslHandler = getSslHandler(discoverable, ch.alloc());
-            if (sslHandler != null) {
-              pipeline.addLast("ssl", sslHandler);
-            }
-            pipeline.addLast("idle-state-handler",
-                             new IdleStateHandler(0, 0, cConf.getInt(Constants.Router.CONNECTION_TIMEOUT_SECS)));
-            pipeline.addLast("codec", new HttpClientCodec());
-            pipeline.addLast("forwarder", new OutboundHandler(inboundChannel));
-          }
-        });
+      this.pendingRequest = new ArrayDeque<>();
+      this.pendingResponse = new ArrayDeque<>();
+    }
+
+    /**
+     * Creates an exchange with a response generated by the router.
+     */
+    Exchange(HttpResponse response, boolean keepAlive) {
+      this.discoverable = null;
+      this.pendingRequest = new ArrayDeque<>();
+      this.pendingResponse = new ArrayDeque<>();
+      this.requestCompleted = true;
+      if (!keepAlive) {
+        HttpUtil.setKeepAlive(response, false);
+      }
+      this.pendingResponse.add(response);
+      this.responseStarted = true;
+      this.responseCompleted = true;
+      this.closeAfterResponse = !keepAlive;
     }
 
     /**
-     * Sends a message to the outbound channel.
-     *
-     * @param msg the message to be sent
-     * @param writeCompletedListener a {@link ChannelFutureListener} to be notified when the write completed
+     * Acquires a connection from the pool for sending the request.
      */
-    void send(Object msg, ChannelFutureListener writeCompletedListener) {
+    void acquire() {
+      acquiring = true;
+      Future<Channel> future = connectionPool.acquire(context.channel().eventLoop(), discoverable);
+      if (future.isDone()) {
+        acquired(future);
+      } else {
+        future.addListener(f -> acquired(future));
+      }
+      updateAutoRead();
+    }
+
+    /**
+     * Sends a request message to the upstream. Messages are buffered until the connection is acquired.
+     */
+    void sendRequest(Object msg) {
+      if (msg instanceof LastHttpContent) {
+        requestCompleted = true;
+      }
+      if (aborted) {
+        ReferenceCountUtil.release(msg);
+      } else if (outboundChannel != null) {
+        outboundChannel.write(msg).addListener(writeFailureListener);
+      } else if (discoverable != null && (acquiring || !responseStarted)) {
+        pendingRequest.add(msg);
+      } else {
+        // Either a local response or the upstream is gone. Just drop the request.
+        ReferenceCountUtil.release(msg);
+      }
+    }
+
+    void flushRequest() {
       if (outboundChannel != null) {
-        outboundChannel.write(msg).addListener(writeCompletedListener);
-        return;
+        outboundChannel.flush();
       }
+    }
 
-      // If not yet connected or still connecting, just add the message to the pending queue
-      pendingMessages.add(new OutboundMessage(msg, writeCompletedListener));
+    boolean isRequestWritable() {
+      if (acquiring) {
+        return false;
+      }
+      return outboundChannel == null || outboundChannel.isWritable();
+    }
 
-      // If connecting, we can just return. When the connection completed, it will send all messages in the queue.
-      if (connecting) {
-        return;
+    /**
+     * Writes the buffered response messages to the client and resumes reading the response from the upstream.
+     * It is called when this exchange becomes the head.
+     */
+    void writeBufferedResponse() {
+      Object msg = pendingResponse.poll();
+      while (msg != null) {
+        context.write(msg);
+        msg = pendingResponse.poll();
+      }
+      if (outboundChannel != null) {
+        outboundChannel.config().setAutoRead(true);
       }
+    }
 
-      // Make a new connection
-      ChannelFuture connectFuture = clientBootstrap.connect(discoverable.getSocketAddress());
-      connectFuture.addListener(new ChannelFutureListener() {
-        @Override
-        public void operationComplete(ChannelFuture future) throws Exception {
-          // Always remember the outbound channel even if the connection fail.
-          // This make sure any message received before the inbound channel is closed will not get forwarded
-          outboundChannel = future.channel();
-          connecting = false;
-
-          if (future.isSuccess()) {
-            // If this sender is closed (because inbound channel is closed), just close the outbound channel
-            if (closed) {
-              Channels.closeOnFlush(outboundChannel);
-            }
-          }
-          OutboundMessage message = pendingMessages.poll();
-          while (message != null) {
-            processMessage(message, future);
-            message = pendingMessages.poll();
-          }
-          if (future.isSuccess()) {
-            flush();
-          }
+    /**
+     * Aborts this exchange due to the client connection closed.
+     */
+    void abort() {
+      aborted = true;
+      releaseAll(pendingRequest);
+      releaseAll(pendingResponse);
+      if (outboundChannel != null) {
+        // The connection is in the middle of a request, hence cannot be reused.
+        Channel channel = outboundChannel;
+        outboundChannel = null;
+        channel.close();
+      }
+    }
+
+    @Override
+    public void responseRead(Object msg, boolean completed) {
+      if (aborted) {
+        ReferenceCountUtil.release(msg);
+        return;
+      }
+      responseStarted = true;
+      if (msg instanceof HttpResponse && !HttpUtil.isKeepAlive((HttpResponse) msg)) {
+        closeAfterResponse = true;
+      }
+      boolean isHead = exchanges.peekFirst() == this;
+      if (isHead) {
+        context.write(msg);
+      } else {
+        pendingResponse.add(msg);
+        if (!completed && outboundChannel != null) {
+          // Stop reading more of the response until this exchange becomes the head, to bound the buffer size
+          outboundChannel.config().setAutoRead(false);
+        }
+      }
+      if (completed) {
+        responseCompleted = true;
+        if (isHead) {
+          completeResponses();
         }
-      });
+      }
+    }
 
-      connecting = true;
+    @Override
+    public void responseReadComplete() {
+      if (!aborted && exchanges.peekFirst() == this) {
+        context.flush();
+      }
     }
 
     @Override
-    public void flush() {
-      if (outboundChannel != null && !closed) {
-        outboundChannel.flush();
+    public void upstreamWritabilityChanged() {
+      if (currentExchange == this) {
+        updateAutoRead();
       }
     }
 
     @Override
-    public void close() {
-      if (!closed) {
-        closed = true;
-        if (outboundChannel != null) {
-          Channels.closeOnFlush(outboundChannel);
-        }
+    public void upstreamReleased() {
+      outboundChannel = null;
+      if (currentExchange == this) {
+        updateAutoRead();
       }
     }
 
-    Discoverable getDiscoverable() {
-      return discoverable;
+    @Override
+    public void upstreamClosed() {
+      if (outboundChannel == null) {
+        return;
+      }
+      outboundChannel = null;
+      if (!responseCompleted) {
+        failed(new ClosedChannelException());
+      }
     }
 
-    /**
-     * Returns the {@link SslContext} to be used for a given discoverable endpoint
-     *
-     * @param discoverable the endpoint to connect to
-     * @return the {@link SslContext} or {@code null} if SSL is not needed
-     */
-    @Nullable
-    private SslHandler getSslHandler(Discoverable discoverable, ByteBufAllocator alloc) throws SSLException {
-      if (!URIScheme.HTTPS.isMatch(discoverable)) {
-        return null;
-      }
-      SslContext context = sslContext;
-      if (context != null) {
-        return context.newHandler(alloc);
-      }
-      synchronized (this) {
-        context = sslContext;
-        if (context == null) {
-          sslContext = context = SslContextBuilder.forClient()
-                                                  .trustManager(InsecureTrustManagerFactory.INSTANCE).build();
-        }
-        return context.newHandler(alloc);
+    private void acquired(Future<Channel> future) {
+      acquiring = false;
+      if (!future.isSuccess()) {
+        failed(future.cause());
+        return;
+      }
+
+      Channel channel = future.getNow();
+      if (aborted || responseCompleted) {
+        // Nothing has been written to the connection, hence it can be reused
+        connectionPool.release(channel);
+        return;
+      }
+
+      outboundChannel = channel;
+      channel.pipeline().get(OutboundHandler.class).bind(this);
+      Object msg = pendingRequest.poll();
+      while (msg != null) {
+        channel.write(msg).addListener(writeFailureListener);
+        msg = pendingRequest.poll();
+      }
+      channel.flush();
+      if (currentExchange == this) {
+        updateAutoRead();
       }
     }
 
     /**
-     * Process the message by sending to the given channel or have a failure call to the message callback,
-     * depending on the state of this sender.
+     * Handles failure in sending the request or receiving the response.
      */
-    private void processMessage(OutboundMessage message, ChannelFuture channelFuture) throws Exception {
-      Channel channel = channelFuture.channel();
+    private void failed(Throwable cause) {
+      if (aborted || responseCompleted) {
+        return;
+      }
+      LOG.trace("Failed to route request to {}", discoverable, cause);
+      releaseAll(pendingRequest);
+      if (outboundChannel != null) {
+        Channel channel = outboundChannel;
+        outboundChannel = null;
+        channel.close();
+      }
 
-      if (closed) {
-        message.writeCompletedListener.operationComplete(channel.newFailedFuture(new ClosedChannelException()));
+      closeAfterResponse = true;
+      responseCompleted = true;
+      if (responseStarted) {
+        // Part of the response was already received, hence the only thing we can do is to close the connection
+        // to signal the client that the response is incomplete.
+        releaseAll(pendingResponse);
+        abortInbound();
         return;
       }
-      if (channelFuture.isSuccess()) {
-        message.write(channelFuture.channel());
+
+      responseStarted = true;
+      HttpResponse response = createErrorResponse(cause);
+      HttpUtil.setKeepAlive(response, false);
+      pendingResponse.add(response);
+      if (exchanges.peekFirst() == this) {
+        writeBufferedResponse();
+        completeResponses();
       } else {
-        message.writeCompletedListener.operationComplete(channelFuture);
+        updateAutoRead();
       }
     }
-  }
-
-  /**
-   * A wrapper for a message and the {@link ChannelPromise} to use for writing to a {@link Channel}.
-   */
-  private static final class OutboundMessage {
-    private final Object message;
-    private final ChannelFutureListener writeCompletedListener;
 
-    OutboundMessage(Object message, ChannelFutureListener writeCompletedListener) {
-      this.message = message;
-      this.writeCompletedListener = writeCompletedListener;
+    private void abortInbound() {
+      if (exchanges.peekFirst() == this) {
+        context.flush();
+      }
+      context.channel().close();
     }
 
-    void write(Channel channel) {
-      channel.write(message).addListener(writeCompletedListener);
+    private void releaseAll(Queue<Object> messages) {
+      Object msg = messages.poll();
+      while (msg != null) {
+        ReferenceCountUtil.release(msg);
+        msg = messages.poll();
+      }
     }
   }
 }
@@ -16,53 +16,90 @@
 
 package io.cdap.cdap.gateway.router.handlers;
 
-import io.cdap.cdap.common.http.Channels;
 import io.netty.channel.Channel;
 import io.netty.channel.ChannelDuplexHandler;
 import io.netty.channel.ChannelHandlerContext;
 import io.netty.channel.ChannelPromise;
 import io.netty.handler.codec.http.HttpRequest;
 import io.netty.handler.codec.http.HttpResponse;
+import io.netty.handler.codec.http.HttpStatusClass;
 import io.netty.handler.codec.http.HttpUtil;
 import io.netty.handler.codec.http.LastHttpContent;
 import io.netty.handler.timeout.IdleState;
 import io.netty.handler.timeout.IdleStateEvent;
+import io.netty.util.ReferenceCountUtil;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 /**
  * A {@link ChannelDuplexHandler} for forwarding requests/responses between the router and the internal service.
+ * Responses are forwarded to the {@link ResponseHandler} that the connection is currently bound to. Once both the
+ * request and the response are completed, the connection is released back to the {@link UpstreamConnectionPool}.
  * It also handle idle state event for closing idled internal connections.
  */
 public class OutboundHandler extends ChannelDuplexHandler {
   private static final Logger LOG = LoggerFactory.getLogger(OutboundHandler.class);
 
-  private final Channel inboundChannel;
+  private final UpstreamConnectionPool connectionPool;
+  private ResponseHandler responseHandler;
   private boolean requestInProgress;
+  private boolean requestCompleted;
+  private boolean responseCompleted;
+  private boolean informationalResponse;
   private boolean keepAlive;
 
-  public OutboundHandler(Channel inboundChannel) {
-    this.inboundChannel = inboundChannel;
+  public OutboundHandler(UpstreamConnectionPool connectionPool) {
+    this.connectionPool = connectionPool;
+  }
+
+  /**
+   * Binds this connection to the given {@link ResponseHandler} for sending one request.
+   */
+  void bind(ResponseHandler handler) {
+    responseHandler = handler;
+    requestInProgress = false;
+    requestCompleted = false;
+    responseCompleted = false;
+    informationalResponse = false;
+    keepAlive = true;
   }
 
   @Override
   public void channelRead(ChannelHandlerContext ctx, Object msg) throws Exception {
-    // One receiving messages from the internal service, forward it to the inbound channel
-    inboundChannel.write(msg);
+    ResponseHandler handler = responseHandler;
+    if (handler == null) {
+      // Unexpected message when the connection is not used by any request. Close it since the state is unknown.
+      LOG.trace("Closing channel {} due to unexpected message received", ctx.channel());
+      ReferenceCountUtil.release(msg);
+      ctx.close();
+      return;
+    }
 
     if (msg instanceof HttpResponse) {
-      keepAlive = HttpUtil.isKeepAlive((HttpResponse) msg);
+      HttpResponse response = (HttpResponse) msg;
+      // An informational (1xx) response is followed by the final response
+      informationalResponse = response.status().codeClass() == HttpStatusClass.INFORMATIONAL;
+      if (!informationalResponse) {
+        keepAlive = keepAlive && HttpUtil.isKeepAlive(response);
+      }
     }
 
     // A response is completed by receiving the last http content
-    if (msg instanceof LastHttpContent) {
-      requestInProgress = false;
+    boolean completed = msg instanceof LastHttpContent && !informationalResponse;
+    responseCompleted = responseCompleted || completed;
+
+    // One receiving messages from the internal service, forward it to the response handler
+    handler.responseRead(msg, completed);
+    if (completed) {
+      releaseIfCompleted(ctx.channel());
     }
   }
 
   @Override
   public void channelReadComplete(ChannelHandlerContext ctx) throws Exception {
-    inboundChannel.flush();
+    if (responseHandler != null) {
+      responseHandler.responseReadComplete();
+    }
   }
 
   @Override
@@ -73,33 +110,28 @@ public class OutboundHandler extends ChannelDuplexHandler {
       keepAlive = HttpUtil.isKeepAlive((HttpRequest) msg);
     }
     ctx.write(msg, promise);
+
+    if (msg instanceof LastHttpContent) {
+      requestCompleted = true;
+      releaseIfCompleted(ctx.channel());
+    }
   }
 
   @Override
   public void channelWritabilityChanged(ChannelHandlerContext ctx) throws Exception {
-    if (requestInProgress) {
-      final Channel channel = ctx.channel();
-      ctx.executor().execute(() -> {
-        // If outboundChannel is not saturated anymore, continue accepting
-        // the incoming traffic from the inboundChannel.
-        if (channel.isWritable()) {
-          LOG.trace("Setting inboundChannel readable.");
-          inboundChannel.config().setAutoRead(true);
-        } else {
-          // If outboundChannel is saturated, do not read inboundChannel
-          LOG.trace("Setting inboundChannel non-readable.");
-          inboundChannel.config().setAutoRead(false);
-        }
-      });
+    if (requestInProgress && responseHandler != null) {
+      responseHandler.upstreamWritabilityChanged();
     }
     ctx.fireChannelWritabilityChanged();
   }
 
   @Override
   public void channelInactive(ChannelHandlerContext ctx) throws Exception {
-    // Close the inbound channel if there is request in progress, or the last request/response has keep-alive == false
-    if (requestInProgress || !keepAlive) {
-      Channels.closeOnFlush(inboundChannel);
+    ResponseHandler handler = responseHandler;
+    responseHandler = null;
+    requestInProgress = false;
+    if (handler != null) {
+      handler.upstreamClosed();
     }
     ctx.fireChannelInactive();
   }
@@ -124,4 +156,59 @@ public class OutboundHandler extends ChannelDuplexHandler {
       }
     }
   }
+
+  /**
+   * Unbinds the connection from the current {@link ResponseHandler} if both the request and the response are
+   * completed. The connection is then either released back to the pool or closed if it is not keep-alive.
+   */
+  private void releaseIfCompleted(Channel channel) {
+    ResponseHandler handler = responseHandler;
+    if (handler == null || !requestCompleted || !responseCompleted) {
+      return;
+    }
+    responseHandler = null;
+    requestInProgress = false;
+    handler.upstreamReleased();
+
+    if (keepAlive) {
+      connectionPool.release(channel);
+    } else {
+      channel.close();
+    }
+  }
+
+  /**
+   * Handler for receiving responses and state changes of the connection it is bound to.
+   */
+  interface ResponseHandler {
+
+    /**
+     * Called when a response message is received.
+     *
+     * @param msg the response message. The handler is responsible for releasing it.
+     * @param completed {@code true} if the message is the last one of the response
+     */
+    void responseRead(Object msg, boolean completed);
+
+    /**
+     * Called when a batch of reads from the connection is completed.
+     */
+    void responseReadComplete();
+
+    /**
+     * Called when the writability of the connection changed while sending the request.
+     */
+    void upstreamWritabilityChanged();
+
+    /**
+     * Called when the connection is no longer bound to this handler because both the request and the response
+     * are completed. The connection must not be used by this handler afterward.
+     */
+    void upstreamReleased();
+
+    /**
+     * Called when the connection is closed while it is still bound to this handler.
+     */
+    void upstreamClosed();
+  }
 }
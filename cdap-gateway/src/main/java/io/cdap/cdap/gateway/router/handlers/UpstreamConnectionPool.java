@@ -0,0 +1,296 @@
+/*
+ * Copyright © 2020 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+
+package io.cdap.cdap.gateway.router.handlers;
+
+import io.cdap.cdap.common.HandlerException;
+import io.cdap.cdap.common.conf.CConfiguration;
+import io.cdap.cdap.common.conf.Constants;
+import io.cdap.cdap.common.discovery.URIScheme;
+import io.netty.bootstrap.Bootstrap;
+import io.netty.buffer.ByteBufAllocator;
+import io.netty.channel.Channel;
+import io.netty.channel.ChannelFuture;
+import io.netty.channel.ChannelInitializer;
+import io.netty.channel.ChannelOption;
+import io.netty.channel.ChannelPipeline;
+import io.netty.channel.EventLoop;
+import io.netty.channel.socket.SocketChannel;
+import io.netty.channel.socket.nio.NioSocketChannel;
+import io.netty.handler.codec.http.HttpClientCodec;
+import io.netty.handler.codec.http.HttpResponseStatus;
+import io.netty.handler.ssl.SslContext;
+import io.netty.handler.ssl.SslContextBuilder;
+import io.netty.handler.ssl.SslHandler;
+import io.netty.handler.ssl.util.InsecureTrustManagerFactory;
+import io.netty.handler.timeout.IdleStateHandler;
+import io.netty.util.AttributeKey;
+import io.netty.util.concurrent.Future;
+import io.netty.util.concurrent.Promise;
+import io.netty.util.concurrent.ScheduledFuture;
+import org.apache.twill.discovery.Discoverable;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import javax.annotation.Nullable;
+import javax.net.ssl.SSLException;
+
+/**
+ * A pool of connections to the internal CDAP services that is shared by all {@link HttpRequestRouter} in the router.
+ * Connections are pooled per {@link EventLoop} and per {@link Discoverable}, so that a client connection only uses
+ * connections that are bound to the same {@link EventLoop} as itself. This guarantees there are no concurrent calls
+ * between the inbound and the outbound channels, hence no locking is needed. Idled pooled connections are closed
+ * by the {@link IdleStateHandler} in the connection pipeline and a closed connection is always removed from the pool.
+ * The pool of an endpoint is removed once it has no more connection, hence endpoints that are no longer discoverable
+ * are not retained. A request waiting for a connection to a busy endpoint fails with status 503 after the configured
+ * acquire timeout.
+ */
+public final class UpstreamConnectionPool {
+
+  private static final Logger LOG = LoggerFactory.getLogger(UpstreamConnectionPool.class);
+  private static final AttributeKey<EndpointPool> ENDPOINT_POOL = AttributeKey.valueOf("router.upstream.pool");
+  private static final AttributeKey<Long> IDLE_SINCE = AttributeKey.valueOf("router.upstream.idle.since");
+
+  private final int maxConnections;
+  private final int idleTimeoutSecs;
+  private final long acquireTimeoutSecs;
+  private final ConcurrentMap<EventLoop, Map<Discoverable, EndpointPool>> pools;
+  private volatile SslContext sslContext;
+
+  public UpstreamConnectionPool(CConfiguration cConf) {
+    this.maxConnections = cConf.getInt(Constants.Router.UPSTREAM_MAX_CONNECTIONS);
+    this.idleTimeoutSecs = cConf.getInt(Constants.Router.CONNECTION_TIMEOUT_SECS);
+    this.acquireTimeoutSecs = cConf.getLong(Constants.Router.UPSTREAM_ACQUIRE_TIMEOUT_SECS);
+    if (maxConnections <= 0) {
+      throw new IllegalArgumentException("Maximum number of upstream connections must be positive. Configuration '"
+                                           + Constants.Router.UPSTREAM_MAX_CONNECTIONS + "' is " + maxConnections);
+    }
+    this.pools = new ConcurrentHashMap<>();
+  }
+
+  /**
+   * Acquires a connection to the given endpoint. This method must be called from the given {@link EventLoop}.
+   * The connection acquired must be given back by calling {@link #release(Channel)} or by closing it.
+   *
+   * @param eventLoop the {@link EventLoop} of the caller
+   * @param discoverable the endpoint to connect to
+   * @return a {@link Future} that will be completed with a connected {@link Channel}, which has an
+   *         {@link OutboundHandler} in the pipeline. The future fails with a {@link HandlerException} if no
+   *         connection is available within the acquire timeout
+   */
+  Future<Channel> acquire(EventLoop eventLoop, Discoverable discoverable) {
+    return pools.computeIfAbsent(eventLoop, k -> new HashMap<>())
+      .computeIfAbsent(discoverable, d -> new EndpointPool(eventLoop, d))
+      .acquire();
+  }
+
+  /**
+   * Releases a connection acquired through {@link #acquire(EventLoop, Discoverable)} back to the pool.
+   * This method must be called from the {@link EventLoop} of the given {@link Channel}.
+   */
+  void release(Channel channel) {
+    EndpointPool pool = channel.attr(ENDPOINT_POOL).get();
+    if (pool == null) {
+      // Not a pooled connection. This shouldn't happen
+      LOG.warn("Closing channel {} that is not acquired from the connection pool", channel);
+      channel.close();
+      return;
+    }
+    pool.release(channel);
+  }
+
+  /**
+   * Returns the {@link SslContext} to be used for a given discoverable endpoint
+   *
+   * @param discoverable the endpoint to connect to
+   * @return the {@link SslContext} or {@code null} if SSL is not needed
+   */
+  @Nullable
+  private SslHandler getSslHandler(Discoverable discoverable, ByteBufAllocator alloc) throws SSLException {
+    if (!URIScheme.HTTPS.isMatch(discoverable)) {
+      return null;
+    }
+    SslContext context = sslContext;
+    if (context != null) {
+      return context.newHandler(alloc);
+    }
+    synchronized (this) {
+      context = sslContext;
+      if (context == null) {
+        sslContext = context = SslContextBuilder.forClient()
+                                                .trustManager(InsecureTrustManagerFactory.INSTANCE).build();
+      }
+      return context.newHandler(alloc);
+    }
+  }
+
+  /**
+   * The pool of connections to one endpoint from one {@link EventLoop}. All methods of this class are only called
+   * from the {@link EventLoop} the pool is created for.
+   */
+  private final class EndpointPool {
+
+    private final EventLoop eventLoop;
+    private final Discoverable discoverable;
+    private final Bootstrap bootstrap;
+    private final Deque<Channel> idleChannels;
+    private final Queue<Promise<Channel>> waiters;
+    private int connections;
+
+    EndpointPool(EventLoop eventLoop, Discoverable discoverable) {
+      this.eventLoop = eventLoop;
+      this.discoverable = discoverable;
+      this.idleChannels = new ArrayDeque<>();
+      this.waiters = new ArrayDeque<>();
+
+      // The client Bootstrap must use the same EventLoop as the inbound channels that use this pool
+      // to make sure thread safety between the inbound and outbound channels callbacks.
+      this.bootstrap = new Bootstrap()
+        .group(eventLoop)
+        .channel(NioSocketChannel.class)
+        .option(ChannelOption.SO_KEEPALIVE, true)
+        .attr(ENDPOINT_POOL, this)
+        .handler(new ChannelInitializer<SocketChannel>() {
+          @Override
+          protected void initChannel(SocketChannel ch) throws Exception {
+            ChannelPipeline pipeline = ch.pipeline();
+
+            SslHandler sslHandler = getSslHandler(discoverable, ch.alloc());
+            if (sslHandler != null) {
+              pipeline.addLast("ssl", sslHandler);
+            }
+            pipeline.addLast("idle-state-handler", new IdleStateHandler(0, 0, idleTimeoutSecs));
+            pipeline.addLast("codec", new HttpClientCodec());
+            pipeline.addLast("forwarder", new OutboundHandler(UpstreamConnectionPool.this));
+          }
+        });
+    }
+
+    Future<Channel> acquire() {
+      // Reuse the most recently used connection first so that the least used ones can be closed due to idle
+      Channel channel = idleChannels.pollLast();
+      while (channel != null && !isReusable(channel)) {
+        // The connection is closing, which will be removed from the pool by the close listener
+        channel = idleChannels.pollLast();
+      }
+      if (channel != null) {
+        LOG.trace("Reuse connection {} to {}", channel, discoverable);
+        return eventLoop.newSucceededFuture(channel);
+      }
+
+      Promise<Channel> promise = eventLoop.newPromise();
+      if (connections < maxConnections) {
+        connect(promise);
+      } else {
+        LOG.trace("Maximum number of connections to {} reached. Waiting for a connection", discoverable);
+        waiters.add(promise);
+        ScheduledFuture<?> timeout = eventLoop.schedule(() -> {
+          if (waiters.remove(promise)) {
+            promise.tryFailure(new HandlerException(HttpResponseStatus.SERVICE_UNAVAILABLE,
+                                                    "Timeout in acquiring connection to " + discoverable.getName()));
+          }
+        }, acquireTimeoutSecs, TimeUnit.SECONDS);
+        promise.addListener(future -> timeout.cancel(false));
+      }
+      return promise;
+    }
+
+    void release(Channel channel) {
+      if (!channel.isActive()) {
+        return;
+      }
+      // Reading could have been paused by the response handler. Always resume it so that a closure by the
+      // remote endpoint is noticed while the connection is idle.
+      channel.config().setAutoRead(true);
+      Promise<Channel> waiter = waiters.poll();
+      while (waiter != null) {
+        if (waiter.trySuccess(channel)) {
+          return;
+        }
+        waiter = waiters.poll();
+      }
+      channel.attr(IDLE_SINCE).set(System.nanoTime());
+      idleChannels.addLast(channel);
+    }
+
+    /**
+     * Validates an idle connection before handing it out. A connection is not reused if it is closing or has been
+     * idled for longer than the idle timeout, since the remote endpoint might be closing it at the same time.
+     */
+    private boolean isReusable(Channel channel) {
+      if (!channel.isActive()) {
+        return false;
+      }
+      Long idleSince = channel.attr(IDLE_SINCE).get();
+      if (idleSince != null && idleTimeoutSecs > 0
+        && System.nanoTime() - idleSince >= TimeUnit.SECONDS.toNanos(idleTimeoutSecs)) {
+        LOG.trace("Closing connection {} to {} that has been idled for too long", channel, discoverable);
+        channel.close();
+        return false;
+      }
+      return true;
+    }
+
+    private void connect(Promise<Channel> promise) {
+      connections++;
+      ChannelFuture connectFuture = bootstrap.connect(discoverable.getSocketAddress());
+      Channel channel = connectFuture.channel();
+      LOG.trace("Create new connection {} to {}", channel, discoverable);
+
+      channel.closeFuture().addListener(future -> closed(channel));
+      connectFuture.addListener(future -> {
+        if (!future.isSuccess()) {
+          promise.tryFailure(future.cause());
+        } else if (!promise.trySuccess(channel)) {
+          // The caller is no longer interested in the connection
+          release(channel);
+        }
+      });
+    }
+
+    private void closed(Channel channel) {
+      connections--;
+      idleChannels.remove(channel);
+
+      // Open a new connection for the first waiter that is still waiting
+      Promise<Channel> waiter = waiters.poll();
+      while (waiter != null && waiter.isDone()) {
+        waiter = waiters.poll();
+      }
+      if (waiter != null) {
+        connect(waiter);
+      }
+
+      // Remove this pool once all connections are gone, so that pools of endpoints that are no longer
+      // discoverable are not retained. A new pool will be created on the next acquire if needed.
+      if (connections == 0 && waiters.isEmpty()) {
+        Map<Discoverable, EndpointPool> endpointPools = pools.get(eventLoop);
+        if (endpointPools != null) {
+          endpointPools.remove(discoverable, this);
+        }
+      }
+    }
+  }
+}
@@ -431,6 +431,41 @@ public class MetricsHandlerTest extends MetricsSuiteTestBase {
         + end, ImmutableList.of(1L, 1L), ImmutableList.of(1L, 10L));
   }
 
+  @Test
+  public void testDistributionPercentiles() throws Exception {
+    MetricsContext collector = collectionService.getContext(getServiceContext("distspace", "DistApp", "DistService",
+                                                                              "run1", "dist"));
+    for (int i = 1; i <= 100; i++) {
+      collector.distribution("latency", i);
+    }
+    TimeUnit.SECONDS.sleep(2);
+
+    // percentiles are computed from the log buckets, hence are the middle of the bucket the percentile falls in
+    MetricQueryResult queryResult = post(
+      "/v3/metrics/query?tag=namespace:distspace&tag=app:DistApp&metric=system.latency:p50" +
+        "&metric=system.latency:p99&aggregate=true", MetricQueryResult.class);
+    Assert.assertEquals(2, queryResult.getSeries().length);
+    Assert.assertEquals("system.latency:p50", queryResult.getSeries()[0].getMetricName());
+    Assert.assertEquals(49L, queryResult.getSeries()[0].getData()[0].getValue());
+    Assert.assertEquals("system.latency:p99", queryResult.getSeries()[1].getMetricName());
+    Assert.assertEquals(99L, queryResult.getSeries()[1].getData()[0].getValue());
+
+    // interpolation and aggregation of the time range are not supported for percentiles
+    long start = (emitTs - 60 * 1000) / 1000;
+    long end = (emitTs + 300 * 1000) / 1000;
+    String timeRange = "&start=" + start + "&end=" + end;
+    HttpResponse response = doPost("/v3/metrics/query?tag=namespace:distspace&metric=system.latency:p50"
+                                     + timeRange + "&interpolate=step", null);
+    Assert.assertEquals(400, response.getStatusLine().getStatusCode());
+    response = doPost("/v3/metrics/query?tag=namespace:distspace&metric=system.latency:p50"
+                        + timeRange + "&count=1&aggregate=sum", null);
+    Assert.assertEquals(400, response.getStatusLine().getStatusCode());
+
+    // search returns the percentiles of the distribution instead of its buckets
+    verifySearchMetricResult("/v3/metrics/search?target=metric&tag=namespace:distspace",
+                             ImmutableList.of("system.latency:p50", "system.latency:p95", "system.latency:p99"));
+  }
+
   @Test
   public void testQueryMetricsWithTags() throws Exception {
     //aggregate result, in the right namespace
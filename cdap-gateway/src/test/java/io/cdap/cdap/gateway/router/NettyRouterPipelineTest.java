@@ -16,6 +16,7 @@
 
 package io.cdap.cdap.gateway.router;
 
+import com.google.common.collect.ImmutableMap;
 import com.google.common.collect.Iterables;
 import com.google.common.io.ByteStreams;
 import com.ning.http.client.AsyncCompletionHandler;
@@ -32,6 +33,8 @@ import io.cdap.cdap.common.conf.Constants;
 import io.cdap.cdap.common.io.Locations;
 import io.cdap.cdap.common.test.AppJarHelper;
 import io.netty.bootstrap.Bootstrap;
+import io.netty.buffer.ByteBufUtil;
+import io.netty.buffer.Unpooled;
 import io.netty.channel.Channel;
 import io.netty.channel.ChannelHandlerContext;
 import io.netty.channel.ChannelInboundHandlerAdapter;
@@ -42,13 +45,14 @@ import io.netty.channel.nio.NioEventLoopGroup;
 import io.netty.channel.socket.SocketChannel;
 import io.netty.channel.socket.nio.NioSocketChannel;
 import io.netty.handler.codec.http.DefaultFullHttpRequest;
+import io.netty.handler.codec.http.FullHttpResponse;
 import io.netty.handler.codec.http.HttpClientCodec;
 import io.netty.handler.codec.http.HttpHeaderNames;
 import io.netty.handler.codec.http.HttpMethod;
 import io.netty.handler.codec.http.HttpObjectAggregator;
 import io.netty.handler.codec.http.HttpRequest;
-import io.netty.handler.codec.http.HttpResponse;
 import io.netty.handler.codec.http.HttpResponseStatus;
+import io.netty.handler.codec.http.HttpUtil;
 import io.netty.handler.codec.http.HttpVersion;
 import io.netty.util.ReferenceCountUtil;
 import org.apache.twill.discovery.Discoverable;
@@ -74,10 +78,17 @@ import java.io.OutputStream;
 import java.net.HttpURLConnection;
 import java.net.InetSocketAddress;
 import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Queue;
 import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentLinkedQueue;
 import java.util.concurrent.Future;
 import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.Semaphore;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
 
 /**
  * Verify the ordering of events in the RouterPipeline.
@@ -155,10 +166,159 @@ public class NettyRouterPipelineTest {
 
   @Test
   public void testHttpPipelining() throws Exception {
-    final BlockingQueue<HttpResponseStatus> responseStatuses = new LinkedBlockingQueue<>();
+    final BlockingQueue<String> responses = new LinkedBlockingQueue<>();
     EventLoopGroup eventGroup = new NioEventLoopGroup();
 
-    Bootstrap bootstrap = new Bootstrap()
+    Bootstrap bootstrap = createClientBootstrap(eventGroup, response -> {
+      responses.add(response.status().code() + ":" + response.content().toString(StandardCharsets.UTF_8));
+    });
+
+    // Create a connection and make five consecutive HTTP call without waiting for the first to respond.
+    // Later requests complete earlier in the server, but responses should be in the same order as the requests.
+    InetSocketAddress address = ROUTER.getRouterAddress();
+    Channel channel = bootstrap.connect(address.getHostName(), address.getPort()).sync().channel();
+    for (int i = 0; i < 5; i++) {
+      channel.writeAndFlush(createSleepRequest((5 - i) * 200));
+    }
+
+    for (int i = 0; i < 5; i++) {
+      Assert.assertEquals("200:" + (5 - i) * 200, responses.poll(10, TimeUnit.SECONDS));
+    }
+
+    eventGroup.shutdownGracefully();
+    channel.close();
+
+    Assert.assertTrue(responses.isEmpty());
+  }
+
+  @Test
+  public void testPipeliningLargeResponse() throws Exception {
+    BlockingQueue<FullHttpResponse> responses = new LinkedBlockingQueue<>();
+    EventLoopGroup eventGroup = new NioEventLoopGroup();
+
+    try {
+      Bootstrap bootstrap = createClientBootstrap(eventGroup, response -> responses.add(response.copy()));
+
+      // A large response that completes in the upstream before the response of the earlier request.
+      // It should still be written back to the client completely and in order.
+      InetSocketAddress address = ROUTER.getRouterAddress();
+      Channel channel = bootstrap.connect(address.getHostName(), address.getPort()).sync().channel();
+      byte[] body = Arrays.copyOf(generatePostData(), 4 * ServerResource.CHUNK_SIZE);
+      HttpRequest upload = new DefaultFullHttpRequest(HttpVersion.HTTP_1_1, HttpMethod.POST, "/v1/upload",
+                                                      Unpooled.wrappedBuffer(body));
+      upload.headers().set(HttpHeaderNames.HOST, HOSTNAME);
+      HttpUtil.setContentLength(upload, body.length);
+
+      channel.write(createSleepRequest(1000));
+      channel.writeAndFlush(upload);
+
+      FullHttpResponse response = responses.poll(10, TimeUnit.SECONDS);
+      Assert.assertNotNull(response);
+      Assert.assertEquals("1000", response.content().toString(StandardCharsets.UTF_8));
+      response.release();
+
+      response = responses.poll(10, TimeUnit.SECONDS);
+      Assert.assertNotNull(response);
+      Assert.assertEquals(HttpResponseStatus.OK, response.status());
+      Assert.assertArrayEquals(body, ByteBufUtil.getBytes(response.content()));
+      response.release();
+
+      channel.close().sync();
+    } finally {
+      eventGroup.shutdownGracefully();
+    }
+  }
+
+  @Test
+  public void testAcquireTimeout() throws Exception {
+    // A router that only has one connection to the upstream, with one second acquire timeout
+    RouterResource router = new RouterResource(HOSTNAME, DISCOVERY_SERVICE, ImmutableMap.of(
+      Constants.Router.SERVER_WORKER_THREADS, "1",
+      Constants.Router.UPSTREAM_MAX_CONNECTIONS, "1",
+      Constants.Router.UPSTREAM_ACQUIRE_TIMEOUT_SECS, "1"));
+    router.before();
+    EventLoopGroup eventGroup = new NioEventLoopGroup();
+
+    try {
+      BlockingQueue<String> responses = new LinkedBlockingQueue<>();
+      Bootstrap bootstrap = createClientBootstrap(eventGroup, response -> {
+        responses.add(response.status().code() + ":" + response.content().toString(StandardCharsets.UTF_8));
+      });
+
+      InetSocketAddress address = router.getRouterAddress();
+      Channel slowChannel = bootstrap.connect(address.getHostName(), address.getPort()).sync().channel();
+      Channel channel = bootstrap.connect(address.getHostName(), address.getPort()).sync().channel();
+
+      // The slow request holds the only connection, hence the second request should time out
+      slowChannel.writeAndFlush(createSleepRequest(4000));
+      TimeUnit.MILLISECONDS.sleep(200);
+      channel.writeAndFlush(createSleepRequest(0));
+
+      String response = responses.poll(3, TimeUnit.SECONDS);
+      Assert.assertNotNull(response);
+      Assert.assertTrue(response, response.startsWith(HttpResponseStatus.SERVICE_UNAVAILABLE.code() + ":"));
+      Assert.assertEquals("200:4000", responses.poll(10, TimeUnit.SECONDS));
+
+      slowChannel.close().sync();
+      channel.close().sync();
+    } finally {
+      eventGroup.shutdownGracefully();
+      router.after();
+    }
+  }
+
+  @Test
+  public void testPipeliningLoad() throws Exception {
+    int requestCount = 1000;
+    int window = 16;
+    EventLoopGroup eventGroup = new NioEventLoopGroup();
+    InetSocketAddress address = ROUTER.getRouterAddress();
+
+    try {
+      // Requests from short lived client connections, one request per connection
+      BlockingQueue<HttpResponseStatus> statuses = new LinkedBlockingQueue<>();
+      Bootstrap bootstrap = createClientBootstrap(eventGroup, response -> statuses.add(response.status()));
+      long[] latencies = new long[requestCount];
+      long startTime = System.nanoTime();
+      for (int i = 0; i < requestCount; i++) {
+        long requestTime = System.nanoTime();
+        Channel channel = bootstrap.connect(address.getHostName(), address.getPort()).sync().channel();
+        channel.writeAndFlush(createSleepRequest(0));
+        Assert.assertEquals(HttpResponseStatus.OK, statuses.poll(10, TimeUnit.SECONDS));
+        latencies[i] = System.nanoTime() - requestTime;
+        channel.close().sync();
+      }
+      logLoadResult("Connection per request", startTime, latencies);
+
+      // Pipelined requests on one client connection, with at most "window" requests outstanding
+      Queue<Long> requestTimes = new ConcurrentLinkedQueue<>();
+      AtomicInteger responseCount = new AtomicInteger();
+      Semaphore permits = new Semaphore(window);
+      long[] pipelinedLatencies = new long[requestCount];
+      bootstrap = createClientBootstrap(eventGroup, response -> {
+        if (HttpResponseStatus.OK.equals(response.status())) {
+          pipelinedLatencies[responseCount.getAndIncrement()] = System.nanoTime() - requestTimes.poll();
+        }
+        permits.release();
+      });
+      Channel channel = bootstrap.connect(address.getHostName(), address.getPort()).sync().channel();
+      startTime = System.nanoTime();
+      for (int i = 0; i < requestCount; i++) {
+        Assert.assertTrue(permits.tryAcquire(10, TimeUnit.SECONDS));
+        requestTimes.add(System.nanoTime());
+        channel.writeAndFlush(createSleepRequest(0));
+      }
+      Assert.assertTrue(permits.tryAcquire(window, 10, TimeUnit.SECONDS));
+      Assert.assertEquals(requestCount, responseCount.get());
+      logLoadResult("Pipelined", startTime, pipelinedLatencies);
+      channel.close().sync();
+    } finally {
+      eventGroup.shutdownGracefully();
+    }
+  }
+
+  private Bootstrap createClientBootstrap(EventLoopGroup eventGroup, Consumer<FullHttpResponse> responseConsumer) {
+    return new Bootstrap()
       .channel(NioSocketChannel.class)
       .group(eventGroup)
       .handler(new ChannelInitializer<SocketChannel>() {
@@ -166,42 +326,37 @@ public class NettyRouterPipelineTest {
         protected void initChannel(SocketChannel ch) {
           ChannelPipeline pipeline = ch.pipeline();
           pipeline.addLast("codec", new HttpClientCodec());
-          pipeline.addLast("aggregator", new HttpObjectAggregator(1048576));
+          pipeline.addLast("aggregator", new HttpObjectAggregator(MAX_UPLOAD_BYTES));
           pipeline.addLast("handler", new ChannelInboundHandlerAdapter() {
             @Override
             public void channelRead(ChannelHandlerContext ctx, Object msg) {
-              if (msg instanceof HttpResponse) {
-                responseStatuses.add(((HttpResponse) msg).status());
+              try {
+                if (msg instanceof FullHttpResponse) {
+                  responseConsumer.accept((FullHttpResponse) msg);
+                }
+              } finally {
+                ReferenceCountUtil.release(msg);
               }
-              ReferenceCountUtil.release(msg);
             }
           });
         }
       });
+  }
 
-    // Create a connection and make five consecutive HTTP call without waiting for the first to respond
-    InetSocketAddress address = ROUTER.getRouterAddress();
-    Channel channel = bootstrap.connect(address.getHostName(), address.getPort()).sync().channel();
-    for (int i = 0; i < 5; i++) {
-      HttpRequest request = new DefaultFullHttpRequest(HttpVersion.HTTP_1_1,
-                                                       HttpMethod.GET, "/v1/sleep?sleepMillis=3000");
-      request.headers().set(HttpHeaderNames.HOST, HOSTNAME);
-      channel.writeAndFlush(request);
-    }
-
-    // Should get the first response as normal one
-    HttpResponseStatus status = responseStatuses.poll(5, TimeUnit.SECONDS);
-    Assert.assertEquals(HttpResponseStatus.OK, status);
-
-    // The rest four should be failure responses
-    for (int i = 0; i < 4; i++) {
-      Assert.assertEquals(HttpResponseStatus.NOT_IMPLEMENTED, responseStatuses.poll(1, TimeUnit.SECONDS));
-    }
-
-    eventGroup.shutdownGracefully();
-    channel.close();
+  private HttpRequest createSleepRequest(long sleepMillis) {
+    HttpRequest request = new DefaultFullHttpRequest(HttpVersion.HTTP_1_1,
+                                                     HttpMethod.GET, "/v1/sleep?sleepMillis=" + sleepMillis);
+    request.headers().set(HttpHeaderNames.HOST, HOSTNAME);
+    return request;
+  }
 
-    Assert.assertTrue(responseStatuses.isEmpty());
+  private void logLoadResult(String name, long startTime, long[] latencies) {
+    long elapsedNanos = System.nanoTime() - startTime;
+    Arrays.sort(latencies);
+    long p99 = latencies[(int) Math.ceil(latencies.length * 0.99) - 1];
+    LOG.info("{}: {} requests, {} requests/sec, p99 latency {} ms", name, latencies.length,
+             String.format("%.1f", latencies.length * 1e9 / elapsedNanos),
+             String.format("%.3f", p99 / 1e6));
   }
 
   //Deploy word count app n times.
@@ -20,6 +20,7 @@ import com.google.common.collect.ImmutableList;
 import io.cdap.cdap.common.conf.Constants;
 import io.cdap.cdap.common.service.ServiceDiscoverable;
 import io.cdap.cdap.proto.ProgramType;
+import io.cdap.cdap.test.SlowTests;
 import io.netty.handler.codec.http.DefaultHttpRequest;
 import io.netty.handler.codec.http.HttpMethod;
 import io.netty.handler.codec.http.HttpRequest;
@@ -27,18 +28,54 @@ import io.netty.handler.codec.http.HttpVersion;
 import org.junit.Assert;
 import org.junit.BeforeClass;
 import org.junit.Test;
+import org.junit.experimental.categories.Category;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.EnumSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import javax.annotation.Nullable;
 
 /**
  *  To test the RouterPathLookup regular expression tests.
  */
 public class RouterPathLookupTest {
 
+  private static final Logger LOG = LoggerFactory.getLogger(RouterPathLookupTest.class);
   private static RouterPathLookup pathLookup;
   private static final HttpVersion VERSION = HttpVersion.HTTP_1_1;
   private static final String API_KEY = "SampleTestApiKey";
 
+  /**
+   * A mix of paths commonly seen by the router and their destinations.
+   */
+  private static final Map<String, RouteDestination> RECORDED_PATHS = new LinkedHashMap<>();
+
+  static {
+    RECORDED_PATHS.put("/v3/namespaces/default/apps", RouterPathLookup.APP_FABRIC_HTTP);
+    RECORDED_PATHS.put("/v3/namespaces/default/apps/a/workflows/w/runs", RouterPathLookup.APP_FABRIC_HTTP);
+    RECORDED_PATHS.put("/v3/namespaces/default/apps/a/workflows/w/runs/r/logs", RouterPathLookup.LOG_QUERY);
+    RECORDED_PATHS.put("/v3/namespaces/default/apps/a/spark/s/logs", RouterPathLookup.LOG_QUERY);
+    RECORDED_PATHS.put("/v3/namespaces/default/data/datasets/d", RouterPathLookup.DATASET_MANAGER);
+    RECORDED_PATHS.put("/v3/namespaces/default/data/datasets/d/workers", RouterPathLookup.APP_FABRIC_HTTP);
+    RECORDED_PATHS.put("/v3/namespaces/default/data/explore/tables", RouterPathLookup.EXPLORE_HTTP_USER_SERVICE);
+    RECORDED_PATHS.put("/v3/namespaces/default/datasets/d/metadata/tags", RouterPathLookup.METADATA_SERVICE);
+    RECORDED_PATHS.put("/v3/namespaces/default/securekeys/k/metadata", RouterPathLookup.APP_FABRIC_HTTP);
+    RECORDED_PATHS.put("/v3/namespaces/default/previews/p/status", RouterPathLookup.PREVIEW_HTTP);
+    RECORDED_PATHS.put("/v3/metrics/query", RouterPathLookup.METRICS);
+    RECORDED_PATHS.put("/v3/system/services/" + Constants.Service.LOGSAVER + "/status",
+                       RouterPathLookup.LOG_SAVER);
+    RECORDED_PATHS.put("/v3/system/services/" + Constants.Service.APP_FABRIC_HTTP + "/logs",
+                       RouterPathLookup.LOG_QUERY);
+    RECORDED_PATHS.put("/v3/metadata-internals/add", RouterPathLookup.DONT_ROUTE);
+    RECORDED_PATHS.put("/v3/feeds/f", null);
+  }
+
   @BeforeClass
   public static void init() {
     pathLookup = new RouterPathLookup();
@@ -475,6 +512,65 @@ public class RouterPathLookupTest {
     Assert.assertFalse(RouterPathLookup.endsWith(new String[]{"a", "b", "c", "d"}, "a", "b", null));
   }
 
+  @Test
+  public void testRecordedPathMix() {
+    for (Map.Entry<String, RouteDestination> entry : RECORDED_PATHS.entrySet()) {
+      assertRouting(entry.getKey(), entry.getValue());
+    }
+  }
+
+  @Test
+  @Category(SlowTests.class)
+  public void testRecordedPathMixLookupTime() {
+    List<HttpRequest> requests = new ArrayList<>();
+    for (String path : RECORDED_PATHS.keySet()) {
+      requests.add(new DefaultHttpRequest(VERSION, HttpMethod.GET, path));
+    }
+    int iterations = 10000;
+    long startTime = System.nanoTime();
+    for (int i = 0; i < iterations; i++) {
+      for (HttpRequest request : requests) {
+        pathLookup.getRoutingService(request.uri(), request);
+      }
+    }
+    LOG.info("Average routing lookup time: {} ns",
+             (System.nanoTime() - startTime) / ((long) iterations * requests.size()));
+  }
+
+  @Test
+  public void testSameAsLegacyLookup() {
+    // Path parts used by the routing rules, plus a few that are not
+    List<String> tokens = new ArrayList<>(ImmutableList.of(
+      "v3", "feeds", "bootstrap", "namespaces", "default", "apps", "a", "versions", "1.0", "methods", "m",
+      "system", "services", "logs", "securekeys", "metadata", "properties", "tags", "search", "datasets",
+      "lineage", "security", "authorization", "store", "data", "programs", "profiles", "runs", "previews",
+      "serviceproviders", "metrics", "explore", "queries", "jdbc", "tables", "status", "stacks", "flows",
+      "workers", "mapreduce", "metadata-internals", "workflows", "unknown"));
+    for (ProgramType programType : ProgramType.values()) {
+      tokens.add(programType.getCategoryName());
+    }
+    tokens.addAll(ImmutableList.of(Constants.Service.LOGSAVER, Constants.Service.TRANSACTION,
+                                   Constants.Service.METRICS_PROCESSOR, Constants.Service.METRICS,
+                                   Constants.Service.APP_FABRIC_HTTP, Constants.Service.DATASET_EXECUTOR,
+                                   Constants.Service.METADATA_SERVICE, Constants.Service.EXPLORE_HTTP_USER_SERVICE,
+                                   Constants.Service.MESSAGING_SERVICE, Constants.Service.RUNTIME));
+    List<HttpMethod> methods = ImmutableList.of(HttpMethod.GET, HttpMethod.PUT, HttpMethod.POST, HttpMethod.DELETE);
+
+    Random random = new Random();
+    for (int i = 0; i < 100000; i++) {
+      StringBuilder path = new StringBuilder(random.nextInt(10) == 0 ? "/v2" : "/v3");
+      int length = random.nextInt(12);
+      for (int j = 0; j < length; j++) {
+        path.append('/').append(tokens.get(random.nextInt(tokens.size())));
+      }
+      HttpRequest request = new DefaultHttpRequest(VERSION, methods.get(random.nextInt(methods.size())),
+                                                   path.toString());
+      Assert.assertEquals(request.method() + " " + path,
+                          getLegacyRoutingService(path.toString(), request),
+                          pathLookup.getRoutingService(path.toString(), request));
+    }
+  }
+
   private void assertRouting(String path, RouteDestination destination) {
     for (HttpMethod method : ImmutableList.of(HttpMethod.GET, HttpMethod.POST, HttpMethod.DELETE)) {
       HttpRequest httpRequest = new DefaultHttpRequest(VERSION, method, path);
@@ -482,4 +578,120 @@ public class RouterPathLookupTest {
       Assert.assertEquals(destination,  result);
     }
   }
+
+  /**
+   * A copy of the if/else chain that {@link RouterPathLookup} used before the route table. It is kept to verify
+   * that the route table routes every path the same way.
+   */
+  @Nullable
+  private static RouteDestination getLegacyRoutingService(String requestPath, HttpRequest httpRequest) {
+    try {
+      String[] uriParts = Arrays.stream(requestPath.split("/")).filter(s -> !s.isEmpty()).toArray(String[]::new);
+      if (uriParts[0].equals(Constants.Gateway.API_VERSION_3_TOKEN)) {
+        return getLegacyV3RoutingService(uriParts, httpRequest.method());
+      }
+    } catch (Exception e) {
+      // Ignore exception. Default routing to app-fabric.
+    }
+    return RouterPathLookup.APP_FABRIC_HTTP;
+  }
+
+  @Nullable
+  private static RouteDestination getLegacyV3RoutingService(String[] uriParts, HttpMethod requestMethod) {
+    if ((uriParts.length >= 2) && uriParts[1].equals("feeds")) {
+      return null;
+    } else if ("bootstrap".equals(uriParts[1])) {
+      return RouterPathLookup.APP_FABRIC_HTTP;
+    } else if ((uriParts.length >= 11) && "versions".equals(uriParts[5]) && isUserServiceType(uriParts[7])
+      && "methods".equals(uriParts[9])) {
+      String serviceName = ServiceDiscoverable.getName(uriParts[2], uriParts[4],
+                                                       ProgramType.valueOfCategoryName(uriParts[7]), uriParts[8]);
+      return new RouteDestination(serviceName, uriParts[6]);
+    } else if ((uriParts.length >= 9) && isUserServiceType(uriParts[5]) && "methods".equals(uriParts[7])) {
+      return new RouteDestination(ServiceDiscoverable.getName(uriParts[2], uriParts[4],
+                                                              ProgramType.valueOfCategoryName(uriParts[5]),
+                                                              uriParts[6]));
+    } else if (beginsWith(uriParts, "v3", "system", "services", null, "logs")) {
+      return RouterPathLookup.LOG_QUERY;
+    } else if ((!beginsWith(uriParts, "v3", "namespaces", null, "securekeys")) && (endsWith(uriParts, "metadata") ||
+      endsWith(uriParts, "metadata", "properties") || endsWith(uriParts, "metadata", "properties", null) ||
+      endsWith(uriParts, "metadata", "tags") || endsWith(uriParts, "metadata", "tags", null) ||
+      endsWith(uriParts, "metadata", "search") ||
+      beginsWith(uriParts, "v3", "namespaces", null, "datasets", null, "lineage") ||
+      beginsWith(uriParts, "v3", "metadata", "search"))) {
+      return RouterPathLookup.METADATA_SERVICE;
+    } else if (beginsWith(uriParts, "v3", "security", "authorization") ||
+      beginsWith(uriParts, "v3", "namespaces", null, "securekeys")) {
+      return RouterPathLookup.APP_FABRIC_HTTP;
+    } else if (beginsWith(uriParts, "v3", "security", "store", "namespaces", null)) {
+      return RouterPathLookup.APP_FABRIC_HTTP;
+    } else if (beginsWith(uriParts, "v3", "namespaces", null, "data", "datasets", null, "programs") &&
+      requestMethod.equals(HttpMethod.GET)) {
+      return RouterPathLookup.APP_FABRIC_HTTP;
+    } else if (beginsWith(uriParts, "v3", "namespaces", null, "profiles") ||
+      beginsWith(uriParts, "v3", "profiles")) {
+      return RouterPathLookup.APP_FABRIC_HTTP;
+    } else if (beginsWith(uriParts, "v3", "namespaces", null, "runs")) {
+      return RouterPathLookup.APP_FABRIC_HTTP;
+    } else if (beginsWith(uriParts, "v3", "namespaces", null, "previews")) {
+      return RouterPathLookup.PREVIEW_HTTP;
+    } else if (beginsWith(uriParts, "v3", "system", "serviceproviders")) {
+      return RouterPathLookup.APP_FABRIC_HTTP;
+    } else if ((uriParts.length >= 8 && uriParts[7].equals("logs")) ||
+      (uriParts.length >= 10 && uriParts[9].equals("logs")) ||
+      (uriParts.length >= 6 && uriParts[5].equals("logs"))) {
+      return RouterPathLookup.LOG_QUERY;
+    } else if (uriParts.length >= 2 && uriParts[1].equals("metrics")) {
+      return RouterPathLookup.METRICS;
+    } else if (uriParts.length >= 5 && uriParts[1].equals("data") && uriParts[2].equals("explore") &&
+      (uriParts[3].equals("queries") || uriParts[3].equals("jdbc") || uriParts[3].equals("namespaces"))) {
+      return RouterPathLookup.EXPLORE_HTTP_USER_SERVICE;
+    } else if (uriParts.length >= 6 && uriParts[3].equals("data") && uriParts[4].equals("explore") &&
+      (uriParts[5].equals("queries") || uriParts[5].equals("datasets")
+        || uriParts[5].equals("tables") || uriParts[5].equals("jdbc"))) {
+      return RouterPathLookup.EXPLORE_HTTP_USER_SERVICE;
+    } else if ((uriParts.length == 3) && uriParts[1].equals("explore") && uriParts[2].equals("status")) {
+      return RouterPathLookup.EXPLORE_HTTP_USER_SERVICE;
+    } else if (beginsWith(uriParts, "v3", "system", "services", null, "status")
+      || beginsWith(uriParts, "v3", "system", "services", null, "stacks")) {
+      switch (uriParts[3]) {
+        case Constants.Service.LOGSAVER: return RouterPathLookup.LOG_SAVER;
+        case Constants.Service.TRANSACTION: return RouterPathLookup.TRANSACTION;
+        case Constants.Service.METRICS_PROCESSOR: return RouterPathLookup.METRICS_PROCESSOR;
+        case Constants.Service.METRICS: return RouterPathLookup.METRICS;
+        case Constants.Service.APP_FABRIC_HTTP: return RouterPathLookup.APP_FABRIC_HTTP;
+        case Constants.Service.DATASET_EXECUTOR: return RouterPathLookup.DATASET_EXECUTOR;
+        case Constants.Service.METADATA_SERVICE: return RouterPathLookup.METADATA_SERVICE;
+        case Constants.Service.EXPLORE_HTTP_USER_SERVICE: return RouterPathLookup.EXPLORE_HTTP_USER_SERVICE;
+        case Constants.Service.MESSAGING_SERVICE: return RouterPathLookup.MESSAGING;
+        case Constants.Service.RUNTIME: return RouterPathLookup.RUNTIME;
+        default: return null;
+      }
+    } else if (uriParts.length == 7 && uriParts[3].equals("data") && uriParts[4].equals("datasets") &&
+      (uriParts[6].equals("flows") || uriParts[6].equals("workers") || uriParts[6].equals("mapreduce"))) {
+      return RouterPathLookup.APP_FABRIC_HTTP;
+    } else if ((uriParts.length >= 4) && uriParts[3].equals("data")) {
+      return RouterPathLookup.DATASET_MANAGER;
+    } else if ((uriParts.length == 3) && uriParts[1].equals("metadata-internals")) {
+      return RouterPathLookup.DONT_ROUTE;
+    }
+    return RouterPathLookup.APP_FABRIC_HTTP;
+  }
+
+  private static boolean isUserServiceType(String uriPart) {
+    for (ProgramType type : ServiceDiscoverable.getUserServiceTypes()) {
+      if (type.getCategoryName().equals(uriPart)) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  private static boolean beginsWith(String[] actual, String... expected) {
+    return RouterPathLookup.beginsWith(actual, expected);
+  }
+
+  private static boolean endsWith(String[] actual, String... expected) {
+    return RouterPathLookup.endsWith(actual, expected);
+  }
 }
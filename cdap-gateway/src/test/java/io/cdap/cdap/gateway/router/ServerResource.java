@@ -190,7 +190,7 @@ public class ServerResource extends ExternalResource {
     public void sleep(HttpRequest request, HttpResponder responder,
                       @QueryParam("sleepMillis") long sleepMillis) throws Exception {
       TimeUnit.MILLISECONDS.sleep(sleepMillis);
-      responder.sendStatus(HttpResponseStatus.OK);
+      responder.sendString(HttpResponseStatus.OK, Long.toString(sleepMillis));
     }
   }
 }
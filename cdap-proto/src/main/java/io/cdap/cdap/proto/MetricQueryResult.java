@@ -26,12 +26,18 @@ public final class MetricQueryResult {
   private final long endTime;
   private final TimeSeries[] series;
   private final String resolution;
+  private final boolean truncated;
 
   public MetricQueryResult(long startTime, long endTime, TimeSeries[] series, int resolution) {
+    this(startTime, endTime, series, resolution, false);
+  }
+
+  public MetricQueryResult(long startTime, long endTime, TimeSeries[] series, int resolution, boolean truncated) {
     this.startTime = startTime;
     this.endTime = endTime;
     this.series = series;
     this.resolution = String.valueOf(resolution) + "s";
+    this.truncated = truncated;
   }
 
   public long getStartTime() {
@@ -50,6 +56,14 @@ public final class MetricQueryResult {
     return resolution;
   }
 
+  /**
+   * Returns {@code true} if the query matched more data than is read for a single query, in which case the series
+   * only contain part of the matching data. A query over a smaller time range or fewer tags returns complete results.
+   */
+  public boolean isTruncated() {
+    return truncated;
+  }
+
   /**
    * Represents time series of a metric. This is used for decorating REST API output.
    */
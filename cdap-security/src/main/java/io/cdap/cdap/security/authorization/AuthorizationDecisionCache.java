@@ -0,0 +1,138 @@
+/*
+ * Copyright © 2020 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package io.cdap.cdap.security.authorization;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * A bounded, TTL based cache of positive and negative authorization decisions. Concurrent lookups of the same
+ * key that are not in the cache share a single load. Decisions loaded concurrently with {@link #invalidateAll()}
+ * are returned to the callers but not cached.
+ *
+ * @param <K> type of the cache key
+ */
+final class AuthorizationDecisionCache<K> {
+
+  private final Cache<K, Boolean> cache;
+  private final ConcurrentMap<K, CompletableFuture<Boolean>> pendingLoads;
+  private final AtomicLong generation;
+
+  AuthorizationDecisionCache(long ttlSeconds, long maxEntries) {
+    this.cache = CacheBuilder.newBuilder()
+      .expireAfterWrite(ttlSeconds, TimeUnit.SECONDS)
+      .maximumSize(maxEntries)
+      .build();
+    this.pendingLoads = new ConcurrentHashMap<>();
+    this.generation = new AtomicLong();
+  }
+
+  /**
+   * Returns the decisions for the given keys. Keys that are neither cached nor being loaded by another caller are
+   * loaded with one call to the given {@link Loader}.
+   *
+   * @throws Exception if failed to load the decisions
+   */
+  Map<K, Boolean> getAll(Collection<? extends K> keys, Loader<K> loader) throws Exception {
+    Map<K, Boolean> result = new HashMap<>();
+    Map<K, CompletableFuture<Boolean>> ownLoads = new HashMap<>();
+    Map<K, CompletableFuture<Boolean>> otherLoads = new HashMap<>();
+
+    for (K key : keys) {
+      Boolean decision = cache.getIfPresent(key);
+      if (decision != null) {
+        result.put(key, decision);
+        continue;
+      }
+      CompletableFuture<Boolean> future = new CompletableFuture<>();
+      CompletableFuture<Boolean> existing = pendingLoads.putIfAbsent(key, future);
+      if (existing == null) {
+        ownLoads.put(key, future);
+      } else {
+        otherLoads.put(key, existing);
+      }
+    }
+
+    if (!ownLoads.isEmpty()) {
+      long loadGeneration = generation.get();
+      try {
+        Map<K, Boolean> decisions = loader.load(ownLoads.keySet());
+        for (Map.Entry<K, CompletableFuture<Boolean>> entry : ownLoads.entrySet()) {
+          boolean decision = decisions.getOrDefault(entry.getKey(), false);
+          if (generation.get() == loadGeneration) {
+            cache.put(entry.getKey(), decision);
+            // invalidateAll() may have run between the check and the put
+            if (generation.get() != loadGeneration) {
+              cache.invalidate(entry.getKey());
+            }
+          }
+          entry.getValue().complete(decision);
+          result.put(entry.getKey(), decision);
+        }
+      } catch (Throwable t) {
+        ownLoads.values().forEach(future -> future.completeExceptionally(t));
+        throw t;
+      } finally {
+        ownLoads.forEach(pendingLoads::remove);
+      }
+    }
+
+    for (Map.Entry<K, CompletableFuture<Boolean>> entry : otherLoads.entrySet()) {
+      try {
+        result.put(entry.getKey(), entry.getValue().get());
+      } catch (ExecutionException e) {
+        Throwable cause = e.getCause();
+        if (cause instanceof Exception) {
+          throw (Exception) cause;
+        }
+        throw e;
+      }
+    }
+    return result;
+  }
+
+  /**
+   * Removes all cached decisions.
+   */
+  void invalidateAll() {
+    generation.incrementAndGet();
+    cache.invalidateAll();
+  }
+
+  /**
+   * Loads authorization decisions for a set of keys.
+   *
+   * @param <K> type of the key
+   */
+  interface Loader<K> {
+
+    /**
+     * Returns the decisions for the given keys. Keys missing from the result are treated as denied.
+     */
+    Map<K, Boolean> load(Collection<K> keys) throws Exception;
+  }
+}
@@ -26,20 +26,26 @@ import io.cdap.cdap.proto.id.EntityId;
 import io.cdap.cdap.proto.id.NamespaceId;
 import io.cdap.cdap.proto.id.NamespacedEntityId;
 import io.cdap.cdap.proto.security.Action;
+import io.cdap.cdap.proto.security.AuthorizationPrivilege;
 import io.cdap.cdap.proto.security.Principal;
 import io.cdap.cdap.security.spi.authorization.AuthorizationEnforcer;
+import io.cdap.cdap.security.spi.authorization.UnauthorizedException;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.util.Collection;
 import java.util.Collections;
 import java.util.HashSet;
+import java.util.Map;
 import java.util.Set;
 import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
 import javax.annotation.Nullable;
 
 /**
  * An implementation of {@link AuthorizationEnforcer} that runs on the master. It calls the authorizer directly to
- * enforce authorization policies.
+ * enforce authorization policies. If enabled, enforcement and visibility decisions are cached for a short time.
+ * The cache is cleared whenever privileges are changed through the {@link DelegatingPrivilegeManager}.
  */
 @Singleton
 public class DefaultAuthorizationEnforcer extends AbstractAuthorizationEnforcer {
@@ -50,6 +56,10 @@ public class DefaultAuthorizationEnforcer extends AbstractAuthorizationEnforcer
   @Nullable
   private final Principal masterUser;
   private final int logTimeTakenAsWarn;
+  @Nullable
+  private final AuthorizationDecisionCache<AuthorizationPrivilege> enforceCache;
+  @Nullable
+  private final AuthorizationDecisionCache<VisibilityKey> visibilityCache;
 
   @Inject
   DefaultAuthorizationEnforcer(CConfiguration cConf, AuthorizerInstantiator authorizerInstantiator) {
@@ -58,6 +68,30 @@ public class DefaultAuthorizationEnforcer extends AbstractAuthorizationEnforcer
     String masterUserName = AuthorizationUtil.getEffectiveMasterUser(cConf);
     this.masterUser = masterUserName == null ? null : new Principal(masterUserName, Principal.PrincipalType.USER);
     this.logTimeTakenAsWarn = cConf.getInt(Constants.Security.Authorization.EXTENSION_OPERATION_TIME_WARN_THRESHOLD);
+
+    int cacheTTLSecs = cConf.getInt(Constants.Security.Authorization.MASTER_CACHE_TTL_SECS);
+    int cacheMaxEntries = cConf.getInt(Constants.Security.Authorization.MASTER_CACHE_MAX_ENTRIES);
+    // Cache can be disabled by setting the number of entries or the TTL to <= 0
+    if (cacheTTLSecs > 0 && cacheMaxEntries > 0) {
+      int perCacheSize = cacheMaxEntries / 2 + 1;
+      this.enforceCache = new AuthorizationDecisionCache<>(cacheTTLSecs, perCacheSize);
+      this.visibilityCache = new AuthorizationDecisionCache<>(cacheTTLSecs, perCacheSize);
+    } else {
+      this.enforceCache = null;
+      this.visibilityCache = null;
+    }
+  }
+
+  /**
+   * Removes all cached authorization decisions. It is called when privileges are changed.
+   */
+  public void invalidateCache() {
+    if (enforceCache != null) {
+      enforceCache.invalidateAll();
+    }
+    if (visibilityCache != null) {
+      visibilityCache.invalidateAll();
+    }
   }
 
   @Override
@@ -65,7 +99,26 @@ public class DefaultAuthorizationEnforcer extends AbstractAuthorizationEnforcer
     if (!isSecurityAuthorizationEnabled()) {
       return;
     }
-    doEnforce(entity, principal, Collections.singleton(action));
+    if (enforceCache == null) {
+      doEnforce(entity, principal, Collections.singleton(action));
+      return;
+    }
+    // bypass the cache when the check doesn't need the authorizer
+    if (isAccessingSystemNSAsMasterUser(entity, principal) || isEnforcingOnSamePrincipalId(entity, principal)) {
+      return;
+    }
+    AuthorizationPrivilege privilege = new AuthorizationPrivilege(principal, entity, action);
+    Map<AuthorizationPrivilege, Boolean> decisions = enforceCache.getAll(Collections.singleton(privilege), keys -> {
+      try {
+        doEnforce(entity, principal, Collections.singleton(action));
+        return Collections.singletonMap(privilege, true);
+      } catch (UnauthorizedException e) {
+        return Collections.singletonMap(privilege, false);
+      }
+    });
+    if (!decisions.get(privilege)) {
+      throw new UnauthorizedException(principal, action, entity);
+    }
   }
 
   @Override
@@ -83,23 +136,46 @@ public class DefaultAuthorizationEnforcer extends AbstractAuthorizationEnforcer
     }
 
     Set<? extends EntityId> difference = Sets.difference(entityIds, visibleEntities);
-    LOG.trace("Checking visibility of {} for principal {}.", difference, principal);
-    Set<? extends EntityId> moreVisibleEntities;
+    if (visibilityCache == null) {
+      visibleEntities.addAll(checkVisibility(difference, principal));
+    } else {
+      Set<VisibilityKey> keys = difference.stream()
+        .map(entityId -> new VisibilityKey(principal, entityId))
+        .collect(Collectors.toSet());
+      Map<VisibilityKey, Boolean> decisions = visibilityCache.getAll(keys, this::loadVisibility);
+      for (Map.Entry<VisibilityKey, Boolean> entry : decisions.entrySet()) {
+        if (entry.getValue()) {
+          visibleEntities.add(entry.getKey().getEntityId());
+        }
+      }
+    }
+    LOG.trace("Getting {} as visible entities", visibleEntities);
+    return Collections.unmodifiableSet(visibleEntities);
+  }
+
+  private Map<VisibilityKey, Boolean> loadVisibility(Collection<VisibilityKey> keys) throws Exception {
+    // All keys are for the same principal, since each isVisible call is for a single principal
+    Principal principal = keys.iterator().next().getPrincipal();
+    Set<EntityId> entityIds = keys.stream().map(VisibilityKey::getEntityId).collect(Collectors.toSet());
+    Set<? extends EntityId> visibleEntities = checkVisibility(entityIds, principal);
+    return keys.stream().collect(Collectors.toMap(key -> key, key -> visibleEntities.contains(key.getEntityId())));
+  }
+
+  private Set<? extends EntityId> checkVisibility(Set<? extends EntityId> entityIds,
+                                                  Principal principal) throws Exception {
+    LOG.trace("Checking visibility of {} for principal {}.", entityIds, principal);
     long startTime = System.nanoTime();
     try {
-      moreVisibleEntities = authorizerInstantiator.get().isVisible(difference, principal);
+      return authorizerInstantiator.get().isVisible(entityIds, principal);
     } finally {
       long timeTaken = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startTime);
       String logLine = "Checked visibility of {} for principal {}. Time spent in visibility check was {} ms.";
       if (timeTaken > logTimeTakenAsWarn) {
-        LOG.warn(logLine,  difference, principal, timeTaken);
+        LOG.warn(logLine,  entityIds, principal, timeTaken);
       } else {
-        LOG.trace(logLine,  difference, principal, timeTaken);
+        LOG.trace(logLine,  entityIds, principal, timeTaken);
       }
     }
-    visibleEntities.addAll(moreVisibleEntities);
-    LOG.trace("Getting {} as visible entities", visibleEntities);
-    return Collections.unmodifiableSet(visibleEntities);
   }
 
   private void doEnforce(EntityId entity, Principal principal, Set<Action> actions) throws Exception {
@@ -30,29 +30,45 @@ import java.util.Set;
  * A {@link PrivilegesManager} implements that delegates to the authorizer.
  * Having this makes Guice injection for Privilege manager simple. That reason will go away once
  * https://issues.cask.co/browse/CDAP-11561 is fixed.
+ * Authorization decisions cached by the {@link DefaultAuthorizationEnforcer} are cleared after privilege changes.
  */
 public class DelegatingPrivilegeManager implements PrivilegesManager {
 
   private final Authorizer delegateAuthorizer;
+  private final DefaultAuthorizationEnforcer authorizationEnforcer;
 
   @Inject
-  DelegatingPrivilegeManager(AuthorizerInstantiator authorizerInstantiator) {
+  DelegatingPrivilegeManager(AuthorizerInstantiator authorizerInstantiator,
+                             DefaultAuthorizationEnforcer authorizationEnforcer) {
     this.delegateAuthorizer = authorizerInstantiator.get();
+    this.authorizationEnforcer = authorizationEnforcer;
   }
 
   @Override
   public void grant(Authorizable authorizable, Principal principal, Set<Action> actions) throws Exception {
-    delegateAuthorizer.grant(authorizable, principal, actions);
+    try {
+      delegateAuthorizer.grant(authorizable, principal, actions);
+    } finally {
+      authorizationEnforcer.invalidateCache();
+    }
   }
 
   @Override
   public void revoke(Authorizable authorizable, Principal principal, Set<Action> actions) throws Exception {
-    delegateAuthorizer.revoke(authorizable, principal, actions);
+    try {
+      delegateAuthorizer.revoke(authorizable, principal, actions);
+    } finally {
+      authorizationEnforcer.invalidateCache();
+    }
   }
 
   @Override
   public void revoke(Authorizable authorizable) throws Exception {
-    delegateAuthorizer.revoke(authorizable);
+    try {
+      delegateAuthorizer.revoke(authorizable);
+    } finally {
+      authorizationEnforcer.invalidateCache();
+    }
   }
 
   @Override
@@ -54,7 +54,6 @@ import java.net.HttpURLConnection;
 import java.util.Collections;
 import java.util.HashMap;
 import java.util.Map;
-import java.util.Objects;
 import java.util.Set;
 import java.util.concurrent.TimeUnit;
 import javax.annotation.ParametersAreNonnullByDefault;
@@ -218,48 +217,4 @@ public class RemoteAuthorizationEnforcer extends AbstractAuthorizationEnforcer {
       }
     });
   }
-
-  private static class VisibilityKey {
-    private final Principal principal;
-    private final EntityId entityId;
-
-    VisibilityKey(Principal principal, EntityId entityId) {
-      this.principal = principal;
-      this.entityId = entityId;
-    }
-
-    public Principal getPrincipal() {
-      return principal;
-    }
-
-    public EntityId getEntityId() {
-      return entityId;
-    }
-
-    @Override
-    public boolean equals(Object o) {
-      if (this == o) {
-        return true;
-      }
-      if (o == null || getClass() != o.getClass()) {
-        return false;
-      }
-      VisibilityKey that = (VisibilityKey) o;
-      return Objects.equals(principal, that.principal) &&
-        Objects.equals(entityId, that.entityId);
-    }
-
-    @Override
-    public int hashCode() {
-      return Objects.hash(principal, entityId);
-    }
-
-    @Override
-    public String toString() {
-      return "VisibilityKey{" +
-        "principal=" + principal +
-        ", entityId=" + entityId +
-        '}';
-    }
-  }
 }
@@ -0,0 +1,69 @@
+/*
+ * Copyright © 2020 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package io.cdap.cdap.security.authorization;
+
+import io.cdap.cdap.proto.id.EntityId;
+import io.cdap.cdap.proto.security.Principal;
+
+import java.util.Objects;
+
+/**
+ * Key for caching the visibility of an entity to a principal.
+ */
+final class VisibilityKey {
+  private final Principal principal;
+  private final EntityId entityId;
+
+  VisibilityKey(Principal principal, EntityId entityId) {
+    this.principal = principal;
+    this.entityId = entityId;
+  }
+
+  public Principal getPrincipal() {
+    return principal;
+  }
+
+  public EntityId getEntityId() {
+    return entityId;
+  }
+
+  @Override
+  public boolean equals(Object o) {
+    if (this == o) {
+      return true;
+    }
+    if (o == null || getClass() != o.getClass()) {
+      return false;
+    }
+    VisibilityKey that = (VisibilityKey) o;
+    return Objects.equals(principal, that.principal) &&
+      Objects.equals(entityId, that.entityId);
+  }
+
+  @Override
+  public int hashCode() {
+    return Objects.hash(principal, entityId);
+  }
+
+  @Override
+  public String toString() {
+    return "VisibilityKey{" +
+      "principal=" + principal +
+      ", entityId=" + entityId +
+      '}';
+  }
+}
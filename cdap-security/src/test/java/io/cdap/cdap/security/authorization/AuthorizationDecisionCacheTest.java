@@ -0,0 +1,110 @@
+/*
+ * Copyright © 2020 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package io.cdap.cdap.security.authorization;
+
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.ImmutableSet;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Unit test for {@link AuthorizationDecisionCache}.
+ */
+public class AuthorizationDecisionCacheTest {
+
+  @Test
+  public void testCache() throws Exception {
+    AuthorizationDecisionCache<String> cache = new AuthorizationDecisionCache<>(300, 100);
+    AtomicInteger loads = new AtomicInteger();
+    AuthorizationDecisionCache.Loader<String> loader = keys -> {
+      loads.incrementAndGet();
+      return Collections.singletonMap("a", true);
+    };
+
+    // Both positive and negative decisions are cached
+    Assert.assertEquals(ImmutableMap.of("a", true, "b", false), cache.getAll(Arrays.asList("a", "b"), loader));
+    Assert.assertEquals(ImmutableMap.of("a", true, "b", false), cache.getAll(Arrays.asList("a", "b"), loader));
+    Assert.assertEquals(1, loads.get());
+
+    // Only the missing keys are loaded
+    cache.getAll(Arrays.asList("a", "c"), keys -> {
+      Assert.assertEquals(ImmutableSet.of("c"), ImmutableSet.copyOf(keys));
+      return Collections.emptyMap();
+    });
+
+    cache.invalidateAll();
+    cache.getAll(Arrays.asList("a", "b"), loader);
+    Assert.assertEquals(2, loads.get());
+  }
+
+  @Test
+  public void testConcurrentLoads() throws Exception {
+    AuthorizationDecisionCache<String> cache = new AuthorizationDecisionCache<>(300, 100);
+    AtomicInteger loads = new AtomicInteger();
+    CountDownLatch loadStarted = new CountDownLatch(1);
+    CountDownLatch loadBlocked = new CountDownLatch(1);
+    AuthorizationDecisionCache.Loader<String> loader = keys -> {
+      loads.incrementAndGet();
+      loadStarted.countDown();
+      loadBlocked.await();
+      return Collections.singletonMap("a", true);
+    };
+
+    ExecutorService executor = Executors.newFixedThreadPool(2);
+    try {
+      Future<Map<String, Boolean>> first = executor.submit(() -> cache.getAll(Collections.singleton("a"), loader));
+      Assert.assertTrue(loadStarted.await(10, TimeUnit.SECONDS));
+
+      // The second lookup should wait for the first load instead of loading again
+      Future<Map<String, Boolean>> second = executor.submit(() -> cache.getAll(Collections.singleton("a"), loader));
+      loadBlocked.countDown();
+      Assert.assertEquals(Collections.singletonMap("a", true), first.get(10, TimeUnit.SECONDS));
+      Assert.assertEquals(Collections.singletonMap("a", true), second.get(10, TimeUnit.SECONDS));
+      Assert.assertEquals(1, loads.get());
+    } finally {
+      executor.shutdownNow();
+    }
+  }
+
+  @Test
+  public void testInvalidateDuringLoad() throws Exception {
+    AuthorizationDecisionCache<String> cache = new AuthorizationDecisionCache<>(300, 100);
+    AtomicInteger loads = new AtomicInteger();
+
+    // A decision loaded while the cache is invalidated is returned but not cached
+    Assert.assertEquals(Collections.singletonMap("a", true), cache.getAll(Collections.singleton("a"), keys -> {
+      loads.incrementAndGet();
+      cache.invalidateAll();
+      return Collections.singletonMap("a", true);
+    }));
+    cache.getAll(Collections.singleton("a"), keys -> {
+      loads.incrementAndGet();
+      return Collections.singletonMap("a", false);
+    });
+    Assert.assertEquals(2, loads.get());
+  }
+}
@@ -135,6 +135,39 @@ public class DefaultAuthorizationEnforcerTest extends AuthorizationTestBase {
     }
   }
 
+  @Test
+  public void testCache() throws Exception {
+    CConfiguration cConfCopy = CConfiguration.copy(CCONF);
+    cConfCopy.setInt(Constants.Security.Authorization.MASTER_CACHE_MAX_ENTRIES, 100);
+    cConfCopy.setInt(Constants.Security.Authorization.MASTER_CACHE_TTL_SECS, 300);
+    try (AuthorizerInstantiator authorizerInstantiator = new AuthorizerInstantiator(cConfCopy,
+                                                                                    AUTH_CONTEXT_FACTORY)) {
+      Authorizer authorizer = authorizerInstantiator.get();
+      DefaultAuthorizationEnforcer authorizationEnforcer =
+        new DefaultAuthorizationEnforcer(cConfCopy, authorizerInstantiator);
+      DelegatingPrivilegeManager privilegeManager =
+        new DelegatingPrivilegeManager(authorizerInstantiator, authorizationEnforcer);
+      DatasetId ds = NS.dataset("ds");
+
+      assertAuthorizationFailure(authorizationEnforcer, ds, ALICE, Action.READ);
+      Assert.assertTrue(authorizationEnforcer.isVisible(Collections.singleton(ds), ALICE).isEmpty());
+
+      // Changes through the privilege manager are reflected right away
+      privilegeManager.grant(Authorizable.fromEntityId(ds), ALICE, Collections.singleton(Action.READ));
+      authorizationEnforcer.enforce(ds, ALICE, Action.READ);
+      Assert.assertEquals(Collections.singleton(ds), authorizationEnforcer.isVisible(Collections.singleton(ds), ALICE));
+
+      // Changes made directly on the authorizer are not seen until the cache is invalidated
+      authorizer.revoke(Authorizable.fromEntityId(ds), ALICE, Collections.singleton(Action.READ));
+      authorizationEnforcer.enforce(ds, ALICE, Action.READ);
+      Assert.assertEquals(Collections.singleton(ds), authorizationEnforcer.isVisible(Collections.singleton(ds), ALICE));
+
+      privilegeManager.revoke(Authorizable.fromEntityId(ds));
+      assertAuthorizationFailure(authorizationEnforcer, ds, ALICE, Action.READ);
+      Assert.assertTrue(authorizationEnforcer.isVisible(Collections.singleton(ds), ALICE).isEmpty());
+    }
+  }
+
   @Test
   public void testIsVisible() throws Exception {
     try (AuthorizerInstantiator authorizerInstantiator = new AuthorizerInstantiator(CCONF, AUTH_CONTEXT_FACTORY)) {
@@ -21,6 +21,8 @@ import com.google.common.base.Preconditions;
 import com.google.common.collect.Maps;
 import com.google.common.io.Closeables;
 import io.cdap.cdap.api.metadata.MetadataReader;
+import io.cdap.cdap.api.metrics.Counter;
+import io.cdap.cdap.api.metrics.Gauge;
 import io.cdap.cdap.api.metrics.Metrics;
 import io.cdap.cdap.api.metrics.MetricsCollectionService;
 import io.cdap.cdap.api.security.store.SecureStore;
@@ -126,6 +128,16 @@ public final class SparkRuntimeContext extends AbstractContext implements Metric
     getMetrics().gauge(metricName, value);
   }
 
+  @Override
+  public Counter counter(String metricName) {
+    return getMetrics().counter(metricName);
+  }
+
+  @Override
+  public Gauge gauge(String metricName) {
+    return getMetrics().gauge(metricName);
+  }
+
   @Override
   public Metrics child(Map<String, String> tags) {
     return getMetrics().child(tags);
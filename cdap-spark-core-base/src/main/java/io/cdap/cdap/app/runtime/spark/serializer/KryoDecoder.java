@@ -47,12 +47,12 @@ public class KryoDecoder implements Decoder {
 
   @Override
   public int readInt() throws IOException {
-    return input.readInt();
+    return input.readInt(false);
   }
 
   @Override
   public long readLong() throws IOException {
-    return input.readLong();
+    return input.readLong(false);
   }
 
   @Override
@@ -72,7 +72,7 @@ public class KryoDecoder implements Decoder {
 
   @Override
   public ByteBuffer readBytes() throws IOException {
-    int len = input.readInt();
+    int len = input.readInt(true);
     return ByteBuffer.wrap(input.readBytes(len));
   }
 
@@ -93,6 +93,6 @@ public class KryoDecoder implements Decoder {
 
   @Override
   public void skipBytes() throws IOException {
-    input.skip(input.readInt());
+    input.skip(input.readInt(true));
   }
 }
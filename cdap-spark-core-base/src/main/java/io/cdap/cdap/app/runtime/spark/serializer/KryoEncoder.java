@@ -47,13 +47,14 @@ public class KryoEncoder implements Encoder {
 
   @Override
   public Encoder writeInt(int i) throws IOException {
-    output.writeInt(i);
+    // zig-zag variable length encoding, which is compact for small values
+    output.writeInt(i, false);
     return this;
   }
 
   @Override
   public Encoder writeLong(long l) throws IOException {
-    output.writeLong(l);
+    output.writeLong(l, false);
     return this;
   }
 
@@ -83,7 +84,7 @@ public class KryoEncoder implements Encoder {
 
   @Override
   public Encoder writeBytes(byte[] bytes, int off, int len) throws IOException {
-    output.writeInt(len);
+    output.writeInt(len, true);
     output.writeBytes(bytes, off, len);
     return this;
   }
@@ -21,41 +21,194 @@ import com.esotericsoftware.kryo.KryoException;
 import com.esotericsoftware.kryo.Serializer;
 import com.esotericsoftware.kryo.io.Input;
 import com.esotericsoftware.kryo.io.Output;
+import com.esotericsoftware.kryo.util.ObjectMap;
 import io.cdap.cdap.api.data.format.StructuredRecord;
 import io.cdap.cdap.api.data.schema.Schema;
+import io.cdap.cdap.common.io.DatumReader;
+import io.cdap.cdap.common.io.DatumWriter;
+import io.cdap.cdap.format.io.FlatStructuredRecordDatumReader;
+import io.cdap.cdap.format.io.FlatStructuredRecordDatumWriter;
 import io.cdap.cdap.format.io.StructuredRecordDatumReader;
 import io.cdap.cdap.format.io.StructuredRecordDatumWriter;
 
 import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
 
 /**
  * A Kryo {@link Serializer} for {@link StructuredRecord}.
+ *
+ * The schema of a record is only written in full the first time it is encountered in an object graph. Subsequent
+ * records with the same schema in the same graph only write the id of the schema. The schema table is stored in the
+ * Kryo graph context, which is reset together with Kryo references after each top level object. This makes it safe
+ * for Spark to relocate serialized objects, for example in the serialized shuffle.
+ *
+ * Across object graphs, each serializer instance (one per Kryo instance) caches the encoded schemas as well as
+ * the parsed schemas keyed by the encoded bytes, so that a schema is neither re-encoded nor re-parsed for every
+ * record. Records with a flat schema are encoded and decoded with {@link FlatStructuredRecordDatumWriter} and
+ * {@link FlatStructuredRecordDatumReader}.
  */
 public class StructuredRecordSerializer extends Serializer<StructuredRecord> {
 
   private static final StructuredRecordDatumWriter DATUM_WRITER = new StructuredRecordDatumWriter();
   private static final StructuredRecordDatumReader DATUM_READER = new StructuredRecordDatumReader();
+  private static final int MAX_CACHED_SCHEMAS = 1000;
+
+  // Keys for the schema tables in the Kryo graph context
+  private static final Object WRITE_SCHEMAS_KEY = new Object();
+  private static final Object READ_SCHEMAS_KEY = new Object();
+
+  private final Map<Schema, WriteSchemaEntry> writeSchemaCache = createCache();
+  private final Map<ByteBuffer, ReadSchemaEntry> readSchemaCache = createCache();
+  private Kryo schemaKryo;
 
   @Override
   public void write(Kryo kryo, Output output, StructuredRecord record) {
-    // First write out the schema
-    kryo.writeObject(output, record.getSchema());
+    Schema schema = record.getSchema();
+    WriteSchemaEntry entry = getWriteSchemaEntry(kryo, output, schema);
+
     // Then write out the data
     try {
-      DATUM_WRITER.encode(record, new KryoEncoder(output));
+      entry.datumWriter.encode(record, new KryoEncoder(output));
     } catch (IOException e) {
-      throw new KryoException("Failed to encode StructuredRecord " + record.getSchema().getRecordName(), e);
+      throw new KryoException("Failed to encode StructuredRecord " + schema.getRecordName(), e);
     }
   }
 
   @Override
   public StructuredRecord read(Kryo kryo, Input input, Class<StructuredRecord> type) {
-    // Read the schema
-    Schema schema = kryo.readObject(input, Schema.class);
+    ReadSchemaEntry entry = getReadSchemaEntry(kryo, input);
     try {
-      return DATUM_READER.read(new KryoDecoder(input), schema);
+      return entry.datumReader.read(new KryoDecoder(input), entry.schema);
     } catch (IOException e) {
-      throw new KryoException("Failed to decode StructuredRecord " + schema.getRecordName(), e);
+      throw new KryoException("Failed to decode StructuredRecord " + entry.schema.getRecordName(), e);
+    }
+  }
+
+  /**
+   * Writes out the schema of a record. It writes {@code 0} followed by the length and bytes of the encoded schema
+   * if the schema is not yet known to the current object graph, otherwise writes the schema id plus one.
+   */
+  private WriteSchemaEntry getWriteSchemaEntry(Kryo kryo, Output output, Schema schema) {
+    ObjectMap<Object, Object> graphContext = kryo.getGraphContext();
+    @SuppressWarnings("unchecked")
+    Map<Schema, Integer> schemaIds = (Map<Schema, Integer>) graphContext.get(WRITE_SCHEMAS_KEY);
+    if (schemaIds == null) {
+      // Most of the time the same schema instance is used for records in the same graph
+      schemaIds = new IdentityHashMap<>();
+      graphContext.put(WRITE_SCHEMAS_KEY, schemaIds);
+    }
+
+    WriteSchemaEntry entry = writeSchemaCache.get(schema);
+    if (entry == null) {
+      entry = new WriteSchemaEntry(schema, encodeSchema(schema));
+      writeSchemaCache.put(schema, entry);
+    }
+
+    Integer schemaId = schemaIds.get(schema);
+    if (schemaId != null) {
+      output.writeInt(schemaId + 1, true);
+      return entry;
+    }
+
+    schemaIds.put(schema, schemaIds.size());
+    output.writeInt(0, true);
+    output.writeInt(entry.encodedSchema.length, true);
+    output.writeBytes(entry.encodedSchema);
+    return entry;
+  }
+
+  /**
+   * Reads the schema of a record that was written by {@link #getWriteSchemaEntry(Kryo, Output, Schema)}.
+   */
+  private ReadSchemaEntry getReadSchemaEntry(Kryo kryo, Input input) {
+    ObjectMap<Object, Object> graphContext = kryo.getGraphContext();
+    @SuppressWarnings("unchecked")
+    List<ReadSchemaEntry> schemas = (List<ReadSchemaEntry>) graphContext.get(READ_SCHEMAS_KEY);
+    if (schemas == null) {
+      schemas = new ArrayList<>();
+      graphContext.put(READ_SCHEMAS_KEY, schemas);
+    }
+
+    int schemaId = input.readInt(true);
+    if (schemaId > 0) {
+      if (schemaId > schemas.size()) {
+        throw new KryoException("Unknown schema id " + (schemaId - 1) + " for StructuredRecord");
+      }
+      return schemas.get(schemaId - 1);
+    }
+
+    ByteBuffer encodedSchema = ByteBuffer.wrap(input.readBytes(input.readInt(true)));
+    ReadSchemaEntry entry = readSchemaCache.get(encodedSchema);
+    if (entry == null) {
+      entry = new ReadSchemaEntry(decodeSchema(encodedSchema.array()));
+      readSchemaCache.put(encodedSchema, entry);
+    }
+    schemas.add(entry);
+    return entry;
+  }
+
+  /**
+   * Encodes a {@link Schema} with the {@link SchemaSerializer}. A separate {@link Kryo} instance is used, so that
+   * the encoding doesn't interfere with the references tracked by the {@link Kryo} used for the record.
+   */
+  private byte[] encodeSchema(Schema schema) {
+    Output output = new Output(256, -1);
+    getSchemaKryo().writeObject(output, schema);
+    return output.toBytes();
+  }
+
+  private Schema decodeSchema(byte[] bytes) {
+    return getSchemaKryo().readObject(new Input(bytes), Schema.class);
+  }
+
+  private Kryo getSchemaKryo() {
+    if (schemaKryo == null) {
+      schemaKryo = new Kryo();
+      schemaKryo.setReferences(false);
+      schemaKryo.addDefaultSerializer(Schema.class, SchemaSerializer.class);
+    }
+    return schemaKryo;
+  }
+
+  private static <K, V> Map<K, V> createCache() {
+    return new LinkedHashMap<K, V>(16, 0.75f, true) {
+      @Override
+      protected boolean removeEldestEntry(Map.Entry<K, V> eldest) {
+        return size() > MAX_CACHED_SCHEMAS;
+      }
+    };
+  }
+
+  /**
+   * Information about a {@link Schema} needed for writing records.
+   */
+  private static final class WriteSchemaEntry {
+    private final byte[] encodedSchema;
+    private final DatumWriter<StructuredRecord> datumWriter;
+
+    WriteSchemaEntry(Schema schema, byte[] encodedSchema) {
+      this.encodedSchema = encodedSchema;
+      this.datumWriter = FlatStructuredRecordDatumWriter.isFlat(schema)
+        ? new FlatStructuredRecordDatumWriter(schema) : DATUM_WRITER;
+    }
+  }
+
+  /**
+   * Information about a {@link Schema} needed for reading records.
+   */
+  private static final class ReadSchemaEntry {
+    private final Schema schema;
+    private final DatumReader<StructuredRecord> datumReader;
+
+    ReadSchemaEntry(Schema schema) {
+      this.schema = schema;
+      this.datumReader = FlatStructuredRecordDatumWriter.isFlat(schema)
+        ? new FlatStructuredRecordDatumReader(schema) : DATUM_READER;
     }
   }
 }
@@ -0,0 +1,333 @@
+/*
+ * Copyright © 2020 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package io.cdap.cdap.app.runtime.spark.serializer;
+
+import com.esotericsoftware.kryo.Kryo;
+import com.esotericsoftware.kryo.KryoException;
+import com.esotericsoftware.kryo.Serializer;
+import com.esotericsoftware.kryo.io.Input;
+import com.esotericsoftware.kryo.io.Output;
+import io.cdap.cdap.api.data.format.StructuredRecord;
+import io.cdap.cdap.api.data.schema.Schema;
+import io.cdap.cdap.format.StructuredRecordStringConverter;
+import io.cdap.cdap.format.io.StructuredRecordDatumReader;
+import io.cdap.cdap.format.io.StructuredRecordDatumWriter;
+import io.cdap.cdap.test.SlowTests;
+import org.junit.Assert;
+import org.junit.Test;
+import org.junit.experimental.categories.Category;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Unit tests for {@link StructuredRecordSerializer}.
+ */
+public class StructuredRecordSerializerTest {
+
+  private static final Logger LOG = LoggerFactory.getLogger(StructuredRecordSerializerTest.class);
+
+  private static final Schema NARROW_SCHEMA = Schema.recordOf(
+    "narrow",
+    Schema.Field.of("id", Schema.of(Schema.Type.LONG)),
+    Schema.Field.of("name", Schema.of(Schema.Type.STRING)),
+    Schema.Field.of("score", Schema.nullableOf(Schema.of(Schema.Type.DOUBLE))));
+
+  private static final Schema NESTED_SCHEMA = Schema.recordOf(
+    "nested",
+    Schema.Field.of("id", Schema.of(Schema.Type.INT)),
+    Schema.Field.of("tags", Schema.arrayOf(Schema.of(Schema.Type.STRING))),
+    Schema.Field.of("inner", Schema.nullableOf(NARROW_SCHEMA)));
+
+  private static final Schema WIDE_SCHEMA = createWideSchema(100);
+
+  @Test
+  public void testMultipleRecordsInGraph() {
+    List<StructuredRecord> records = new ArrayList<>();
+    for (int i = 0; i < 10; i++) {
+      records.add(createNarrow(i));
+      records.add(createNested(i));
+      records.add(createWide(i));
+    }
+
+    Kryo kryo = createKryo();
+    ByteArrayOutputStream bos = new ByteArrayOutputStream();
+    try (Output output = new Output(bos)) {
+      kryo.writeObject(output, records);
+    }
+
+    Input input = new Input(bos.toByteArray());
+    List<?> newRecords = kryo.readObject(input, ArrayList.class);
+    assertRecords(records, newRecords);
+  }
+
+  @Test
+  public void testMultipleGraphs() {
+    List<StructuredRecord> records = new ArrayList<>();
+    for (int i = 0; i < 10; i++) {
+      records.add(createNarrow(i));
+      records.add(createNested(i));
+    }
+
+    // Write each record as a separate object graph, which is how Spark serializes records in a stream
+    Kryo writeKryo = createKryo();
+    ByteArrayOutputStream bos = new ByteArrayOutputStream();
+    try (Output output = new Output(bos)) {
+      for (StructuredRecord record : records) {
+        writeKryo.writeObject(output, record);
+      }
+    }
+
+    // Reading with a fresh Kryo and with a Kryo that has the schemas cached should both work
+    Kryo readKryo = createKryo();
+    for (int i = 0; i < 2; i++) {
+      Input input = new Input(bos.toByteArray());
+      List<StructuredRecord> newRecords = new ArrayList<>();
+      for (int j = 0; j < records.size(); j++) {
+        newRecords.add(readKryo.readObject(input, StructuredRecord.class));
+      }
+      assertRecords(records, newRecords);
+    }
+  }
+
+  @Test
+  public void testRelocatedRecords() {
+    // Spark can reorder serialized records, hence each record written as a separate graph must be self-contained
+    Kryo kryo = createKryo();
+    List<byte[]> serialized = new ArrayList<>();
+    List<StructuredRecord> records = new ArrayList<>();
+    for (int i = 0; i < 5; i++) {
+      StructuredRecord record = createNarrow(i);
+      records.add(record);
+      Output output = new Output(64, -1);
+      kryo.writeObject(output, record);
+      serialized.add(output.toBytes());
+    }
+    Collections.reverse(serialized);
+    Collections.reverse(records);
+
+    Kryo readKryo = createKryo();
+    List<StructuredRecord> newRecords = new ArrayList<>();
+    for (byte[] bytes : serialized) {
+      newRecords.add(readKryo.readObject(new Input(bytes), StructuredRecord.class));
+    }
+    assertRecords(records, newRecords);
+  }
+
+  @Test
+  public void testSizeComparedWithSchemaPerRecord() {
+    // Narrow records are dominated by the schema, which is only written once per graph
+    List<StructuredRecord> records = createRecords(NARROW_SCHEMA, 1000);
+    Assert.assertTrue(writeRecords(createKryo(), records).length
+                        < writeRecords(createSchemaPerRecordKryo(), records).length);
+
+    // Wide records are dominated by the values, so the schema only makes a small difference
+    records = createRecords(WIDE_SCHEMA, 100);
+    Assert.assertTrue(writeRecords(createKryo(), records).length
+                        <= writeRecords(createSchemaPerRecordKryo(), records).length);
+  }
+
+  @Test
+  @Category(SlowTests.class)
+  public void testThroughputComparedWithSchemaPerRecord() {
+    compareThroughput("narrow", NARROW_SCHEMA, 100000);
+    compareThroughput("wide", WIDE_SCHEMA, 5000);
+  }
+
+  private void compareThroughput(String name, Schema schema, int numRecords) {
+    List<StructuredRecord> records = createRecords(schema, numRecords);
+    Kryo schemaPerRecordKryo = createSchemaPerRecordKryo();
+
+    // warm up
+    readRecords(schemaPerRecordKryo, writeRecords(schemaPerRecordKryo, records.subList(0, 1000)), 1000);
+    readRecords(createKryo(), writeRecords(createKryo(), records.subList(0, 1000)), 1000);
+
+    long start = System.nanoTime();
+    byte[] oldBytes = writeRecords(schemaPerRecordKryo, records);
+    long oldWriteNanos = System.nanoTime() - start;
+    start = System.nanoTime();
+    readRecords(schemaPerRecordKryo, oldBytes, numRecords);
+    long oldReadNanos = System.nanoTime() - start;
+
+    Kryo kryo = createKryo();
+    start = System.nanoTime();
+    byte[] newBytes = writeRecords(kryo, records);
+    long newWriteNanos = System.nanoTime() - start;
+    start = System.nanoTime();
+    readRecords(kryo, newBytes, numRecords);
+    long newReadNanos = System.nanoTime() - start;
+
+    LOG.info("{} records, schema per record: {} bytes, write {} records/sec, read {} records/sec", name,
+             oldBytes.length, recordsPerSec(numRecords, oldWriteNanos), recordsPerSec(numRecords, oldReadNanos));
+    LOG.info("{} records, schema dictionary: {} bytes, write {} records/sec, read {} records/sec", name,
+             newBytes.length, recordsPerSec(numRecords, newWriteNanos), recordsPerSec(numRecords, newReadNanos));
+  }
+
+  private List<StructuredRecord> createRecords(Schema schema, int numRecords) {
+    List<StructuredRecord> records = new ArrayList<>(numRecords);
+    for (int i = 0; i < numRecords; i++) {
+      records.add(schema == WIDE_SCHEMA ? createWide(i) : createNarrow(i));
+    }
+    return records;
+  }
+
+  private Kryo createSchemaPerRecordKryo() {
+    Kryo kryo = new Kryo();
+    kryo.addDefaultSerializer(Schema.class, SchemaSerializer.class);
+    kryo.addDefaultSerializer(StructuredRecord.class, SchemaPerRecordSerializer.class);
+    return kryo;
+  }
+
+  private long recordsPerSec(int numRecords, long nanos) {
+    return numRecords * 1000000000L / Math.max(1L, nanos);
+  }
+
+  private byte[] writeRecords(Kryo kryo, List<StructuredRecord> records) {
+    ByteArrayOutputStream bos = new ByteArrayOutputStream();
+    try (Output output = new Output(bos)) {
+      for (StructuredRecord record : records) {
+        kryo.writeObject(output, record);
+      }
+    }
+    return bos.toByteArray();
+  }
+
+  private void readRecords(Kryo kryo, byte[] bytes, int numRecords) {
+    Input input = new Input(bytes);
+    for (int i = 0; i < numRecords; i++) {
+      kryo.readObject(input, StructuredRecord.class);
+    }
+    Assert.assertEquals(bytes.length, input.position());
+  }
+
+  private void assertRecords(List<StructuredRecord> expected, List<?> actual) {
+    Assert.assertEquals(expected.size(), actual.size());
+    for (int i = 0; i < expected.size(); i++) {
+      // The StructuredRecord.equals is broken, Json it and compare for now
+      try {
+        Assert.assertEquals(StructuredRecordStringConverter.toJsonString(expected.get(i)),
+                            StructuredRecordStringConverter.toJsonString((StructuredRecord) actual.get(i)));
+      } catch (IOException e) {
+        throw new RuntimeException(e);
+      }
+    }
+  }
+
+  private Kryo createKryo() {
+    Kryo kryo = new Kryo();
+    kryo.addDefaultSerializer(Schema.class, SchemaSerializer.class);
+    kryo.addDefaultSerializer(StructuredRecord.class, StructuredRecordSerializer.class);
+    return kryo;
+  }
+
+  private StructuredRecord createNarrow(int i) {
+    return StructuredRecord.builder(NARROW_SCHEMA)
+      .set("id", (long) i)
+      .set("name", "name" + i)
+      .set("score", i % 3 == 0 ? null : i * 0.5d)
+      .build();
+  }
+
+  private StructuredRecord createNested(int i) {
+    List<String> tags = new ArrayList<>();
+    for (int j = 0; j < i % 3; j++) {
+      tags.add("tag" + j);
+    }
+    return StructuredRecord.builder(NESTED_SCHEMA)
+      .set("id", i)
+      .set("tags", tags)
+      .set("inner", i % 2 == 0 ? null : createNarrow(i))
+      .build();
+  }
+
+  private StructuredRecord createWide(int i) {
+    StructuredRecord.Builder builder = StructuredRecord.builder(WIDE_SCHEMA);
+    for (Schema.Field field : WIDE_SCHEMA.getFields()) {
+      String fieldName = field.getName();
+      switch (fieldName.charAt(0)) {
+        case 'i':
+          builder.set(fieldName, i);
+          break;
+        case 'l':
+          builder.set(fieldName, (long) i * 1000);
+          break;
+        case 's':
+          builder.set(fieldName, i % 5 == 0 ? null : "value" + i);
+          break;
+        default:
+          builder.set(fieldName, ("bytes" + i).getBytes(StandardCharsets.UTF_8));
+      }
+    }
+    return builder.build();
+  }
+
+  private static Schema createWideSchema(int numFields) {
+    List<Schema.Field> fields = new ArrayList<>();
+    for (int i = 0; i < numFields; i++) {
+      switch (i % 4) {
+        case 0:
+          fields.add(Schema.Field.of("int" + i, Schema.of(Schema.Type.INT)));
+          break;
+        case 1:
+          fields.add(Schema.Field.of("long" + i, Schema.of(Schema.Type.LONG)));
+          break;
+        case 2:
+          fields.add(Schema.Field.of("string" + i, Schema.nullableOf(Schema.of(Schema.Type.STRING))));
+          break;
+        default:
+          fields.add(Schema.Field.of("bytes" + i, Schema.of(Schema.Type.BYTES)));
+      }
+    }
+    return Schema.recordOf("wide", fields);
+  }
+
+  /**
+   * Serializer that writes the schema with every record, which is how {@link StructuredRecordSerializer}
+   * used to work.
+   */
+  public static final class SchemaPerRecordSerializer extends Serializer<StructuredRecord> {
+
+    private static final StructuredRecordDatumWriter DATUM_WRITER = new StructuredRecordDatumWriter();
+    private static final StructuredRecordDatumReader DATUM_READER = new StructuredRecordDatumReader();
+
+    @Override
+    public void write(Kryo kryo, Output output, StructuredRecord record) {
+      kryo.writeObject(output, record.getSchema());
+      try {
+        DATUM_WRITER.encode(record, new KryoEncoder(output));
+      } catch (IOException e) {
+        throw new KryoException(e);
+      }
+    }
+
+    @Override
+    public StructuredRecord read(Kryo kryo, Input input, Class<StructuredRecord> type) {
+      Schema schema = kryo.readObject(input, Schema.class);
+      try {
+        return DATUM_READER.read(new KryoDecoder(input), schema);
+      } catch (IOException e) {
+        throw new KryoException(e);
+      }
+    }
+  }
+}
@@ -17,6 +17,7 @@
 package io.cdap.cdap.spi.data;
 
 import io.cdap.cdap.api.annotation.Beta;
+import io.cdap.cdap.api.dataset.lib.AbstractCloseableIterator;
 import io.cdap.cdap.api.dataset.lib.CloseableIterator;
 import io.cdap.cdap.spi.data.table.StructuredTableSpecification;
 import io.cdap.cdap.spi.data.table.field.Field;
@@ -48,6 +49,23 @@ public interface StructuredTable extends Closeable {
    */
   void upsert(Collection<Field<?>> fields) throws InvalidFieldException, IOException;
 
+  /**
+   * Insert or replace multiple rows to the table. Each element of the given collection contains the fields of one
+   * row, which must include the primary key. The default implementation is to call {@link #upsert(Collection)} one
+   * by one. Implementations of this interface can provide an optimized version.
+   *
+   * @param multiFields a collection of fields of the rows to write
+   * @throws InvalidFieldException if any of the fields are not part of the table schema, or the types of the value
+   *                               do not match
+   * @throws IOException if there is an error writing to the table
+   */
+  default void multiUpsert(Collection<? extends Collection<Field<?>>> multiFields)
+    throws InvalidFieldException, IOException {
+    for (Collection<Field<?>> fields : multiFields) {
+      upsert(fields);
+    }
+  }
+
   /**
    * Read a single row with all the columns from the table.
    *
@@ -119,6 +137,42 @@ public interface StructuredTable extends Closeable {
    */
   CloseableIterator<StructuredRow> scan(Field<?> index) throws InvalidFieldException, IOException;
 
+  /**
+   * Read a set of rows from the table matching the index, up to the given limit.
+   * The rows returned will be sorted on the primary key order.
+   *
+   * @param index the index value
+   * @param limit maximum number of rows to return
+   * @return a {@link CloseableIterator} of rows
+   * @throws InvalidFieldException if the field is not part of the table schema, or is not an indexed column,
+   *                               or the type does not match the schema
+   * @throws IOException if there is an error scanning the table
+   */
+  default CloseableIterator<StructuredRow> scan(Field<?> index,
+                                                int limit) throws InvalidFieldException, IOException {
+    CloseableIterator<StructuredRow> iterator = scan(index);
+    if (limit == Integer.MAX_VALUE) {
+      return iterator;
+    }
+    return new AbstractCloseableIterator<StructuredRow>() {
+      private int count;
+
+      @Override
+      protected StructuredRow computeNext() {
+        if (count >= limit || !iterator.hasNext()) {
+          return endOfData();
+        }
+        count++;
+        return iterator.next();
+      }
+
+      @Override
+      public void close() {
+        iterator.close();
+      }
+    };
+  }
+
   /**
    * Read a set of rows from the table matching the set of key ranges.
    * The rows returned will be sorted on the primary key order.
@@ -173,6 +227,22 @@ public interface StructuredTable extends Closeable {
    */
   void delete(Collection<Field<?>> keys) throws InvalidFieldException, IOException;
 
+  /**
+   * Delete multiple rows from the table. The default implementation is to call {@link #delete(Collection)} one by
+   * one. Implementations of this interface can provide an optimized version.
+   *
+   * @param multiKeys a collection of primary keys of the rows to delete
+   * @throws InvalidFieldException if any of the keys are not part of the table schema, or the types of the value
+   *                               do not match
+   * @throws IOException if there is an error deleting from the table
+   */
+  default void multiDelete(Collection<? extends Collection<Field<?>>> multiKeys)
+    throws InvalidFieldException, IOException {
+    for (Collection<Field<?>> keys : multiKeys) {
+      delete(keys);
+    }
+  }
+
   /**
    * Delete a range of rows from the table.
    *
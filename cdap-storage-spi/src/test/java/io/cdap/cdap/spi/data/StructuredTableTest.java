@@ -61,7 +61,7 @@ public abstract class StructuredTableTest {
   // TODO: test complex schema will all allowed data types
   protected static final StructuredTableSpecification SIMPLE_SPEC;
 
-  private static final StructuredTableId SIMPLE_TABLE = new StructuredTableId("simpleTable");
+  protected static final StructuredTableId SIMPLE_TABLE = new StructuredTableId("simpleTable");
   private static final String KEY = "key";
   private static final String KEY2 = "key2";
   private static final String STRING_COL = "col1";
@@ -173,6 +173,74 @@ public abstract class StructuredTableTest {
     Assert.assertEquals(new HashSet<>(keys), result);
   }
 
+  @Test
+  public void testMultiUpsertDelete() throws Exception {
+    int max = 10;
+
+    // Write rows with two different sets of columns in one call
+    List<Collection<Field<?>>> expected = new ArrayList<>();
+    for (int i = 0; i < max; i++) {
+      List<Field<?>> fields = new ArrayList<>(Arrays.asList(Fields.intField(KEY, i),
+                                                            Fields.longField(KEY2, (long) i),
+                                                            Fields.stringField(STRING_COL, VAL + i),
+                                                            Fields.doubleField(DOUBLE_COL, (double) i),
+                                                            Fields.floatField(FLOAT_COL, (float) i)));
+      if (i % 2 == 0) {
+        fields.add(Fields.bytesField(BYTES_COL, Bytes.toBytes("bytes-" + i)));
+      }
+      expected.add(fields);
+    }
+    getTransactionRunner().run(context -> context.getTable(SIMPLE_TABLE).multiUpsert(expected));
+
+    List<Collection<Field<?>>> actual = readSimpleStructuredRows(max);
+    Assert.assertEquals(max, actual.size());
+    for (int i = 0; i < max; i++) {
+      List<Field<?>> expectedFields = new ArrayList<>(expected.get(i));
+      if (i % 2 != 0) {
+        expectedFields.add(Fields.bytesField(BYTES_COL, null));
+      }
+      Assert.assertEquals(expectedFields, actual.get(i));
+    }
+
+    // Delete the even rows in one call
+    List<Collection<Field<?>>> keys = new ArrayList<>();
+    for (int i = 0; i < max; i += 2) {
+      keys.add(Arrays.asList(Fields.intField(KEY, i), Fields.longField(KEY2, (long) i)));
+    }
+    getTransactionRunner().run(context -> context.getTable(SIMPLE_TABLE).multiDelete(keys));
+
+    List<Integer> remaining = new ArrayList<>();
+    for (Collection<Field<?>> row : readSimpleStructuredRows(max)) {
+      remaining.add((Integer) row.iterator().next().getValue());
+    }
+    Assert.assertEquals(Arrays.asList(1, 3, 5, 7, 9), remaining);
+  }
+
+  @Test
+  public void testMultiUpsertOrder() throws Exception {
+    // Writes to the same row with alternating sets of columns must be applied in order
+    List<Field<?>> keys = Arrays.asList(Fields.intField(KEY, 1), Fields.longField(KEY2, 1L));
+    List<Collection<Field<?>>> writes = new ArrayList<>();
+    for (int i = 0; i < 5; i++) {
+      List<Field<?>> fields = new ArrayList<>(keys);
+      fields.add(Fields.stringField(STRING_COL, VAL + i));
+      if (i % 2 == 1) {
+        fields.add(Fields.longField(LONG_COL, (long) i));
+      }
+      writes.add(fields);
+    }
+    getTransactionRunner().run(context -> context.getTable(SIMPLE_TABLE).multiUpsert(writes));
+
+    StructuredRow row = TransactionRunners.run(getTransactionRunner(), context -> {
+      return context.getTable(SIMPLE_TABLE).read(keys).orElse(null);
+    });
+    Assert.assertNotNull(row);
+    Assert.assertEquals(VAL + 4, row.getString(STRING_COL));
+    Assert.assertEquals(Long.valueOf(3L), row.getLong(LONG_COL));
+
+    getTransactionRunner().run(context -> context.getTable(SIMPLE_TABLE).multiDelete(Collections.singleton(keys)));
+  }
+
   @Test
   public void testSimpleScan() throws Exception {
     int max = 100;
@@ -551,6 +619,12 @@ public abstract class StructuredTableTest {
         Assert.assertEquals(expected.subList(0, num), rows);
       }
 
+      // scan by index with a limit
+      try (CloseableIterator<StructuredRow> iterator = table.scan(Fields.stringField(STRING_COL, "ghi"), 2)) {
+        List<Collection<Field<?>>> rows = convertRowsToFields(iterator, Arrays.asList(KEY, KEY2, STRING_COL));
+        Assert.assertEquals(expected.subList(2 * num, 2 * num + 2), rows);
+      }
+
       // non-existent index value
       try (CloseableIterator<StructuredRow> iterator = table.scan(Fields.stringField(STRING_COL, "non"))) {
         List<Collection<Field<?>>> rows = convertRowsToFields(iterator, Arrays.asList(KEY, KEY2, STRING_COL));
@@ -601,6 +675,28 @@ public abstract class StructuredTableTest {
     return expected;
   }
 
+  /**
+   * Writes the given number of rows and then deletes them, each in a single batch, through the given
+   * transaction runner.
+   */
+  protected void writeAndDeleteInBatches(TransactionRunner transactionRunner, int max) throws Exception {
+    List<Collection<Field<?>>> rows = new ArrayList<>();
+    List<Collection<Field<?>>> keys = new ArrayList<>();
+    for (int i = 0; i < max; i++) {
+      List<Field<?>> key = Arrays.asList(Fields.intField(KEY, i), Fields.longField(KEY2, (long) i));
+      List<Field<?>> fields = new ArrayList<>(key);
+      fields.add(Fields.stringField(STRING_COL, VAL + i));
+      keys.add(key);
+      rows.add(fields);
+    }
+
+    transactionRunner.run(context -> context.getTable(SIMPLE_TABLE).multiUpsert(rows));
+    Assert.assertEquals(max, readSimpleStructuredRows(max).size());
+
+    transactionRunner.run(context -> context.getTable(SIMPLE_TABLE).multiDelete(keys));
+    Assert.assertTrue(readSimpleStructuredRows(max).isEmpty());
+  }
+
   private List<Collection<Field<?>>> readSimpleStructuredRows(int max) throws Exception {
     return readSimpleStructuredRows(max, Collections.emptyList());
   }
@@ -0,0 +1,118 @@
+/*
+ * Copyright © 2020 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+
+package io.cdap.cdap.messaging;
+
+import io.cdap.cdap.messaging.data.RawMessage;
+import io.netty.buffer.ByteBuf;
+import org.apache.avro.io.Decoder;
+
+import java.io.IOException;
+import java.util.Collection;
+
+/**
+ * Encoder and decoder of the {@link Schemas.V1.ConsumeResponse} wire format, which is an Avro array of
+ * records with the message id and payload. Instead of going through Avro {@link org.apache.avro.generic.GenericRecord}
+ * and datum writer/reader, messages are written straight from and read straight into byte arrays.
+ * The encoding is identical to the generic Avro encoding of the same schema.
+ */
+public final class ConsumeResponseCodec {
+
+  /**
+   * Returns the max number of bytes needed to encode the given {@link RawMessage}.
+   */
+  public static int getMaxEncodedSize(RawMessage message) {
+    // Avro encodes bytes as (len + bytes), with the length taking up to 5 bytes for an int size
+    return message.getId().length + message.getPayload().length + 10;
+  }
+
+  /**
+   * Returns the max number of bytes needed to encode an array block header.
+   */
+  public static int getMaxBlockHeaderSize() {
+    return 10;
+  }
+
+  /**
+   * Writes the given messages as one block of the Avro array. Nothing is written if the collection is empty,
+   * since an empty block marks the end of the array.
+   *
+   * @param messages the messages to write
+   * @param buffer the buffer to write to
+   */
+  public static void writeBlock(Collection<RawMessage> messages, ByteBuf buffer) {
+    if (messages.isEmpty()) {
+      return;
+    }
+    writeLong(messages.size(), buffer);
+    for (RawMessage message : messages) {
+      writeBytes(message.getId(), buffer);
+      writeBytes(message.getPayload(), buffer);
+    }
+  }
+
+  /**
+   * Writes the end of the Avro array.
+   */
+  public static void writeArrayEnd(ByteBuf buffer) {
+    writeLong(0L, buffer);
+  }
+
+  /**
+   * Reads one {@link RawMessage} element of the Avro array.
+   *
+   * @param decoder the decoder positioned at the start of an array element
+   * @return a new {@link RawMessage}
+   * @throws IOException if failed to decode
+   */
+  public static RawMessage readMessage(Decoder decoder) throws IOException {
+    byte[] id = readBytes(decoder);
+    byte[] payload = readBytes(decoder);
+    return new RawMessage(id, payload);
+  }
+
+  private static byte[] readBytes(Decoder decoder) throws IOException {
+    long length = decoder.readLong();
+    if (length < 0 || length > Integer.MAX_VALUE) {
+      throw new IOException("Invalid bytes length " + length);
+    }
+    byte[] bytes = new byte[(int) length];
+    decoder.readFixed(bytes);
+    return bytes;
+  }
+
+  private static void writeBytes(byte[] bytes, ByteBuf buffer) {
+    writeLong(bytes.length, buffer);
+    buffer.writeBytes(bytes);
+  }
+
+  /**
+   * Writes a long with Avro variable length zig-zag encoding.
+   */
+  private static void writeLong(long value, ByteBuf buffer) {
+    long n = (value << 1) ^ (value >> 63);
+    while ((n & ~0x7FL) != 0) {
+      buffer.writeByte((int) ((n & 0x7F) | 0x80));
+      n >>>= 7;
+    }
+    buffer.writeByte((int) n);
+  }
+
+  private ConsumeResponseCodec() {
+    // no-op
+  }
+}
@@ -16,6 +16,8 @@
 
 package io.cdap.cdap.messaging;
 
+import com.google.common.util.concurrent.Futures;
+import com.google.common.util.concurrent.ListenableFuture;
 import io.cdap.cdap.api.messaging.TopicAlreadyExistsException;
 import io.cdap.cdap.api.messaging.TopicNotFoundException;
 import io.cdap.cdap.common.ServiceUnavailableException;
@@ -108,6 +110,23 @@ public interface MessagingService {
   @Nullable
   RollbackDetail publish(StoreRequest request) throws TopicNotFoundException, IOException;
 
+  /**
+   * Publishes a list of messages to the messaging system asynchronously. The default implementation
+   * calls {@link #publish(StoreRequest)} with the calling thread.
+   *
+   * @param request the {@link StoreRequest} containing messages to be published
+   * @return a {@link ListenableFuture} that completes when the messages are published. The result is the same
+   *         as the return value of {@link #publish(StoreRequest)}, and the future fails with the same exceptions
+   *         that the {@link #publish(StoreRequest)} method throws.
+   */
+  default ListenableFuture<RollbackDetail> publishAsync(StoreRequest request) {
+    try {
+      return Futures.immediateFuture(publish(request));
+    } catch (Exception e) {
+      return Futures.immediateFailedFuture(e);
+    }
+  }
+
   /**
    * Stores a list of messages to the messaging system. It is for long / distributed transactional publishing use case.
    *
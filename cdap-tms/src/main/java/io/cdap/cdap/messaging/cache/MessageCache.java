@@ -23,6 +23,8 @@ import io.cdap.cdap.api.dataset.lib.CloseableIterator;
 import io.cdap.cdap.api.metrics.MetricsContext;
 import io.cdap.cdap.messaging.store.MessageFilter;
 
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
 import java.util.Comparator;
 import java.util.ConcurrentModificationException;
 import java.util.Iterator;
@@ -61,6 +63,16 @@ import javax.annotation.Nullable;
  *     it if needed. This essentially is to amortize the cost of the blocking weight reduction operations among all
  *     fetchers (which typically has multiple of them), without blocking the single publish as much as possible.
  *
+ * When created with an {@link EntryCodec}, the cache keeps the content of the entries in off-heap memory.
+ * Entries are encoded into large direct {@link ByteBuffer} segments in the order they are added, while the
+ * ordered index only holds the small key returned by {@link EntryCodec#toKey(Object)} together with the location
+ * of the encoded bytes. Entries are decoded on scan. Since entries are always added at the tail and removed from
+ * the head, a segment becomes unreachable, and its memory released, once all entries in it have been removed.
+ * When weight reduction leaves the head segment partially removed, the remaining entries of that segment are copied
+ * into a smaller segment, so that the removed entries don't hold on to the memory. The segment still being written
+ * to is not compacted, hence the off-heap memory used is bounded by the encoded size of the cached entries
+ * plus one segment.
+ *
  * @param <T> type of entry stored in the cache
  */
 public class MessageCache<T> {
@@ -82,6 +94,7 @@ public class MessageCache<T> {
   private final AtomicBoolean adding;
   private final Weigher<T> weigher;
   private final ReadWriteLock cacheLock;
+  private final OffHeapStore<T> offHeapStore;
 
   /**
    * Creates a new instance of the cache.
@@ -92,6 +105,26 @@ public class MessageCache<T> {
    * @param metricsContext a {@link MetricsContext} for emitting metrics about this cache.
    */
   public MessageCache(Comparator<T> comparator, Weigher<T> weigher, Limits limits, MetricsContext metricsContext) {
+    this(comparator, weigher, null, limits, metricsContext);
+  }
+
+  /**
+   * Creates a new instance of the cache that stores entries in off-heap memory.
+   *
+   * @param comparator a {@link Comparator} for ordering cache entries
+   * @param weigher a {@link Weigher} for computing the weight of each cache entry
+   * @param codec a {@link EntryCodec} for encoding and decoding entries to and from off-heap memory
+   * @param segmentSize size in bytes of each off-heap memory segment
+   * @param limits the limits for maintaining cache weight; see class description for more detail
+   * @param metricsContext a {@link MetricsContext} for emitting metrics about this cache.
+   */
+  public MessageCache(Comparator<T> comparator, Weigher<T> weigher, EntryCodec<T> codec, int segmentSize,
+                      Limits limits, MetricsContext metricsContext) {
+    this(comparator, weigher, new OffHeapStore<>(codec, segmentSize), limits, metricsContext);
+  }
+
+  private MessageCache(Comparator<T> comparator, Weigher<T> weigher, @Nullable OffHeapStore<T> offHeapStore,
+                       Limits limits, MetricsContext metricsContext) {
     this.cache = new ConcurrentSkipListSet<>(new CacheEntryComparator<>(comparator));
     this.comparator = comparator;
     this.limits = new AtomicReference<>(limits);
@@ -101,6 +134,7 @@ public class MessageCache<T> {
     this.adding = new AtomicBoolean();
     this.weigher = weigher;
     this.cacheLock = new ReentrantReadWriteLock();
+    this.offHeapStore = offHeapStore;
   }
 
   /**
@@ -133,7 +167,9 @@ public class MessageCache<T> {
       int entriesAdded = 0;
       while (entries.hasNext()) {
         T entry = entries.next();
-        CacheEntry<T> cacheEntry = new CacheEntry<>(entry, weigher.weight(entry));
+        int weight = weigher.weight(entry);
+        CacheEntry<T> cacheEntry = offHeapStore == null ? new CacheEntry<>(entry, weight)
+                                                        : offHeapStore.store(entry, weight);
         newWeight = currentWeight.addAndGet(cacheEntry.getWeight());
         if (newWeight > limits.get().getHardLimit()) {
           reduceWeight();
@@ -146,7 +182,7 @@ public class MessageCache<T> {
         // the ceiling call must be returning null.
         // For sub-sequence entries in the iterator, they must be in strictly increasing order
         largestCacheEntry = largestCacheEntry == null ? cache.ceiling(cacheEntry) : largestCacheEntry;
-        if (largestCacheEntry != null && comparator.compare(largestCacheEntry.getEntry(), cacheEntry.getEntry()) >= 0) {
+        if (largestCacheEntry != null && comparator.compare(largestCacheEntry.getKey(), cacheEntry.getKey()) >= 0) {
           // Entries must be in strictly increasing order
           // Clear the cache to reset state. This is just for precaution, as this shouldn't happen,
           // unless there is bug in the TMS system (from the caller side).
@@ -154,7 +190,7 @@ public class MessageCache<T> {
           clear();
           throw new IllegalArgumentException("Cache entry must be in strictly increasing order. " +
                                                "Entry " + entry + " is smaller than or equal to " +
-                                               largestCacheEntry.getEntry());
+                                               largestCacheEntry.getKey());
         }
 
         // It's ok to "leak" this to reader even if the new weight is larger than the hard limit
@@ -197,15 +233,16 @@ public class MessageCache<T> {
     cacheLock.readLock().lock();
     T firstInCache;
     try {
-      firstInCache = cache.isEmpty() ? null : cache.first().getEntry();
+      firstInCache = cache.isEmpty() ? null : cache.first().getKey();
       for (CacheEntry<T> cacheEntry : cache.tailSet(new CacheEntry<>(startEntry, 0), includeStart)) {
         if (entries.size() >= limit) {
           break;
         }
 
-        MessageFilter.Result result = filter.apply(cacheEntry.getEntry());
+        T entry = getEntry(cacheEntry);
+        MessageFilter.Result result = filter.apply(entry);
         if (result == MessageFilter.Result.ACCEPT) {
-          entries.add(cacheEntry.getEntry());
+          entries.add(entry);
         } else if (result == MessageFilter.Result.HOLD) {
           // Hold means not to scan more, so just break
           break;
@@ -251,8 +288,12 @@ public class MessageCache<T> {
         CacheEntry<T> nextCacheEntry = iterator.hasNext() ? iterator.next() : null;
         CacheEntry<T> higher = nextCacheEntry == null ? cache.higher(cacheEntry) : nextCacheEntry;
 
+        T entry = getEntry(cacheEntry);
         try {
-          updater.updateEntry(cacheEntry.getEntry());
+          updater.updateEntry(entry);
+          if (offHeapStore != null) {
+            offHeapStore.update((OffHeapCacheEntry<T>) cacheEntry, entry);
+          }
         } catch (RuntimeException e) {
           clear();
           throw e;
@@ -260,8 +301,8 @@ public class MessageCache<T> {
 
         // A quick check that the ordering hasn't been altered.
         // It doesn't cover all possible case though. This is just a quick catch for bug in the caller.
-        if ((lower != null && comparator.compare(lower.getEntry(), cacheEntry.getEntry()) >= 0)
-            || (higher != null && comparator.compare(higher.getEntry(), cacheEntry.getEntry()) <= 0)) {
+        if ((lower != null && comparator.compare(lower.getKey(), entry) >= 0)
+            || (higher != null && comparator.compare(higher.getKey(), entry) <= 0)) {
           // This shouldn't happen, unless there is bug in the caller.
           clear();
           throw new IllegalStateException("Entry order should not be altered after update.");
@@ -317,6 +358,38 @@ public class MessageCache<T> {
     return currentWeight.get();
   }
 
+  /**
+   * Returns the number of bytes of off-heap memory held by the cached entries.
+   */
+  @VisibleForTesting
+  long getOffHeapSize() {
+    if (offHeapStore == null) {
+      return 0L;
+    }
+    cacheLock.readLock().lock();
+    try {
+      long size = 0L;
+      ByteBuffer lastSegment = null;
+      for (CacheEntry<T> cacheEntry : cache) {
+        ByteBuffer segment = ((OffHeapCacheEntry<T>) cacheEntry).segment;
+        if (segment != lastSegment) {
+          size += segment.capacity();
+          lastSegment = segment;
+        }
+      }
+      return size;
+    } finally {
+      cacheLock.readLock().unlock();
+    }
+  }
+
+  /**
+   * Returns the user entry represented by the given {@link CacheEntry}, decoding it from off-heap memory if needed.
+   */
+  private T getEntry(CacheEntry<T> cacheEntry) {
+    return offHeapStore == null ? cacheEntry.getKey() : offHeapStore.load((OffHeapCacheEntry<T>) cacheEntry);
+  }
+
   /**
    * Reduces the cache weight. Cached entries will be removed until the cache weight is smaller than the soft limit.
    */
@@ -336,6 +409,9 @@ public class MessageCache<T> {
         entriesRemoved++;
         newWeight = currentWeight.addAndGet(-1 * cacheEntry.getWeight());
       }
+      if (offHeapStore != null && entriesRemoved > 0) {
+        offHeapStore.compact(cache);
+      }
     } finally {
       cacheLock.writeLock().unlock();
     }
@@ -399,6 +475,36 @@ public class MessageCache<T> {
     T getFirstInCache();
   }
 
+  /**
+   * This interface is for encoding and decoding entries stored in off-heap memory.
+   *
+   * @param <T> type of the entry
+   */
+  public interface EntryCodec<T> {
+
+    /**
+     * Returns a lightweight copy of the given entry that only carries the fields needed by the {@link Comparator}
+     * of the cache. The returned object is kept on heap as the index of the encoded entry.
+     */
+    T toKey(T entry);
+
+    /**
+     * Returns the number of bytes needed to encode the given entry. Updating an entry through
+     * {@link EntryUpdater} must not change its encoded size.
+     */
+    int getEncodedSize(T entry);
+
+    /**
+     * Encodes the given entry into the buffer, starting at the current buffer position.
+     */
+    void encode(T entry, ByteBuffer buffer);
+
+    /**
+     * Decodes an entry from the buffer, starting at the current buffer position.
+     */
+    T decode(ByteBuffer buffer);
+  }
+
   /**
    * A updater for updating an entry.
    *
@@ -462,20 +568,21 @@ public class MessageCache<T> {
 
   /**
    * A private class that wraps a user provided entry of type {@code T} with an associated weight.
+   * For entries stored off-heap, it only wraps the key of the entry.
    *
    * @param <T> type of the entry
    */
   private static class CacheEntry<T> {
-    private final T entry;
+    private final T key;
     private final int weight;
 
-    private CacheEntry(T entry, int weight) {
-      this.entry = entry;
+    private CacheEntry(T key, int weight) {
+      this.key = key;
       this.weight = weight;
     }
 
-    T getEntry() {
-      return entry;
+    T getKey() {
+      return key;
     }
 
     int getWeight() {
@@ -485,12 +592,122 @@ public class MessageCache<T> {
     @Override
     public String toString() {
       return "CacheEntry{" +
-        "entry=" + entry +
+        "key=" + key +
         ", weight=" + weight +
         '}';
     }
   }
 
+  /**
+   * A {@link CacheEntry} with the encoded entry stored in an off-heap memory segment.
+   *
+   * @param <T> type of the entry
+   */
+  private static final class OffHeapCacheEntry<T> extends CacheEntry<T> {
+    // The segment and offset are only changed by compaction, which happens while holding the cache write lock
+    private ByteBuffer segment;
+    private int offset;
+    private final int length;
+
+    private OffHeapCacheEntry(T key, int weight, ByteBuffer segment, int offset, int length) {
+      super(key, weight);
+      this.segment = segment;
+      this.offset = offset;
+      this.length = length;
+    }
+
+    /**
+     * Returns a {@link ByteBuffer} view of the encoded entry.
+     */
+    ByteBuffer getBuffer() {
+      ByteBuffer buffer = segment.duplicate();
+      buffer.limit(offset + length);
+      buffer.position(offset);
+      return buffer;
+    }
+  }
+
+  /**
+   * Stores encoded entries in direct {@link ByteBuffer} segments. New segments are only allocated by the single
+   * writer in {@link #addAll(Iterator)}. A segment is released by GC when no {@link OffHeapCacheEntry} refers to it.
+   *
+   * @param <T> type of the entry
+   */
+  private static final class OffHeapStore<T> {
+    private final EntryCodec<T> codec;
+    private final int segmentSize;
+    // Volatile since it is read by compaction, which can run outside of the writer thread
+    private volatile ByteBuffer segment;
+
+    private OffHeapStore(EntryCodec<T> codec, int segmentSize) {
+      Preconditions.checkArgument(segmentSize > 0, "Off-heap segment size must be positive");
+      this.codec = codec;
+      this.segmentSize = segmentSize;
+    }
+
+    OffHeapCacheEntry<T> store(T entry, int weight) {
+      int size = codec.getEncodedSize(entry);
+      if (segment == null || segment.remaining() < size) {
+        segment = ByteBuffer.allocateDirect(Math.max(segmentSize, size));
+      }
+      int offset = segment.position();
+      codec.encode(entry, segment);
+      if (segment.position() - offset != size) {
+        throw new IllegalStateException("Encoded size of entry " + entry + " is different from the expected size "
+                                          + size + ": " + (segment.position() - offset));
+      }
+      return new OffHeapCacheEntry<>(codec.toKey(entry), weight, segment, offset, size);
+    }
+
+    T load(OffHeapCacheEntry<T> cacheEntry) {
+      return codec.decode(cacheEntry.getBuffer());
+    }
+
+    void update(OffHeapCacheEntry<T> cacheEntry, T entry) {
+      if (codec.getEncodedSize(entry) != cacheEntry.length) {
+        throw new IllegalStateException("Encoded size of entry should not be altered after update.");
+      }
+      codec.encode(entry, cacheEntry.getBuffer());
+    }
+
+    /**
+     * Copies the remaining entries of the first segment into a new segment of the exact size if some entries of
+     * that segment were removed. This method must be called while holding the cache write lock.
+     */
+    void compact(NavigableSet<CacheEntry<T>> cache) {
+      if (cache.isEmpty()) {
+        return;
+      }
+      OffHeapCacheEntry<T> first = (OffHeapCacheEntry<T>) cache.first();
+      ByteBuffer head = first.segment;
+
+      // Entries are stored in order, hence an entry at offset 0 means nothing was removed from the segment.
+      // The segment that the writer is appending to is not compacted.
+      if (first.offset == 0 || head == segment) {
+        return;
+      }
+
+      List<OffHeapCacheEntry<T>> entries = new ArrayList<>();
+      int size = 0;
+      for (CacheEntry<T> cacheEntry : cache) {
+        OffHeapCacheEntry<T> offHeapEntry = (OffHeapCacheEntry<T>) cacheEntry;
+        if (offHeapEntry.segment != head) {
+          break;
+        }
+        entries.add(offHeapEntry);
+        size += offHeapEntry.length;
+      }
+
+      ByteBuffer compacted = ByteBuffer.allocateDirect(size);
+      for (OffHeapCacheEntry<T> entry : entries) {
+        int offset = compacted.position();
+        compacted.put(entry.getBuffer());
+        entry.segment = compacted;
+        entry.offset = offset;
+      }
+    }
+  }
+
   /**
    * A {@link Comparator} for {@link CacheEntry} that only compares with the user entry of type {@code T},
    * using the provided {@link Comparator}.
@@ -507,7 +724,7 @@ public class MessageCache<T> {
 
     @Override
     public int compare(CacheEntry<T> entry1, CacheEntry<T> entry2) {
-      return comparator.compare(entry1.getEntry(), entry2.getEntry());
+      return comparator.compare(entry1.getKey(), entry2.getKey());
     }
   }
 }
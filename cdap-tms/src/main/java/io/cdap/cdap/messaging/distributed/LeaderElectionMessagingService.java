@@ -17,6 +17,7 @@
 package io.cdap.cdap.messaging.distributed;
 
 import com.google.common.util.concurrent.AbstractIdleService;
+import com.google.common.util.concurrent.ListenableFuture;
 import com.google.inject.Inject;
 import com.google.inject.Injector;
 import io.cdap.cdap.api.messaging.TopicAlreadyExistsException;
@@ -165,6 +166,11 @@ public class LeaderElectionMessagingService extends AbstractIdleService implemen
     return getMessagingService().publish(request);
   }
 
+  @Override
+  public ListenableFuture<RollbackDetail> publishAsync(StoreRequest request) {
+    return getMessagingService().publishAsync(request);
+  }
+
   @Override
   public void storePayload(StoreRequest request) throws TopicNotFoundException, IOException {
     getMessagingService().storePayload(request);
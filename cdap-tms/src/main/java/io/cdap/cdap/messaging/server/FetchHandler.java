@@ -17,44 +17,47 @@
 package io.cdap.cdap.messaging.server;
 
 import com.google.common.collect.ImmutableSet;
+import com.google.common.util.concurrent.ListenableFuture;
 import com.google.inject.Inject;
 import io.cdap.cdap.api.common.Bytes;
 import io.cdap.cdap.api.dataset.lib.CloseableIterator;
 import io.cdap.cdap.api.messaging.TopicNotFoundException;
 import io.cdap.cdap.common.BadRequestException;
+import io.cdap.cdap.common.HttpExceptionHandler;
 import io.cdap.cdap.common.conf.CConfiguration;
 import io.cdap.cdap.common.conf.Constants;
 import io.cdap.cdap.common.io.ByteBuffers;
 import io.cdap.cdap.common.logging.LogSamplers;
 import io.cdap.cdap.common.logging.Loggers;
+import io.cdap.cdap.messaging.ConsumeResponseCodec;
 import io.cdap.cdap.messaging.MessageFetcher;
 import io.cdap.cdap.messaging.MessagingService;
 import io.cdap.cdap.messaging.Schemas;
 import io.cdap.cdap.messaging.data.RawMessage;
+import io.cdap.cdap.messaging.service.MessageNotifier;
 import io.cdap.cdap.proto.id.NamespaceId;
 import io.cdap.cdap.proto.id.TopicId;
 import io.cdap.http.AbstractHttpHandler;
 import io.cdap.http.BodyProducer;
+import io.cdap.http.HandlerContext;
 import io.cdap.http.HttpResponder;
 import io.netty.buffer.ByteBuf;
 import io.netty.buffer.ByteBufInputStream;
-import io.netty.buffer.ByteBufOutputStream;
+import io.netty.buffer.PooledByteBufAllocator;
 import io.netty.buffer.Unpooled;
 import io.netty.handler.codec.http.DefaultHttpHeaders;
+import io.netty.handler.codec.http.DefaultHttpRequest;
 import io.netty.handler.codec.http.FullHttpRequest;
 import io.netty.handler.codec.http.HttpHeaderNames;
+import io.netty.handler.codec.http.HttpRequest;
 import io.netty.handler.codec.http.HttpResponseStatus;
-import org.apache.avro.generic.GenericData;
 import org.apache.avro.generic.GenericDatumReader;
-import org.apache.avro.generic.GenericDatumWriter;
 import org.apache.avro.generic.GenericRecord;
 import org.apache.avro.io.DatumReader;
-import org.apache.avro.io.DatumWriter;
 import org.apache.avro.io.Decoder;
 import org.apache.avro.io.DecoderFactory;
-import org.apache.avro.io.Encoder;
-import org.apache.avro.io.EncoderFactory;
 import org.apache.tephra.TransactionCodec;
+import org.apache.twill.common.Threads;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -65,13 +68,24 @@ import java.nio.channels.ClosedChannelException;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
 import javax.annotation.Nullable;
+import javax.ws.rs.DefaultValue;
 import javax.ws.rs.POST;
 import javax.ws.rs.Path;
 import javax.ws.rs.PathParam;
+import javax.ws.rs.QueryParam;
 
 /**
  * A netty http handler for handling message fetching REST API for the messaging system.
+ *
+ * The poll endpoint accepts an optional {@code timeout} query parameter in milliseconds. If it is positive and there
+ * is no message to return, the response is held until new messages are published to the topic or the timeout
+ * expires. Waiting is done without blocking the http threads.
  */
 @Path("/v1/namespaces/{namespace}/topics/{topic}")
 public final class FetchHandler extends AbstractHttpHandler {
@@ -86,19 +100,52 @@ public final class FetchHandler extends AbstractHttpHandler {
   );
 
   private final MessagingService messagingService;
+  private final MessageNotifier messageNotifier;
+  private final long maxPollTimeoutMillis;
+  private final int pollThreads;
+  private final Set<ListenableFuture<Void>> pendingPolls;
   private int messageChunkSize;
+  private ScheduledExecutorService pollExecutor;
+  private volatile boolean stopped;
 
   @Inject
-  FetchHandler(CConfiguration cConf, MessagingService messagingService) {
+  FetchHandler(CConfiguration cConf, MessagingService messagingService, MessageNotifier messageNotifier) {
     this.messagingService = messagingService;
+    this.messageNotifier = messageNotifier;
     this.messageChunkSize = cConf.getInt(Constants.MessagingSystem.HTTP_SERVER_CONSUME_CHUNK_SIZE);
+    this.maxPollTimeoutMillis = cConf.getLong(Constants.MessagingSystem.HTTP_SERVER_MAX_POLL_TIMEOUT_MS);
+    this.pollThreads = cConf.getInt(Constants.MessagingSystem.HTTP_SERVER_POLL_THREADS);
+    this.pendingPolls = ConcurrentHashMap.newKeySet();
+  }
+
+  @Override
+  public void init(HandlerContext context) {
+    super.init(context);
+    ScheduledThreadPoolExecutor executor = new ScheduledThreadPoolExecutor(
+      pollThreads, Threads.createDaemonThreadFactory("messaging-poll-%d"));
+    executor.setRemoveOnCancelPolicy(true);
+    pollExecutor = executor;
+  }
+
+  @Override
+  public void destroy(HandlerContext context) {
+    super.destroy(context);
+    // The connections of the pending polls are closed by the http server before the handler is destroyed,
+    // hence cancel the polls to release their watches on the topics without fetching again.
+    stopped = true;
+    for (ListenableFuture<Void> future : pendingPolls) {
+      future.cancel(false);
+    }
+    pendingPolls.clear();
+    pollExecutor.shutdownNow();
   }
 
   @POST
   @Path("poll")
   public void poll(FullHttpRequest request, HttpResponder responder,
                    @PathParam("namespace") String namespace,
-                   @PathParam("topic") String topic) throws Exception {
+                   @PathParam("topic") String topic,
+                   @QueryParam("timeout") @DefaultValue("0") long timeoutMillis) throws Exception {
 
     TopicId topicId = new NamespaceId(namespace).topic(topic);
 
@@ -111,8 +158,63 @@ public final class FetchHandler extends AbstractHttpHandler {
     Decoder decoder = DecoderFactory.get().directBinaryDecoder(new ByteBufInputStream(request.content()), null);
     DatumReader<GenericRecord> datumReader = new GenericDatumReader<>(Schemas.V1.ConsumeRequest.SCHEMA);
 
-    // Fetch the messages
-    CloseableIterator<RawMessage> iterator = fetchMessages(datumReader.read(null, decoder), topicId);
+    GenericRecord fetchRequest = datumReader.read(null, decoder);
+
+    // Messages committed while waiting are not visible to the transaction of a transactional fetch, hence don't wait
+    if (timeoutMillis <= 0 || fetchRequest.get("transaction") != null) {
+      // Fetch the messages
+      sendMessages(responder, fetchMessages(fetchRequest, topicId));
+      return;
+    }
+
+    // The request content is released after this method returns, hence only keep what is needed for error handling
+    HttpRequest pollRequest = new DefaultHttpRequest(request.protocolVersion(), request.method(), request.uri());
+    long deadline = System.currentTimeMillis() + Math.min(timeoutMillis, maxPollTimeoutMillis);
+    longPoll(pollRequest, responder, topicId, fetchRequest, deadline);
+  }
+
+  /**
+   * Fetches messages and sends them back. If there is no message, waits for new messages to be published to the
+   * topic before fetching again, until the given deadline.
+   */
+  private void longPoll(HttpRequest request, HttpResponder responder, TopicId topicId,
+                        GenericRecord fetchRequest, long deadline) throws IOException, TopicNotFoundException {
+    // Get the generation before fetching so that messages published in between won't be missed
+    long generation = messageNotifier.getGeneration(topicId);
+    CloseableIterator<RawMessage> iterator = fetchMessages(fetchRequest, topicId);
+    long remaining = deadline - System.currentTimeMillis();
+    try {
+      if (remaining <= 0 || iterator.hasNext()) {
+        sendMessages(responder, iterator);
+        return;
+      }
+    } catch (Throwable t) {
+      iterator.close();
+      throw t;
+    }
+    iterator.close();
+
+    ListenableFuture<Void> future = messageNotifier.watch(topicId, generation);
+    pendingPolls.add(future);
+    ScheduledFuture<?> timeout = pollExecutor.schedule(() -> future.cancel(false), remaining, TimeUnit.MILLISECONDS);
+    future.addListener(() -> {
+      pendingPolls.remove(future);
+      timeout.cancel(false);
+      if (stopped) {
+        return;
+      }
+      try {
+        longPoll(request, responder, topicId, fetchRequest, deadline);
+      } catch (Throwable t) {
+        new HttpExceptionHandler().handle(t, request, responder);
+      }
+    }, pollExecutor);
+  }
+
+  /**
+   * Sends messages provided by the given {@link CloseableIterator} as the response.
+   */
+  private void sendMessages(HttpResponder responder, CloseableIterator<RawMessage> iterator) {
     try {
       responder.sendContent(HttpResponseStatus.OK, new MessagesBodyProducer(iterator, messageChunkSize),
                             new DefaultHttpHeaders().set(HttpHeaderNames.CONTENT_TYPE, "avro/binary"));
@@ -158,40 +260,21 @@ public final class FetchHandler extends AbstractHttpHandler {
 
   /**
    * A {@link BodyProducer} to encode and send back messages.
-   * Instead of using GenericDatumWriter, we perform the array encoding manually so that we don't have to buffer
-   * all messages in memory before sending out.
+   * Instead of using GenericDatumWriter, we perform the array encoding manually with {@link ConsumeResponseCodec}
+   * so that we don't have to buffer all messages in memory before sending out, and the message bytes are copied
+   * only once into the pooled buffer of each chunk.
    */
   private static class MessagesBodyProducer extends BodyProducer {
 
     private final CloseableIterator<RawMessage> iterator;
     private final List<RawMessage> messages;
     private final int messageChunkSize;
-    private final ByteBuf chunk;
-    private final Encoder encoder;
-    private final GenericRecord messageRecord;
-    private final DatumWriter<GenericRecord> messageWriter;
-    private boolean arrayStarted;
     private boolean arrayEnded;
 
     MessagesBodyProducer(CloseableIterator<RawMessage> iterator, int messageChunkSize) {
       this.iterator = iterator;
       this.messages = new ArrayList<>();
       this.messageChunkSize = messageChunkSize;
-      this.chunk = Unpooled.buffer(messageChunkSize);
-      this.encoder = EncoderFactory.get().directBinaryEncoder(new ByteBufOutputStream(chunk), null);
-
-      // These are for writing individual message (response is an array of messages)
-      this.messageRecord = new GenericData.Record(Schemas.V1.ConsumeResponse.SCHEMA.getElementType());
-      this.messageWriter = new GenericDatumWriter<GenericRecord>(Schemas.V1.ConsumeResponse.SCHEMA.getElementType()) {
-        @Override
-        protected void writeBytes(Object datum, Encoder out) throws IOException {
-          if (datum instanceof byte[]) {
-            out.writeBytes((byte[]) datum);
-          } else {
-            super.writeBytes(datum, out);
-          }
-        }
-      };
     }
 
     @Override
@@ -201,50 +284,34 @@ public final class FetchHandler extends AbstractHttpHandler {
         return Unpooled.EMPTY_BUFFER;
       }
 
-      chunk.clear();
-
-      if (!arrayStarted) {
-        arrayStarted = true;
-        encoder.writeArrayStart();
-      }
-
       // Try to buffer up to buffer size
-      int size = 0;
+      int size = ConsumeResponseCodec.getMaxBlockHeaderSize();
       messages.clear();
       while (iterator.hasNext() && size < messageChunkSize) {
         RawMessage message = iterator.next();
         messages.add(message);
-
-        // Avro encodes bytes as (len + bytes), hence adding 8 to cater for the length of the id and payload
-        // Straightly speaking it can be up to 9 bytes each (hence 18 bytes),
-        // but we don't expect id and payload of such size
-        size += message.getId().length + message.getPayload().length + 8;
+        size += ConsumeResponseCodec.getMaxEncodedSize(message);
       }
 
-      encoder.setItemCount(messages.size());
-      for (RawMessage message : messages) {
-        encoder.startItem();
-
-        // Write individual message (array element) with DatumWrite.
-        // This provides greater flexibility on schema evolution.
-        // The response will likely always be an array, but the element schema can evolve.
-        messageRecord.put("id", message.getId());
-        messageRecord.put("payload", message.getPayload());
-        messageWriter.write(messageRecord, encoder);
-      }
-
-      if (!iterator.hasNext()) {
-        arrayEnded = true;
-        encoder.writeArrayEnd();
+      // Encode the messages straight into a pooled buffer, which is released by Netty after it is written
+      arrayEnded = !iterator.hasNext();
+      ByteBuf chunk = PooledByteBufAllocator.DEFAULT.buffer(arrayEnded ? size + 1 : size);
+      try {
+        ConsumeResponseCodec.writeBlock(messages, chunk);
+        if (arrayEnded) {
+          ConsumeResponseCodec.writeArrayEnd(chunk);
+        }
+      } catch (Throwable t) {
+        chunk.release();
+        throw t;
       }
-
-      return chunk.copy();
+      messages.clear();
+      return chunk;
     }
 
     @Override
     public void finished() throws Exception {
       iterator.close();
-      chunk.release();
     }
 
     @Override
@@ -16,8 +16,11 @@
 
 package io.cdap.cdap.messaging.server;
 
+import com.google.common.util.concurrent.FutureCallback;
+import com.google.common.util.concurrent.Futures;
 import com.google.inject.Inject;
 import io.cdap.cdap.common.BadRequestException;
+import io.cdap.cdap.common.HttpExceptionHandler;
 import io.cdap.cdap.common.conf.CConfiguration;
 import io.cdap.cdap.common.conf.Constants;
 import io.cdap.cdap.common.http.SpillableBodyConsumer;
@@ -70,6 +73,8 @@ import javax.ws.rs.PathParam;
 @Path("/v1/namespaces/{namespace}/topics/{topic}")
 public final class StoreHandler extends AbstractHttpHandler {
 
+  private static final HttpExceptionHandler EXCEPTION_HANDLER = new HttpExceptionHandler();
+
   private final java.nio.file.Path tempDir;
   private final int bufferSize;
   private final MessagingService messagingService;
@@ -99,16 +104,32 @@ public final class StoreHandler extends AbstractHttpHandler {
           throw new BadRequestException("Empty payload is only allowed for publishing transactional message. Topic: "
                                           + topicId);
         }
-        // Publish the message and response with the rollback information
-        RollbackDetail rollbackInfo = messagingService.publish(storeRequest);
-        if (rollbackInfo == null) {
-          // Non-tx publish doesn't have rollback info.
-          responder.sendStatus(HttpResponseStatus.OK);
-        } else {
-          ByteBuf response = encodeRollbackDetail(rollbackInfo);
-          responder.sendContent(HttpResponseStatus.OK, response,
-                                new DefaultHttpHeaders().set(HttpHeaderNames.CONTENT_TYPE, "avro/binary"));
-        }
+        // Publish the message and response with the rollback information once the messages are persisted,
+        // without blocking the http thread while the messages are being written
+        Futures.addCallback(messagingService.publishAsync(storeRequest), new FutureCallback<RollbackDetail>() {
+          @Override
+          public void onSuccess(RollbackDetail rollbackInfo) {
+            if (rollbackInfo == null) {
+              // Non-tx publish doesn't have rollback info.
+              responder.sendStatus(HttpResponseStatus.OK);
+              return;
+            }
+            ByteBuf response;
+            try {
+              response = encodeRollbackDetail(rollbackInfo);
+            } catch (IOException e) {
+              onFailure(e);
+              return;
+            }
+            responder.sendContent(HttpResponseStatus.OK, response,
+                                  new DefaultHttpHeaders().set(HttpHeaderNames.CONTENT_TYPE, "avro/binary"));
+          }
+
+          @Override
+          public void onFailure(Throwable t) {
+            EXCEPTION_HANDLER.handle(t, request, responder);
+          }
+        });
       }
     };
   }
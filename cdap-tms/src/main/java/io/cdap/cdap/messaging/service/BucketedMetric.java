@@ -0,0 +1,63 @@
+/*
+ * Copyright © 2020 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+
+package io.cdap.cdap.messaging.service;
+
+import io.cdap.cdap.api.metrics.MetricsCollector;
+
+import java.util.Arrays;
+
+/**
+ * Reports the distribution of a value through a {@link MetricsCollector} as a histogram. Each recorded value
+ * increments the counter of the bucket it falls into, named {@code <name>.le.<upper bound>}, with
+ * {@code <name>.le.inf} for values above all bounds. The total and number of recorded values are also counted
+ * as {@code <name>.sum} and {@code <name>.count}.
+ */
+final class BucketedMetric {
+
+  private final String sumName;
+  private final String countName;
+  private final long[] bounds;
+  private final String[] bucketNames;
+
+  /**
+   * Creates an instance with the given bucket upper bounds (inclusive), which must be in increasing order.
+   */
+  BucketedMetric(String name, long... bounds) {
+    this.sumName = name + ".sum";
+    this.countName = name + ".count";
+    this.bounds = Arrays.copyOf(bounds, bounds.length);
+    this.bucketNames = new String[bounds.length + 1];
+    for (int i = 0; i < bounds.length; i++) {
+      bucketNames[i] = name + ".le." + bounds[i];
+    }
+    bucketNames[bounds.length] = name + ".le.inf";
+  }
+
+  /**
+   * Records the given value.
+   */
+  void record(MetricsCollector metricsCollector, long value) {
+    int idx = 0;
+    while (idx < bounds.length && value > bounds[idx]) {
+      idx++;
+    }
+    metricsCollector.increment(bucketNames[idx], 1L);
+    metricsCollector.increment(sumName, value);
+    metricsCollector.increment(countName, 1L);
+  }
+}
@@ -18,11 +18,14 @@ package io.cdap.cdap.messaging.service;
 
 import com.google.common.annotations.VisibleForTesting;
 import com.google.common.base.Throwables;
+import com.google.common.util.concurrent.ListenableFuture;
+import com.google.common.util.concurrent.Uninterruptibles;
 import io.cdap.cdap.api.metrics.MetricsCollector;
 import io.cdap.cdap.api.metrics.NoopMetricsContext;
 import io.cdap.cdap.messaging.RollbackDetail;
 import io.cdap.cdap.messaging.StoreRequest;
 import io.cdap.cdap.messaging.TopicMetadata;
+import org.apache.twill.common.Threads;
 
 import java.io.Closeable;
 import java.io.IOException;
@@ -31,41 +34,63 @@ import java.util.Iterator;
 import java.util.List;
 import java.util.Queue;
 import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
 import javax.annotation.Nullable;
 import javax.annotation.concurrent.ThreadSafe;
 
 /**
  * Class to support writing to message/payload tables with high concurrency.
  *
- * It uses a non-blocking algorithm to batch writes from concurrent threads. The algorithm is the same as
- * the one used in ConcurrentStreamWriter.
+ * It uses group commit to batch writes from concurrent threads. Publishing threads enqueue their requests and
+ * wait on a future, while a committer task running on a shared executor drains the queue and writes the requests
+ * in batches.
  *
  * The algorithm is like this:
  *
- * When a thread that received a request, performs the following:
- *
  * <pre>
- * 1. Constructs a PendingStoreRequest locally and enqueue it to a ConcurrentLinkedQueue.
- * 2. Use CAS to set an AtomicBoolean flag to true.
- * 3. If successfully set the flag to true, this thread becomes the writer and proceed to run step 4-7.
- * 4. Provides an Iterator of PendingStoreRequest, which consumes from the ConcurrentLinkedQueue mentioned in step 1.
- * 5. The message table store method will consume the Iterator until it is empty
- * 6. Set the state of each PendingStoreRequest that are written to COMPLETED (succeed/failure).
- * 7. Set the AtomicBoolean flag back to false.
- * 8. If the PendingStoreRequest enqueued by this thread is NOT COMPLETED, go back to step 2.
+ * 1. A publishing thread constructs a PendingStoreRequest and enqueue it to a ConcurrentLinkedQueue.
+ * 2. Use CAS to set the scheduled flag to true. If successful, submit a committer task to the executor,
+ *    optionally delayed by the linger time if there are not enough requests to fill a batch.
+ * 3. The publishing thread waits for the PendingStoreRequest to complete.
+ * 4. The committer task acquires the commit lock.
+ * 5. It drains up to the max batch size of PendingStoreRequest from the queue and writes them with the
+ *    StoreRequestWriter.
+ * 6. It completes each PendingStoreRequest that are written (succeed/failure) and releases the commit lock.
+ * 7. It resets the scheduled flag. If the queue is not empty, go back to step 2.
  * </pre>
  *
- * The spin lock between step 2 to step 8 is necessary as it guarantees events enqueued by all threads would eventually
- * get written and flushed.
+ * Since the scheduled flag is only reset after a batch is written, each writer has at most one committer task
+ * queued or running on the shared executor. A busy topic therefore can't occupy more than one committer thread,
+ * and as its next committer task is queued behind the ones of other topics after every batch, commits of
+ * different topics are scheduled fairly. The queue is checked again after the scheduled flag is reset, hence a
+ * request enqueued at any time is either drained by the current committer or triggers a new one, and all
+ * requests would eventually get written.
  */
 @ThreadSafe
 final class ConcurrentMessageWriter implements Closeable {
 
+  private static final BucketedMetric BATCH_SIZE_METRIC =
+    new BucketedMetric("persist.batch.size", 1, 4, 16, 64, 256, 1024);
+  private static final BucketedMetric COMMIT_LATENCY_METRIC =
+    new BucketedMetric("persist.commit.latency.ms", 1, 4, 16, 64, 256, 1024);
+
   private final StoreRequestWriter<?> messagesWriter;
   private final MetricsCollector metricsCollector;
   private final PendingStoreQueue pendingStoreQueue;
-  private final AtomicBoolean writerFlag;
+  private final ScheduledExecutorService committerExecutor;
+  private final boolean ownExecutor;
+  private final int maxBatchSize;
+  private final long lingerMillis;
+  private final AtomicBoolean scheduled;
+  private final Lock commitLock;
   private final AtomicBoolean closed;
 
   /**
@@ -76,23 +101,54 @@ final class ConcurrentMessageWriter implements Closeable {
     this(messagesWriter, new NoopMetricsContext());
   }
 
+  /**
+   * Constructor with a committer executor owned by this instance. This constructor should only be used
+   * in unit-testing.
+   */
+  @VisibleForTesting
+  ConcurrentMessageWriter(StoreRequestWriter<?> messagesWriter, MetricsCollector metricsCollector) {
+    this(messagesWriter, metricsCollector,
+         Executors.newSingleThreadScheduledExecutor(Threads.createDaemonThreadFactory("message-committer")),
+         true, Integer.MAX_VALUE, 0L);
+  }
+
   /**
    * Constructor.
    *
    * @param messagesWriter the {@link StoreRequestWriter} for persisting {@link StoreRequest}.
    * @param metricsCollector the {@link MetricsCollector} for collecting metrics emitted by this class.
+   * @param committerExecutor the executor for running the committer tasks
+   * @param maxBatchSize maximum number of {@link StoreRequest} to write in one batch
+   * @param lingerMillis number of milliseconds to wait for more requests to arrive before committing a batch
+   *                     that is not full
    */
-  ConcurrentMessageWriter(StoreRequestWriter<?> messagesWriter, MetricsCollector metricsCollector) {
+  ConcurrentMessageWriter(StoreRequestWriter<?> messagesWriter, MetricsCollector metricsCollector,
+                          ScheduledExecutorService committerExecutor, int maxBatchSize, long lingerMillis) {
+    this(messagesWriter, metricsCollector, committerExecutor, false, maxBatchSize, lingerMillis);
+  }
+
+  private ConcurrentMessageWriter(StoreRequestWriter<?> messagesWriter, MetricsCollector metricsCollector,
+                                  ScheduledExecutorService committerExecutor, boolean ownExecutor,
+                                  int maxBatchSize, long lingerMillis) {
+    if (maxBatchSize <= 0) {
+      throw new IllegalArgumentException("Max batch size must be > 0");
+    }
     this.messagesWriter = messagesWriter;
     this.metricsCollector = metricsCollector;
     this.pendingStoreQueue = new PendingStoreQueue(metricsCollector);
-    this.writerFlag = new AtomicBoolean();
+    this.committerExecutor = committerExecutor;
+    this.ownExecutor = ownExecutor;
+    this.maxBatchSize = maxBatchSize;
+    this.lingerMillis = lingerMillis;
+    this.scheduled = new AtomicBoolean();
+    this.commitLock = new ReentrantLock();
     this.closed = new AtomicBoolean();
   }
 
   /**
    * Persists the given {@link StoreRequest} to the {@link StoreRequestWriter} in this class. This method
-   * is safe to be called concurrently from multiple threads.
+   * is safe to be called concurrently from multiple threads. The calling thread blocks until the request
+   * is persisted.
    *
    * @param storeRequest contains information about payload to be store
    * @param metadata {@link TopicMetadata} for the topic in the {@link StoreRequest}
@@ -102,6 +158,25 @@ final class ConcurrentMessageWriter implements Closeable {
    */
   @Nullable
   RollbackDetail persist(StoreRequest storeRequest, TopicMetadata metadata) throws IOException {
+    try {
+      return Uninterruptibles.getUninterruptibly(persistAsync(storeRequest, metadata));
+    } catch (ExecutionException e) {
+      Throwables.propagateIfInstanceOf(e.getCause(), IOException.class);
+      throw new IOException("Unable to write message to " + storeRequest.getTopicId(), e.getCause());
+    }
+  }
+
+  /**
+   * Persists the given {@link StoreRequest} asynchronously. This method is safe to be called concurrently
+   * from multiple threads.
+   *
+   * @param storeRequest contains information about payload to be store
+   * @param metadata {@link TopicMetadata} for the topic in the {@link StoreRequest}
+   * @return a {@link ListenableFuture} that completes when the request is persisted. Its result is the same
+   *         as the return value of {@link #persist(StoreRequest, TopicMetadata)}.
+   * @throws IOException if this writer is already closed
+   */
+  ListenableFuture<RollbackDetail> persistAsync(StoreRequest storeRequest, TopicMetadata metadata) throws IOException {
     if (closed.get()) {
       throw new IOException("Message writer is already closed");
     }
@@ -111,44 +186,41 @@ final class ConcurrentMessageWriter implements Closeable {
 
     metricsCollector.increment("persist.requested", 1L);
 
-    while (!pendingStoreRequest.isCompleted()) {
-      if (!tryWrite()) {
-        Thread.yield();
-      }
-    }
+    scheduleCommit();
+    return pendingStoreRequest.getCompletion();
+  }
 
-    if (pendingStoreRequest.isSuccess()) {
-      metricsCollector.increment("persist.success", 1L);
-      if (!pendingStoreRequest.isTransactional()) {
-        return null;
+  /**
+   * Submits a committer task if there are pending requests and there is no committer task waiting to run.
+   */
+  private void scheduleCommit() {
+    if (pendingStoreQueue.isEmpty() || !scheduled.compareAndSet(false, true)) {
+      return;
+    }
+    try {
+      if (lingerMillis > 0 && pendingStoreQueue.size() < maxBatchSize) {
+        committerExecutor.schedule(this::commit, lingerMillis, TimeUnit.MILLISECONDS);
+      } else {
+        committerExecutor.execute(this::commit);
       }
-      return new SimpleRollbackDetail(pendingStoreRequest.getTransactionWritePointer(),
-                                      pendingStoreRequest.getStartTimestamp(), pendingStoreRequest.getStartSequenceId(),
-                                      pendingStoreRequest.getEndTimestamp(), pendingStoreRequest.getEndSequenceId());
-    } else {
-      metricsCollector.increment("persist.failure", 1L);
-      Throwables.propagateIfInstanceOf(pendingStoreRequest.getFailureCause(), IOException.class);
-      throw new IOException("Unable to write message to " + storeRequest.getTopicId(),
-                            pendingStoreRequest.getFailureCause());
+    } catch (RejectedExecutionException e) {
+      // The executor is shutting down. Commit with the current thread to make sure no request is left behind.
+      commit();
     }
   }
 
   /**
-   * Tries to acquire the writer flag and persist the pending requests.
-   *
-   * @return {@code true} if acquired the writer flag and called {@link PendingStoreQueue#persist(StoreRequestWriter)};
-   *         otherwise {@code false} will be returned.
+   * Writes a batch of pending requests. It is the committer task submitted by {@link #scheduleCommit()}.
    */
-  private boolean tryWrite() {
-    if (!writerFlag.compareAndSet(false, true)) {
-      return false;
-    }
+  private void commit() {
+    commitLock.lock();
     try {
-      pendingStoreQueue.persist(messagesWriter);
+      pendingStoreQueue.persist(messagesWriter, maxBatchSize);
     } finally {
-      writerFlag.set(false);
+      commitLock.unlock();
+      scheduled.set(false);
     }
-    return true;
+    scheduleCommit();
   }
 
   @Override
@@ -157,28 +229,37 @@ final class ConcurrentMessageWriter implements Closeable {
       return;
     }
     // Flush everything in the queue.
-    // When this thread can grab the writer flag, all pending write requests must be completed since the closed
-    // flag was already set to false.
-    while (!tryWrite()) {
-      Thread.yield();
+    // Since the closed flag is already set, no new request would be accepted.
+    commitLock.lock();
+    try {
+      while (!pendingStoreQueue.isEmpty()) {
+        pendingStoreQueue.persist(messagesWriter, Integer.MAX_VALUE);
+      }
+    } finally {
+      commitLock.unlock();
+    }
+    if (ownExecutor) {
+      committerExecutor.shutdown();
     }
     messagesWriter.close();
   }
 
   /**
    * A resettable {@link Iterator} to provide {@link StoreRequest} to {@link StoreRequestWriter}.
-   * Except the {@link #enqueue(PendingStoreRequest)} method, all methods on this class can only be
-   * called while holding the writer flag.
+   * Except the {@link #enqueue(PendingStoreRequest)}, {@link #isEmpty()} and {@link #size()} methods,
+   * all methods on this class can only be called while holding the commit lock.
    */
   private static final class PendingStoreQueue {
 
     private final MetricsCollector metricsCollector;
     private final Queue<PendingStoreRequest> writeQueue;
+    private final AtomicInteger size;
     private final List<PendingStoreRequest> inflightRequests;
 
     private PendingStoreQueue(MetricsCollector metricsCollector) {
       this.metricsCollector = metricsCollector;
       this.writeQueue = new ConcurrentLinkedQueue<>();
+      this.size = new AtomicInteger();
       this.inflightRequests = new ArrayList<>(100);
     }
 
@@ -187,29 +268,43 @@ final class ConcurrentMessageWriter implements Closeable {
      */
     void enqueue(PendingStoreRequest storeRequest) {
       writeQueue.add(storeRequest);
+      size.incrementAndGet();
+    }
+
+    boolean isEmpty() {
+      return writeQueue.isEmpty();
+    }
+
+    int size() {
+      return size.get();
     }
 
     /**
-     * Persists all {@link PendingStoreRequest} currently in the queue with the given writer.
+     * Persists up to the given number of {@link PendingStoreRequest} currently in the queue with the given writer.
      */
-    void persist(StoreRequestWriter<?> writer) {
-      // Capture all current events.
+    void persist(StoreRequestWriter<?> writer, int maxBatchSize) {
+      // Capture the current events.
       // The reason for capturing instead of using a live iterator is to avoid the possible case of infinite write
       // time. E.g. while generating the entry to write to the storage table, a new store request get enqueued.
-      // The number of requests in the queue is bounded by the number of threads that call this method.
-      // Since this method is expected to be called (indirectly) from a http handler thread, that is bounded by
-      // the thread pool size used by the http service.
       inflightRequests.clear();
-      PendingStoreRequest request = writeQueue.poll();
+      PendingStoreRequest request = inflightRequests.size() < maxBatchSize ? writeQueue.poll() : null;
       while (request != null) {
         inflightRequests.add(request);
-        request = writeQueue.poll();
+        request = inflightRequests.size() < maxBatchSize ? writeQueue.poll() : null;
+      }
+      if (inflightRequests.isEmpty()) {
+        return;
       }
+      size.addAndGet(-inflightRequests.size());
 
       metricsCollector.gauge("persist.queue.size", inflightRequests.size());
+      BATCH_SIZE_METRIC.record(metricsCollector, inflightRequests.size());
 
+      long startTime = System.nanoTime();
       try {
         writer.write(inflightRequests.iterator());
+        COMMIT_LATENCY_METRIC.record(metricsCollector,
+                                     TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startTime));
         completeAll(null);
       } catch (Throwable t) {
         completeAll(t);
@@ -217,61 +312,17 @@ final class ConcurrentMessageWriter implements Closeable {
     }
 
     /**
-     * Marks all inflight requests as collected through the {@link Iterator#next()} method as completed.
-     * This method must be called while holding the writer flag.
+     * Marks all inflight requests as completed.
+     * This method must be called while holding the commit lock.
      */
     void completeAll(@Nullable Throwable failureCause) {
+      String metricName = failureCause == null ? "persist.success" : "persist.failure";
       Iterator<PendingStoreRequest> iterator = inflightRequests.iterator();
       while (iterator.hasNext()) {
+        metricsCollector.increment(metricName, 1L);
         iterator.next().completed(failureCause);
         iterator.remove();
       }
     }
   }
-
-  /**
-   * Straightforward implementation of {@link RollbackDetail}
-   */
-  private static final class SimpleRollbackDetail implements RollbackDetail {
-
-    private final long transactionWritePointer;
-    private final long startTimestamp;
-    private final int startSequenceId;
-    private final long endTimestamp;
-    private final int endSequenceId;
-
-    SimpleRollbackDetail(long transactionWritePointer, long startTimestamp,
-                         int startSequenceId, long endTimestamp, int endSequenceId) {
-      this.transactionWritePointer = transactionWritePointer;
-      this.startTimestamp = startTimestamp;
-      this.startSequenceId = startSequenceId;
-      this.endTimestamp = endTimestamp;
-      this.endSequenceId = endSequenceId;
-    }
-
-    @Override
-    public long getTransactionWritePointer() {
-      return transactionWritePointer;
-    }
-
-    @Override
-    public long getStartTimestamp() {
-      return startTimestamp;
-    }
-
-    @Override
-    public int getStartSequenceId() {
-      return startSequenceId;
-    }
-
-    @Override
-    public long getEndTimestamp() {
-      return endTimestamp;
-    }
-
-    @Override
-    public int getEndSequenceId() {
-      return endSequenceId;
-    }
-  }
 }
@@ -35,7 +35,9 @@ import javax.annotation.Nullable;
 
 /**
  * Implementation of {@link MessageFetcher} that fetch messages directly
- * from {@link MessageTable} and {@link PayloadTable}.
+ * from {@link MessageTable} and {@link PayloadTable}. If a poll timeout is set and there is no message available,
+ * the {@link #fetch()} call blocks until the {@link MessageNotifier} signals new messages or the timeout expires.
+ * Transactional fetches never block, since messages committed during the wait are not visible to the transaction.
  */
 final class CoreMessageFetcher extends MessageFetcher {
 
@@ -44,17 +46,52 @@ final class CoreMessageFetcher extends MessageFetcher {
   private final TopicMetadata topicMetadata;
   private final TableProvider<MessageTable> messageTableProvider;
   private final TableProvider<PayloadTable> payloadTableProvider;
+  private final MessageNotifier messageNotifier;
 
   CoreMessageFetcher(TopicMetadata topicMetadata,
                      TableProvider<MessageTable> messageTableProvider,
-                     TableProvider<PayloadTable> payloadTableProvider) {
+                     TableProvider<PayloadTable> payloadTableProvider,
+                     MessageNotifier messageNotifier) {
     this.topicMetadata = topicMetadata;
     this.messageTableProvider = messageTableProvider;
     this.payloadTableProvider = payloadTableProvider;
+    this.messageNotifier = messageNotifier;
   }
 
   @Override
   public CloseableIterator<RawMessage> fetch() throws IOException {
+    long pollTimeoutMillis = getPollTimeoutMillis();
+    if (pollTimeoutMillis <= 0 || getTransaction() != null) {
+      return createIterator();
+    }
+
+    TopicId topicId = topicMetadata.getTopicId();
+    long deadline = System.currentTimeMillis() + pollTimeoutMillis;
+    while (true) {
+      // Get the generation before fetching so that messages published in between won't be missed
+      long generation = messageNotifier.getGeneration(topicId);
+      CloseableIterator<RawMessage> iterator = createIterator();
+      long remaining = deadline - System.currentTimeMillis();
+      try {
+        if (remaining <= 0 || iterator.hasNext()) {
+          return iterator;
+        }
+      } catch (Throwable t) {
+        closeQuietly(iterator);
+        throw t;
+      }
+      iterator.close();
+
+      try {
+        messageNotifier.await(topicId, generation, remaining, TimeUnit.MILLISECONDS);
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+        return createIterator();
+      }
+    }
+  }
+
+  private CloseableIterator<RawMessage> createIterator() throws IOException {
     MessageTable messageTable = messageTableProvider.get();
     try {
       return new MessageCloseableIterator(messageTable);
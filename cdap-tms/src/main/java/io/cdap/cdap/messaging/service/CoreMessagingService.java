@@ -27,6 +27,10 @@ import com.google.common.cache.RemovalNotification;
 import com.google.common.collect.ImmutableMap;
 import com.google.common.io.Closeables;
 import com.google.common.util.concurrent.AbstractIdleService;
+import com.google.common.util.concurrent.Futures;
+import com.google.common.util.concurrent.ListenableFuture;
+import com.google.common.util.concurrent.MoreExecutors;
+import com.google.common.util.concurrent.Uninterruptibles;
 import com.google.inject.Inject;
 import io.cdap.cdap.api.messaging.TopicAlreadyExistsException;
 import io.cdap.cdap.api.messaging.TopicNotFoundException;
@@ -85,19 +89,34 @@ public class CoreMessagingService extends AbstractIdleService implements Messagi
   private final LoadingCache<TopicId, ConcurrentMessageWriter> payloadTableWriterCache;
   private final TimeProvider timeProvider;
   private final MetricsCollectionService metricsCollectionService;
+  private final MessageNotifier messageNotifier;
+  private final ScheduledExecutorService committerExecutor;
   private final long txMaxLifeTimeInMillis;
 
-  @Inject
   protected CoreMessagingService(CConfiguration cConf, TableFactory tableFactory,
                                  MetricsCollectionService metricsCollectionService) {
-    this(cConf, tableFactory, TimeProvider.SYSTEM_TIME, metricsCollectionService);
+    this(cConf, tableFactory, metricsCollectionService, new MessageNotifier());
+  }
+
+  @Inject
+  protected CoreMessagingService(CConfiguration cConf, TableFactory tableFactory,
+                                 MetricsCollectionService metricsCollectionService, MessageNotifier messageNotifier) {
+    this(cConf, tableFactory, TimeProvider.SYSTEM_TIME, metricsCollectionService, messageNotifier);
   }
 
   @VisibleForTesting
   CoreMessagingService(CConfiguration cConf, TableFactory tableFactory,
                        TimeProvider timeProvider, MetricsCollectionService metricsCollectionService) {
+    this(cConf, tableFactory, timeProvider, metricsCollectionService, new MessageNotifier());
+  }
+
+  private CoreMessagingService(CConfiguration cConf, TableFactory tableFactory, TimeProvider timeProvider,
+                               MetricsCollectionService metricsCollectionService, MessageNotifier messageNotifier) {
     this.cConf = cConf;
     this.tableFactory = tableFactory;
+    this.committerExecutor = Executors.newScheduledThreadPool(
+      cConf.getInt(Constants.MessagingSystem.PUBLISH_COMMITTER_THREADS),
+      Threads.createDaemonThreadFactory("messaging-committer-%d"));
     this.topicCache = createTopicCache();
     this.messageTableWriterCache = createTableWriterCache(true, cConf);
     this.payloadTableWriterCache = createTableWriterCache(false, cConf);
@@ -113,6 +132,7 @@ public class CoreMessagingService extends AbstractIdleService implements Messagi
     //        messaging service ->
     //          "metrics collection"
     this.metricsCollectionService = metricsCollectionService;
+    this.messageNotifier = messageNotifier;
     this.txMaxLifeTimeInMillis = TimeUnit.SECONDS.toMillis(cConf.getLong(TxConstants.Manager.CFG_TX_MAX_LIFETIME,
                                                                          TxConstants.Manager.DEFAULT_TX_MAX_LIFETIME));
   }
@@ -143,6 +163,7 @@ public class CoreMessagingService extends AbstractIdleService implements Messagi
       topicCache.invalidate(topicId);
       messageTableWriterCache.invalidate(topicId);
       payloadTableWriterCache.invalidate(topicId);
+      messageNotifier.remove(topicId);
     }
   }
 
@@ -169,18 +190,15 @@ public class CoreMessagingService extends AbstractIdleService implements Messagi
     final TopicMetadata metadata = getTopic(topicId);
     return new CoreMessageFetcher(metadata,
                                   () -> createMessageTable(metadata),
-                                  () -> createPayloadTable(metadata));
+                                  () -> createPayloadTable(metadata),
+                                  messageNotifier);
   }
 
   @Nullable
   @Override
   public RollbackDetail publish(StoreRequest request) throws TopicNotFoundException, IOException {
     try {
-      TopicMetadata metadata = topicCache.get(request.getTopicId());
-      if (request.isTransactional()) {
-        ensureValidTxLifetime(request.getTransactionWritePointer());
-      }
-      return messageTableWriterCache.get(request.getTopicId()).persist(request, metadata);
+      return Uninterruptibles.getUninterruptibly(publishAsync(request));
     } catch (ExecutionException e) {
       Throwable cause = Objects.firstNonNull(e.getCause(), e);
       Throwables.propagateIfPossible(cause, TopicNotFoundException.class, IOException.class);
@@ -188,6 +206,24 @@ public class CoreMessagingService extends AbstractIdleService implements Messagi
     }
   }
 
+  @Override
+  public ListenableFuture<RollbackDetail> publishAsync(StoreRequest request) {
+    TopicId topicId = request.getTopicId();
+    try {
+      TopicMetadata metadata = topicCache.get(topicId);
+      if (request.isTransactional()) {
+        ensureValidTxLifetime(request.getTransactionWritePointer());
+      }
+      ListenableFuture<RollbackDetail> future = messageTableWriterCache.get(topicId).persistAsync(request, metadata);
+      future.addListener(() -> messageNotifier.notifyPublished(topicId), MoreExecutors.sameThreadExecutor());
+      return future;
+    } catch (ExecutionException e) {
+      return Futures.immediateFailedFuture(Objects.firstNonNull(e.getCause(), e));
+    } catch (Exception e) {
+      return Futures.immediateFailedFuture(e);
+    }
+  }
+
   @Override
   public void storePayload(StoreRequest request) throws TopicNotFoundException, IOException {
     try {
@@ -252,6 +288,7 @@ public class CoreMessagingService extends AbstractIdleService implements Messagi
   protected void shutDown() throws Exception {
     messageTableWriterCache.invalidateAll();
     payloadTableWriterCache.invalidateAll();
+    committerExecutor.shutdown();
     Closeables.closeQuietly(tableFactory);
     LOG.info("Core Messaging Service stopped");
   }
@@ -366,7 +403,9 @@ public class CoreMessagingService extends AbstractIdleService implements Messagi
             Constants.Metrics.Tag.TABLE, messageTable ? "message" : "payload"
           ));
 
-          return new ConcurrentMessageWriter(messagesWriter, metricsContext);
+          return new ConcurrentMessageWriter(messagesWriter, metricsContext, committerExecutor,
+                                             cConf.getInt(Constants.MessagingSystem.PUBLISH_MAX_BATCH_SIZE),
+                                             cConf.getLong(Constants.MessagingSystem.PUBLISH_BATCH_LINGER_MS));
         }
       });
   }
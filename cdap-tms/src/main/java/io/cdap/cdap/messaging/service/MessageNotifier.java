@@ -0,0 +1,156 @@
+/*
+ * Copyright © 2020 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+
+package io.cdap.cdap.messaging.service;
+
+import com.google.common.util.concurrent.Futures;
+import com.google.common.util.concurrent.ListenableFuture;
+import com.google.common.util.concurrent.SettableFuture;
+import com.google.inject.Singleton;
+import io.cdap.cdap.proto.id.TopicId;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Tracks publishing to topics so that consumers can wait for new messages instead of polling with a fixed delay.
+ * Each topic has a generation number, which is advanced every time messages are published to the topic.
+ * A consumer first reads the generation, then fetches, and if nothing is fetched, waits for the generation to change.
+ */
+@Singleton
+public final class MessageNotifier {
+
+  private final ConcurrentMap<TopicId, TopicState> topics = new ConcurrentHashMap<>();
+
+  /**
+   * Returns the current generation of the given topic.
+   */
+  public long getGeneration(TopicId topicId) {
+    return getState(topicId).getGeneration();
+  }
+
+  /**
+   * Signals that new messages were published to the given topic.
+   */
+  public void notifyPublished(TopicId topicId) {
+    TopicState state = topics.get(topicId);
+    if (state != null) {
+      state.advance();
+    }
+  }
+
+  /**
+   * Removes the state of the given topic. Any pending waiter is woken up.
+   */
+  public void remove(TopicId topicId) {
+    TopicState state = topics.remove(topicId);
+    if (state != null) {
+      state.advance();
+    }
+  }
+
+  /**
+   * Returns a {@link ListenableFuture} that completes when the generation of the given topic moves
+   * beyond the given generation. Cancelling the future removes the waiter.
+   *
+   * @param topicId the topic to watch
+   * @param generation the generation as returned by {@link #getGeneration(TopicId)} before the last fetch
+   * @return a {@link ListenableFuture} that completes when there are new messages published to the topic
+   */
+  public ListenableFuture<Void> watch(TopicId topicId, long generation) {
+    return getState(topicId).watch(generation);
+  }
+
+  /**
+   * Blocks until the generation of the given topic moves beyond the given generation or the timeout expires.
+   *
+   * @param topicId the topic to wait for
+   * @param generation the generation as returned by {@link #getGeneration(TopicId)} before the last fetch
+   * @param timeout maximum time to wait
+   * @param unit unit for the timeout
+   * @return {@code true} if there are new messages published to the topic, {@code false} if the timeout expired
+   * @throws InterruptedException if the waiting thread is interrupted
+   */
+  public boolean await(TopicId topicId, long generation,
+                       long timeout, TimeUnit unit) throws InterruptedException {
+    return getState(topicId).await(generation, unit.toMillis(timeout));
+  }
+
+  private TopicState getState(TopicId topicId) {
+    return topics.computeIfAbsent(topicId, k -> new TopicState());
+  }
+
+  /**
+   * Generation and waiters of a single topic.
+   */
+  private static final class TopicState {
+
+    private final List<SettableFuture<Void>> waiters = new ArrayList<>();
+    private long generation;
+
+    synchronized long getGeneration() {
+      return generation;
+    }
+
+    void advance() {
+      List<SettableFuture<Void>> completing;
+      synchronized (this) {
+        generation++;
+        notifyAll();
+        if (waiters.isEmpty()) {
+          return;
+        }
+        completing = new ArrayList<>(waiters);
+        waiters.clear();
+      }
+      // Complete outside of the lock since listeners may run in this thread
+      for (SettableFuture<Void> future : completing) {
+        future.set(null);
+      }
+    }
+
+    synchronized ListenableFuture<Void> watch(long expected) {
+      if (generation != expected) {
+        return Futures.immediateFuture(null);
+      }
+      // Drop waiters that were cancelled by their owners
+      Iterator<SettableFuture<Void>> iterator = waiters.iterator();
+      while (iterator.hasNext()) {
+        if (iterator.next().isDone()) {
+          iterator.remove();
+        }
+      }
+      SettableFuture<Void> future = SettableFuture.create();
+      waiters.add(future);
+      return future;
+    }
+
+    synchronized boolean await(long expected, long timeoutMillis) throws InterruptedException {
+      long deadline = System.currentTimeMillis() + timeoutMillis;
+      long remaining = timeoutMillis;
+      while (generation == expected && remaining > 0) {
+        wait(remaining);
+        remaining = deadline - System.currentTimeMillis();
+      }
+      return generation != expected;
+    }
+  }
+}
@@ -16,21 +16,27 @@
 
 package io.cdap.cdap.messaging.service;
 
+import com.google.common.util.concurrent.ListenableFuture;
+import com.google.common.util.concurrent.SettableFuture;
+import io.cdap.cdap.messaging.RollbackDetail;
 import io.cdap.cdap.messaging.StoreRequest;
 import io.cdap.cdap.messaging.TopicMetadata;
 
+import java.io.IOException;
 import java.util.Iterator;
 import javax.annotation.Nullable;
 
 /**
  * A {@link StoreRequest} that represents a pending store request to the underlying storage table.
+ * The result of the request is delivered through the {@link ListenableFuture} returned by {@link #getCompletion()}.
  */
 final class PendingStoreRequest extends StoreRequest {
 
   private final StoreRequest originalRequest;
   private final TopicMetadata metadata;
+  private final SettableFuture<RollbackDetail> completion;
 
-  private boolean completed;
+  private volatile boolean completed;
   private long startTimestamp;
   private long endTimestamp;
   private int startSequenceId;
@@ -42,6 +48,7 @@ final class PendingStoreRequest extends StoreRequest {
           originalRequest.getTransactionWritePointer());
     this.originalRequest = originalRequest;
     this.metadata = topicMetadata;
+    this.completion = SettableFuture.create();
   }
 
   TopicMetadata getTopicMetadata() {
@@ -52,21 +59,29 @@ final class PendingStoreRequest extends StoreRequest {
     return completed;
   }
 
-  boolean isSuccess() {
-    if (!isCompleted()) {
-      throw new IllegalStateException("Write is not yet completed");
-    }
-    return failureCause == null;
-  }
-
-  @Nullable
-  Throwable getFailureCause() {
-    return failureCause;
+  /**
+   * Returns a {@link ListenableFuture} that completes when this request is persisted. The future result is
+   * a {@link RollbackDetail} for transactional request, or {@code null} for non-transactional request.
+   * If the write failed, the future fails with an {@link IOException}.
+   */
+  ListenableFuture<RollbackDetail> getCompletion() {
+    return completion;
   }
 
   void completed(@Nullable Throwable failureCause) {
-    completed = true;
     this.failureCause = failureCause;
+    completed = true;
+
+    if (failureCause != null) {
+      completion.setException(failureCause instanceof IOException
+                                ? failureCause
+                                : new IOException("Unable to write message to " + getTopicId(), failureCause));
+    } else if (isTransactional()) {
+      completion.set(new SimpleRollbackDetail(getTransactionWritePointer(), startTimestamp, startSequenceId,
+                                              endTimestamp, endSequenceId));
+    } else {
+      completion.set(null);
+    }
   }
 
   void setStartTimestamp(long startTimestamp) {
@@ -122,4 +137,50 @@ final class PendingStoreRequest extends StoreRequest {
       ", failureCause=" + failureCause +
       '}';
   }
+
+  /**
+   * Straightforward implementation of {@link RollbackDetail}
+   */
+  private static final class SimpleRollbackDetail implements RollbackDetail {
+
+    private final long transactionWritePointer;
+    private final long startTimestamp;
+    private final int startSequenceId;
+    private final long endTimestamp;
+    private final int endSequenceId;
+
+    SimpleRollbackDetail(long transactionWritePointer, long startTimestamp,
+                         int startSequenceId, long endTimestamp, int endSequenceId) {
+      this.transactionWritePointer = transactionWritePointer;
+      this.startTimestamp = startTimestamp;
+      this.startSequenceId = startSequenceId;
+      this.endTimestamp = endTimestamp;
+      this.endSequenceId = endSequenceId;
+    }
+
+    @Override
+    public long getTransactionWritePointer() {
+      return transactionWritePointer;
+    }
+
+    @Override
+    public long getStartTimestamp() {
+      return startTimestamp;
+    }
+
+    @Override
+    public int getStartSequenceId() {
+      return startSequenceId;
+    }
+
+    @Override
+    public long getEndTimestamp() {
+      return endTimestamp;
+    }
+
+    @Override
+    public int getEndSequenceId() {
+      return endSequenceId;
+    }
+  }
 }
@@ -347,15 +347,32 @@ final class CachingMessageTable implements MessageTable {
     private boolean rollback;
 
     CacheMessageTableEntry(TopicMetadata topicMetadata, long publishTimestamp, short sequenceId) {
+      this(topicMetadata.getTopicId(), topicMetadata.getGeneration(), publishTimestamp, sequenceId);
+    }
+
+    CacheMessageTableEntry(TopicId topicId, int generation, long publishTimestamp, short sequenceId) {
       this.lookupOnly = true;
-      this.topicId = topicMetadata.getTopicId();
-      this.generation = topicMetadata.getGeneration();
+      this.topicId = topicId;
+      this.generation = generation;
       this.transactional = false;
       this.payload = null;
       this.publishTimestamp = publishTimestamp;
       this.sequenceId = sequenceId;
     }
 
+    CacheMessageTableEntry(TopicId topicId, int generation, boolean transactional, long transactionWritePointer,
+                           @Nullable byte[] payload, long publishTimestamp, short sequenceId, boolean rollback) {
+      this.lookupOnly = false;
+      this.topicId = topicId;
+      this.generation = generation;
+      this.transactional = transactional;
+      this.transactionWritePointer = transactionWritePointer;
+      this.payload = payload;
+      this.publishTimestamp = publishTimestamp;
+      this.sequenceId = sequenceId;
+      this.rollback = rollback;
+    }
+
     CacheMessageTableEntry(Entry other) {
       this.lookupOnly = false;
       this.topicId = other.getTopicId();
@@ -75,9 +75,14 @@ public class DefaultMessageTableCacheProvider implements MessageTableCacheProvid
               // Have reduce trigger as 70% of the hard limit and min retain as 50% of the hard limit
               // In future, it can be adjusted dynamically based on metrics
               MessageCache.Limits limits = new MessageCache.Limits(hardLimit / 2, hardLimit * 7 / 10, hardLimit);
+              boolean offHeap = cConf.getBoolean(Constants.MessagingSystem.CACHE_OFF_HEAP_ENABLED);
+              int segmentSize = cConf.getInt(Constants.MessagingSystem.CACHE_OFF_HEAP_SEGMENT_SIZE_KB) * 1024;
               for (TopicId topic : systemTopics) {
-                caches.put(topic, new MessageCache<>(comparator, weigher, limits,
-                                                     createMetricsContext(cConf, topic, metricsCollectionService)));
+                MetricsContext metricsContext = createMetricsContext(cConf, topic, metricsCollectionService);
+                caches.put(topic, offHeap
+                  ? new MessageCache<>(comparator, weigher, new MessageTableEntryCodec(topic), segmentSize,
+                                       limits, metricsContext)
+                  : new MessageCache<>(comparator, weigher, limits, metricsContext));
               }
             }
           }
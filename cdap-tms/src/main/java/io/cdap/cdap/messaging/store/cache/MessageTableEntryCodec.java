@@ -0,0 +1,96 @@
+/*
+ * Copyright © 2020 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package io.cdap.cdap.messaging.store.cache;
+
+import io.cdap.cdap.messaging.cache.MessageCache;
+import io.cdap.cdap.messaging.store.MessageTable;
+import io.cdap.cdap.messaging.store.cache.CachingMessageTable.CacheMessageTableEntry;
+import io.cdap.cdap.proto.id.TopicId;
+
+import java.nio.ByteBuffer;
+
+/**
+ * A {@link MessageCache.EntryCodec} for storing {@link MessageTable.Entry} of a topic in off-heap memory.
+ * The topic id is not encoded since each topic has its own {@link MessageCache}.
+ *
+ * The encoded format is:
+ *
+ * <pre>
+ * [flags (1 byte)][generation (4 bytes)][publish timestamp (8 bytes)][sequence id (2 bytes)]
+ * [transaction write pointer (8 bytes)][payload length (4 bytes), -1 for null][payload]
+ * </pre>
+ */
+final class MessageTableEntryCodec implements MessageCache.EntryCodec<MessageTable.Entry> {
+
+  private static final int FIXED_SIZE = 1 + 4 + 8 + 2 + 8 + 4;
+  private static final byte FLAG_TRANSACTIONAL = 0x01;
+  private static final byte FLAG_ROLLBACK = 0x02;
+
+  private final TopicId topicId;
+
+  MessageTableEntryCodec(TopicId topicId) {
+    this.topicId = topicId;
+  }
+
+  @Override
+  public MessageTable.Entry toKey(MessageTable.Entry entry) {
+    return new CacheMessageTableEntry(entry.getTopicId(), entry.getGeneration(),
+                                      entry.getPublishTimestamp(), entry.getSequenceId());
+  }
+
+  @Override
+  public int getEncodedSize(MessageTable.Entry entry) {
+    byte[] payload = entry.getPayload();
+    return FIXED_SIZE + (payload == null ? 0 : payload.length);
+  }
+
+  @Override
+  public void encode(MessageTable.Entry entry, ByteBuffer buffer) {
+    byte flags = entry.isTransactional() ? FLAG_TRANSACTIONAL : 0;
+    if (entry instanceof CacheMessageTableEntry && ((CacheMessageTableEntry) entry).isRollback()) {
+      flags |= FLAG_ROLLBACK;
+    }
+    byte[] payload = entry.getPayload();
+
+    buffer.put(flags)
+      .putInt(entry.getGeneration())
+      .putLong(entry.getPublishTimestamp())
+      .putShort(entry.getSequenceId())
+      .putLong(entry.getTransactionWritePointer())
+      .putInt(payload == null ? -1 : payload.length);
+    if (payload != null) {
+      buffer.put(payload);
+    }
+  }
+
+  @Override
+  public MessageTable.Entry decode(ByteBuffer buffer) {
+    byte flags = buffer.get();
+    int generation = buffer.getInt();
+    long publishTimestamp = buffer.getLong();
+    short sequenceId = buffer.getShort();
+    long transactionWritePointer = buffer.getLong();
+    int payloadLength = buffer.getInt();
+    byte[] payload = null;
+    if (payloadLength >= 0) {
+      payload = new byte[payloadLength];
+      buffer.get(payload);
+    }
+    return new CacheMessageTableEntry(topicId, generation, (flags & FLAG_TRANSACTIONAL) != 0, transactionWritePointer,
+                                      payload, publishTimestamp, sequenceId, (flags & FLAG_ROLLBACK) != 0);
+  }
+}
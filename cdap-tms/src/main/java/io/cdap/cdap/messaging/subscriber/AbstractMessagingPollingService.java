@@ -30,6 +30,7 @@ import io.cdap.cdap.common.logging.Loggers;
 import io.cdap.cdap.common.service.AbstractRetryableScheduledService;
 import io.cdap.cdap.common.service.RetryStrategy;
 import io.cdap.cdap.common.utils.ImmutablePair;
+import io.cdap.cdap.messaging.context.PollingMessageFetcher;
 import io.cdap.cdap.messaging.data.MessageId;
 import io.cdap.cdap.proto.id.TopicId;
 import org.slf4j.Logger;
@@ -39,6 +40,7 @@ import java.io.IOException;
 import java.util.ArrayList;
 import java.util.Iterator;
 import java.util.List;
+import java.util.concurrent.TimeUnit;
 import javax.annotation.Nullable;
 import javax.xml.ws.handler.MessageContext;
 
@@ -156,15 +158,37 @@ public abstract class AbstractMessagingPollingService<T> extends AbstractRetryab
     List<Message> messages = new ArrayList<>();
     LOG.trace("Fetching from topic '{}' with messageId '{}'", topicId, messageId);
     MessageFetcher messageFetcher = getMessagingContext().getMessageFetcher();
-    try (CloseableIterator<Message> iterator = messageFetcher.fetch(getTopicId().getNamespace(),
-                                                                    getTopicId().getTopic(), fetchSize, messageId)) {
+    boolean poll = emptyFetchDelayMillis > 0 && messageFetcher instanceof PollingMessageFetcher;
+    long startTime = System.currentTimeMillis();
+    try (CloseableIterator<Message> iterator = fetch(messageFetcher, messageId, poll)) {
+      // A poll only returns after new messages arrived or the timeout expired, which is reported separately from
+      // the time spent on fetching the messages
+      if (poll) {
+        long pollEndTime = System.currentTimeMillis();
+        metricsContext.gauge("tms.poll.wait.ms", pollEndTime - startTime);
+        startTime = pollEndTime;
+      }
       while (iterator.hasNext() && state() == State.RUNNING) {
         messages.add(iterator.next());
       }
     }
+    metricsContext.gauge("tms.fetch.time.ms", System.currentTimeMillis() - startTime);
     return messages;
   }
 
+  /**
+   * Fetches from TMS with the given {@link MessageFetcher}. If polling, it waits up to the empty fetch delay for new
+   * messages to arrive, so that new messages are processed as soon as they are published.
+   */
+  private CloseableIterator<Message> fetch(MessageFetcher messageFetcher, @Nullable String messageId,
+                                           boolean poll) throws TopicNotFoundException, IOException {
+    if (poll) {
+      return ((PollingMessageFetcher) messageFetcher).poll(topicId.getNamespace(), topicId.getTopic(), fetchSize,
+                                                           messageId, emptyFetchDelayMillis, TimeUnit.MILLISECONDS);
+    }
+    return messageFetcher.fetch(topicId.getNamespace(), topicId.getTopic(), fetchSize, messageId);
+  }
+
   /**
    * The method has the main logic to perform one fetch from TMS and process the fetched messages.
    *
@@ -181,7 +205,6 @@ public abstract class AbstractMessagingPollingService<T> extends AbstractRetryab
 
     // Collects batch of messages for processing.
     List<Message> messages = fetchMessages(messageId);
-    metricsContext.gauge("tms.fetch.time.ms", System.currentTimeMillis() - startTime);
     metricsContext.increment("tms.fetch.messages", messages.size());
 
     // Return if stopping or request to sleep for configured number of milliseconds if there is no message fetched.
@@ -51,7 +51,7 @@ public abstract class AbstractMessagingSubscriberService<T> extends AbstractMess
    * @param topicId the topic to consume from
    * @param fetchSize number of messages to fetch in each batch
    * @param txTimeoutSeconds transaction timeout in seconds to use when processing messages
-   * @param emptyFetchDelayMillis number of milliseconds to sleep after a fetch returns empty result
+   * @param emptyFetchDelayMillis number of milliseconds to wait for new messages after a fetch returns empty result
    * @param retryStrategy the {@link RetryStrategy} to determine retry on failure
    * @param metricsContext the {@link MetricsContext} for emitting metrics about the message consumption.
    */
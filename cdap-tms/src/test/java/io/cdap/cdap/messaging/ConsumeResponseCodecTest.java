@@ -0,0 +1,125 @@
+/*
+ * Copyright © 2020 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+
+package io.cdap.cdap.messaging;
+
+import io.cdap.cdap.api.common.Bytes;
+import io.cdap.cdap.messaging.data.RawMessage;
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.ByteBufInputStream;
+import io.netty.buffer.ByteBufOutputStream;
+import io.netty.buffer.Unpooled;
+import org.apache.avro.Schema;
+import org.apache.avro.generic.GenericData;
+import org.apache.avro.generic.GenericDatumReader;
+import org.apache.avro.generic.GenericDatumWriter;
+import org.apache.avro.generic.GenericRecord;
+import org.apache.avro.io.Decoder;
+import org.apache.avro.io.DecoderFactory;
+import org.apache.avro.io.Encoder;
+import org.apache.avro.io.EncoderFactory;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Unit test for {@link ConsumeResponseCodec}, verifying it is compatible with the generic Avro encoding.
+ */
+public class ConsumeResponseCodecTest {
+
+  @Test
+  public void testEncode() throws Exception {
+    List<RawMessage> block1 = createMessages(0, 3);
+    List<RawMessage> block2 = createMessages(3, 200);
+
+    ByteBuf buffer = Unpooled.buffer();
+    ConsumeResponseCodec.writeBlock(block1, buffer);
+    ConsumeResponseCodec.writeBlock(block2, buffer);
+    ConsumeResponseCodec.writeArrayEnd(buffer);
+
+    Schema schema = Schemas.V1.ConsumeResponse.SCHEMA;
+    Decoder decoder = DecoderFactory.get().binaryDecoder(new ByteBufInputStream(buffer), null);
+    GenericData.Array<GenericRecord> records = new GenericDatumReader<GenericData.Array<GenericRecord>>(schema)
+      .read(null, decoder);
+
+    List<RawMessage> expected = new ArrayList<>(block1);
+    expected.addAll(block2);
+    Assert.assertEquals(expected.size(), records.size());
+    for (int i = 0; i < expected.size(); i++) {
+      GenericRecord record = records.get(i);
+      Assert.assertArrayEquals(expected.get(i).getId(), Bytes.toBytes((ByteBuffer) record.get("id")));
+      Assert.assertArrayEquals(expected.get(i).getPayload(), Bytes.toBytes((ByteBuffer) record.get("payload")));
+    }
+  }
+
+  @Test
+  public void testEncodeEmpty() throws Exception {
+    ByteBuf buffer = Unpooled.buffer();
+    ConsumeResponseCodec.writeBlock(new ArrayList<>(), buffer);
+    ConsumeResponseCodec.writeArrayEnd(buffer);
+
+    Decoder decoder = DecoderFactory.get().binaryDecoder(new ByteBufInputStream(buffer), null);
+    Assert.assertEquals(0L, decoder.readArrayStart());
+  }
+
+  @Test
+  public void testDecode() throws Exception {
+    List<RawMessage> messages = createMessages(0, 100);
+
+    // Encode with the generic Avro writer
+    Schema schema = Schemas.V1.ConsumeResponse.SCHEMA;
+    GenericData.Array<GenericRecord> records = new GenericData.Array<>(messages.size(), schema);
+    for (RawMessage message : messages) {
+      GenericRecord record = new GenericData.Record(schema.getElementType());
+      record.put("id", ByteBuffer.wrap(message.getId()));
+      record.put("payload", ByteBuffer.wrap(message.getPayload()));
+      records.add(record);
+    }
+    ByteBuf buffer = Unpooled.buffer();
+    Encoder encoder = EncoderFactory.get().directBinaryEncoder(new ByteBufOutputStream(buffer), null);
+    new GenericDatumWriter<GenericData.Array<GenericRecord>>(schema).write(records, encoder);
+
+    Decoder decoder = DecoderFactory.get().binaryDecoder(new ByteBufInputStream(buffer), null);
+    List<RawMessage> decoded = new ArrayList<>();
+    for (long count = decoder.readArrayStart(); count > 0; count = decoder.arrayNext()) {
+      for (long i = 0; i < count; i++) {
+        decoded.add(ConsumeResponseCodec.readMessage(decoder));
+      }
+    }
+
+    Assert.assertEquals(messages.size(), decoded.size());
+    for (int i = 0; i < messages.size(); i++) {
+      Assert.assertArrayEquals(messages.get(i).getId(), decoded.get(i).getId());
+      Assert.assertArrayEquals(messages.get(i).getPayload(), decoded.get(i).getPayload());
+    }
+  }
+
+  private List<RawMessage> createMessages(int start, int end) {
+    List<RawMessage> messages = new ArrayList<>();
+    for (int i = start; i < end; i++) {
+      // Vary the payload size to cover different lengths of the variable length encoding
+      byte[] payload = new byte[i * 97];
+      Arrays.fill(payload, (byte) i);
+      messages.add(new RawMessage(Bytes.toBytes((long) i), payload));
+    }
+    return messages;
+  }
+}
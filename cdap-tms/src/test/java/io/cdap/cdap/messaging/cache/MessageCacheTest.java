@@ -19,6 +19,7 @@ package io.cdap.cdap.messaging.cache;
 import com.google.common.collect.AbstractIterator;
 import com.google.common.collect.Lists;
 import com.google.common.util.concurrent.Uninterruptibles;
+import io.cdap.cdap.api.common.Bytes;
 import io.cdap.cdap.api.metrics.MetricsContext;
 import io.cdap.cdap.api.metrics.NoopMetricsContext;
 import io.cdap.cdap.common.utils.Tasks;
@@ -26,6 +27,8 @@ import io.cdap.cdap.messaging.store.MessageFilter;
 import org.junit.Assert;
 import org.junit.Test;
 
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collections;
 import java.util.Comparator;
@@ -374,6 +377,161 @@ public class MessageCacheTest {
     }, 10, TimeUnit.SECONDS, 100, TimeUnit.MILLISECONDS);
   }
 
+  @Test
+  public void testOffHeap() {
+    // Use a segment size that fits two entries at most, so that entries span multiple segments
+    MessageCache<Entry> cache = new MessageCache<>(new EntryComparator(), new UnitWeigher<Entry>(),
+                                                   new EntryCodec(), 32, new MessageCache.Limits(5, 7, 10),
+                                                   NOOP_METRICS);
+
+    List<Entry> entries = new ArrayList<>();
+    for (int i = 0; i < 8; i++) {
+      entries.add(new Entry(i, "Name" + i));
+    }
+    cache.addAll(entries.iterator());
+    Assert.assertEquals(8, cache.getCurrentWeight());
+
+    // Entries are decoded from the off-heap memory on scan
+    try (MessageCache.Scanner<Entry> scanner = cache.scan(new Entry(2, null), true, 10,
+                                                          MessageFilter.<Entry>alwaysAccept())) {
+      Assert.assertEquals(0, scanner.getFirstInCache().getId());
+      int idx = 2;
+      while (scanner.hasNext()) {
+        Entry entry = scanner.next();
+        Assert.assertEquals(idx, entry.getId());
+        Assert.assertEquals("Name" + idx, entry.getName());
+        idx++;
+      }
+      Assert.assertEquals(8, idx);
+    }
+    // Closing the scanner reduced the cache weight since it was over the reduce trigger
+    Assert.assertEquals(5, cache.getCurrentWeight());
+
+    // Update entries without changing the encoded size. The update should be visible to later scans.
+    cache.updateEntries(new Entry(4, null), new Entry(5, null), new MessageCache.EntryUpdater<Entry>() {
+      @Override
+      public void updateEntry(Entry entry) {
+        entry.setName(entry.getName().toUpperCase());
+      }
+    });
+    try (MessageCache.Scanner<Entry> scanner = cache.scan(new Entry(3, null), false, 3,
+                                                          MessageFilter.<Entry>alwaysAccept())) {
+      List<String> names = new ArrayList<>();
+      while (scanner.hasNext()) {
+        names.add(scanner.next().getName());
+      }
+      Assert.assertEquals(Arrays.asList("NAME4", "NAME5", "Name6"), names);
+    }
+
+    // Adding more entries goes over the hard limit, which reduces the cache back to min retain
+    entries.clear();
+    for (int i = 8; i < 14; i++) {
+      entries.add(new Entry(i, "Name" + i));
+    }
+    cache.addAll(entries.iterator());
+    Assert.assertEquals(5, cache.getCurrentWeight());
+    try (MessageCache.Scanner<Entry> scanner = cache.scan(new Entry(0, null), true, 10,
+                                                          MessageFilter.<Entry>alwaysAccept())) {
+      Assert.assertEquals(9, scanner.getFirstInCache().getId());
+      Assert.assertEquals(5, Lists.newArrayList(scanner).size());
+    }
+
+    // Update that changes the encoded size is not allowed and clears the cache
+    try {
+      cache.updateEntries(new Entry(10, null), new Entry(10, null), new MessageCache.EntryUpdater<Entry>() {
+        @Override
+        public void updateEntry(Entry entry) {
+          entry.setName("LongerName" + entry.getId());
+        }
+      });
+      Assert.fail("Expected exception for update that alters the encoded size");
+    } catch (IllegalStateException e) {
+      Assert.assertEquals(0, cache.getCurrentWeight());
+    }
+  }
+
+  @Test
+  public void testOffHeapCompaction() {
+    // Each entry takes 13 or 14 bytes when encoded, hence a segment of 64 bytes fits four entries
+    MessageCache<Entry> cache = new MessageCache<>(new EntryComparator(), new UnitWeigher<Entry>(),
+                                                   new EntryCodec(), 64, new MessageCache.Limits(5, 7, 10),
+                                                   NOOP_METRICS);
+
+    List<Entry> entries = new ArrayList<>();
+    for (int i = 0; i < 12; i++) {
+      entries.add(new Entry(i, "Name" + i));
+    }
+    // Adding the 11th entry goes over the hard limit, which removes entries 0 to 5.
+    // The first segment is released, while entries 6 and 7 are compacted out of the second segment.
+    cache.addAll(entries.iterator());
+    Assert.assertEquals(6, cache.getCurrentWeight());
+    Assert.assertEquals(2 * 13 + 64, cache.getOffHeapSize());
+
+    try (MessageCache.Scanner<Entry> scanner = cache.scan(new Entry(0, null), true, 10,
+                                                          MessageFilter.<Entry>alwaysAccept())) {
+      Assert.assertEquals(6, scanner.getFirstInCache().getId());
+      int idx = 6;
+      while (scanner.hasNext()) {
+        Entry entry = scanner.next();
+        Assert.assertEquals(idx, entry.getId());
+        Assert.assertEquals("Name" + idx, entry.getName());
+        idx++;
+      }
+      Assert.assertEquals(12, idx);
+    }
+
+    // Updates go to the compacted segment
+    cache.updateEntries(new Entry(7, null), new Entry(7, null), new MessageCache.EntryUpdater<Entry>() {
+      @Override
+      public void updateEntry(Entry entry) {
+        entry.setName(entry.getName().toUpperCase());
+      }
+    });
+    try (MessageCache.Scanner<Entry> scanner = cache.scan(new Entry(6, null), true, 3,
+                                                          MessageFilter.<Entry>alwaysAccept())) {
+      List<String> names = new ArrayList<>();
+      while (scanner.hasNext()) {
+        names.add(scanner.next().getName());
+      }
+      Assert.assertEquals(Arrays.asList("Name6", "NAME7", "Name8"), names);
+    }
+
+    // Removing entries from the segment that is being written to doesn't compact it
+    cache.resize(new MessageCache.Limits(3, 7, 10));
+    Assert.assertEquals(3, cache.getCurrentWeight());
+    Assert.assertEquals(64, cache.getOffHeapSize());
+  }
+
+
+  /**
+   * A {@link MessageCache.EntryCodec} for {@link Entry}.
+   */
+  private static final class EntryCodec implements MessageCache.EntryCodec<Entry> {
+
+    @Override
+    public Entry toKey(Entry entry) {
+      return new Entry(entry.getId(), null);
+    }
+
+    @Override
+    public int getEncodedSize(Entry entry) {
+      return Bytes.SIZEOF_INT + Bytes.SIZEOF_INT + Bytes.toBytes(entry.getName()).length;
+    }
+
+    @Override
+    public void encode(Entry entry, ByteBuffer buffer) {
+      byte[] name = Bytes.toBytes(entry.getName());
+      buffer.putInt(entry.getId()).putInt(name.length).put(name);
+    }
+
+    @Override
+    public Entry decode(ByteBuffer buffer) {
+      int id = buffer.getInt();
+      byte[] name = new byte[buffer.getInt()];
+      buffer.get(name);
+      return new Entry(id, Bytes.toString(name));
+    }
+  }
 
   /**
    * A {@link Comparator} for {@link Integer}.
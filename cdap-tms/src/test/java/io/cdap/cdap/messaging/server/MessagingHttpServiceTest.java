@@ -63,6 +63,8 @@ import java.util.Collections;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
 import java.util.stream.Collectors;
 
 /**
@@ -157,6 +159,64 @@ public class MessagingHttpServiceTest {
     client.deleteTopic(topic1);
   }
 
+  @Test
+  public void testLongPoll() throws Exception {
+    TopicId topicId = new NamespaceId("ns1").topic("longpoll");
+    client.createTopic(new TopicMetadata(topicId));
+
+    // Poll on an empty topic should wait until the timeout expires
+    long startTime = System.nanoTime();
+    try (CloseableIterator<RawMessage> iterator = client.prepareFetch(topicId)
+      .setPollTimeout(500, TimeUnit.MILLISECONDS).fetch()) {
+      Assert.assertFalse(iterator.hasNext());
+    }
+    Assert.assertTrue(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startTime) >= 500L);
+
+    // Poll should return as soon as a message is published
+    CompletableFuture<List<String>> result = CompletableFuture.supplyAsync(() -> {
+      try (CloseableIterator<RawMessage> iterator = client.prepareFetch(topicId)
+        .setPollTimeout(60, TimeUnit.SECONDS).fetch()) {
+        List<String> payloads = new ArrayList<>();
+        iterator.forEachRemaining(message -> payloads.add(Bytes.toString(message.getPayload())));
+        return payloads;
+      } catch (Exception e) {
+        throw new RuntimeException(e);
+      }
+    });
+
+    // Give the poll request some time to reach the server
+    TimeUnit.MILLISECONDS.sleep(200);
+    Assert.assertFalse(result.isDone());
+    client.publish(StoreRequestBuilder.of(topicId).addPayload("m1").addPayload("m2").build());
+    Assert.assertEquals(Arrays.asList("m1", "m2"), result.get(10, TimeUnit.SECONDS));
+
+    // Poll with messages available should return immediately
+    try (CloseableIterator<RawMessage> iterator = client.prepareFetch(topicId)
+      .setPollTimeout(60, TimeUnit.SECONDS).fetch()) {
+      Assert.assertEquals(2, Iterators.size(iterator));
+    }
+
+    client.deleteTopic(topicId);
+  }
+
+  @Test
+  public void testLongPollTransactional() throws Exception {
+    TopicId topicId = new NamespaceId("ns1").topic("longpolltx");
+    client.createTopic(new TopicMetadata(topicId));
+
+    // A transactional poll doesn't wait, since messages committed in the meantime are not visible to the transaction
+    client.publish(StoreRequestBuilder.of(topicId).addPayload("m1").setTransaction(2L).build());
+    Transaction transaction = new Transaction(3L, 3L, new long[0], new long[] {2L}, 2L);
+    long startTime = System.nanoTime();
+    try (CloseableIterator<RawMessage> iterator = client.prepareFetch(topicId)
+      .setTransaction(transaction).setPollTimeout(60, TimeUnit.SECONDS).fetch()) {
+      Assert.assertFalse(iterator.hasNext());
+    }
+    Assert.assertTrue(TimeUnit.NANOSECONDS.toSeconds(System.nanoTime() - startTime) < 10L);
+
+    client.deleteTopic(topicId);
+  }
+
   @Test
   public void testMetadataEndpoints() throws Exception {
     NamespaceId nsId = new NamespaceId("metadata");
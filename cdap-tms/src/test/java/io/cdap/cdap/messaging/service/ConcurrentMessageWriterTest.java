@@ -19,10 +19,14 @@ package io.cdap.cdap.messaging.service;
 import com.google.common.base.Stopwatch;
 import com.google.common.collect.ArrayListMultimap;
 import com.google.common.collect.ListMultimap;
+import com.google.common.util.concurrent.Futures;
+import com.google.common.util.concurrent.ListenableFuture;
 import com.google.common.util.concurrent.Uninterruptibles;
 import io.cdap.cdap.api.common.Bytes;
 import io.cdap.cdap.api.metrics.MetricsCollector;
+import io.cdap.cdap.api.metrics.NoopMetricsContext;
 import io.cdap.cdap.common.utils.TimeProvider;
+import io.cdap.cdap.messaging.RollbackDetail;
 import io.cdap.cdap.messaging.StoreRequest;
 import io.cdap.cdap.messaging.TopicMetadata;
 import io.cdap.cdap.messaging.data.MessageId;
@@ -40,12 +44,16 @@ import java.util.Arrays;
 import java.util.HashMap;
 import java.util.Iterator;
 import java.util.List;
+import java.util.Map;
 import java.util.concurrent.BrokenBarrierException;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.CountDownLatch;
 import java.util.concurrent.CyclicBarrier;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
 import javax.annotation.Nullable;
 
 /**
@@ -268,10 +276,106 @@ public class ConcurrentMessageWriterTest {
     }
   }
 
+  @Test
+  public void testGroupCommit() throws Exception {
+    TopicId topicId = NamespaceId.DEFAULT.topic("t");
+    TopicMetadata metadata = new TopicMetadata(topicId, new HashMap<String, String>(), 1);
+    TestStoreRequestWriter testWriter = new TestStoreRequestWriter(new TimeProvider.IncrementalTimeProvider(), 20L);
+
+    Map<String, AtomicLong> metrics = new ConcurrentHashMap<>();
+    MetricsCollector metricsCollector = new MetricsCollector() {
+      @Override
+      public void increment(String metricName, long value) {
+        metrics.computeIfAbsent(metricName, k -> new AtomicLong()).addAndGet(value);
+      }
+
+      @Override
+      public void gauge(String metricName, long value) {
+        // no-op
+      }
+    };
+
+    // Publish with a max batch size of 4 from a single thread without waiting for each request to complete
+    int requestCount = 20;
+    ScheduledExecutorService executor = Executors.newSingleThreadScheduledExecutor();
+    try {
+      ConcurrentMessageWriter writer = new ConcurrentMessageWriter(testWriter, metricsCollector, executor, 4, 0L);
+      List<ListenableFuture<RollbackDetail>> futures = new ArrayList<>();
+      for (int i = 0; i < requestCount; i++) {
+        futures.add(writer.persistAsync(new TestStoreRequest(topicId, Arrays.asList("m" + i)), metadata));
+      }
+      Futures.allAsList(futures).get(1, TimeUnit.MINUTES);
+      writer.close();
+    } finally {
+      executor.shutdownNow();
+    }
+
+    // All messages should be written in order
+    List<RawMessage> messages = testWriter.getMessages().get(topicId);
+    Assert.assertEquals(requestCount, messages.size());
+    for (int i = 0; i < requestCount; i++) {
+      Assert.assertEquals("m" + i, Bytes.toString(messages.get(i).getPayload()));
+    }
+
+    // Requests are batched, but no batch can be larger than the max batch size
+    long batches = metrics.get("persist.batch.size.count").get();
+    Assert.assertTrue(batches >= requestCount / 4 && batches < requestCount);
+    Assert.assertEquals(requestCount, metrics.get("persist.batch.size.sum").get());
+    Assert.assertNull(metrics.get("persist.batch.size.le.16"));
+    Assert.assertEquals(batches, metrics.get("persist.commit.latency.ms.count").get());
+    Assert.assertEquals(requestCount, metrics.get("persist.success").get());
+  }
+
+  @Test
+  public void testFairCommit() throws Exception {
+    TopicId hotTopicId = NamespaceId.DEFAULT.topic("hot");
+    TopicMetadata hotMetadata = new TopicMetadata(hotTopicId, new HashMap<String, String>(), 1);
+    TopicId topicId = NamespaceId.DEFAULT.topic("t");
+    TopicMetadata metadata = new TopicMetadata(topicId, new HashMap<String, String>(), 1);
+
+    // A writer that blocks on the first write until being released
+    CountDownLatch writeStarted = new CountDownLatch(1);
+    CountDownLatch releaseWrite = new CountDownLatch(1);
+    TestStoreRequestWriter hotWriter = new TestStoreRequestWriter(new TimeProvider.IncrementalTimeProvider()) {
+      @Override
+      protected void doWrite(Iterator<TestEntry> entries) throws IOException {
+        writeStarted.countDown();
+        Uninterruptibles.awaitUninterruptibly(releaseWrite);
+        super.doWrite(entries);
+      }
+    };
+    TestStoreRequestWriter testWriter = new TestStoreRequestWriter(new TimeProvider.IncrementalTimeProvider());
+
+    ScheduledExecutorService executor = Executors.newScheduledThreadPool(2);
+    try {
+      ConcurrentMessageWriter hot = new ConcurrentMessageWriter(hotWriter, new NoopMetricsContext(), executor, 1, 0L);
+      ConcurrentMessageWriter writer = new ConcurrentMessageWriter(testWriter, new NoopMetricsContext(),
+                                                                   executor, 1, 0L);
+      List<ListenableFuture<RollbackDetail>> hotFutures = new ArrayList<>();
+      hotFutures.add(hot.persistAsync(new TestStoreRequest(hotTopicId, Arrays.asList("h0")), hotMetadata));
+      Assert.assertTrue(writeStarted.await(10, TimeUnit.SECONDS));
+
+      // More requests to the blocked writer must not take the other committer thread
+      for (int i = 1; i < 10; i++) {
+        hotFutures.add(hot.persistAsync(new TestStoreRequest(hotTopicId, Arrays.asList("h" + i)), hotMetadata));
+      }
+      writer.persistAsync(new TestStoreRequest(topicId, Arrays.asList("m")), metadata).get(10, TimeUnit.SECONDS);
+      Assert.assertEquals(1, testWriter.getMessages().get(topicId).size());
+
+      releaseWrite.countDown();
+      Futures.allAsList(hotFutures).get(1, TimeUnit.MINUTES);
+      Assert.assertEquals(10, hotWriter.getMessages().get(hotTopicId).size());
+      hot.close();
+      writer.close();
+    } finally {
+      executor.shutdownNow();
+    }
+  }
+
   /**
    * A {@link StoreRequestWriter} that turns all payloads to {@link RawMessage} and stores it in a List.
    */
-  private static final class TestStoreRequestWriter extends StoreRequestWriter<TestEntry> {
+  private static class TestStoreRequestWriter extends StoreRequestWriter<TestEntry> {
 
     private final ListMultimap<TopicId, RawMessage> messages = ArrayListMultimap.create();
     private long writeDelayMillis;
@@ -55,6 +55,15 @@ public class CachingMessageTableTest extends LevelDBMessageTableTest {
 
   @BeforeClass
   public static void initCache() {
+    cacheProvider = createCacheProvider(false);
+  }
+
+  /**
+   * Creates a {@link MessageTableCacheProvider} that creates a {@link MessageCache} for each topic on demand.
+   *
+   * @param offHeap {@code true} to create {@link MessageCache} that stores entries in off-heap memory
+   */
+  static MessageTableCacheProvider createCacheProvider(final boolean offHeap) {
     final LoadingCache<TopicId, MessageCache<MessageTable.Entry>> caches = CacheBuilder
       .newBuilder()
       .removalListener(new RemovalListener<TopicId, MessageCache<MessageTable.Entry>>() {
@@ -69,12 +78,18 @@ public class CachingMessageTableTest extends LevelDBMessageTableTest {
       .build(new CacheLoader<TopicId, MessageCache<MessageTable.Entry>>() {
         @Override
         public MessageCache<MessageTable.Entry> load(TopicId key) throws Exception {
+          MessageCache.Limits limits = new MessageCache.Limits(500, 700, 1000);
+          if (offHeap) {
+            // Use a small segment size so that entries span multiple segments
+            return new MessageCache<>(new MessageTableEntryComparator(), new MessageTableEntryWeigher(),
+                                      new MessageTableEntryCodec(key), 128, limits, new NoopMetricsContext());
+          }
           return new MessageCache<>(new MessageTableEntryComparator(), new MessageTableEntryWeigher(),
-                                    new MessageCache.Limits(500, 700, 1000), new NoopMetricsContext());
+                                    limits, new NoopMetricsContext());
         }
       });
 
-    cacheProvider = new MessageTableCacheProvider() {
+    return new MessageTableCacheProvider() {
       @Override
       public MessageCache<MessageTable.Entry> getMessageCache(TopicId topicId) {
         return caches.getUnchecked(topicId);
@@ -90,7 +105,14 @@ public class CachingMessageTableTest extends LevelDBMessageTableTest {
   @Override
   protected MessageTable getMessageTable(TopicMetadata topicMetadata) throws Exception {
     MessageTable messageTable = super.getMessageTable(topicMetadata);
-    return new CachingMessageTable(cConf, messageTable, cacheProvider);
+    return new CachingMessageTable(cConf, messageTable, getCacheProvider());
+  }
+
+  /**
+   * Returns the {@link MessageTableCacheProvider} used by the {@link CachingMessageTable} in the tests.
+   */
+  protected MessageTableCacheProvider getCacheProvider() {
+    return cacheProvider;
   }
 
   @Test
@@ -107,7 +129,7 @@ public class CachingMessageTableTest extends LevelDBMessageTableTest {
     // Creates a CachingMessageTable with a controlled time provider
     final AtomicLong currentTimeMillis = new AtomicLong(0);
     MessageTable messageTable = new CachingMessageTable(cConf, super.getMessageTable(metadata),
-                                                        cacheProvider, new TimeProvider() {
+                                                        getCacheProvider(), new TimeProvider() {
       @Override
       public long currentTimeMillis() {
         return currentTimeMillis.get();
@@ -0,0 +1,38 @@
+/*
+ * Copyright © 2020 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package io.cdap.cdap.messaging.store.cache;
+
+import org.junit.BeforeClass;
+
+/**
+ * Unit test for {@link CachingMessageTable} with the {@link io.cdap.cdap.messaging.cache.MessageCache}
+ * storing entries in off-heap memory.
+ */
+public class OffHeapCachingMessageTableTest extends CachingMessageTableTest {
+
+  private static MessageTableCacheProvider offHeapCacheProvider;
+
+  @BeforeClass
+  public static void initOffHeapCache() {
+    offHeapCacheProvider = createCacheProvider(true);
+  }
+
+  @Override
+  protected MessageTableCacheProvider getCacheProvider() {
+    return offHeapCacheProvider;
+  }
+}
@@ -0,0 +1,165 @@
+/*
+ * Copyright © 2020 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+
+package io.cdap.cdap.api.metrics;
+
+import javax.annotation.Nullable;
+
+/**
+ * Log-linear buckets of a distribution metric, similar to the ones used by HDR histograms. Values smaller than
+ * {@link #SUB_BUCKETS} have a bucket of their own, larger values are put into one of the {@link #SUB_BUCKETS}
+ * equally sized buckets of their power of two. Hence the value reconstructed from a bucket is within
+ * {@code 1 / (2 * SUB_BUCKETS)} of the recorded value.
+ *
+ * A distribution is emitted and stored as one {@link MetricType#COUNTER} per non-empty bucket, named
+ * {@code <metric name>:b<bucket index>}, which makes merging distributions the same as summing counters.
+ */
+public final class DistributionBuckets {
+
+  private static final int SUB_BUCKET_BITS = 3;
+  private static final String BUCKET_SEPARATOR = ":b";
+
+  /**
+   * Number of buckets per power of two.
+   */
+  public static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+
+  /**
+   * Total number of buckets, covering all non-negative long values.
+   */
+  public static final int NUM_BUCKETS = getBucket(Long.MAX_VALUE) + 1;
+
+  private DistributionBuckets() {
+  }
+
+  /**
+   * Returns the index of the bucket for the given value. Negative values are put into the bucket of {@code 0}.
+   */
+  public static int getBucket(long value) {
+    if (value < SUB_BUCKETS) {
+      return (int) Math.max(value, 0L);
+    }
+    int exponent = 63 - Long.numberOfLeadingZeros(value);
+    int subBucket = (int) (value >>> (exponent - SUB_BUCKET_BITS)) & (SUB_BUCKETS - 1);
+    return (exponent - SUB_BUCKET_BITS + 1) * SUB_BUCKETS + subBucket;
+  }
+
+  /**
+   * Returns the smallest value of the given bucket.
+   */
+  public static long getLowerBound(int bucket) {
+    if (bucket < SUB_BUCKETS) {
+      return bucket;
+    }
+    return (long) (SUB_BUCKETS + bucket % SUB_BUCKETS) << getShift(bucket);
+  }
+
+  /**
+   * Returns the largest value of the given bucket.
+   */
+  public static long getUpperBound(int bucket) {
+    if (bucket < SUB_BUCKETS) {
+      return bucket;
+    }
+    return getLowerBound(bucket) + ((1L << getShift(bucket)) - 1);
+  }
+
+  /**
+   * Returns the value representing all values of the given bucket, which is the middle of the bucket.
+   */
+  public static long getValue(int bucket) {
+    if (bucket < SUB_BUCKETS) {
+      return bucket;
+    }
+    return getLowerBound(bucket) + ((1L << getShift(bucket)) - 1) / 2;
+  }
+
+  /**
+   * Returns the name of the counter metric that holds the given bucket of a distribution.
+   */
+  public static String getBucketMetricName(String metricName, int bucket) {
+    return metricName + BUCKET_SEPARATOR + bucket;
+  }
+
+  /**
+   * Returns the name of the distribution of the given bucket counter metric name, or {@code null} if the given name
+   * is not the name of a bucket counter.
+   */
+  @Nullable
+  public static String getDistributionName(String bucketMetricName) {
+    return getBucketIndex(bucketMetricName) < 0 ? null : bucketMetricName.substring(
+      0, bucketMetricName.lastIndexOf(BUCKET_SEPARATOR));
+  }
+
+  /**
+   * Returns the bucket of the given bucket counter metric name, or {@code -1} if the given name
+   * is not the name of a bucket counter.
+   */
+  public static int getBucketIndex(String bucketMetricName) {
+    int idx = bucketMetricName.lastIndexOf(BUCKET_SEPARATOR);
+    if (idx <= 0) {
+      return -1;
+    }
+    String suffix = bucketMetricName.substring(idx + BUCKET_SEPARATOR.length());
+    // bucket indices never have more than three digits
+    if (suffix.isEmpty() || suffix.length() > 3) {
+      return -1;
+    }
+    int bucket = 0;
+    for (int i = 0; i < suffix.length(); i++) {
+      char c = suffix.charAt(i);
+      if (c < '0' || c > '9') {
+        return -1;
+      }
+      bucket = bucket * 10 + (c - '0');
+    }
+    return bucket < NUM_BUCKETS ? bucket : -1;
+  }
+
+  /**
+   * Computes the given percentile of a distribution.
+   *
+   * @param counts number of values in each bucket, indexed by bucket
+   * @param percentile the percentile to compute, between {@code 0} (exclusive) and {@code 100} (inclusive)
+   * @return the value of the bucket that contains the percentile, or {@code 0} if the distribution is empty
+   */
+  public static long getPercentile(long[] counts, double percentile) {
+    if (percentile <= 0 || percentile > 100) {
+      throw new IllegalArgumentException("Percentile must be in the range of (0, 100]: " + percentile);
+    }
+    long total = 0;
+    for (long count : counts) {
+      total += count;
+    }
+    if (total <= 0) {
+      return 0L;
+    }
+    long rank = Math.max(1L, (long) Math.ceil(total * percentile / 100d));
+    long seen = 0;
+    for (int bucket = 0; bucket < counts.length; bucket++) {
+      seen += counts[bucket];
+      if (seen >= rank) {
+        return getValue(bucket);
+      }
+    }
+    return getValue(counts.length - 1);
+  }
+
+  private static int getShift(int bucket) {
+    return bucket / SUB_BUCKETS - 1;
+  }
+}
@@ -0,0 +1,52 @@
+/*
+ * Copyright 2020 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package io.cdap.cdap.api.metrics;
+
+import java.util.Collection;
+
+/**
+ * Result of a {@link MetricDataQuery}: the time series that satisfy the query and whether the result is truncated.
+ */
+public final class MetricDataQueryResult {
+  private final Collection<MetricTimeSeries> timeSeries;
+  private final boolean truncated;
+
+  public MetricDataQueryResult(Collection<MetricTimeSeries> timeSeries, boolean truncated) {
+    this.timeSeries = timeSeries;
+    this.truncated = truncated;
+  }
+
+  public Collection<MetricTimeSeries> getTimeSeries() {
+    return timeSeries;
+  }
+
+  /**
+   * Returns {@code true} if the store stopped reading before all matching records were read, in which case the
+   * time series contain only part of the data that satisfy the query.
+   */
+  public boolean isTruncated() {
+    return truncated;
+  }
+
+  @Override
+  public String toString() {
+    return "MetricDataQueryResult{" +
+      "timeSeries=" + timeSeries +
+      ", truncated=" + truncated +
+      '}';
+  }
+}
@@ -49,6 +49,16 @@ public interface MetricStore {
    */
   Collection<MetricTimeSeries> query(MetricDataQuery query);
 
+  /**
+   * Queries metrics data, reporting whether the store truncated the result because the query matched more records
+   * than it reads for a single query.
+   * @param query query to execute
+   * @return time series that satisfy the query and whether they are truncated
+   */
+  default MetricDataQueryResult execute(MetricDataQuery query) {
+    return new MetricDataQueryResult(query(query), false);
+  }
+
   /**
    * Deletes all metric data before given timestamp. Used for applying TTL policy.
    *
@@ -38,4 +38,14 @@ public interface MetricsContext extends MetricsCollector {
    * @return tags that identify the context.
    */
   Map<String, String> getTags();
+
+  /**
+   * Records a value into the distribution of a metric at the current time. The distribution is kept as
+   * {@link DistributionBuckets} and can be queried for percentiles. By default, the value is ignored.
+   * @param metricName Name of the metric.
+   * @param value value to record.
+   */
+  default void distribution(String metricName, long value) {
+    // no-op
+  }
 }
@@ -19,17 +19,22 @@ package io.cdap.cdap.logging.appender.system;
 import ch.qos.logback.classic.spi.ILoggingEvent;
 import com.google.common.io.Closeables;
 import io.cdap.cdap.common.io.ByteBuffers;
+import io.cdap.cdap.common.io.Locations;
 import io.cdap.cdap.common.io.Syncable;
 import io.cdap.cdap.logging.serialize.LoggingEvent;
 import io.cdap.cdap.logging.serialize.LoggingEventSerializer;
+import io.cdap.cdap.logging.write.LogFileIndex;
 import org.apache.avro.Schema;
 import org.apache.avro.file.DataFileWriter;
 import org.apache.avro.generic.GenericDatumWriter;
 import org.apache.avro.generic.GenericRecord;
+import org.apache.avro.io.BinaryEncoder;
+import org.apache.avro.io.EncoderFactory;
 import org.apache.twill.filesystem.Location;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.io.ByteArrayOutputStream;
 import java.io.Closeable;
 import java.io.Flushable;
 import java.io.IOException;
@@ -41,27 +46,44 @@ import java.nio.ByteBuffer;
  *
  * Since there is no way to check the state of the underlying file on an exception,
  * all methods of this class assume that the file state is bad on any exception and close the file.
+ *
+ * When the file is closed, a {@link LogFileIndex} is written next to it, so that readers can seek directly
+ * to the blocks that contain the events they need.
  */
 
 class LogFileOutputStream implements Closeable, Flushable, Syncable {
   private static final Logger LOG = LoggerFactory.getLogger(LogFileOutputStream.class);
 
   private final Location location;
+  private final String filePermissions;
+  private final int syncIntervalBytes;
   private final long createTime;
   private final Closeable closeable;
   private final LoggingEventSerializer serializer;
+  private final GenericDatumWriter<GenericRecord> datumWriter;
+  private final ExposedByteArrayOutputStream encodeBuffer;
+  private final LogFileIndex.Builder indexBuilder;
 
   private OutputStream outputStream;
   private DataFileWriter<GenericRecord> dataFileWriter;
+  private BinaryEncoder encoder;
   private long fileSize;
+  // number of bytes appended to the current block
+  private long blockSize;
+  private boolean closed;
 
   LogFileOutputStream(Location location, String filePermissions,
                       int syncIntervalBytes, long createTime, Closeable closeable) throws IOException {
     this.location = location;
+    this.filePermissions = filePermissions;
+    this.syncIntervalBytes = syncIntervalBytes;
     this.closeable = closeable;
     this.serializer = new LoggingEventSerializer();
+    this.encodeBuffer = new ExposedByteArrayOutputStream();
+    this.indexBuilder = new LogFileIndex.Builder();
 
     Schema schema = serializer.getAvroSchema();
+    this.datumWriter = new GenericDatumWriter<>(schema);
     try {
       this.outputStream =
         filePermissions.isEmpty() ? location.getOutputStream() : location.getOutputStream(filePermissions);
@@ -69,7 +91,9 @@ class LogFileOutputStream implements Closeable, Flushable, Syncable {
       this.dataFileWriter.create(schema, outputStream);
       this.dataFileWriter.setSyncInterval(syncIntervalBytes);
       this.createTime = createTime;
-      this.fileSize = 0;
+      // The first block starts right after the file header
+      this.fileSize = dataFileWriter.sync();
+      this.indexBuilder.sync(fileSize);
     } catch (IOException e) {
       Closeables.closeQuietly(outputStream);
       Closeables.closeQuietly(dataFileWriter);
@@ -82,18 +106,34 @@ class LogFileOutputStream implements Closeable, Flushable, Syncable {
   }
 
   void append(ILoggingEvent event) throws IOException {
+    // Events are always appended in encoded form, so that the size of the current block is known.
     // If the event is already a LoggingEvent, we don't need to re-encode.
+    ByteBuffer encoded;
     if (event instanceof LoggingEvent) {
-      ByteBuffer encoded = ((LoggingEvent) event).getEncoded();
-      if (encoded != null) {
-        // TODO: CDAP-8735 Remove the copying after upgraded to Avro 1.7.4+
-        dataFileWriter.appendEncoded(ByteBuffers.copy(encoded));
-      } else {
-        dataFileWriter.append(((LoggingEvent) event).getRecord());
-      }
-      return;
+      encoded = ((LoggingEvent) event).getEncoded();
+      // TODO: CDAP-8735 Remove the copying after upgraded to Avro 1.7.4+
+      encoded = encoded == null ? encode(((LoggingEvent) event).getRecord()) : ByteBuffers.copy(encoded);
+    } else {
+      encoded = encode(serializer.toGenericRecord(event));
+    }
+    int size = encoded.remaining();
+    dataFileWriter.appendEncoded(encoded);
+    indexBuilder.addEvent(event.getTimeStamp(), event.getLevel());
+
+    // The Avro writer writes out the block once it reaches the sync interval. End the block explicitly
+    // at the same time to learn the position of the next block.
+    blockSize += size;
+    if (blockSize >= syncIntervalBytes) {
+      flush();
     }
-    dataFileWriter.append(serializer.toGenericRecord(event));
+  }
+
+  private ByteBuffer encode(GenericRecord record) throws IOException {
+    encodeBuffer.reset();
+    encoder = EncoderFactory.get().directBinaryEncoder(encodeBuffer, encoder);
+    datumWriter.write(record, encoder);
+    // The buffer is only used until the next encode, and the data file writer copies the encoded record
+    return encodeBuffer.toByteBuffer();
   }
 
   /**
@@ -115,6 +155,8 @@ class LogFileOutputStream implements Closeable, Flushable, Syncable {
   @Override
   public void flush() throws IOException {
     fileSize = dataFileWriter.sync();
+    blockSize = 0;
+    indexBuilder.sync(fileSize);
   }
 
   @Override
@@ -131,9 +173,50 @@ class LogFileOutputStream implements Closeable, Flushable, Syncable {
   public void close() throws IOException {
     LOG.trace("Closing file {}", location);
     try {
-      dataFileWriter.close();
+      if (!closed) {
+        closed = true;
+        try {
+          flush();
+        } finally {
+          dataFileWriter.close();
+        }
+        writeIndex();
+      }
     } finally {
       closeable.close();
     }
   }
+
+  /**
+   * Writes the {@link LogFileIndex} of the closed file. Failure is not fatal, as readers fall back to
+   * scanning the log file when there is no index.
+   */
+  private void writeIndex() {
+    if (indexBuilder.isEmpty()) {
+      return;
+    }
+    try {
+      indexBuilder.build(fileSize).write(location, filePermissions);
+    } catch (Exception e) {
+      LOG.warn("Failed to write index for log file {}", location, e);
+      try {
+        Locations.deleteQuietly(LogFileIndex.getIndexLocation(location));
+      } catch (IOException ex) {
+        e.addSuppressed(ex);
+      }
+    }
+  }
+
+  /**
+   * A {@link ByteArrayOutputStream} that exposes the written raw buffer as ByteBuffer.
+   */
+  private static final class ExposedByteArrayOutputStream extends ByteArrayOutputStream {
+
+    /**
+     * Returns a {@link ByteBuffer} that represents the valid content in the buffer.
+     */
+    ByteBuffer toByteBuffer() {
+      return ByteBuffer.wrap(buf, 0, count);
+    }
+  }
 }
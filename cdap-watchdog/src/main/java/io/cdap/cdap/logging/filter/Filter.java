@@ -16,14 +16,25 @@
 
 package io.cdap.cdap.logging.filter;
 
+import ch.qos.logback.classic.Level;
 import ch.qos.logback.classic.spi.ILoggingEvent;
 
+import java.util.Collection;
+
 /**
  * Represents a generic filter to filter ILoggingEvent objects.
  */
 public interface Filter {
   boolean match(ILoggingEvent event);
 
+  /**
+   * Returns whether this filter may match an event with one of the given log levels. It is used to skip
+   * events without reading them, hence it must only return {@code false} if no such event can match.
+   */
+  default boolean mayMatchAnyLevel(Collection<Level> levels) {
+    return true;
+  }
+
   Filter EMPTY_FILTER = new EmptyFilter();
 
   /**
@@ -19,6 +19,8 @@ package io.cdap.cdap.logging.filter;
 import ch.qos.logback.classic.Level;
 import ch.qos.logback.classic.spi.ILoggingEvent;
 
+import java.util.Collection;
+
 /**
  * Represents an expression that matches log level.
  */
@@ -34,6 +36,16 @@ public class LogLevelExpression implements Filter {
     return event.getLevel().isGreaterOrEqual(getLevel());
   }
 
+  @Override
+  public boolean mayMatchAnyLevel(Collection<Level> levels) {
+    for (Level eventLevel : levels) {
+      if (eventLevel.isGreaterOrEqual(getLevel())) {
+        return true;
+      }
+    }
+    return false;
+  }
+
   public Level getLevel() {
     return level;
   }
@@ -19,17 +19,25 @@ package io.cdap.cdap.logging.read;
 import com.google.common.base.Preconditions;
 import com.google.common.base.Throwables;
 import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
 import com.google.common.collect.Iterables;
 import com.google.common.collect.Lists;
 import com.google.inject.Inject;
 import io.cdap.cdap.api.dataset.lib.AbstractCloseableIterator;
 import io.cdap.cdap.api.dataset.lib.CloseableIterator;
+import io.cdap.cdap.api.metrics.MetricsCollectionService;
+import io.cdap.cdap.api.metrics.MetricsContext;
+import io.cdap.cdap.api.metrics.NoopMetricsContext;
+import io.cdap.cdap.common.conf.CConfiguration;
+import io.cdap.cdap.common.conf.Constants;
 import io.cdap.cdap.common.logging.LoggingContext;
 import io.cdap.cdap.logging.context.LoggingContextHelper;
 import io.cdap.cdap.logging.filter.AndFilter;
 import io.cdap.cdap.logging.filter.Filter;
 import io.cdap.cdap.logging.meta.FileMetaDataReader;
 import io.cdap.cdap.logging.write.LogLocation;
+import io.cdap.cdap.proto.id.NamespaceId;
+import org.apache.twill.common.Threads;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -37,19 +45,45 @@ import java.io.IOException;
 import java.util.Collection;
 import java.util.Iterator;
 import java.util.List;
+import java.util.Map;
 import java.util.NoSuchElementException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 
 /**
- * Reads log events from a file.
+ * Reads log events from a file. When reading forward over multiple files, the next few files are opened and
+ * decoded concurrently with a bounded read-ahead, see {@link PrefetchingLogEventIterator}.
  */
 public class FileLogReader implements LogReader {
   private static final Logger LOG = LoggerFactory.getLogger(FileLogReader.class);
+  private static final Map<String, String> METRICS_TAGS = ImmutableMap.of(
+    Constants.Metrics.Tag.NAMESPACE, NamespaceId.SYSTEM.getNamespace(),
+    Constants.Metrics.Tag.COMPONENT, Constants.Service.LOG_QUERY);
 
   private final FileMetaDataReader fileMetadataReader;
+  private final int prefetchFiles;
+  private final int prefetchBufferSize;
+  private final ExecutorService prefetchExecutor;
+  private MetricsContext metricsContext;
 
   @Inject
-  public FileLogReader(FileMetaDataReader fileMetadataReader) {
+  public FileLogReader(CConfiguration cConf, FileMetaDataReader fileMetadataReader) {
     this.fileMetadataReader = fileMetadataReader;
+    this.prefetchFiles = cConf.getInt(Constants.Logging.LOG_READER_PREFETCH_FILES);
+    this.prefetchBufferSize = cConf.getInt(Constants.Logging.LOG_READER_PREFETCH_BUFFER_SIZE);
+    // Reading threads are bounded by the number of concurrent reads times the prefetch size.
+    // Use daemon threads that go away when idle, since there is no lifecycle for the reader.
+    this.prefetchExecutor = Executors.newCachedThreadPool(Threads.createDaemonThreadFactory("log-file-reader-%d"));
+    this.metricsContext = new NoopMetricsContext();
+  }
+
+  /**
+   * Optional guice injection for the {@link MetricsCollectionService} to emit metrics about file reads.
+   * It is optional because not every process that reads logs has metrics collection.
+   */
+  @Inject(optional = true)
+  void setMetricsCollectionService(MetricsCollectionService metricsCollectionService) {
+    this.metricsContext = metricsCollectionService.getContext(METRICS_TAGS);
   }
 
   @Override
@@ -75,9 +109,24 @@ public class FileLogReader implements LogReader {
         return;
       }
 
+      if (sortedFilesInRange.size() > 1 && prefetchFiles > 1) {
+        try (CloseableIterator<LogEvent> events = readFiles(sortedFilesInRange, logFilter, fromTimeMs,
+                                                            Long.MAX_VALUE, maxEvents)) {
+          while (callback.getCount() < maxEvents && events.hasNext()) {
+            callback.handle(events.next());
+          }
+        }
+        return;
+      }
+
       for (LogLocation file : sortedFilesInRange) {
         LOG.trace("Reading file {}", file);
-        file.readLog(logFilter, fromTimeMs, Long.MAX_VALUE, maxEvents - callback.getCount(), callback);
+        try (CloseableIterator<LogEvent> events = readFile(file, logFilter, fromTimeMs, Long.MAX_VALUE,
+                                                           maxEvents - callback.getCount())) {
+          while (events.hasNext()) {
+            callback.handle(events.next());
+          }
+        }
         if (callback.getCount() >= maxEvents) {
           break;
         }
@@ -113,7 +162,9 @@ public class FileLogReader implements LogReader {
         try {
           LOG.trace("Reading file {}", file);
 
-          Collection<LogEvent> events = file.readLogPrev(logFilter, fromTimeMs, maxEvents - count);
+          metricsContext.increment("log.read.files.opened", 1);
+          Collection<LogEvent> events = file.readLogPrev(logFilter, fromTimeMs, maxEvents - count,
+                                                         bytes -> metricsContext.increment("log.read.bytes", bytes));
           logSegments.add(events);
           count += events.size();
           if (count >= maxEvents) {
@@ -159,6 +210,10 @@ public class FileLogReader implements LogReader {
         };
       }
 
+      if (sortedFilesInRange.size() > 1 && prefetchFiles > 1) {
+        return readFiles(sortedFilesInRange, logFilter, fromTimeMs, toTimeMs, Integer.MAX_VALUE);
+      }
+
       final Iterator<LogLocation> filesIter = sortedFilesInRange.iterator();
 
       CloseableIterator<CloseableIterator<LogEvent>> closeableIterator =
@@ -184,7 +239,7 @@ public class FileLogReader implements LogReader {
             }
             LogLocation file = filesIter.next();
             LOG.trace("Reading file {}", file);
-            curr = file.readLog(logFilter, fromTimeMs, toTimeMs, Integer.MAX_VALUE);
+            curr = readFile(file, logFilter, fromTimeMs, toTimeMs, Integer.MAX_VALUE);
             return curr;
           }
 
@@ -201,6 +256,26 @@ public class FileLogReader implements LogReader {
     }
   }
 
+  /**
+   * Reads the given files with read-ahead and returns an iterator of events merged in timestamp order.
+   */
+  private CloseableIterator<LogEvent> readFiles(List<LogLocation> sortedFiles, Filter logFilter,
+                                                long fromTimeMs, long toTimeMs, int maxEvents) {
+    return new PrefetchingLogEventIterator(sortedFiles,
+                                           file -> readFile(file, logFilter, fromTimeMs, toTimeMs, maxEvents),
+                                           prefetchExecutor, prefetchFiles, prefetchBufferSize);
+  }
+
+  /**
+   * Opens the given file for reading, emitting metrics about the files opened and the bytes read.
+   */
+  private CloseableIterator<LogEvent> readFile(LogLocation file, Filter logFilter,
+                                               long fromTimeMs, long toTimeMs, int maxEvents) {
+    metricsContext.increment("log.read.files.opened", 1);
+    return file.readLog(logFilter, fromTimeMs, toTimeMs, maxEvents,
+                        bytes -> metricsContext.increment("log.read.bytes", bytes));
+  }
+
   /**
    * See {@link com.google.common.collect.Iterators#concat(Iterator)}. The difference is that the input types and return
    * type are CloseableIterator, which closes the inputs that it has opened.
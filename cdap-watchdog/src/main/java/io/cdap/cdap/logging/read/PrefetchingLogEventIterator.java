@@ -0,0 +1,217 @@
+/*
+ * Copyright © 2020 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package io.cdap.cdap.logging.read;
+
+import com.google.common.base.Throwables;
+import io.cdap.cdap.api.dataset.lib.AbstractCloseableIterator;
+import io.cdap.cdap.api.dataset.lib.CloseableIterator;
+import io.cdap.cdap.logging.write.LogLocation;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.Deque;
+import java.util.Iterator;
+import java.util.List;
+import java.util.PriorityQueue;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+
+/**
+ * A {@link CloseableIterator} of {@link LogEvent} that reads a list of log files with a bounded read-ahead.
+ * Up to {@code prefetchFiles} files are opened and decoded concurrently, each into a buffer of at most
+ * {@code bufferSize} events. Decoding of a file blocks while its buffer is full, which bounds the memory used.
+ * Events from the opened files are merged in timestamp order. A file only takes part in the merge once the
+ * merge has reached the event time of the file, so that files are still consumed one after another if their
+ * time ranges don't overlap.
+ */
+final class PrefetchingLogEventIterator extends AbstractCloseableIterator<LogEvent> {
+
+  private static final Logger LOG = LoggerFactory.getLogger(PrefetchingLogEventIterator.class);
+  private static final Object END_OF_FILE = new Object();
+  private static final long POLL_TIMEOUT_MILLIS = 100L;
+
+  private final Iterator<LogLocation> files;
+  private final Function<LogLocation, CloseableIterator<LogEvent>> fileReader;
+  private final Executor executor;
+  private final int prefetchFiles;
+  private final int bufferSize;
+  // Files that are being read but are not yet part of the merge, in the order of the files
+  private final Deque<FileSource> pending;
+  // Files in the merge, ordered by the timestamp of their next event
+  private final PriorityQueue<FileSource> merging;
+  private final List<FileSource> sources;
+
+  private volatile boolean closed;
+  private int fileCount;
+
+  /**
+   * Creates a new instance.
+   *
+   * @param files the files to read, sorted by event time
+   * @param fileReader the function to open a log file for reading
+   * @param executor the {@link Executor} for reading files
+   * @param prefetchFiles the maximum number of files being read at the same time
+   * @param bufferSize the maximum number of events buffered per file
+   */
+  PrefetchingLogEventIterator(List<LogLocation> files, Function<LogLocation, CloseableIterator<LogEvent>> fileReader,
+                              Executor executor, int prefetchFiles, int bufferSize) {
+    this.files = files.iterator();
+    this.fileReader = fileReader;
+    this.executor = executor;
+    this.prefetchFiles = prefetchFiles;
+    this.bufferSize = bufferSize;
+    this.pending = new ArrayDeque<>();
+    this.merging = new PriorityQueue<>(
+      Comparator.comparingLong((FileSource source) -> source.head.getLoggingEvent().getTimeStamp())
+        .thenComparingInt(source -> source.fileIndex));
+    this.sources = new ArrayList<>();
+  }
+
+  @Override
+  protected LogEvent computeNext() {
+    if (closed) {
+      return endOfData();
+    }
+    startFiles();
+
+    // Add files to the merge that can have events before the next event in the merge
+    while (!pending.isEmpty()
+      && (merging.isEmpty()
+      || pending.peek().location.getEventTimeMs() <= merging.peek().head.getLoggingEvent().getTimeStamp())) {
+      FileSource source = pending.poll();
+      if (source.advance()) {
+        merging.add(source);
+      }
+      startFiles();
+    }
+
+    FileSource source = merging.poll();
+    if (source == null) {
+      return endOfData();
+    }
+    LogEvent event = source.head;
+    if (source.advance()) {
+      merging.add(source);
+    }
+    return event;
+  }
+
+  @Override
+  public void close() {
+    closed = true;
+    for (FileSource source : sources) {
+      // Unblock the reading thread if it is waiting for buffer space
+      source.buffer.clear();
+    }
+    sources.clear();
+    pending.clear();
+    merging.clear();
+  }
+
+  /**
+   * Starts reading files until there are {@code prefetchFiles} files being read.
+   */
+  private void startFiles() {
+    while (pending.size() + merging.size() < prefetchFiles && files.hasNext()) {
+      FileSource source = new FileSource(files.next(), fileCount++);
+      sources.add(source);
+      pending.add(source);
+      executor.execute(source);
+    }
+  }
+
+  /**
+   * Reads events of one log file into a bounded buffer.
+   */
+  private final class FileSource implements Runnable {
+
+    private final LogLocation location;
+    private final int fileIndex;
+    private final BlockingQueue<Object> buffer;
+    private LogEvent head;
+
+    FileSource(LogLocation location, int fileIndex) {
+      this.location = location;
+      this.fileIndex = fileIndex;
+      this.buffer = new ArrayBlockingQueue<>(bufferSize);
+    }
+
+    @Override
+    public void run() {
+      Object last = END_OF_FILE;
+      try (CloseableIterator<LogEvent> iterator = fileReader.apply(location)) {
+        LOG.trace("Reading file {}", location);
+        while (iterator.hasNext() && enqueue(iterator.next())) {
+          // continue reading
+        }
+      } catch (Throwable t) {
+        last = t;
+      }
+      enqueue(last);
+    }
+
+    /**
+     * Moves to the next event of the file.
+     *
+     * @return {@code true} if there is a next event; {@code false} if the end of file has been reached
+     */
+    boolean advance() {
+      Object next;
+      try {
+        next = buffer.take();
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+        throw Throwables.propagate(e);
+      }
+      if (next == END_OF_FILE) {
+        head = null;
+        sources.remove(this);
+        return false;
+      }
+      if (next instanceof Throwable) {
+        sources.remove(this);
+        throw Throwables.propagate((Throwable) next);
+      }
+      head = (LogEvent) next;
+      return true;
+    }
+
+    /**
+     * Adds an element to the buffer, waiting for space if the buffer is full.
+     *
+     * @return {@code false} if the iterator was closed
+     */
+    private boolean enqueue(Object element) {
+      try {
+        while (!closed) {
+          if (buffer.offer(element, POLL_TIMEOUT_MILLIS, TimeUnit.MILLISECONDS)) {
+            return true;
+          }
+        }
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+      }
+      return false;
+    }
+  }
+}
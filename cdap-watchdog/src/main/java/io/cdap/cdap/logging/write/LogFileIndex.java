@@ -0,0 +1,287 @@
+/*
+ * Copyright © 2020 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+
+package io.cdap.cdap.logging.write;
+
+import ch.qos.logback.classic.Level;
+import io.cdap.cdap.common.io.Locations;
+import org.apache.twill.filesystem.Location;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+import javax.annotation.Nullable;
+
+/**
+ * A sidecar index of an Avro log file. For every block of the log file, it records the position of the block,
+ * the minimum and maximum event timestamps in the block and the set of log levels of the events in the block.
+ * It is written when the log file is closed and allows readers to seek directly to the blocks that can contain
+ * the events they are looking for.
+ */
+public final class LogFileIndex {
+
+  private static final String SUFFIX = ".idx";
+  private static final int MAGIC = 0x4C494458;
+  private static final byte VERSION = 1;
+
+  private static final Level[] LEVELS = { Level.TRACE, Level.DEBUG, Level.INFO, Level.WARN, Level.ERROR };
+  private static final int ALL_LEVELS = (1 << LEVELS.length) - 1;
+
+  private final long fileLength;
+  private final long[] positions;
+  private final long[] minTimes;
+  private final long[] maxTimes;
+  private final byte[] levelMasks;
+  // maximum event timestamp in the blocks up to and including each block, which is non-decreasing
+  private final long[] prefixMaxTimes;
+
+  private LogFileIndex(long fileLength, long[] positions, long[] minTimes, long[] maxTimes, byte[] levelMasks) {
+    this.fileLength = fileLength;
+    this.positions = positions;
+    this.minTimes = minTimes;
+    this.maxTimes = maxTimes;
+    this.levelMasks = levelMasks;
+    this.prefixMaxTimes = new long[maxTimes.length];
+    for (int i = 0; i < maxTimes.length; i++) {
+      prefixMaxTimes[i] = i == 0 ? maxTimes[i] : Math.max(prefixMaxTimes[i - 1], maxTimes[i]);
+    }
+  }
+
+  /**
+   * Returns the location of the index of the given log file.
+   */
+  public static Location getIndexLocation(Location logLocation) throws IOException {
+    return Locations.getParent(logLocation).append(logLocation.getName() + SUFFIX);
+  }
+
+  /**
+   * Reads the index of the given log file.
+   *
+   * @return the {@link LogFileIndex} or {@code null} if the log file has no index, or the index does not
+   *         describe the current content of the log file
+   * @throws IOException if failed to read the index
+   */
+  @Nullable
+  public static LogFileIndex read(Location logLocation) throws IOException {
+    Location indexLocation = getIndexLocation(logLocation);
+    if (!indexLocation.exists()) {
+      return null;
+    }
+    try (DataInputStream is = new DataInputStream(new BufferedInputStream(indexLocation.getInputStream()))) {
+      if (is.readInt() != MAGIC || is.readByte() != VERSION) {
+        return null;
+      }
+      long fileLength = is.readLong();
+      if (fileLength != logLocation.length()) {
+        return null;
+      }
+      int size = is.readInt();
+      long[] positions = new long[size];
+      long[] minTimes = new long[size];
+      long[] maxTimes = new long[size];
+      byte[] levelMasks = new byte[size];
+      for (int i = 0; i < size; i++) {
+        positions[i] = is.readLong();
+        minTimes[i] = is.readLong();
+        maxTimes[i] = is.readLong();
+        levelMasks[i] = is.readByte();
+      }
+      return new LogFileIndex(fileLength, positions, minTimes, maxTimes, levelMasks);
+    }
+  }
+
+  /**
+   * Writes this index for the given log file.
+   *
+   * @param logLocation the log file this index is for
+   * @param filePermissions permissions of the index file, or an empty string to use the default permissions
+   */
+  public void write(Location logLocation, String filePermissions) throws IOException {
+    Location indexLocation = getIndexLocation(logLocation);
+    try (DataOutputStream os = new DataOutputStream(new BufferedOutputStream(
+      filePermissions.isEmpty() ? indexLocation.getOutputStream() : indexLocation.getOutputStream(filePermissions)))) {
+      os.writeInt(MAGIC);
+      os.writeByte(VERSION);
+      os.writeLong(fileLength);
+      os.writeInt(positions.length);
+      for (int i = 0; i < positions.length; i++) {
+        os.writeLong(positions[i]);
+        os.writeLong(minTimes[i]);
+        os.writeLong(maxTimes[i]);
+        os.writeByte(levelMasks[i]);
+      }
+    }
+  }
+
+  /**
+   * Returns the number of blocks in the log file.
+   */
+  public int size() {
+    return positions.length;
+  }
+
+  /**
+   * Returns the sync position of the given block, which can be passed to the seek method of the Avro file reader.
+   */
+  public long getPosition(int block) {
+    return positions[block];
+  }
+
+  /**
+   * Returns the minimum event timestamp in the given block.
+   */
+  public long getMinTime(int block) {
+    return minTimes[block];
+  }
+
+  /**
+   * Returns the maximum event timestamp in the given block.
+   */
+  public long getMaxTime(int block) {
+    return maxTimes[block];
+  }
+
+  /**
+   * Returns the log levels of the events in the given block.
+   */
+  public Collection<Level> getLevels(int block) {
+    int mask = levelMasks[block];
+    List<Level> levels = new ArrayList<>(LEVELS.length);
+    for (int i = 0; i < LEVELS.length; i++) {
+      if ((mask & (1 << i)) != 0) {
+        levels.add(LEVELS[i]);
+      }
+    }
+    return levels;
+  }
+
+  /**
+   * Returns the first block that contains an event with timestamp greater than or equal to the given time.
+   * All events in the blocks before it are older than the given time.
+   *
+   * @return the block index, or {@link #size()} if all events are older than the given time
+   */
+  public int findFirstBlock(long timeMs) {
+    // The first block with max time >= timeMs is also the first one with prefix max time >= timeMs
+    int low = 0;
+    int high = prefixMaxTimes.length;
+    while (low < high) {
+      int mid = (low + high) >>> 1;
+      if (prefixMaxTimes[mid] >= timeMs) {
+        high = mid;
+      } else {
+        low = mid + 1;
+      }
+    }
+    return low;
+  }
+
+  private static int getLevelMask(@Nullable Level level) {
+    if (level == null) {
+      // events without level are serialized as errors
+      return 1 << (LEVELS.length - 1);
+    }
+    for (int i = 0; i < LEVELS.length; i++) {
+      if (LEVELS[i].toInt() == level.toInt()) {
+        return 1 << i;
+      }
+    }
+    // unknown level, assume any level can be matched
+    return ALL_LEVELS;
+  }
+
+  /**
+   * Builds a {@link LogFileIndex} while a log file is being written.
+   */
+  public static final class Builder {
+
+    private final List<long[]> blocks = new ArrayList<>();
+    private long blockStart = -1L;
+    private long minTime;
+    private long maxTime;
+    private int levelMask;
+    private int eventCount;
+
+    /**
+     * Records an event appended to the current block.
+     */
+    public void addEvent(long timestamp, @Nullable Level level) {
+      if (eventCount++ == 0) {
+        minTime = timestamp;
+        maxTime = timestamp;
+      } else {
+        minTime = Math.min(minTime, timestamp);
+        maxTime = Math.max(maxTime, timestamp);
+      }
+      levelMask |= getLevelMask(level);
+    }
+
+    /**
+     * Records a sync point of the log file, which ends the current block and starts a new one.
+     *
+     * @param position the sync position as returned by the Avro file writer
+     */
+    public void sync(long position) {
+      if (eventCount > 0 && blockStart >= 0) {
+        blocks.add(new long[] { blockStart, minTime, maxTime, levelMask });
+      }
+      blockStart = position;
+      eventCount = 0;
+      levelMask = 0;
+    }
+
+    /**
+     * Returns whether no block has been recorded.
+     */
+    public boolean isEmpty() {
+      return blocks.isEmpty();
+    }
+
+    /**
+     * Builds the index for a log file of the given length. Events added after the last sync point are not indexed.
+     */
+    public LogFileIndex build(long fileLength) {
+      int size = blocks.size();
+      long[] positions = new long[size];
+      long[] minTimes = new long[size];
+      long[] maxTimes = new long[size];
+      byte[] levelMasks = new byte[size];
+      for (int i = 0; i < size; i++) {
+        long[] block = blocks.get(i);
+        positions[i] = block[0];
+        minTimes[i] = block[1];
+        maxTimes[i] = block[2];
+        levelMasks[i] = (byte) block[3];
+      }
+      return new LogFileIndex(fileLength, positions, minTimes, maxTimes, levelMasks);
+    }
+  }
+
+  @Override
+  public String toString() {
+    return "LogFileIndex{" +
+      "fileLength=" + fileLength +
+      ", positions=" + Arrays.toString(positions) +
+      '}';
+  }
+}
@@ -50,6 +50,8 @@ import java.util.LinkedList;
 import java.util.List;
 import java.util.NoSuchElementException;
 import java.util.concurrent.Callable;
+import java.util.function.LongConsumer;
+import javax.annotation.Nullable;
 
 /**
  * LogLocation representing a log file and methods to read the file's contents.
@@ -121,7 +123,21 @@ public class LogLocation {
    * @return closeable iterator of log events
    */
   public CloseableIterator<LogEvent> readLog(Filter logFilter, long fromTimeMs, long toTimeMs, int maxEvents) {
-    return new LogEventIterator(logFilter, fromTimeMs, toTimeMs, maxEvents);
+    return new LogEventIterator(logFilter, fromTimeMs, toTimeMs, maxEvents, null);
+  }
+
+  /**
+   * Return closeable iterator of {@link LogEvent}
+   * @param logFilter filter for filtering log events
+   * @param fromTimeMs start timestamp in millis
+   * @param toTimeMs end timestamp in millis
+   * @param maxEvents max events to return
+   * @param bytesReadListener if not {@code null}, it will be called with the number of bytes read from the file
+   * @return closeable iterator of log events
+   */
+  public CloseableIterator<LogEvent> readLog(Filter logFilter, long fromTimeMs, long toTimeMs, int maxEvents,
+                                             @Nullable LongConsumer bytesReadListener) {
+    return new LogEventIterator(logFilter, fromTimeMs, toTimeMs, maxEvents, bytesReadListener);
   }
 
   /**
@@ -150,10 +166,28 @@ public class LogLocation {
    */
   @SuppressWarnings("WeakerAccess")
   public Collection<LogEvent> readLogPrev(Filter logFilter, long fromTimeMs, final int maxEvents) throws IOException {
+    return readLogPrev(logFilter, fromTimeMs, maxEvents, null);
+  }
+
+  /**
+   * Return closeable iterator of {@link LogEvent}
+   * @param logFilter filter for filtering log events
+   * @param fromTimeMs start timestamp in millis
+   * @param maxEvents max events to return
+   * @param bytesReadListener if not {@code null}, it will be called with the number of bytes read from the file
+   * @return closeable iterator of previous log events
+   */
+  public Collection<LogEvent> readLogPrev(Filter logFilter, long fromTimeMs, final int maxEvents,
+                                          @Nullable LongConsumer bytesReadListener) throws IOException {
+    LogFileIndex index = readIndex();
+    if (index != null) {
+      return readLogPrev(index, logFilter, fromTimeMs, maxEvents, bytesReadListener);
+    }
+
     Deque<Collection<LogEvent>> logSegments = new LinkedList<>();
     int count = 0;
     try {
-      try (DataFileReader<GenericRecord> dataFileReader = createReader()) {
+      try (DataFileReader<GenericRecord> dataFileReader = createReader(bytesReadListener)) {
 
         if (!dataFileReader.hasNext()) {
           return ImmutableList.of();
@@ -206,6 +240,35 @@ public class LogLocation {
     return Lists.newArrayList(Iterables.skip(Iterables.concat(logSegments), skip));
   }
 
+  /**
+   * Reads the previous log events using the {@link LogFileIndex} of the file. Blocks are read backward from the
+   * last block, skipping blocks that only have events after {@code fromTimeMs} or can't match the filter level.
+   */
+  private Collection<LogEvent> readLogPrev(LogFileIndex index, Filter logFilter, long fromTimeMs, int maxEvents,
+                                           @Nullable LongConsumer bytesReadListener) throws IOException {
+    Deque<Collection<LogEvent>> logSegments = new LinkedList<>();
+    int count = 0;
+    try (DataFileReader<GenericRecord> dataFileReader = createReader(bytesReadListener)) {
+      for (int block = index.size() - 1; block >= 0 && count < maxEvents; block--) {
+        if (index.getMinTime(block) > fromTimeMs || !logFilter.mayMatchAnyLevel(index.getLevels(block))) {
+          continue;
+        }
+        dataFileReader.seek(index.getPosition(block));
+        long endPosition = block + 1 < index.size() ? index.getPosition(block + 1) : -1L;
+        List<LogEvent> logSegment = readToEndSyncPosition(dataFileReader, logFilter, fromTimeMs, endPosition);
+        if (!logSegment.isEmpty()) {
+          logSegments.addFirst(logSegment);
+          count = count + logSegment.size();
+        }
+      }
+    } catch (IOException e) {
+      READ_FAILURE_LOG.warn("Got exception while reading log file {}", location, e);
+    }
+
+    int skip = count >= maxEvents ? count - maxEvents : 0;
+    return Lists.newArrayList(Iterables.skip(Iterables.concat(logSegments), skip));
+  }
+
   /**
    *  Read current block in Avro file from current block sync marker to next block sync marker
    */
@@ -259,6 +322,9 @@ public class LogLocation {
     private final long maxEvents;
 
     private DataFileReader<GenericRecord> dataFileReader;
+    private LogFileIndex index;
+    // the index block that is being read, only used if there is an index
+    private int block;
 
     private ILoggingEvent loggingEvent;
     private GenericRecord datum;
@@ -268,15 +334,21 @@ public class LogLocation {
 
     private LogEvent next;
 
-    LogEventIterator(Filter logFilter, long fromTimeMs, long toTimeMs, long maxEvents) {
+    LogEventIterator(Filter logFilter, long fromTimeMs, long toTimeMs, long maxEvents,
+                     @Nullable LongConsumer bytesReadListener) {
       this.logFilter = logFilter;
       this.fromTimeMs = fromTimeMs;
       this.toTimeMs = toTimeMs;
       this.maxEvents = maxEvents;
 
       try {
-        dataFileReader = createReader();
-        if (dataFileReader.hasNext()) {
+        dataFileReader = createReader(bytesReadListener);
+        index = readIndex();
+        if (index != null) {
+          // Seek directly to the first block that may have events at or after fromTimeMs
+          block = index.findFirstBlock(fromTimeMs) - 1;
+          nextBlock();
+        } else if (dataFileReader.hasNext()) {
           datum = dataFileReader.next();
           loggingEvent = new LoggingEvent(datum);
           loggingEvent.prepareForDeferredProcessing();
@@ -311,11 +383,50 @@ public class LogLocation {
       }
     }
 
+    /**
+     * Moves to the next block in the index that can have events matching the filter.
+     *
+     * @return {@code false} if there is no such block
+     */
+    private boolean nextBlock() throws IOException {
+      do {
+        block++;
+      } while (block < index.size() && !logFilter.mayMatchAnyLevel(index.getLevels(block)));
+      if (block >= index.size()) {
+        return false;
+      }
+      dataFileReader.seek(index.getPosition(block));
+      return true;
+    }
+
+    /**
+     * Returns whether there are more events to read. If there is an index, blocks that can't have events matching
+     * the filter are skipped.
+     */
+    private boolean hasMoreEvents() throws IOException {
+      if (index != null) {
+        if (block >= index.size()) {
+          return false;
+        }
+        // The reader moves to the next sync position once the last event of the current block has been read
+        if (block + 1 < index.size() && dataFileReader.previousSync() >= index.getPosition(block + 1)) {
+          block++;
+          if (!logFilter.mayMatchAnyLevel(index.getLevels(block))) {
+            block--;
+            if (!nextBlock()) {
+              return false;
+            }
+          }
+        }
+      }
+      return dataFileReader.hasNext();
+    }
+
     // will compute the next LogEvent and set the field 'next', unless its already set
     private void computeNext() {
       try {
         // read events from file
-        while (next == null && dataFileReader.hasNext()) {
+        while (next == null && hasMoreEvents()) {
           loggingEvent = new LoggingEvent(dataFileReader.next(datum));
           loggingEvent.prepareForDeferredProcessing();
 
@@ -371,9 +482,33 @@ public class LogLocation {
     }
   }
 
+  /**
+   * Reads the {@link LogFileIndex} of this log file.
+   *
+   * @return the index or {@code null} if the file has no valid index
+   */
+  @Nullable
+  private LogFileIndex readIndex() {
+    // Files of the old version don't have index, and would require impersonation to read
+    if (VERSION_0.equals(frameworkVersion)) {
+      return null;
+    }
+    try {
+      return LogFileIndex.read(location);
+    } catch (Exception e) {
+      READ_FAILURE_LOG.warn("Failed to read index of log file {}, reading the log file without index", location, e);
+      return null;
+    }
+  }
+
   private DataFileReader<GenericRecord> createReader() throws IOException {
+    return createReader(null);
+  }
+
+  private DataFileReader<GenericRecord> createReader(@Nullable LongConsumer bytesReadListener) throws IOException {
     boolean shouldImpersonate = this.getFrameworkVersion().equals(VERSION_0);
-    return new DataFileReader<>(new LocationSeekableInput(location, namespaceId, impersonator, shouldImpersonate),
+    return new DataFileReader<>(new LocationSeekableInput(location, namespaceId, impersonator, shouldImpersonate,
+                                                          bytesReadListener),
                                 new GenericDatumReader<GenericRecord>(LogSchema.LoggingEvent.SCHEMA));
   }
 
@@ -384,10 +519,12 @@ public class LogLocation {
 
     private final SeekableInputStream is;
     private final long len;
+    private final LongConsumer bytesReadListener;
 
     LocationSeekableInput(final Location location,
                           NamespaceId namespaceId, Impersonator impersonator,
-                          boolean shouldImpersonate) throws IOException {
+                          boolean shouldImpersonate, @Nullable LongConsumer bytesReadListener) throws IOException {
+      this.bytesReadListener = bytesReadListener;
       try {
         if (shouldImpersonate) {
           this.is = impersonator.doAs(namespaceId, new Callable<SeekableInputStream>() {
@@ -427,7 +564,11 @@ public class LogLocation {
 
     @Override
     public int read(byte[] b, int off, int len) throws IOException {
-      return is.read(b, off, len);
+      int bytesRead = is.read(b, off, len);
+      if (bytesRead > 0 && bytesReadListener != null) {
+        bytesReadListener.accept(bytesRead);
+      }
+      return bytesRead;
     }
 
     @Override
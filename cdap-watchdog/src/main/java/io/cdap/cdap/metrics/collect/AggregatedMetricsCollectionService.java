@@ -18,12 +18,16 @@ package io.cdap.cdap.metrics.collect;
 import com.google.common.cache.CacheBuilder;
 import com.google.common.cache.CacheLoader;
 import com.google.common.cache.LoadingCache;
+import com.google.common.cache.RemovalListener;
+import com.google.common.cache.RemovalNotification;
 import com.google.common.collect.AbstractIterator;
 import com.google.common.collect.ImmutableMap;
 import com.google.common.collect.Lists;
 import com.google.common.collect.Maps;
 import com.google.common.util.concurrent.AbstractExecutionThreadService;
 import com.google.common.util.concurrent.Uninterruptibles;
+import io.cdap.cdap.api.metrics.Counter;
+import io.cdap.cdap.api.metrics.Gauge;
 import io.cdap.cdap.api.metrics.MetricType;
 import io.cdap.cdap.api.metrics.MetricValue;
 import io.cdap.cdap.api.metrics.MetricValues;
@@ -65,16 +69,32 @@ public abstract class AggregatedMetricsCollectionService extends AbstractExecuti
       .build(createCollectorLoader());
 
     this.emitters = CacheBuilder.newBuilder()
-      // NOTE : we don't need to have removalListener to  emit metrics, as we have expireAfterAccess set for a minute,
-      // emitters.get() is used to increment/gauge and that would reset the access time,
-      // and since runOneIteration() emits all the metrics for the scheduled duration (every 1 second)
-      // there wont be any loss of emitter entries.
+      // NOTE : emitters.get() is used to increment/gauge and that would reset the access time, and
+      // since runOneIteration() emits all the metrics for the scheduled duration (every 1 second) there wont be
+      // any loss of emitter entries. However, emitters can also be held by Counter and Gauge handles, which don't
+      // access the cache. Hence when an emitter is removed, values that are not published yet are moved
+      // to a new emitter for the same metric.
       .expireAfterAccess(CACHE_EXPIRE_MINUTES, TimeUnit.MINUTES)
+      .removalListener(new RemovalListener<Map<String, String>, LoadingCache<String, AggregatedMetricsEmitter>>() {
+        @Override
+        public void onRemoval(RemovalNotification<Map<String, String>,
+                                                  LoadingCache<String, AggregatedMetricsEmitter>> notification) {
+          for (Map.Entry<String, AggregatedMetricsEmitter> entry : notification.getValue().asMap().entrySet()) {
+            evict(notification.getKey(), entry.getKey(), entry.getValue());
+          }
+        }
+      })
       .build(new CacheLoader<Map<String, String>, LoadingCache<String, AggregatedMetricsEmitter>>() {
         @Override
-        public LoadingCache<String, AggregatedMetricsEmitter> load(Map<String, String> tags) throws Exception {
-          return CacheBuilder.newBuilder().expireAfterAccess(CACHE_EXPIRE_MINUTES, TimeUnit.MINUTES).
-            build(new CacheLoader<String, AggregatedMetricsEmitter>() {
+        public LoadingCache<String, AggregatedMetricsEmitter> load(final Map<String, String> tags) throws Exception {
+          return CacheBuilder.newBuilder().expireAfterAccess(CACHE_EXPIRE_MINUTES, TimeUnit.MINUTES)
+            .removalListener(new RemovalListener<String, AggregatedMetricsEmitter>() {
+              @Override
+              public void onRemoval(RemovalNotification<String, AggregatedMetricsEmitter> notification) {
+                evict(tags, notification.getKey(), notification.getValue());
+              }
+            })
+            .build(new CacheLoader<String, AggregatedMetricsEmitter>() {
               @Override
               public AggregatedMetricsEmitter load(String metricName) throws Exception {
                 return new AggregatedMetricsEmitter(metricName);
@@ -185,7 +205,9 @@ public abstract class AggregatedMetricsCollectionService extends AbstractExecuti
           // +1 because we add extra metric about how many metric values did we emit in this context (see below)
           List<MetricValue> metricValues = Lists.newArrayListWithCapacity(metricEmitters.size() + 1);
           for (Map.Entry<String, AggregatedMetricsEmitter> emitterEntry : metricEmitters.entrySet()) {
-            MetricValue metricValue = emitterEntry.getValue().emit();
+            AggregatedMetricsEmitter emitter = emitterEntry.getValue();
+            MetricValue metricValue = emitter.emit();
+            emitter.emitDistribution(metricValues);
             // skip increment by 0
             if (metricValue.getType() == MetricType.COUNTER && metricValue.getValue() == 0) {
               continue;
@@ -209,6 +231,36 @@ public abstract class AggregatedMetricsCollectionService extends AbstractExecuti
     };
   }
 
+  private AggregatedMetricsEmitter getEmitter(Map<String, String> tags, String metricName) {
+    return emitters.getUnchecked(tags).getUnchecked(metricName);
+  }
+
+  /**
+   * Marks the given emitter as evicted and moves its values that are not published yet to a new emitter.
+   */
+  private void evict(Map<String, String> tags, String metricName, AggregatedMetricsEmitter emitter) {
+    if (emitter.isEvicted()) {
+      return;
+    }
+    emitter.evict();
+    transfer(tags, metricName, emitter);
+  }
+
+  private AggregatedMetricsEmitter transfer(Map<String, String> tags, String metricName,
+                                            AggregatedMetricsEmitter emitter) {
+    MetricValue pending = emitter.emit();
+    boolean hasPending = pending.getType() != MetricType.COUNTER || pending.getValue() != 0;
+    if (!hasPending && !emitter.hasDistribution()) {
+      return null;
+    }
+    AggregatedMetricsEmitter target = getEmitter(tags, metricName);
+    if (hasPending) {
+      target.add(pending);
+    }
+    target.addDistribution(emitter);
+    return target;
+  }
+
   private CacheLoader<Map<String, String>, MetricsContext> createCollectorLoader() {
     return new CacheLoader<Map<String, String>, MetricsContext>() {
       @Override
@@ -228,12 +280,27 @@ public abstract class AggregatedMetricsCollectionService extends AbstractExecuti
 
     @Override
     public void increment(String metricName, long value) {
-      emitters.getUnchecked(tags).getUnchecked(metricName).increment(value);
+      getEmitter(tags, metricName).increment(value);
     }
 
     @Override
     public void gauge(String metricName, long value) {
-      emitters.getUnchecked(tags).getUnchecked(metricName).gauge(value);
+      getEmitter(tags, metricName).gauge(value);
+    }
+
+    @Override
+    public void distribution(String metricName, long value) {
+      getEmitter(tags, metricName).distribution(value);
+    }
+
+    @Override
+    public Counter counter(String metricName) {
+      return new MetricHandle(tags, metricName);
+    }
+
+    @Override
+    public Gauge gauge(String metricName) {
+      return new MetricHandle(tags, metricName);
     }
 
     @Override
@@ -260,4 +327,44 @@ public abstract class AggregatedMetricsCollectionService extends AbstractExecuti
       return collectors.getUnchecked(allTags);
     }
   }
+
+  /**
+   * A {@link Counter} and {@link Gauge} that holds on to the emitter of a metric, so that the emitter is only
+   * looked up again after it is evicted from the cache.
+   */
+  private final class MetricHandle implements Counter, Gauge {
+
+    private final Map<String, String> tags;
+    private final String metricName;
+    private volatile AggregatedMetricsEmitter emitter;
+
+    private MetricHandle(Map<String, String> tags, String metricName) {
+      this.tags = tags;
+      this.metricName = metricName;
+      this.emitter = getEmitter(tags, metricName);
+    }
+
+    @Override
+    public void increment(long delta) {
+      AggregatedMetricsEmitter emitter = this.emitter;
+      emitter.increment(delta);
+      refresh(emitter);
+    }
+
+    @Override
+    public void set(long value) {
+      AggregatedMetricsEmitter emitter = this.emitter;
+      emitter.gauge(value);
+      refresh(emitter);
+    }
+
+    private void refresh(AggregatedMetricsEmitter emitter) {
+      if (!emitter.isEvicted()) {
+        return;
+      }
+      // The value might be added after the emitter was evicted, hence move it to the current emitter
+      AggregatedMetricsEmitter target = transfer(tags, metricName, emitter);
+      this.emitter = target == null ? getEmitter(tags, metricName) : target;
+    }
+  }
 }
@@ -20,8 +20,9 @@ import io.cdap.cdap.api.metrics.MetricValue;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
-import java.util.concurrent.atomic.AtomicBoolean;
-import java.util.concurrent.atomic.AtomicLong;
+import java.util.Collection;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.atomic.LongAdder;
 
 /**
  * {@link MetricsEmitter} that aggregates  values for a metric
@@ -31,10 +32,16 @@ final class AggregatedMetricsEmitter implements MetricsEmitter {
   private static final Logger LOG = LoggerFactory.getLogger(AggregatedMetricsEmitter.class);
 
   private final String name;
-  // metric value
-  private final AtomicLong value;
-  // specifies if the metric type is gauge or counter
-  private final AtomicBoolean gaugeUsed;
+  // sum of all increments, striped to reduce contention between threads incrementing the same metric
+  private final LongAdder value;
+  // the last gauge value and the increments sum at the time it was set, or null if gauge was not used
+  private final AtomicReference<long[]> gauge;
+  // the distribution of recorded values, or null if distribution was not used
+  private final AtomicReference<DistributionSketch> distribution;
+  // sum of increments already emitted
+  private long emitted;
+  // set when the emitter is no longer used for collection
+  private volatile boolean evicted;
 
   AggregatedMetricsEmitter(String name) {
     if (name == null || name.isEmpty()) {
@@ -42,25 +49,93 @@ final class AggregatedMetricsEmitter implements MetricsEmitter {
     }
 
     this.name = name;
-    this.value = new AtomicLong();
-    this.gaugeUsed = new AtomicBoolean(false);
+    this.value = new LongAdder();
+    this.gauge = new AtomicReference<>();
+    this.distribution = new AtomicReference<>();
   }
 
   void increment(long value) {
-    this.value.addAndGet(value);
+    this.value.add(value);
   }
 
-
   @Override
-  public MetricValue emit() {
-    // todo CDAP-2195 - potential race condition , reseting value and type has to be done together
-    long value = this.value.getAndSet(0);
-    MetricType type = gaugeUsed.getAndSet(false) ? MetricType.GAUGE : MetricType.COUNTER;
-    return new MetricValue(name, type, value);
+  public synchronized MetricValue emit() {
+    long sum = value.sum();
+    long delta = sum - emitted;
+    emitted = sum;
+
+    long[] gaugeValue = gauge.getAndSet(null);
+    if (gaugeValue == null) {
+      return new MetricValue(name, MetricType.COUNTER, delta);
+    }
+    // increments after the gauge was set are added to the gauge value
+    return new MetricValue(name, MetricType.GAUGE, gaugeValue[0] + sum - gaugeValue[1]);
   }
 
   public void gauge(long value) {
-    this.value.set(value);
-    this.gaugeUsed.set(true);
+    gauge.set(new long[] { value, this.value.sum() });
+  }
+
+  void distribution(long value) {
+    getDistribution().record(value);
+  }
+
+  /**
+   * Adds the bucket counts of the distribution recorded since the last call to the given collection.
+   *
+   * @return {@code true} if any bucket count was added
+   */
+  boolean emitDistribution(Collection<MetricValue> metricValues) {
+    DistributionSketch sketch = distribution.get();
+    return sketch != null && sketch.emit(name, metricValues);
+  }
+
+  /**
+   * Returns {@code true} if there are recorded distribution values which are not emitted yet.
+   */
+  boolean hasDistribution() {
+    DistributionSketch sketch = distribution.get();
+    return sketch != null && !sketch.isEmpty();
+  }
+
+  /**
+   * Moves the distribution values which are not emitted yet from the given emitter to this one.
+   */
+  void addDistribution(AggregatedMetricsEmitter other) {
+    DistributionSketch sketch = other.distribution.get();
+    if (sketch != null) {
+      getDistribution().merge(sketch);
+    }
+  }
+
+  private DistributionSketch getDistribution() {
+    DistributionSketch sketch = distribution.get();
+    if (sketch == null) {
+      distribution.compareAndSet(null, new DistributionSketch());
+      sketch = distribution.get();
+    }
+    return sketch;
+  }
+
+  /**
+   * Marks this emitter as no longer used for collection.
+   */
+  void evict() {
+    evicted = true;
+  }
+
+  boolean isEvicted() {
+    return evicted;
+  }
+
+  /**
+   * Adds a value previously emitted by another emitter of the same metric, which is not published.
+   */
+  void add(MetricValue metricValue) {
+    if (metricValue.getType() == MetricType.GAUGE) {
+      gauge(metricValue.getValue());
+    } else {
+      increment(metricValue.getValue());
+    }
   }
 }
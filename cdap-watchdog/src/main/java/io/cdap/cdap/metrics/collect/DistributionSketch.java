@@ -0,0 +1,93 @@
+/*
+ * Copyright © 2020 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+
+package io.cdap.cdap.metrics.collect;
+
+import io.cdap.cdap.api.metrics.DistributionBuckets;
+import io.cdap.cdap.api.metrics.MetricType;
+import io.cdap.cdap.api.metrics.MetricValue;
+
+import java.util.Collection;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * A mergeable sketch of a distribution, which counts the recorded values per {@link DistributionBuckets} bucket.
+ * This class is thread safe.
+ */
+final class DistributionSketch {
+
+  private final AtomicLongArray counts;
+
+  DistributionSketch() {
+    this.counts = new AtomicLongArray(DistributionBuckets.NUM_BUCKETS);
+  }
+
+  /**
+   * Records the given value.
+   */
+  void record(long value) {
+    counts.incrementAndGet(DistributionBuckets.getBucket(value));
+  }
+
+  /**
+   * Moves all the counts of the given sketch into this sketch.
+   */
+  void merge(DistributionSketch other) {
+    for (int i = 0; i < other.counts.length(); i++) {
+      long count = drain(other.counts, i);
+      if (count != 0) {
+        counts.addAndGet(i, count);
+      }
+    }
+  }
+
+  /**
+   * Adds one {@link MetricType#COUNTER} {@link MetricValue} for each non-empty bucket to the given collection and
+   * resets this sketch.
+   *
+   * @return {@code true} if any {@link MetricValue} was added
+   */
+  boolean emit(String metricName, Collection<MetricValue> metricValues) {
+    boolean emitted = false;
+    for (int i = 0; i < counts.length(); i++) {
+      long count = drain(counts, i);
+      if (count != 0) {
+        metricValues.add(new MetricValue(DistributionBuckets.getBucketMetricName(metricName, i),
+                                         MetricType.COUNTER, count));
+        emitted = true;
+      }
+    }
+    return emitted;
+  }
+
+  /**
+   * Returns {@code true} if no value was recorded since the last emit.
+   */
+  boolean isEmpty() {
+    for (int i = 0; i < counts.length(); i++) {
+      if (counts.get(i) != 0) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  private static long drain(AtomicLongArray counts, int i) {
+    // avoid the write for empty buckets, which are the majority
+    return counts.get(i) == 0 ? 0 : counts.getAndSet(i, 0);
+  }
+}
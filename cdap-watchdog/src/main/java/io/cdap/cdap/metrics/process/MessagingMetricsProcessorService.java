@@ -96,7 +96,16 @@ public class MessagingMetricsProcessorService extends AbstractExecutionThreadSer
   private final List<ProcessMetricsThread> processMetricsThreads;
   private final String processMetricName;
   private final String metricsPrefixForDelayMetrics;
+  private final String coalesceInputMetricName;
+  private final String coalesceOutputMetricName;
+  private final String flushLatencyMetricName;
+  // Pre-aggregates metrics before persisting. It is only accessed by the thread that is persisting.
+  private final MetricsPreAggregator preAggregator;
+  private final long flushIntervalMillis;
   private long metricsProcessedCount;
+  private long lastMetricTime;
+  private long lastFlushTime;
+  private long lastFlushLatencyMillis;
 
   private MetricsConsumerMetaTable metaTable;
 
@@ -156,6 +165,24 @@ public class MessagingMetricsProcessorService extends AbstractExecutionThreadSer
     this.metricsProcessIntervalMillis = metricsProcessIntervalMillis < Constants.Metrics.PROCESS_INTERVAL_MILLIS ?
       metricsProcessIntervalMillis : Constants.Metrics.PROCESS_INTERVAL_MILLIS;
     this.processMetricName = String.format("metrics.%s.process.count", instanceId);
+    // the coalesce ratio is the sum of input divided by the sum of output over any time range
+    this.coalesceInputMetricName = metricsPrefixForDelayMetrics + ".coalesce.input";
+    this.coalesceOutputMetricName = metricsPrefixForDelayMetrics + ".coalesce.output";
+    this.flushLatencyMetricName = metricsPrefixForDelayMetrics + ".flush.latency.ms";
+    this.flushIntervalMillis = cConf.getLong(Constants.Metrics.PROCESSOR_FLUSH_INTERVAL_MS);
+    this.preAggregator = new MetricsPreAggregator(
+      getPreAggregationBucketSeconds(cConf.getInt(Constants.Metrics.METRICS_MINIMUM_RESOLUTION_SECONDS)));
+  }
+
+  /**
+   * Returns the size of the time bucket for pre-aggregating metrics. It must divide all resolutions of the metrics
+   * store so that coalescing metrics within a bucket doesn't move any metric to a different resolution interval.
+   */
+  private static int getPreAggregationBucketSeconds(int minimumResolution) {
+    if (minimumResolution >= 60) {
+      return 60;
+    }
+    return minimumResolution > 0 && 60 % minimumResolution == 0 ? minimumResolution : 1;
   }
 
   private MetricsConsumerMetaTable getMetaTable() {
@@ -218,7 +245,7 @@ public class MessagingMetricsProcessorService extends AbstractExecutionThreadSer
 
     // Persist metricsFromAllTopics and messageId's after all ProcessMetricsThread's complete.
     // No need to make a copy of metricsFromAllTopics and topicProcessMetaMap because no thread is writing to them
-    persistMetricsAndTopicProcessMeta(metricsFromAllTopics, topicProcessMetaMap);
+    persistMetricsAndTopicProcessMeta(metricsFromAllTopics, topicProcessMetaMap, true);
   }
 
   @Override
@@ -232,18 +259,32 @@ public class MessagingMetricsProcessorService extends AbstractExecutionThreadSer
   }
 
   /**
-   * Persist metrics from all topics into metric store and messageId's of the last persisted metrics of each topic into
-   * metrics meta table
+   * Pre-aggregates metrics from all topics and persists them into metric store, together with messageId's of the last
+   * persisted metrics of each topic into metrics meta table. Persisting is deferred for up to the flush interval
+   * if not forced. In that case, the messageId's are not persisted either, so that they never run ahead of the
+   * persisted metrics.
    *
    * @param metricValues        a deque of {@link MetricValues}
    * @param topicProcessMetaMap a map with each key {@link TopicIdMetaKey} representing a topic and {@link
    *                            TopicProcessMeta} which has info on messageId and processing stats
+   * @param forceFlush          {@code true} to persist pre-aggregated metrics without waiting for the flush interval
    */
   private void persistMetricsAndTopicProcessMeta(Deque<MetricValues> metricValues,
-                                                 Map<TopicIdMetaKey, TopicProcessMeta> topicProcessMetaMap) {
+                                                 Map<TopicIdMetaKey, TopicProcessMeta> topicProcessMetaMap,
+                                                 boolean forceFlush) {
     try {
       if (!metricValues.isEmpty()) {
-        persistMetrics(metricValues, topicProcessMetaMap);
+        lastMetricTime = metricValues.peekLast().getTimestamp();
+        for (MetricValues metricValue : metricValues) {
+          preAggregator.add(metricValue);
+        }
+      }
+      if (!preAggregator.isEmpty()) {
+        long now = System.currentTimeMillis();
+        if (!forceFlush && now - lastFlushTime < flushIntervalMillis && preAggregator.getOutputCount() < queueSize) {
+          return;
+        }
+        persistMetrics(topicProcessMetaMap);
       }
       persistTopicProcessMeta(topicProcessMetaMap);
     } catch (Exception e) {
@@ -264,14 +305,10 @@ public class MessagingMetricsProcessorService extends AbstractExecutionThreadSer
   }
 
   /**
-   * Persist metrics into metric store
-   *
-   * @param metricValues a non-empty deque of {@link MetricValues}
+   * Persist the pre-aggregated metrics into metric store
    */
-  private void persistMetrics(Deque<MetricValues> metricValues,
-                              Map<TopicIdMetaKey, TopicProcessMeta> topicProcessMetaMap) {
+  private void persistMetrics(Map<TopicIdMetaKey, TopicProcessMeta> topicProcessMetaMap) {
     long now = System.currentTimeMillis();
-    long lastMetricTime = metricValues.peekLast().getTimestamp();
     List<MetricValue> topicLevelDelays = new ArrayList<>();
 
     //write topic level delay metrics
@@ -284,12 +321,20 @@ public class MessagingMetricsProcessorService extends AbstractExecutionThreadSer
       topicLevelDelays.add(new MetricValue(topicProcessMeta.getLatestMetricsTimestampMetricName(),
                                            MetricType.GAUGE, delay));
     }
+    int metricValuesCount = preAggregator.getMetricValuesCount();
     List<MetricValue> processorMetrics = new ArrayList<>(topicLevelDelays);
-    processorMetrics.add(new MetricValue(processMetricName, MetricType.COUNTER, metricValues.size()));
+    processorMetrics.add(new MetricValue(processMetricName, MetricType.COUNTER, metricValuesCount));
+    processorMetrics.add(new MetricValue(coalesceInputMetricName, MetricType.COUNTER, preAggregator.getInputCount()));
+    processorMetrics.add(new MetricValue(coalesceOutputMetricName, MetricType.COUNTER,
+                                         preAggregator.getOutputCount()));
+    processorMetrics.add(new MetricValue(flushLatencyMetricName, MetricType.GAUGE, lastFlushLatencyMillis));
 
+    List<MetricValues> metricValues = preAggregator.drain();
     metricValues.add(new MetricValues(metricsContextMap, TimeUnit.MILLISECONDS.toSeconds(now), processorMetrics));
+    lastFlushTime = now;
     metricsWriter.write(metricValues);
-    metricsProcessedCount += metricValues.size();
+    lastFlushLatencyMillis = System.currentTimeMillis() - now;
+    metricsProcessedCount += metricValuesCount;
     PROGRESS_LOG.debug("{} metrics persisted. Last metric's timestamp: {}",
                        metricsProcessedCount, lastMetricTime);
   }
@@ -368,6 +413,7 @@ public class MessagingMetricsProcessorService extends AbstractExecutionThreadSer
         }
 
         byte[] currentMessageId = null;
+        int fetchedCount = 0;
         TopicProcessMeta localTopicProcessMeta =
           new TopicProcessMeta(lastMessageId, Long.MAX_VALUE, Long.MIN_VALUE, 0,
                                TimeUnit.MILLISECONDS.toSeconds(System.currentTimeMillis()),
@@ -375,6 +421,7 @@ public class MessagingMetricsProcessorService extends AbstractExecutionThreadSer
         try (CloseableIterator<RawMessage> iterator = fetcher.fetch()) {
           while (iterator.hasNext() && isRunning()) {
             RawMessage input = iterator.next();
+            fetchedCount++;
             try {
               payloadInput.reset(input.getPayload());
               MetricValues metricValues = metricReader.read(decoder, metricSchema);
@@ -399,8 +446,10 @@ public class MessagingMetricsProcessorService extends AbstractExecutionThreadSer
           localTopicProcessMeta.updateLastProcessedTimestamp();
           topicProcessMetaMap.put(topicIdMetaKey, localTopicProcessMeta);
         }
-        // Try to persist metrics and messageId's of the last metrics to be persisted if no other thread is persisting
-        tryPersist();
+        // Try to persist metrics and messageId's of the last metrics to be persisted if no other thread is persisting.
+        // If fewer messages than the limit were fetched, this thread has caught up, hence no need to hold the
+        // metrics for more pre-aggregation.
+        tryPersist(fetchedCount < fetcherLimit);
 
         long endTime = System.currentTimeMillis();
         // use currentMessageId != null to ensure that the current fetching is not empty and
@@ -422,8 +471,10 @@ public class MessagingMetricsProcessorService extends AbstractExecutionThreadSer
 
     /**
      * Persist metrics and messageId's of the last metrics to be persisted if no other thread is persisting
+     *
+     * @param forceFlush {@code true} to persist all pre-aggregated metrics without waiting for the flush interval
      */
-    private void tryPersist() {
+    private void tryPersist(boolean forceFlush) {
       // Ensure there's only one thread can persist metricsFromAllTopics and messageId's.
       // This is because the underlying metrics table is not thread safe.
       // If persistingFlag is false, set it to true and start persisting. Otherwise, log and return.
@@ -451,7 +502,7 @@ public class MessagingMetricsProcessorService extends AbstractExecutionThreadSer
         }
         // Persist the copy of metrics and MessageId's
 
-        persistMetricsAndTopicProcessMeta(metricsCopy, topicProcessMetaMapCopy);
+        persistMetricsAndTopicProcessMeta(metricsCopy, topicProcessMetaMapCopy, forceFlush);
       } catch (Exception e) {
         LOG.warn("Failed to persist metrics. Will be retried in next iteration.", e);
       } finally {
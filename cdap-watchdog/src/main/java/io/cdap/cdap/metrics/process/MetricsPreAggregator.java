@@ -0,0 +1,199 @@
+/*
+ * Copyright © 2020 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package io.cdap.cdap.metrics.process;
+
+import io.cdap.cdap.api.metrics.MetricType;
+import io.cdap.cdap.api.metrics.MetricValue;
+import io.cdap.cdap.api.metrics.MetricValues;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+
+/**
+ * Pre-aggregates {@link MetricValues} in memory before they get persisted. Metrics with the same tags, name and
+ * time bucket are coalesced into one value: counters are summed and gauges keep the latest value.
+ * Since the time bucket size divides all the resolutions of the metrics store, persisting the coalesced metrics
+ * yields the same result as persisting each of the metrics individually.
+ *
+ * This class is not thread safe.
+ */
+final class MetricsPreAggregator {
+
+  private final int bucketSeconds;
+  private final Map<BucketKey, Bucket> buckets;
+  private int metricValuesCount;
+  private long inputCount;
+  private int outputCount;
+
+  /**
+   * Creates a new instance.
+   *
+   * @param bucketSeconds size of the time bucket in seconds for coalescing metrics
+   */
+  MetricsPreAggregator(int bucketSeconds) {
+    if (bucketSeconds <= 0) {
+      throw new IllegalArgumentException("Bucket size must be positive: " + bucketSeconds);
+    }
+    this.bucketSeconds = bucketSeconds;
+    this.buckets = new LinkedHashMap<>();
+  }
+
+  /**
+   * Adds the given {@link MetricValues} to this aggregator.
+   */
+  void add(MetricValues metricValues) {
+    long timestamp = metricValues.getTimestamp();
+    long bucketTimestamp = timestamp / bucketSeconds * bucketSeconds;
+    Bucket bucket = buckets.computeIfAbsent(new BucketKey(metricValues.getTags(), bucketTimestamp), Bucket::new);
+
+    for (MetricValue metricValue : metricValues.getMetrics()) {
+      inputCount++;
+      if (metricValue.getType() == MetricType.COUNTER) {
+        Long count = bucket.counters.get(metricValue.getName());
+        if (count == null) {
+          bucket.counters.put(metricValue.getName(), metricValue.getValue());
+          outputCount++;
+        } else {
+          bucket.counters.put(metricValue.getName(), count + metricValue.getValue());
+        }
+      } else {
+        Gauge gauge = bucket.gauges.get(metricValue.getName());
+        if (gauge == null) {
+          bucket.gauges.put(metricValue.getName(), new Gauge(timestamp, metricValue.getValue()));
+          outputCount++;
+        } else if (timestamp >= gauge.timestamp) {
+          gauge.timestamp = timestamp;
+          gauge.value = metricValue.getValue();
+        }
+      }
+    }
+    metricValuesCount++;
+  }
+
+  /**
+   * Returns {@code true} if there is no metric in this aggregator.
+   */
+  boolean isEmpty() {
+    return buckets.isEmpty();
+  }
+
+  /**
+   * Returns the number of {@link MetricValues} added since the last {@link #drain()}.
+   */
+  int getMetricValuesCount() {
+    return metricValuesCount;
+  }
+
+  /**
+   * Returns the number of individual {@link MetricValue} added since the last {@link #drain()}.
+   */
+  long getInputCount() {
+    return inputCount;
+  }
+
+  /**
+   * Returns the number of coalesced {@link MetricValue} to be returned by the {@link #drain()} method.
+   */
+  int getOutputCount() {
+    return outputCount;
+  }
+
+  /**
+   * Returns all the coalesced metrics and resets this aggregator.
+   *
+   * @return a mutable {@link List} of {@link MetricValues}, one per unique tags and time bucket
+   */
+  List<MetricValues> drain() {
+    List<MetricValues> result = new ArrayList<>(buckets.size() + 1);
+    for (Bucket bucket : buckets.values()) {
+      List<MetricValue> metrics = new ArrayList<>(bucket.counters.size() + bucket.gauges.size());
+      for (Map.Entry<String, Long> entry : bucket.counters.entrySet()) {
+        metrics.add(new MetricValue(entry.getKey(), MetricType.COUNTER, entry.getValue()));
+      }
+      for (Map.Entry<String, Gauge> entry : bucket.gauges.entrySet()) {
+        metrics.add(new MetricValue(entry.getKey(), MetricType.GAUGE, entry.getValue().value));
+      }
+      result.add(new MetricValues(bucket.key.tags, bucket.key.timestamp, metrics));
+    }
+    buckets.clear();
+    metricValuesCount = 0;
+    inputCount = 0L;
+    outputCount = 0;
+    return result;
+  }
+
+  /**
+   * Key for identifying a {@link Bucket}.
+   */
+  private static final class BucketKey {
+    private final Map<String, String> tags;
+    private final long timestamp;
+    private final int hashCode;
+
+    BucketKey(Map<String, String> tags, long timestamp) {
+      this.tags = tags;
+      this.timestamp = timestamp;
+      this.hashCode = Objects.hash(tags, timestamp);
+    }
+
+    @Override
+    public boolean equals(Object o) {
+      if (this == o) {
+        return true;
+      }
+      if (o == null || getClass() != o.getClass()) {
+        return false;
+      }
+      BucketKey other = (BucketKey) o;
+      return timestamp == other.timestamp && hashCode == other.hashCode && tags.equals(other.tags);
+    }
+
+    @Override
+    public int hashCode() {
+      return hashCode;
+    }
+  }
+
+  /**
+   * Holds the coalesced metrics for the same tags and time bucket.
+   */
+  private static final class Bucket {
+    private final BucketKey key;
+    private final Map<String, Long> counters = new LinkedHashMap<>();
+    private final Map<String, Gauge> gauges = new LinkedHashMap<>();
+
+    Bucket(BucketKey key) {
+      this.key = key;
+    }
+  }
+
+  /**
+   * The latest value of a gauge metric.
+   */
+  private static final class Gauge {
+    private long timestamp;
+    private long value;
+
+    Gauge(long timestamp, long value) {
+      this.timestamp = timestamp;
+      this.value = value;
+    }
+  }
+}
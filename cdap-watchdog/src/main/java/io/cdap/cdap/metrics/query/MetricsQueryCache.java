@@ -0,0 +1,304 @@
+/*
+ * Copyright © 2020 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+
+package io.cdap.cdap.metrics.query;
+
+import com.google.common.annotations.VisibleForTesting;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import io.cdap.cdap.api.dataset.lib.cube.AggregationFunction;
+import io.cdap.cdap.api.dataset.lib.cube.AggregationOption;
+import io.cdap.cdap.api.dataset.lib.cube.TimeValue;
+import io.cdap.cdap.api.metrics.MetricDataQuery;
+import io.cdap.cdap.api.metrics.MetricDataQueryResult;
+import io.cdap.cdap.api.metrics.MetricStore;
+import io.cdap.cdap.api.metrics.MetricTimeSeries;
+import io.cdap.cdap.api.metrics.MetricsContext;
+import io.cdap.cdap.api.metrics.NoopMetricsContext;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Executes {@link MetricDataQuery} against a {@link MetricStore}, caching the results of the time buckets that are
+ * closed. A time bucket is closed when it ended more than a configured delay ago, hence no more metrics are expected
+ * to be written to it. Only the time buckets that are not cached yet and the still open tail of the query time
+ * range are read from the {@link MetricStore}.
+ *
+ * Only queries that return the time values as stored are cached, i.e. queries without interpolation and without
+ * aggregation of the time range. Results that the {@link MetricStore} truncated are not cached.
+ */
+final class MetricsQueryCache {
+
+  private final MetricStore metricStore;
+  private final long ttlSeconds;
+  private final long closedDelaySeconds;
+  private final Cache<QueryKey, CacheEntry> cache;
+  private volatile MetricsContext metricsContext;
+
+  /**
+   * Creates a new instance.
+   *
+   * @param metricStore the {@link MetricStore} to query
+   * @param maxEntries maximum number of distinct queries to cache results for
+   * @param ttlSeconds time in seconds that cached results are used before they are read from the store again
+   * @param closedDelaySeconds time in seconds after the end of a time bucket that it is considered closed
+   */
+  MetricsQueryCache(MetricStore metricStore, int maxEntries, long ttlSeconds, long closedDelaySeconds) {
+    this.metricStore = metricStore;
+    this.ttlSeconds = ttlSeconds;
+    this.closedDelaySeconds = closedDelaySeconds;
+    this.cache = CacheBuilder.newBuilder()
+      .maximumSize(maxEntries)
+      .expireAfterAccess(ttlSeconds, TimeUnit.SECONDS)
+      .build();
+    this.metricsContext = new NoopMetricsContext();
+  }
+
+  /**
+   * Sets the {@link MetricsContext} for emitting cache hit and miss metrics.
+   */
+  void setMetricsContext(MetricsContext metricsContext) {
+    this.metricsContext = metricsContext;
+  }
+
+  /**
+   * Executes the given query.
+   */
+  MetricDataQueryResult execute(MetricDataQuery query) {
+    return execute(query, TimeUnit.MILLISECONDS.toSeconds(System.currentTimeMillis()));
+  }
+
+  @VisibleForTesting
+  Collection<MetricTimeSeries> query(MetricDataQuery query, long nowSeconds) {
+    return execute(query, nowSeconds).getTimeSeries();
+  }
+
+  @VisibleForTesting
+  MetricDataQueryResult execute(MetricDataQuery query, long nowSeconds) {
+    if (!isCacheable(query)) {
+      return metricStore.execute(query);
+    }
+
+    int resolution = query.getResolution();
+    // timestamps of the first and the last time buckets in the query range
+    long start = floor(query.getStartTs() + resolution - 1, resolution);
+    long end = floor(query.getEndTs(), resolution);
+    // the last closed time bucket in the query range
+    long closedEnd = Math.min(end, floor(nowSeconds - closedDelaySeconds, resolution) - resolution);
+    if (closedEnd < start) {
+      return metricStore.execute(query);
+    }
+
+    QueryKey key = new QueryKey(query);
+    CacheEntry entry = cache.getIfPresent(key);
+    boolean truncated = false;
+    if (entry == null || entry.createTime + ttlSeconds < nowSeconds
+      || entry.start > start || entry.end < start - resolution) {
+      metricsContext.increment("metrics.query.cache.misses", 1);
+      MetricDataQueryResult closed = metricStore.execute(subQuery(query, start, closedEnd, Integer.MAX_VALUE));
+      truncated = closed.isTruncated();
+      entry = new CacheEntry(nowSeconds, start, closedEnd, closed.getTimeSeries());
+    } else {
+      metricsContext.increment("metrics.query.cache.hits", 1);
+      if (entry.end < closedEnd) {
+        // Only read the time buckets that got closed since the entry was cached. Also drops the buckets before
+        // the query start time, since query time ranges usually only move forward.
+        MetricDataQueryResult closed = metricStore.execute(subQuery(query, entry.end + resolution, closedEnd,
+                                                                    Integer.MAX_VALUE));
+        truncated = closed.isTruncated();
+        entry = new CacheEntry(entry.createTime, start, closedEnd,
+                               merge(slice(entry.series, start, entry.end), closed.getTimeSeries(),
+                                     Integer.MAX_VALUE));
+      }
+    }
+    // a truncated entry would keep serving partial data after the store could return all of it
+    if (!truncated) {
+      cache.put(key, entry);
+    }
+
+    Collection<MetricTimeSeries> tail = Collections.emptyList();
+    if (closedEnd < end) {
+      MetricDataQueryResult tailResult = metricStore.execute(subQuery(query, closedEnd + resolution,
+                                                                      query.getEndTs(), query.getLimit()));
+      tail = tailResult.getTimeSeries();
+      truncated |= tailResult.isTruncated();
+    }
+    // The cached entry covers the whole closed range regardless of the query limit, which only applies to the result
+    return new MetricDataQueryResult(merge(slice(entry.series, start, closedEnd), tail, query.getLimit()), truncated);
+  }
+
+  private boolean isCacheable(MetricDataQuery query) {
+    return query.getAggregationOption() == AggregationOption.FALSE
+      && query.getInterpolator() == null && query.getResolution() != Integer.MAX_VALUE
+      && query.getStartTs() <= query.getEndTs() && query.getLimit() > 0;
+  }
+
+  private static long floor(long ts, int resolution) {
+    return Math.floorDiv(ts, resolution) * resolution;
+  }
+
+  private static MetricDataQuery subQuery(MetricDataQuery query, long startTs, long endTs, int limit) {
+    return new MetricDataQuery(startTs, endTs, query.getResolution(), limit, query.getMetrics(),
+                               query.getSliceByTags(), query.getGroupByTags(), query.getAggregationOption(),
+                               query.getInterpolator());
+  }
+
+  /**
+   * Returns the time series with only the time values in the given time range. Time series without time values in
+   * the range are omitted.
+   */
+  private static List<MetricTimeSeries> slice(List<MetricTimeSeries> series, long startTs, long endTs) {
+    List<MetricTimeSeries> result = new ArrayList<>(series.size());
+    for (MetricTimeSeries timeSeries : series) {
+      List<TimeValue> timeValues = timeSeries.getTimeValues();
+      int from = 0;
+      while (from < timeValues.size() && timeValues.get(from).getTimestamp() < startTs) {
+        from++;
+      }
+      int to = timeValues.size();
+      while (to > from && timeValues.get(to - 1).getTimestamp() > endTs) {
+        to--;
+      }
+      if (from == 0 && to == timeValues.size()) {
+        result.add(timeSeries);
+      } else if (from < to) {
+        result.add(new MetricTimeSeries(timeSeries.getMetricName(), timeSeries.getTagValues(),
+                                        timeValues.subList(from, to)));
+      }
+    }
+    return result;
+  }
+
+  /**
+   * Merges two sets of time series of consecutive time ranges, keeping at most the given number of time values
+   * for each time series.
+   */
+  private static List<MetricTimeSeries> merge(Collection<MetricTimeSeries> first,
+                                              Collection<MetricTimeSeries> second, int limit) {
+    Map<SeriesKey, List<TimeValue>> merged = new LinkedHashMap<>();
+    for (Collection<MetricTimeSeries> series : Arrays.asList(first, second)) {
+      for (MetricTimeSeries timeSeries : series) {
+        List<TimeValue> timeValues = merged.computeIfAbsent(
+          new SeriesKey(timeSeries.getMetricName(), timeSeries.getTagValues()), k -> new ArrayList<>());
+        int remaining = limit - timeValues.size();
+        List<TimeValue> values = timeSeries.getTimeValues();
+        timeValues.addAll(remaining < values.size() ? values.subList(0, remaining) : values);
+      }
+    }
+
+    List<MetricTimeSeries> result = new ArrayList<>(merged.size());
+    for (Map.Entry<SeriesKey, List<TimeValue>> entry : merged.entrySet()) {
+      result.add(new MetricTimeSeries(entry.getKey().metricName, entry.getKey().tagValues,
+                                      Collections.unmodifiableList(entry.getValue())));
+    }
+    return result;
+  }
+
+  /**
+   * Cached time series of the closed time buckets in a time range.
+   */
+  private static final class CacheEntry {
+    private final long createTime;
+    private final long start;
+    private final long end;
+    private final List<MetricTimeSeries> series;
+
+    CacheEntry(long createTime, long start, long end, Collection<MetricTimeSeries> series) {
+      this.createTime = createTime;
+      this.start = start;
+      this.end = end;
+      this.series = Collections.unmodifiableList(new ArrayList<>(series));
+    }
+  }
+
+  /**
+   * Key of a query without its time range and limit.
+   */
+  private static final class QueryKey {
+    private final int resolution;
+    private final Map<String, AggregationFunction> metrics;
+    private final Map<String, String> sliceByTags;
+    private final List<String> groupByTags;
+
+    QueryKey(MetricDataQuery query) {
+      this.resolution = query.getResolution();
+      // copy, since the query may contain transformed views, and slice by tags may have null values
+      this.metrics = new HashMap<>(query.getMetrics());
+      this.sliceByTags = new HashMap<>(query.getSliceByTags());
+      this.groupByTags = new ArrayList<>(query.getGroupByTags());
+    }
+
+    @Override
+    public boolean equals(Object o) {
+      if (this == o) {
+        return true;
+      }
+      if (o == null || getClass() != o.getClass()) {
+        return false;
+      }
+      QueryKey that = (QueryKey) o;
+      return resolution == that.resolution
+        && metrics.equals(that.metrics)
+        && sliceByTags.equals(that.sliceByTags)
+        && groupByTags.equals(that.groupByTags);
+    }
+
+    @Override
+    public int hashCode() {
+      return Objects.hash(resolution, metrics, sliceByTags, groupByTags);
+    }
+  }
+
+  /**
+   * Identity of a time series in the query result.
+   */
+  private static final class SeriesKey {
+    private final String metricName;
+    private final Map<String, String> tagValues;
+
+    SeriesKey(String metricName, Map<String, String> tagValues) {
+      this.metricName = metricName;
+      this.tagValues = tagValues;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+      if (this == o) {
+        return true;
+      }
+      if (o == null || getClass() != o.getClass()) {
+        return false;
+      }
+      SeriesKey that = (SeriesKey) o;
+      return metricName.equals(that.metricName) && tagValues.equals(that.tagValues);
+    }
+
+    @Override
+    public int hashCode() {
+      return Objects.hash(metricName, tagValues);
+    }
+  }
+}
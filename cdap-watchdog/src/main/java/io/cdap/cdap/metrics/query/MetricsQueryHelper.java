@@ -19,6 +19,7 @@ package io.cdap.cdap.metrics.query;
 import com.google.common.annotations.VisibleForTesting;
 import com.google.common.base.Function;
 import com.google.common.base.Predicates;
+import com.google.common.base.Throwables;
 import com.google.common.collect.ImmutableBiMap;
 import com.google.common.collect.ImmutableList;
 import com.google.common.collect.ImmutableMap;
@@ -32,9 +33,13 @@ import io.cdap.cdap.api.dataset.lib.cube.Interpolator;
 import io.cdap.cdap.api.dataset.lib.cube.Interpolators;
 import io.cdap.cdap.api.dataset.lib.cube.TimeValue;
 import io.cdap.cdap.api.metrics.MetricDataQuery;
+import io.cdap.cdap.api.metrics.MetricDataQueryResult;
 import io.cdap.cdap.api.metrics.MetricSearchQuery;
 import io.cdap.cdap.api.metrics.MetricStore;
 import io.cdap.cdap.api.metrics.MetricTimeSeries;
+import io.cdap.cdap.api.metrics.MetricsCollectionService;
+import io.cdap.cdap.api.metrics.MetricsContext;
+import io.cdap.cdap.api.metrics.NoopMetricsContext;
 import io.cdap.cdap.api.metrics.TagValue;
 import io.cdap.cdap.common.conf.CConfiguration;
 import io.cdap.cdap.common.conf.Constants;
@@ -42,13 +47,22 @@ import io.cdap.cdap.common.utils.TimeMathParser;
 import io.cdap.cdap.proto.MetricQueryRequest;
 import io.cdap.cdap.proto.MetricQueryResult;
 import io.cdap.cdap.proto.MetricTagValue;
+import io.cdap.cdap.proto.id.NamespaceId;
+import org.apache.twill.common.Threads;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Collections;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
 import java.util.concurrent.TimeUnit;
 import javax.annotation.Nullable;
 
@@ -74,8 +88,16 @@ public class MetricsQueryHelper {
   private static final String PARAM_AUTO_RESOLUTION = "auto";
   private static final String ANY_TAG_VALUE = "*";
 
+  private static final Map<String, String> METRICS_TAGS = ImmutableMap.of(
+    Constants.Metrics.Tag.NAMESPACE, NamespaceId.SYSTEM.getNamespace(),
+    Constants.Metrics.Tag.COMPONENT, Constants.Service.METRICS);
+
   private final MetricStore metricStore;
   private final int minResolution;
+  private final ExecutorService batchExecutor;
+  @Nullable
+  private final MetricsQueryCache queryCache;
+  private MetricsContext metricsContext;
 
   private static final Map<String, String> tagNameToHuman;
   private static final Map<String, String> humanToTagName;
@@ -130,6 +152,37 @@ public class MetricsQueryHelper {
     this.metricStore = metricStore;
     int minimumResolution = cConf.getInt(Constants.Metrics.METRICS_MINIMUM_RESOLUTION_SECONDS);
     this.minResolution = minimumResolution < 60 ? minimumResolution : 60;
+
+    int batchThreads = cConf.getInt(Constants.Metrics.QUERY_BATCH_THREADS);
+    if (batchThreads > 1) {
+      // Use daemon threads that go away when idle, since there is no lifecycle for the helper.
+      ThreadPoolExecutor executor = new ThreadPoolExecutor(batchThreads, batchThreads, 60L, TimeUnit.SECONDS,
+                                                           new LinkedBlockingQueue<>(),
+                                                           Threads.createDaemonThreadFactory("metrics-query-%d"));
+      executor.allowCoreThreadTimeOut(true);
+      this.batchExecutor = executor;
+    } else {
+      this.batchExecutor = null;
+    }
+
+    int cacheMaxEntries = cConf.getInt(Constants.Metrics.QUERY_CACHE_MAX_ENTRIES);
+    this.queryCache = cacheMaxEntries > 0
+      ? new MetricsQueryCache(metricStore, cacheMaxEntries, cConf.getLong(Constants.Metrics.QUERY_CACHE_TTL_SECONDS),
+                              cConf.getLong(Constants.Metrics.QUERY_CACHE_CLOSED_DELAY_SECONDS))
+      : null;
+    this.metricsContext = new NoopMetricsContext();
+  }
+
+  /**
+   * Optional guice injection for the {@link MetricsCollectionService} to emit metrics about query latency and
+   * the query cache. It is optional because not every process that queries metrics has metrics collection.
+   */
+  @Inject(optional = true)
+  void setMetricsCollectionService(MetricsCollectionService metricsCollectionService) {
+    this.metricsContext = metricsCollectionService.getContext(METRICS_TAGS);
+    if (queryCache != null) {
+      queryCache.setMetricsContext(metricsContext);
+    }
   }
 
   public List<MetricTagValue> searchTags(List<String> tags) {
@@ -147,9 +200,35 @@ public class MetricsQueryHelper {
   public Map<String, MetricQueryResult> executeBatchQueries(Map<String, QueryRequestFormat> queries) throws Exception {
     LOG.trace("Received Queries {}", queries);
     Map<String, MetricQueryResult> queryFinalResponse = Maps.newHashMap();
+    if (batchExecutor == null || queries.size() <= 1) {
+      for (Map.Entry<String, QueryRequestFormat> query : queries.entrySet()) {
+        MetricQueryRequest queryRequest = getQueryRequestFromFormat(query.getValue());
+        queryFinalResponse.put(query.getKey(), executeQuery(queryRequest));
+      }
+      return queryFinalResponse;
+    }
+
+    // Parse all the queries first to fail fast on invalid request, then execute them in parallel
+    Map<String, MetricQueryRequest> queryRequests = new LinkedHashMap<>();
     for (Map.Entry<String, QueryRequestFormat> query : queries.entrySet()) {
-      MetricQueryRequest queryRequest = getQueryRequestFromFormat(query.getValue());
-      queryFinalResponse.put(query.getKey(), executeQuery(queryRequest));
+      queryRequests.put(query.getKey(), getQueryRequestFromFormat(query.getValue()));
+    }
+
+    Map<String, Future<MetricQueryResult>> futures = new LinkedHashMap<>();
+    for (Map.Entry<String, MetricQueryRequest> queryRequest : queryRequests.entrySet()) {
+      futures.put(queryRequest.getKey(), batchExecutor.submit(() -> executeQuery(queryRequest.getValue())));
+    }
+    try {
+      for (Map.Entry<String, Future<MetricQueryResult>> future : futures.entrySet()) {
+        queryFinalResponse.put(future.getKey(), future.getValue().get());
+      }
+    } catch (ExecutionException e) {
+      Throwables.propagateIfPossible(e.getCause(), Exception.class);
+      throw new RuntimeException(e.getCause());
+    } finally {
+      for (Future<MetricQueryResult> future : futures.values()) {
+        future.cancel(true);
+      }
     }
     return queryFinalResponse;
   }
@@ -172,7 +251,15 @@ public class MetricsQueryHelper {
     MetricSearchQuery searchQuery =
       new MetricSearchQuery(0, Integer.MAX_VALUE, -1, toTagValues(tagValues));
     Collection<String> metricNames = metricStore.findMetricNames(searchQuery);
-    return Lists.newArrayList(Iterables.filter(metricNames, Predicates.notNull()));
+    return Lists.newArrayList(PercentileMetrics.toPercentileNames(Iterables.filter(metricNames, Predicates.notNull())));
+  }
+
+  private Collection<String> findMetricNames(Map<String, String> tagValues) {
+    List<TagValue> tags = new ArrayList<>();
+    for (Map.Entry<String, String> tagValue : tagValues.entrySet()) {
+      tags.add(new TagValue(tagValue.getKey(), tagValue.getValue()));
+    }
+    return metricStore.findMetricNames(new MetricSearchQuery(0, Integer.MAX_VALUE, -1, tags));
   }
 
   private List<TagValue> toTagValues(List<MetricTagValue> tagValues) {
@@ -365,12 +452,51 @@ public class MetricsQueryHelper {
 
     Map<String, String> tagsSliceBy = humanToTagNames(transformTagMap(queryRequest.getTags()));
 
+    // percentiles are computed from the bucket counters of the distributions, which need to be looked up first
+    PercentileMetrics percentileMetrics = PercentileMetrics.parse(queryRequest.getMetrics());
+    Map<String, AggregationFunction> metrics = toMetrics(percentileMetrics.getMetrics());
+    // the count limits the query result, unless it has to be applied after computing the percentiles
+    int limit = timeRange.getCount();
+    if (!percentileMetrics.isEmpty()) {
+      // bucket counters can only be combined into percentiles if they have values of the same time buckets
+      if (timeRange.getInterpolate() != null) {
+        throw new IllegalArgumentException("Interpolation is not supported for percentile metrics");
+      }
+      if (aggregation == AggregationOption.SUM || aggregation == AggregationOption.LATEST) {
+        throw new IllegalArgumentException(String.format("Aggregation %s is not supported for percentile metrics",
+                                                         aggregation));
+      }
+      metrics.putAll(toMetrics(percentileMetrics.getBucketMetrics(findMetricNames(tagsSliceBy))));
+      limit = Integer.MAX_VALUE;
+    }
+
     MetricDataQuery query = new MetricDataQuery(timeRange.getStart(), timeRange.getEnd(),
                                                 timeRange.getResolutionInSeconds(),
-                                                timeRange.getCount(), toMetrics(queryRequest.getMetrics()),
+                                                limit, metrics,
                                                 tagsSliceBy, transformGroupByTags(queryRequest.getGroupBy()),
                                                 aggregation, timeRange.getInterpolate());
-    Collection<MetricTimeSeries> queryResult = metricStore.query(query);
+    long startTime = System.nanoTime();
+    Collection<MetricTimeSeries> queryResult;
+    boolean truncated = false;
+    if (metrics.isEmpty()) {
+      // none of the requested distributions has any value
+      queryResult = Collections.emptyList();
+    } else {
+      MetricDataQueryResult result = queryCache == null ? metricStore.execute(query) : queryCache.execute(query);
+      queryResult = result.getTimeSeries();
+      truncated = result.isTruncated();
+    }
+    if (truncated) {
+      metricsContext.increment("metrics.query.truncated.count", 1);
+    }
+    if (!percentileMetrics.isEmpty()) {
+      queryResult = percentileMetrics.compute(queryResult, timeRange.getCount());
+    }
+    long latencyMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startTime);
+    metricsContext.increment("metrics.query.count", 1);
+    metricsContext.increment("metrics.query.time.ms", latencyMillis);
+    metricsContext.distribution("metrics.query.latency.ms", latencyMillis);
+    LOG.trace("Executed query {} in {} ms", query, latencyMillis);
 
     long endTime = timeRange.getEnd();
     if (timeRange.getResolutionInSeconds() == Integer.MAX_VALUE && endTime == 0) {
@@ -378,7 +504,7 @@ public class MetricsQueryHelper {
       endTime = TimeUnit.MILLISECONDS.toSeconds(System.currentTimeMillis());
     }
 
-    return decorate(queryResult, timeRange.getStart(), endTime, timeRange.getResolutionInSeconds());
+    return decorate(queryResult, timeRange.getStart(), endTime, timeRange.getResolutionInSeconds(), truncated);
   }
 
   private Map<String, String> transformTagMap(Map<String, String> tags) {
@@ -433,7 +559,7 @@ public class MetricsQueryHelper {
   }
 
   private MetricQueryResult decorate(Collection<MetricTimeSeries> series, long startTs, long endTs,
-                                     int resolution) {
+                                     int resolution, boolean truncated) {
     MetricQueryResult.TimeSeries[] serieses = new MetricQueryResult.TimeSeries[series.size()];
     int i = 0;
     for (MetricTimeSeries timeSeries : series) {
@@ -441,7 +567,7 @@ public class MetricsQueryHelper {
       serieses[i++] = new MetricQueryResult.TimeSeries(timeSeries.getMetricName(),
                                                        tagNamesToHuman(timeSeries.getTagValues()), timeValues);
     }
-    return new MetricQueryResult(startTs, endTs, serieses, resolution);
+    return new MetricQueryResult(startTs, endTs, serieses, resolution, truncated);
   }
 
   private MetricQueryResult.TimeValue[] decorate(List<TimeValue> points) {
@@ -0,0 +1,183 @@
+/*
+ * Copyright © 2020 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+
+package io.cdap.cdap.metrics.query;
+
+import io.cdap.cdap.api.dataset.lib.cube.TimeValue;
+import io.cdap.cdap.api.metrics.DistributionBuckets;
+import io.cdap.cdap.api.metrics.MetricTimeSeries;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import javax.annotation.Nullable;
+
+/**
+ * Percentile queries of distribution metrics. A percentile is requested with the metric name
+ * {@code <distribution name>:p<percentile>}, e.g. {@code system.request.latency:p99}, and is computed from the
+ * bucket counters of the distribution, see {@link DistributionBuckets}.
+ */
+final class PercentileMetrics {
+
+  static final String PERCENTILE_SEPARATOR = ":p";
+  static final List<String> DEFAULT_PERCENTILES = Collections.unmodifiableList(
+    Arrays.asList("50", "95", "99"));
+
+  private final List<String> metrics;
+  // distribution name -> (requested metric name -> percentile)
+  private final Map<String, Map<String, Double>> percentiles;
+
+  private PercentileMetrics(List<String> metrics, Map<String, Map<String, Double>> percentiles) {
+    this.metrics = metrics;
+    this.percentiles = percentiles;
+  }
+
+  /**
+   * Separates percentile metrics from the other metrics in the given list of requested metric names.
+   */
+  static PercentileMetrics parse(List<String> requestedMetrics) {
+    List<String> metrics = new ArrayList<>();
+    Map<String, Map<String, Double>> percentiles = new LinkedHashMap<>();
+    for (String metric : requestedMetrics) {
+      int idx = metric.lastIndexOf(PERCENTILE_SEPARATOR);
+      Double percentile = idx <= 0 ? null : parsePercentile(metric.substring(idx + PERCENTILE_SEPARATOR.length()));
+      if (percentile == null) {
+        metrics.add(metric);
+      } else {
+        percentiles.computeIfAbsent(metric.substring(0, idx), k -> new LinkedHashMap<>()).put(metric, percentile);
+      }
+    }
+    return new PercentileMetrics(metrics, percentiles);
+  }
+
+  /**
+   * Replaces the names of distribution bucket counters in the given metric names with the default percentile
+   * metric names of the distributions.
+   */
+  static Collection<String> toPercentileNames(Iterable<String> metricNames) {
+    Set<String> result = new LinkedHashSet<>();
+    for (String metricName : metricNames) {
+      String distribution = DistributionBuckets.getDistributionName(metricName);
+      if (distribution == null) {
+        result.add(metricName);
+        continue;
+      }
+      for (String percentile : DEFAULT_PERCENTILES) {
+        result.add(distribution + PERCENTILE_SEPARATOR + percentile);
+      }
+    }
+    return result;
+  }
+
+  /**
+   * Returns {@code true} if there is no percentile metric requested.
+   */
+  boolean isEmpty() {
+    return percentiles.isEmpty();
+  }
+
+  /**
+   * Returns the requested metrics that are not percentile metrics.
+   */
+  List<String> getMetrics() {
+    return metrics;
+  }
+
+  /**
+   * Returns the names of the bucket counters among the given metric names that are needed to compute the
+   * requested percentiles.
+   */
+  List<String> getBucketMetrics(Collection<String> metricNames) {
+    List<String> result = new ArrayList<>();
+    for (String metricName : metricNames) {
+      String distribution = DistributionBuckets.getDistributionName(metricName);
+      if (distribution != null && percentiles.containsKey(distribution)) {
+        result.add(metricName);
+      }
+    }
+    return result;
+  }
+
+  /**
+   * Computes the requested percentiles from the bucket counter time series in the given query result.
+   *
+   * @param series the query result, which must have all the time values of the bucket counters
+   * @param limit the maximum number of time values to keep in each resulting time series
+   * @return the time series of the requested metrics that are not percentile metrics, followed by the time series
+   *         of the requested percentiles
+   */
+  Collection<MetricTimeSeries> compute(Collection<MetricTimeSeries> series, int limit) {
+    List<MetricTimeSeries> result = new ArrayList<>();
+    // distribution name -> (tags -> (timestamp -> bucket counts))
+    Map<String, Map<Map<String, String>, TreeMap<Long, long[]>>> distributions = new LinkedHashMap<>();
+    for (MetricTimeSeries timeSeries : series) {
+      String metricName = timeSeries.getMetricName();
+      String distribution = DistributionBuckets.getDistributionName(metricName);
+      if (distribution == null || !percentiles.containsKey(distribution)) {
+        if (metrics.contains(metricName)) {
+          List<TimeValue> timeValues = timeSeries.getTimeValues();
+          result.add(timeValues.size() <= limit ? timeSeries
+                       : new MetricTimeSeries(metricName, timeSeries.getTagValues(), timeValues.subList(0, limit)));
+        }
+        continue;
+      }
+      int bucket = DistributionBuckets.getBucketIndex(metricName);
+      TreeMap<Long, long[]> counts = distributions
+        .computeIfAbsent(distribution, k -> new LinkedHashMap<>())
+        .computeIfAbsent(timeSeries.getTagValues(), k -> new TreeMap<>());
+      for (TimeValue timeValue : timeSeries.getTimeValues()) {
+        counts.computeIfAbsent(timeValue.getTimestamp(),
+                               k -> new long[DistributionBuckets.NUM_BUCKETS])[bucket] += timeValue.getValue();
+      }
+    }
+
+    for (Map.Entry<String, Map<Map<String, String>, TreeMap<Long, long[]>>> entry : distributions.entrySet()) {
+      for (Map.Entry<String, Double> percentile : percentiles.get(entry.getKey()).entrySet()) {
+        for (Map.Entry<Map<String, String>, TreeMap<Long, long[]>> tagsEntry : entry.getValue().entrySet()) {
+          List<TimeValue> timeValues = new ArrayList<>(Math.min(limit, tagsEntry.getValue().size()));
+          for (Map.Entry<Long, long[]> counts : tagsEntry.getValue().entrySet()) {
+            if (timeValues.size() >= limit) {
+              break;
+            }
+            timeValues.add(new TimeValue(counts.getKey(),
+                                         DistributionBuckets.getPercentile(counts.getValue(), percentile.getValue())));
+          }
+          result.add(new MetricTimeSeries(percentile.getKey(), new HashMap<>(tagsEntry.getKey()), timeValues));
+        }
+      }
+    }
+    return result;
+  }
+
+  @Nullable
+  private static Double parsePercentile(String str) {
+    try {
+      double percentile = Double.parseDouble(str);
+      return percentile > 0 && percentile <= 100 ? percentile : null;
+    } catch (NumberFormatException e) {
+      return null;
+    }
+  }
+}
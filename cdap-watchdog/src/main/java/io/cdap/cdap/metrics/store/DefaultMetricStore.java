@@ -24,7 +24,6 @@ import com.google.common.collect.ImmutableMap;
 import com.google.common.collect.Lists;
 import com.google.common.collect.Maps;
 import com.google.inject.Inject;
-import io.cdap.cdap.api.dataset.lib.cube.Cube;
 import io.cdap.cdap.api.dataset.lib.cube.CubeDeleteQuery;
 import io.cdap.cdap.api.dataset.lib.cube.CubeExploreQuery;
 import io.cdap.cdap.api.dataset.lib.cube.CubeFact;
@@ -34,6 +33,7 @@ import io.cdap.cdap.api.dataset.lib.cube.MeasureType;
 import io.cdap.cdap.api.dataset.lib.cube.Measurement;
 import io.cdap.cdap.api.dataset.lib.cube.TimeSeries;
 import io.cdap.cdap.api.metrics.MetricDataQuery;
+import io.cdap.cdap.api.metrics.MetricDataQueryResult;
 import io.cdap.cdap.api.metrics.MetricDeleteQuery;
 import io.cdap.cdap.api.metrics.MetricSearchQuery;
 import io.cdap.cdap.api.metrics.MetricStore;
@@ -49,6 +49,7 @@ import io.cdap.cdap.common.conf.CConfiguration;
 import io.cdap.cdap.common.conf.Constants;
 import io.cdap.cdap.data2.dataset2.lib.cube.Aggregation;
 import io.cdap.cdap.data2.dataset2.lib.cube.AggregationAlias;
+import io.cdap.cdap.data2.dataset2.lib.cube.CubeQueryResult;
 import io.cdap.cdap.data2.dataset2.lib.cube.DefaultAggregation;
 import io.cdap.cdap.data2.dataset2.lib.cube.DefaultCube;
 import io.cdap.cdap.data2.dataset2.lib.cube.FactTableSupplier;
@@ -90,7 +91,7 @@ public class DefaultMetricStore implements MetricStore {
                     new AggregationAlias(ImmutableMap.of(Constants.Metrics.Tag.RUN_ID,
                                                          Constants.Metrics.Tag.WORKFLOW_RUN_ID)));
 
-  private final Supplier<Cube> cube;
+  private final Supplier<DefaultCube> cube;
   private final Supplier<MetricsConsumerMetaTable> metaTableSupplier;
   private MetricsContext metricsContext;
   private final List<TopicId> metricsTopics;
@@ -213,15 +214,18 @@ public class DefaultMetricStore implements MetricStore {
       builder.put(minimumResolution, cConf.getLong(Constants.Metrics.MINIMUM_RESOLUTION_RETENTION_SECONDS));
     }
     this.resolutionTTLMap = builder.build();
+    int maxRecordsToScan = cConf.getInt(Constants.Metrics.QUERY_MAX_RECORDS_TO_SCAN,
+                                        DefaultCube.DEFAULT_MAX_RECORDS_TO_SCAN);
     FactTableSupplier factTableSupplier = (resolution, ignoredRollTime) -> {
       // roll time will be taken from configuration
       // TODO: remove roll time from the supplier api, https://issues.cask.co/browse/CDAP-14730
       return dsFactory.getOrCreateFactTable(resolution);
     };
-    this.cube = Suppliers.memoize(new Supplier<Cube>() {
+    this.cube = Suppliers.memoize(new Supplier<DefaultCube>() {
       @Override
-      public Cube get() {
-        DefaultCube cube = new DefaultCube(resolutions, factTableSupplier, AGGREGATIONS, AGGREGATIONS_ALIAS_DIMENSIONS);
+      public DefaultCube get() {
+        DefaultCube cube = new DefaultCube(resolutions, factTableSupplier, AGGREGATIONS, AGGREGATIONS_ALIAS_DIMENSIONS,
+                                           maxRecordsToScan);
         cube.setMetricsCollector(metricsContext);
         return cube;
       }
@@ -269,14 +273,19 @@ public class DefaultMetricStore implements MetricStore {
 
   @Override
   public Collection<MetricTimeSeries> query(MetricDataQuery query) {
-    Collection<TimeSeries> cubeResult = cube.get().query(buildCubeQuery(query));
+    return execute(query).getTimeSeries();
+  }
+
+  @Override
+  public MetricDataQueryResult execute(MetricDataQuery query) {
+    CubeQueryResult cubeResult = cube.get().execute(buildCubeQuery(query));
     List<MetricTimeSeries> result = Lists.newArrayList();
-    for (TimeSeries timeSeries : cubeResult) {
+    for (TimeSeries timeSeries : cubeResult.getTimeSeries()) {
       result.add(new MetricTimeSeries(timeSeries.getMeasureName(),
                                       timeSeries.getDimensionValues(),
                                       timeSeries.getTimeValues()));
     }
-    return result;
+    return new MetricDataQueryResult(result, cubeResult.isTruncated());
   }
 
   private CubeQuery buildCubeQuery(MetricDataQuery query) {
@@ -22,6 +22,7 @@ import ch.qos.logback.classic.spi.LoggingEvent;
 import com.google.inject.AbstractModule;
 import com.google.inject.Guice;
 import com.google.inject.Injector;
+import io.cdap.cdap.api.dataset.lib.CloseableIterator;
 import io.cdap.cdap.api.metrics.MetricsCollectionService;
 import io.cdap.cdap.common.conf.CConfiguration;
 import io.cdap.cdap.common.conf.Constants;
@@ -34,8 +35,14 @@ import io.cdap.cdap.data.runtime.DataSetsModules;
 import io.cdap.cdap.data.runtime.StorageModule;
 import io.cdap.cdap.data.runtime.SystemDatasetRuntimeModule;
 import io.cdap.cdap.logging.LoggingConfiguration;
+import io.cdap.cdap.logging.filter.Filter;
+import io.cdap.cdap.logging.filter.LogLevelExpression;
 import io.cdap.cdap.logging.guice.LocalLogAppenderModule;
 import io.cdap.cdap.logging.meta.FileMetaDataWriter;
+import io.cdap.cdap.logging.read.LogEvent;
+import io.cdap.cdap.logging.write.LogFileIndex;
+import io.cdap.cdap.logging.write.LogLocation;
+import io.cdap.cdap.proto.id.NamespaceId;
 import io.cdap.cdap.security.auth.context.AuthenticationContextModules;
 import io.cdap.cdap.security.authorization.AuthorizationEnforcementModule;
 import io.cdap.cdap.security.authorization.AuthorizationTestModule;
@@ -51,6 +58,8 @@ import org.apache.hadoop.conf.Configuration;
 import org.apache.hadoop.hbase.HBaseConfiguration;
 import org.apache.tephra.TransactionManager;
 import org.apache.tephra.runtime.TransactionModules;
+import org.apache.twill.filesystem.LocalLocationFactory;
+import org.apache.twill.filesystem.Location;
 import org.apache.twill.filesystem.LocationFactory;
 import org.junit.AfterClass;
 import org.junit.Assert;
@@ -60,6 +69,11 @@ import org.junit.Test;
 import org.junit.rules.TemporaryFolder;
 import org.slf4j.LoggerFactory;
 
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Random;
 import java.util.concurrent.TimeUnit;
 
 public class LogFileManagerTest {
@@ -139,6 +153,98 @@ public class LogFileManagerTest {
     Assert.assertNotEquals(outputStream.getLocation(), newLogOutStream.getLocation());
   }
 
+  @Test
+  public void testLogFileIndex() throws Exception {
+    LocationFactory locationFactory = new LocalLocationFactory(TMP_FOLDER.newFolder());
+    Location location = locationFactory.create("index-test.avro");
+    long baseTime = System.currentTimeMillis();
+    Logger logger = (Logger) LoggerFactory.getLogger(Logger.ROOT_LOGGER_NAME);
+
+    // use a small sync interval to have many blocks in the file
+    try (LogFileOutputStream outputStream = new LogFileOutputStream(location, "", 1024, baseTime, () -> { })) {
+      for (int i = 0; i < 1000; i++) {
+        LoggingEvent event = getLoggingEvent("io.cdap.Test", logger, i % 100 == 0 ? Level.ERROR : Level.INFO,
+                                             "test message " + i);
+        event.setTimeStamp(baseTime + i);
+        outputStream.append(event);
+      }
+    }
+
+    LogFileIndex index = LogFileIndex.read(location);
+    Assert.assertNotNull(index);
+    Assert.assertTrue(index.size() > 10);
+    Assert.assertEquals(baseTime, index.getMinTime(0));
+    Assert.assertEquals(baseTime + 999, index.getMaxTime(index.size() - 1));
+
+    LogLocation logLocation = new LogLocation(LogLocation.VERSION_1, baseTime, baseTime, location,
+                                              NamespaceId.DEFAULT.getNamespace(), null);
+    List<Filter> filters = Arrays.asList(Filter.EMPTY_FILTER, new LogLevelExpression("ERROR"));
+    List<List<String>> indexedResults = readLogs(logLocation, filters, baseTime);
+
+    // reading without the index must give the same result
+    Assert.assertTrue(LogFileIndex.getIndexLocation(location).delete());
+    Assert.assertNull(LogFileIndex.read(location));
+    Assert.assertEquals(readLogs(logLocation, filters, baseTime), indexedResults);
+
+    // verify some of the results
+    Assert.assertEquals(Arrays.asList("test message 500", "test message 600"), indexedResults.get(4));
+    Assert.assertEquals(Arrays.asList("test message 500", "test message 600", "test message 700"),
+                        indexedResults.get(6));
+    Assert.assertEquals(Arrays.asList("test message 797", "test message 798", "test message 799"),
+                        indexedResults.get(2));
+  }
+
+  @Test
+  public void testFindFirstBlock() {
+    // Events can be appended out of timestamp order, hence the max times of the blocks are not sorted
+    Random random = new Random();
+    LogFileIndex.Builder builder = new LogFileIndex.Builder();
+    builder.sync(0L);
+    for (int block = 0; block < 100; block++) {
+      for (int i = 0; i < 5; i++) {
+        builder.addEvent(block * 10 + random.nextInt(30) - 10, Level.INFO);
+      }
+      builder.sync(block + 1);
+    }
+    LogFileIndex index = builder.build(100L);
+    Assert.assertEquals(100, index.size());
+
+    for (long time = -20; time < 1050; time++) {
+      int expected = 0;
+      while (expected < index.size() && index.getMaxTime(expected) < time) {
+        expected++;
+      }
+      Assert.assertEquals(expected, index.findFirstBlock(time));
+    }
+  }
+
+  /**
+   * Reads logs from the given {@link LogLocation} with different filters and time ranges.
+   */
+  private List<List<String>> readLogs(LogLocation logLocation, List<Filter> filters, long baseTime) throws Exception {
+    List<List<String>> results = new ArrayList<>();
+    for (Filter filter : filters) {
+      // readLog with a from and to time
+      try (CloseableIterator<LogEvent> iterator = logLocation.readLog(filter, baseTime + 450, baseTime + 650, 1000)) {
+        results.add(toMessages(iterator));
+      }
+      // readLog with max events
+      try (CloseableIterator<LogEvent> iterator = logLocation.readLog(filter, baseTime + 950, Long.MAX_VALUE, 10)) {
+        results.add(toMessages(iterator));
+      }
+      // readLogPrev
+      results.add(toMessages(logLocation.readLogPrev(filter, baseTime + 799, 3).iterator()));
+      results.add(toMessages(logLocation.readLogPrev(filter, Long.MAX_VALUE, 2000).iterator()));
+    }
+    return results;
+  }
+
+  private List<String> toMessages(Iterator<LogEvent> iterator) {
+    List<String> messages = new ArrayList<>();
+    iterator.forEachRemaining(event -> messages.add(event.getLoggingEvent().getFormattedMessage()));
+    return messages;
+  }
+
   private LoggingEvent getLoggingEvent(String fqcn, Logger logger, Level level, String message) {
     return new LoggingEvent(fqcn, logger, level, message, null, null);
   }
@@ -0,0 +1,203 @@
+/*
+ * Copyright © 2020 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package io.cdap.cdap.logging.read;
+
+import ch.qos.logback.classic.Level;
+import ch.qos.logback.classic.Logger;
+import ch.qos.logback.classic.spi.LoggingEvent;
+import io.cdap.cdap.api.dataset.lib.AbstractCloseableIterator;
+import io.cdap.cdap.api.dataset.lib.CloseableIterator;
+import io.cdap.cdap.common.utils.Tasks;
+import io.cdap.cdap.logging.write.LogLocation;
+import io.cdap.cdap.proto.id.NamespaceId;
+import org.junit.AfterClass;
+import org.junit.Assert;
+import org.junit.BeforeClass;
+import org.junit.Test;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+
+/**
+ * Unit test for {@link PrefetchingLogEventIterator}.
+ */
+public class PrefetchingLogEventIteratorTest {
+
+  private static ExecutorService executor;
+
+  @BeforeClass
+  public static void init() {
+    executor = Executors.newCachedThreadPool();
+  }
+
+  @AfterClass
+  public static void finish() {
+    executor.shutdownNow();
+  }
+
+  @Test
+  public void testSequentialFiles() {
+    // Files with non-overlapping time ranges
+    Map<LogLocation, List<Long>> files = new HashMap<>();
+    List<LogLocation> locations = new ArrayList<>();
+    List<Long> expected = new ArrayList<>();
+    for (int i = 0; i < 10; i++) {
+      List<Long> timestamps = new ArrayList<>();
+      for (int j = 0; j < 50; j++) {
+        timestamps.add(i * 100L + j);
+      }
+      LogLocation location = createLogLocation(i * 100L);
+      files.put(location, timestamps);
+      locations.add(location);
+      expected.addAll(timestamps);
+    }
+
+    AtomicInteger openCount = new AtomicInteger();
+    try (CloseableIterator<LogEvent> iterator =
+           new PrefetchingLogEventIterator(locations, createReader(files, openCount, new AtomicInteger()),
+                                           executor, 3, 4)) {
+      Assert.assertEquals(expected, getTimestamps(iterator));
+    }
+    Assert.assertEquals(10, openCount.get());
+  }
+
+  @Test
+  public void testOverlappingFiles() {
+    // Files with overlapping time ranges should be merged in timestamp order
+    LogLocation location1 = createLogLocation(0L);
+    LogLocation location2 = createLogLocation(5L);
+    LogLocation location3 = createLogLocation(100L);
+    Map<LogLocation, List<Long>> files = new HashMap<>();
+    files.put(location1, Arrays.asList(0L, 3L, 6L, 9L, 12L));
+    files.put(location2, Arrays.asList(5L, 6L, 7L, 8L, 20L));
+    files.put(location3, Arrays.asList(100L, 101L));
+
+    try (CloseableIterator<LogEvent> iterator =
+           new PrefetchingLogEventIterator(Arrays.asList(location1, location2, location3),
+                                           createReader(files, new AtomicInteger(), new AtomicInteger()),
+                                           executor, 2, 1)) {
+      Assert.assertEquals(Arrays.asList(0L, 3L, 5L, 6L, 6L, 7L, 8L, 9L, 12L, 20L, 100L, 101L),
+                          getTimestamps(iterator));
+    }
+  }
+
+  @Test
+  public void testClose() throws Exception {
+    Map<LogLocation, List<Long>> files = new HashMap<>();
+    List<LogLocation> locations = new ArrayList<>();
+    for (int i = 0; i < 5; i++) {
+      List<Long> timestamps = new ArrayList<>();
+      for (int j = 0; j < 1000; j++) {
+        timestamps.add(i * 1000L + j);
+      }
+      LogLocation location = createLogLocation(i * 1000L);
+      files.put(location, timestamps);
+      locations.add(location);
+    }
+
+    AtomicInteger openCount = new AtomicInteger();
+    AtomicInteger closeCount = new AtomicInteger();
+    try (CloseableIterator<LogEvent> iterator =
+           new PrefetchingLogEventIterator(locations, createReader(files, openCount, closeCount),
+                                           executor, 2, 10)) {
+      for (int i = 0; i < 10; i++) {
+        Assert.assertEquals(i, iterator.next().getLoggingEvent().getTimeStamp());
+      }
+    }
+
+    // Only the prefetched files should be opened, and they should be closed after the iterator is closed.
+    // The reading threads may still be opening the files after the iterator is closed.
+    Tasks.waitFor(2, openCount::get, 10, TimeUnit.SECONDS);
+    Tasks.waitFor(2, closeCount::get, 10, TimeUnit.SECONDS);
+    Assert.assertEquals(2, openCount.get());
+  }
+
+  @Test
+  public void testFailure() {
+    LogLocation location1 = createLogLocation(0L);
+    LogLocation location2 = createLogLocation(10L);
+    Map<LogLocation, List<Long>> files = Collections.singletonMap(location1, Arrays.asList(0L, 1L, 2L));
+
+    // The second file fails to read
+    Function<LogLocation, CloseableIterator<LogEvent>> reader = location -> {
+      if (location == location2) {
+        throw new IllegalStateException("Failed to read");
+      }
+      return createReader(files, new AtomicInteger(), new AtomicInteger()).apply(location);
+    };
+
+    List<Long> timestamps = new ArrayList<>();
+    try (CloseableIterator<LogEvent> iterator =
+           new PrefetchingLogEventIterator(Arrays.asList(location1, location2), reader, executor, 2, 10)) {
+      while (iterator.hasNext()) {
+        timestamps.add(iterator.next().getLoggingEvent().getTimeStamp());
+      }
+      Assert.fail("Expected failure");
+    } catch (IllegalStateException e) {
+      // expected
+    }
+    Assert.assertEquals(Arrays.asList(0L, 1L, 2L), timestamps);
+  }
+
+  private LogLocation createLogLocation(long eventTimeMs) {
+    return new LogLocation(LogLocation.VERSION_1, eventTimeMs, eventTimeMs, null,
+                           NamespaceId.DEFAULT.getNamespace(), null);
+  }
+
+  private Function<LogLocation, CloseableIterator<LogEvent>> createReader(Map<LogLocation, List<Long>> files,
+                                                                          AtomicInteger openCount,
+                                                                          AtomicInteger closeCount) {
+    Logger logger = (Logger) LoggerFactory.getLogger(Logger.ROOT_LOGGER_NAME);
+    return location -> {
+      openCount.incrementAndGet();
+      Iterator<Long> timestamps = files.get(location).iterator();
+      return new AbstractCloseableIterator<LogEvent>() {
+        @Override
+        protected LogEvent computeNext() {
+          if (!timestamps.hasNext()) {
+            return endOfData();
+          }
+          LoggingEvent event = new LoggingEvent(getClass().getName(), logger, Level.INFO, "message", null, null);
+          event.setTimeStamp(timestamps.next());
+          return new LogEvent(event, new LogOffset(LogOffset.INVALID_KAFKA_OFFSET, event.getTimeStamp()));
+        }
+
+        @Override
+        public void close() {
+          closeCount.incrementAndGet();
+        }
+      };
+    };
+  }
+
+  private List<Long> getTimestamps(Iterator<LogEvent> iterator) {
+    List<Long> timestamps = new ArrayList<>();
+    iterator.forEachRemaining(event -> timestamps.add(event.getLoggingEvent().getTimeStamp()));
+    return timestamps;
+  }
+}
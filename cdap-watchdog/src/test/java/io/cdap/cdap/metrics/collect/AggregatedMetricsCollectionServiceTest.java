@@ -17,6 +17,9 @@ package io.cdap.cdap.metrics.collect;
 
 import com.google.common.collect.ImmutableMap;
 import com.google.common.collect.Iterators;
+import io.cdap.cdap.api.metrics.Counter;
+import io.cdap.cdap.api.metrics.DistributionBuckets;
+import io.cdap.cdap.api.metrics.Gauge;
 import io.cdap.cdap.api.metrics.MetricValue;
 import io.cdap.cdap.api.metrics.MetricValues;
 import io.cdap.cdap.api.metrics.MetricsContext;
@@ -26,11 +29,16 @@ import org.junit.Assert;
 import org.junit.Test;
 import org.junit.experimental.categories.Category;
 
+import java.util.ArrayList;
 import java.util.Collection;
 import java.util.HashMap;
 import java.util.Iterator;
+import java.util.List;
 import java.util.Map;
 import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 import java.util.concurrent.LinkedBlockingQueue;
 import java.util.concurrent.TimeUnit;
 
@@ -139,6 +147,123 @@ public class AggregatedMetricsCollectionServiceTest {
     }
   }
 
+  @Category(SlowTests.class)
+  @Test
+  public void testHandles() throws Exception {
+    final BlockingQueue<MetricValues> published = new LinkedBlockingQueue<>();
+
+    AggregatedMetricsCollectionService service = new AggregatedMetricsCollectionService(1000L) {
+      @Override
+      protected void publish(Iterator<MetricValues> metrics) {
+        Iterators.addAll(published, metrics);
+      }
+    };
+
+    service.startAndWait();
+    try {
+      MetricsContext context = service.getContext(ImmutableMap.of(Constants.Metrics.Tag.NAMESPACE, NAMESPACE));
+      Counter counter = context.counter(METRIC);
+
+      // increment the same counter concurrently, together with increments by name
+      int threads = 4;
+      int increments = 100000;
+      ExecutorService executor = Executors.newFixedThreadPool(threads);
+      try {
+        List<Future<?>> futures = new ArrayList<>();
+        for (int i = 0; i < threads; i++) {
+          futures.add(executor.submit(() -> {
+            for (int j = 0; j < increments; j++) {
+              counter.increment(1);
+            }
+          }));
+        }
+        context.increment(METRIC, 5);
+        for (Future<?> future : futures) {
+          future.get();
+        }
+      } finally {
+        executor.shutdownNow();
+      }
+      verifyCounterMetricsValue(published, ImmutableMap.of(1, ImmutableMap.of(METRIC, threads * increments + 5L)));
+
+      // gauge handle sets the value, and increments after that are added to it
+      Gauge gauge = context.gauge(GAUGE_METRIC);
+      gauge.set(10);
+      gauge.set(3);
+      context.increment(GAUGE_METRIC, 2);
+      verifyGaugeMetricsValue(published, ImmutableMap.of(1, 5L));
+    } finally {
+      service.stopAndWait();
+    }
+  }
+
+  @Test
+  public void testDistribution() throws Exception {
+    final BlockingQueue<MetricValues> published = new LinkedBlockingQueue<>();
+
+    AggregatedMetricsCollectionService service = new AggregatedMetricsCollectionService(1000L) {
+      @Override
+      protected void publish(Iterator<MetricValues> metrics) {
+        Iterators.addAll(published, metrics);
+      }
+    };
+
+    service.startAndWait();
+    try {
+      MetricsContext context = service.getContext(ImmutableMap.of(Constants.Metrics.Tag.NAMESPACE, NAMESPACE));
+
+      // record values 1 to 10000 concurrently
+      int threads = 4;
+      int values = 10000;
+      ExecutorService executor = Executors.newFixedThreadPool(threads);
+      try {
+        List<Future<?>> futures = new ArrayList<>();
+        for (int i = 0; i < threads; i++) {
+          int start = i + 1;
+          futures.add(executor.submit(() -> {
+            for (int value = start; value <= values; value += threads) {
+              context.distribution(METRIC, value);
+            }
+          }));
+        }
+        for (Future<?> future : futures) {
+          future.get();
+        }
+      } finally {
+        executor.shutdownNow();
+      }
+
+      // the distribution is published as bucket counters
+      long[] counts = new long[DistributionBuckets.NUM_BUCKETS];
+      long total = 0;
+      long timeout = System.currentTimeMillis() + TimeUnit.SECONDS.toMillis(10);
+      while (timeout > System.currentTimeMillis() && total < values) {
+        MetricValues metricValues = published.poll(100, TimeUnit.MILLISECONDS);
+        if (metricValues == null) {
+          continue;
+        }
+        for (MetricValue metricValue : metricValues.getMetrics()) {
+          int bucket = DistributionBuckets.getBucketIndex(metricValue.getName());
+          if (bucket >= 0) {
+            Assert.assertEquals(METRIC, DistributionBuckets.getDistributionName(metricValue.getName()));
+            counts[bucket] += metricValue.getValue();
+            total += metricValue.getValue();
+          }
+        }
+      }
+      Assert.assertEquals(values, total);
+
+      for (double percentile : new double[] { 50, 95, 99 }) {
+        double expected = values * percentile / 100;
+        long actual = DistributionBuckets.getPercentile(counts, percentile);
+        Assert.assertTrue("Percentile " + percentile + " is " + actual,
+                          Math.abs(actual - expected) <= expected / DistributionBuckets.SUB_BUCKETS);
+      }
+    } finally {
+      service.stopAndWait();
+    }
+  }
+
   private void verifyCounterMetricsValue(BlockingQueue<MetricValues> published,
                                          Map<Integer, Map<String, Long>> expected) throws InterruptedException {
     Map<Integer, Map<String, Long>> received = new HashMap<>();
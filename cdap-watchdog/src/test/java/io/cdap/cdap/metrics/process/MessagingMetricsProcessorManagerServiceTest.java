@@ -122,6 +122,12 @@ public class MessagingMetricsProcessorManagerServiceTest extends MetricsProcesso
       // topic metas are not yet persisted. Wait for all topic metas to be persisted
       Tasks.waitFor(true, metricStore::isMetricsProcessorDelayEmitted, 15, TimeUnit.SECONDS);
 
+      // every processed metric is an input of the pre-aggregation, which emits at most as many metrics
+      long coalesceInput = metricStore.getSystemMetric("metrics.processor.0.coalesce.input");
+      long coalesceOutput = metricStore.getSystemMetric("metrics.processor.0.coalesce.output");
+      Assert.assertEquals(101L, coalesceInput);
+      Assert.assertTrue(coalesceOutput > 0 && coalesceOutput <= coalesceInput);
+
       // Clear metricStore and expected results for the next iteration
       metricStore.deleteAll();
       expected.clear();
@@ -185,6 +191,10 @@ public class MessagingMetricsProcessorManagerServiceTest extends MetricsProcesso
       }
     }
 
+    public long getSystemMetric(String name) {
+      return systemMetricsMap.getOrDefault(name, 0L);
+    }
+
     public long getMetricsProcessedByMetricsProcessor() {
       return systemMetricsMap.get("metrics.0.process.count");
     }
@@ -0,0 +1,90 @@
+/*
+ * Copyright © 2020 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package io.cdap.cdap.metrics.process;
+
+import com.google.common.collect.ImmutableMap;
+import io.cdap.cdap.api.metrics.MetricType;
+import io.cdap.cdap.api.metrics.MetricValue;
+import io.cdap.cdap.api.metrics.MetricValues;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Unit test for {@link MetricsPreAggregator}.
+ */
+public class MetricsPreAggregatorTest {
+
+  private static final Map<String, String> TAGS1 = ImmutableMap.of("ns", "ns1", "app", "app1");
+  private static final Map<String, String> TAGS2 = ImmutableMap.of("ns", "ns1", "app", "app2");
+
+  @Test
+  public void testCoalesce() {
+    MetricsPreAggregator aggregator = new MetricsPreAggregator(10);
+    Assert.assertTrue(aggregator.isEmpty());
+
+    // Counters with the same tags in the same bucket are summed, gauges keep the latest value
+    aggregator.add(new MetricValues(TAGS1, 101, Arrays.asList(new MetricValue("count", MetricType.COUNTER, 1),
+                                                              new MetricValue("gauge", MetricType.GAUGE, 5))));
+    aggregator.add(new MetricValues(TAGS1, 105, Arrays.asList(new MetricValue("count", MetricType.COUNTER, 2),
+                                                              new MetricValue("gauge", MetricType.GAUGE, 7))));
+    // A gauge with an older timestamp doesn't override the latest one
+    aggregator.add(new MetricValues(new HashMap<>(TAGS1), "gauge", 103, 3, MetricType.GAUGE));
+    // Different tags or a different bucket are not coalesced
+    aggregator.add(new MetricValues(TAGS2, "count", 109, 4, MetricType.COUNTER));
+    aggregator.add(new MetricValues(TAGS1, "count", 110, 8, MetricType.COUNTER));
+
+    Assert.assertFalse(aggregator.isEmpty());
+    Assert.assertEquals(5, aggregator.getMetricValuesCount());
+    Assert.assertEquals(7L, aggregator.getInputCount());
+    Assert.assertEquals(4, aggregator.getOutputCount());
+
+    List<MetricValues> result = aggregator.drain();
+    Assert.assertEquals(3, result.size());
+
+    Assert.assertEquals(TAGS1, result.get(0).getTags());
+    Assert.assertEquals(100L, result.get(0).getTimestamp());
+    Assert.assertEquals(ImmutableMap.of("count", 3L, "gauge", 7L), toMap(result.get(0)));
+
+    Assert.assertEquals(TAGS2, result.get(1).getTags());
+    Assert.assertEquals(100L, result.get(1).getTimestamp());
+    Assert.assertEquals(ImmutableMap.of("count", 4L), toMap(result.get(1)));
+
+    Assert.assertEquals(TAGS1, result.get(2).getTags());
+    Assert.assertEquals(110L, result.get(2).getTimestamp());
+    Assert.assertEquals(ImmutableMap.of("count", 8L), toMap(result.get(2)));
+
+    // Draining resets the aggregator
+    Assert.assertTrue(aggregator.isEmpty());
+    Assert.assertEquals(0, aggregator.getMetricValuesCount());
+    Assert.assertEquals(0L, aggregator.getInputCount());
+    Assert.assertEquals(0, aggregator.getOutputCount());
+    Assert.assertTrue(aggregator.drain().isEmpty());
+  }
+
+  private Map<String, Long> toMap(MetricValues metricValues) {
+    Map<String, Long> result = new HashMap<>();
+    for (MetricValue metricValue : metricValues.getMetrics()) {
+      result.put(metricValue.getName(), metricValue.getValue());
+    }
+    return result;
+  }
+}
@@ -0,0 +1,247 @@
+/*
+ * Copyright © 2020 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+
+package io.cdap.cdap.metrics.query;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+import io.cdap.cdap.api.dataset.lib.cube.AggregationFunction;
+import io.cdap.cdap.api.dataset.lib.cube.AggregationOption;
+import io.cdap.cdap.api.dataset.lib.cube.TimeValue;
+import io.cdap.cdap.api.metrics.MetricDataQuery;
+import io.cdap.cdap.api.metrics.MetricDataQueryResult;
+import io.cdap.cdap.api.metrics.MetricDeleteQuery;
+import io.cdap.cdap.api.metrics.MetricSearchQuery;
+import io.cdap.cdap.api.metrics.MetricStore;
+import io.cdap.cdap.api.metrics.MetricTimeSeries;
+import io.cdap.cdap.api.metrics.MetricValues;
+import io.cdap.cdap.api.metrics.MetricsContext;
+import io.cdap.cdap.api.metrics.MetricsProcessorStatus;
+import io.cdap.cdap.api.metrics.TagValue;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Unit tests for {@link MetricsQueryCache}.
+ */
+public class MetricsQueryCacheTest {
+
+  @Test
+  public void testClosedBuckets() {
+    MockMetricStore store = new MockMetricStore();
+    // closed delay of 10 seconds
+    MetricsQueryCache cache = new MetricsQueryCache(store, 10, 300, 10);
+
+    // Query [100, 200] at time 200, buckets up to 189 are closed
+    assertQuery(store, cache, query(100, 200, Integer.MAX_VALUE), 200);
+    Assert.assertEquals(ImmutableList.of(range(100, 189), range(190, 200)), store.getQueries());
+
+    // The same query again should only query the open tail
+    store.getQueries().clear();
+    assertQuery(store, cache, query(100, 200, Integer.MAX_VALUE), 200);
+    Assert.assertEquals(ImmutableList.of(range(190, 200)), store.getQueries());
+
+    // Moving the time range forward should only query the newly closed buckets and the open tail
+    store.getQueries().clear();
+    assertQuery(store, cache, query(105, 205, Integer.MAX_VALUE), 205);
+    Assert.assertEquals(ImmutableList.of(range(190, 194), range(195, 205)), store.getQueries());
+
+    // Query with limit
+    store.getQueries().clear();
+    assertQuery(store, cache, query(105, 205, 50), 205);
+    Assert.assertEquals(ImmutableList.of(range(195, 205)), store.getQueries());
+
+    // Query with an earlier start time than the cached range is a miss
+    store.getQueries().clear();
+    assertQuery(store, cache, query(50, 205, Integer.MAX_VALUE), 205);
+    Assert.assertEquals(ImmutableList.of(range(50, 194), range(195, 205)), store.getQueries());
+
+    // Query after the TTL expired is a miss
+    store.getQueries().clear();
+    assertQuery(store, cache, query(50, 205, Integer.MAX_VALUE), 600);
+    Assert.assertEquals(ImmutableList.of(range(50, 205)), store.getQueries());
+  }
+
+  @Test
+  public void testDifferentLimits() {
+    MockMetricStore store = new MockMetricStore();
+    MetricsQueryCache cache = new MetricsQueryCache(store, 10, 300, 10);
+
+    // A query with a small limit still caches the whole closed range
+    assertQuery(store, cache, query(100, 200, 5), 200);
+    Assert.assertEquals(ImmutableList.of(range(100, 189), range(190, 200)), store.getQueries());
+
+    // The same metric with a later start time and a larger limit is served from the cache
+    store.getQueries().clear();
+    assertQuery(store, cache, query(120, 200, 30), 200);
+    Assert.assertEquals(ImmutableList.of(range(190, 200)), store.getQueries());
+
+    // Without limit and with a later end time
+    store.getQueries().clear();
+    assertQuery(store, cache, query(150, 210, Integer.MAX_VALUE), 210);
+    Assert.assertEquals(ImmutableList.of(range(190, 199), range(200, 210)), store.getQueries());
+  }
+
+  @Test
+  public void testNotCached() {
+    MockMetricStore store = new MockMetricStore();
+    MetricsQueryCache cache = new MetricsQueryCache(store, 10, 300, 10);
+
+    // Time range that is not closed yet
+    assertQuery(store, cache, query(100, 200, Integer.MAX_VALUE), 105);
+    Assert.assertEquals(ImmutableList.of(range(100, 200)), store.getQueries());
+
+    // Query with aggregation is not cached
+    store.getQueries().clear();
+    MetricDataQuery query = new MetricDataQuery(100, 200, 1, 5, ImmutableMap.of("metric", AggregationFunction.SUM),
+                                                Collections.emptyMap(), Collections.emptyList(),
+                                                AggregationOption.SUM, null);
+    cache.query(query, 1000);
+    cache.query(query, 1000);
+    Assert.assertEquals(ImmutableList.of(range(100, 200), range(100, 200)), store.getQueries());
+  }
+
+  @Test
+  public void testTruncated() {
+    MockMetricStore store = new MockMetricStore();
+    MetricsQueryCache cache = new MetricsQueryCache(store, 10, 300, 10);
+
+    // Truncated results are reported, and are not cached
+    store.setTruncated(true);
+    Assert.assertTrue(cache.execute(query(100, 200, Integer.MAX_VALUE), 200).isTruncated());
+    Assert.assertTrue(cache.execute(query(100, 200, Integer.MAX_VALUE), 200).isTruncated());
+    Assert.assertEquals(ImmutableList.of(range(100, 189), range(190, 200), range(100, 189), range(190, 200)),
+                        store.getQueries());
+
+    // Complete results are cached again
+    store.setTruncated(false);
+    store.getQueries().clear();
+    Assert.assertFalse(cache.execute(query(100, 200, Integer.MAX_VALUE), 200).isTruncated());
+    Assert.assertFalse(cache.execute(query(100, 200, Integer.MAX_VALUE), 200).isTruncated());
+    Assert.assertEquals(ImmutableList.of(range(100, 189), range(190, 200), range(190, 200)), store.getQueries());
+  }
+
+  private void assertQuery(MetricStore store, MetricsQueryCache cache, MetricDataQuery query, long now) {
+    Assert.assertEquals(new HashSet<>(store.query(query)), new HashSet<>(cache.query(query, now)));
+    // remove the query made for verification
+    ((MockMetricStore) store).getQueries().remove(0);
+  }
+
+  private MetricDataQuery query(long start, long end, int limit) {
+    return new MetricDataQuery(start, end, 1, limit, ImmutableMap.of("metric", AggregationFunction.SUM),
+                               Collections.emptyMap(), ImmutableList.of("tag"), AggregationOption.FALSE, null);
+  }
+
+  private List<Long> range(long start, long end) {
+    return ImmutableList.of(start, end);
+  }
+
+  /**
+   * A {@link MetricStore} that has two time series with one value per second, and records the queries' time ranges.
+   */
+  private static final class MockMetricStore implements MetricStore {
+
+    private final List<List<Long>> queries = new ArrayList<>();
+    private boolean truncated;
+
+    List<List<Long>> getQueries() {
+      return queries;
+    }
+
+    void setTruncated(boolean truncated) {
+      this.truncated = truncated;
+    }
+
+    @Override
+    public MetricDataQueryResult execute(MetricDataQuery query) {
+      return new MetricDataQueryResult(query(query), truncated);
+    }
+
+    @Override
+    public Collection<MetricTimeSeries> query(MetricDataQuery query) {
+      queries.add(ImmutableList.of(query.getStartTs(), query.getEndTs()));
+      List<MetricTimeSeries> result = new ArrayList<>();
+      for (String tag : new String[] {"a", "b"}) {
+        List<TimeValue> timeValues = new ArrayList<>();
+        for (long ts = query.getStartTs(); ts <= query.getEndTs() && timeValues.size() < query.getLimit(); ts++) {
+          timeValues.add(new TimeValue(ts, ts * tag.charAt(0)));
+        }
+        if (!timeValues.isEmpty()) {
+          result.add(new MetricTimeSeries("metric", ImmutableMap.of("tag", tag), timeValues));
+        }
+      }
+      return result;
+    }
+
+    @Override
+    public void setMetricsContext(MetricsContext metricsContext) {
+      // no-op
+    }
+
+    @Override
+    public void add(MetricValues metricValues) {
+      throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public void add(Collection<? extends MetricValues> metricValues) {
+      throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public void deleteBefore(long timestamp) {
+      throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public void deleteTTLExpired() {
+      throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public void delete(MetricDeleteQuery query) {
+      throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public void deleteAll() {
+      throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public Collection<TagValue> findNextAvailableTags(MetricSearchQuery query) {
+      throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public Collection<String> findMetricNames(MetricSearchQuery query) {
+      throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public Map<String, MetricsProcessorStatus> getMetricsProcessorStats() {
+      throw new UnsupportedOperationException();
+    }
+  }
+}
@@ -0,0 +1,156 @@
+/*
+ * Copyright © 2020 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+
+package io.cdap.cdap.metrics.query;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+import io.cdap.cdap.api.dataset.lib.cube.TimeValue;
+import io.cdap.cdap.api.metrics.DistributionBuckets;
+import io.cdap.cdap.api.metrics.MetricTimeSeries;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Unit tests for {@link PercentileMetrics} and {@link DistributionBuckets}.
+ */
+public class PercentileMetricsTest {
+
+  @Test
+  public void testBuckets() {
+    // buckets are contiguous and cover all non-negative longs
+    Assert.assertEquals(0L, DistributionBuckets.getLowerBound(0));
+    for (int bucket = 1; bucket < DistributionBuckets.NUM_BUCKETS; bucket++) {
+      Assert.assertEquals(DistributionBuckets.getUpperBound(bucket - 1) + 1, DistributionBuckets.getLowerBound(bucket));
+    }
+    Assert.assertEquals(Long.MAX_VALUE, DistributionBuckets.getUpperBound(DistributionBuckets.NUM_BUCKETS - 1));
+
+    for (long value : new long[] { -5L, 0L, 1L, 7L, 8L, 9L, 100L, 1023L, 1024L, 123456789L, Long.MAX_VALUE }) {
+      int bucket = DistributionBuckets.getBucket(value);
+      long expected = Math.max(value, 0L);
+      Assert.assertTrue(DistributionBuckets.getLowerBound(bucket) <= expected);
+      Assert.assertTrue(DistributionBuckets.getUpperBound(bucket) >= expected);
+      // the bucket value has bounded relative error
+      double error = Math.abs((double) DistributionBuckets.getValue(bucket) - expected);
+      Assert.assertTrue(error <= expected / (2d * DistributionBuckets.SUB_BUCKETS));
+    }
+
+    String name = DistributionBuckets.getBucketMetricName("system.latency", 42);
+    Assert.assertEquals(42, DistributionBuckets.getBucketIndex(name));
+    Assert.assertEquals("system.latency", DistributionBuckets.getDistributionName(name));
+    Assert.assertEquals(-1, DistributionBuckets.getBucketIndex("system.latency"));
+    Assert.assertEquals(-1, DistributionBuckets.getBucketIndex("system.latency:bytes"));
+    Assert.assertEquals(-1, DistributionBuckets.getBucketIndex("system.latency:b9999"));
+    Assert.assertNull(DistributionBuckets.getDistributionName("system.latency:b"));
+  }
+
+  @Test
+  public void testParse() {
+    PercentileMetrics metrics = PercentileMetrics.parse(ImmutableList.of("system.reads", "system.latency:p99",
+                                                                         "system.latency:p99.9", "system.x:pending",
+                                                                         "system.y:p0", "system.z:p101"));
+    Assert.assertFalse(metrics.isEmpty());
+    Assert.assertEquals(ImmutableList.of("system.reads", "system.x:pending", "system.y:p0", "system.z:p101"),
+                        metrics.getMetrics());
+    Assert.assertEquals(ImmutableList.of("system.latency:b3", "system.latency:b10"),
+                        metrics.getBucketMetrics(ImmutableList.of("system.latency:b3", "system.reads",
+                                                                  "system.other:b2", "system.latency:b10")));
+
+    Assert.assertTrue(PercentileMetrics.parse(ImmutableList.of("system.reads")).isEmpty());
+
+    Assert.assertEquals(ImmutableList.of("system.reads", "system.latency:p50", "system.latency:p95",
+                                         "system.latency:p99"),
+                        new ArrayList<>(PercentileMetrics.toPercentileNames(
+                          ImmutableList.of("system.reads", "system.latency:b3", "system.latency:b10"))));
+  }
+
+  @Test
+  public void testCompute() {
+    // values 1 to 100 at timestamp 10, 1000 at timestamp 20, split into two series with different tags
+    Map<String, String> tags1 = ImmutableMap.of("ns", "ns1");
+    Map<String, String> tags2 = ImmutableMap.of("ns", "ns2");
+    Map<String, Map<Map<String, String>, Map<Long, Long>>> buckets = new HashMap<>();
+    for (int value = 1; value <= 100; value++) {
+      addBucket(buckets, value % 2 == 0 ? tags1 : tags2, 10L, value);
+    }
+    addBucket(buckets, tags1, 20L, 1000);
+
+    List<MetricTimeSeries> series = new ArrayList<>();
+    series.add(new MetricTimeSeries("system.reads", tags1, ImmutableList.of(new TimeValue(10L, 5L))));
+    series.add(new MetricTimeSeries("system.other:b3", tags1, ImmutableList.of(new TimeValue(10L, 5L))));
+    for (Map.Entry<String, Map<Map<String, String>, Map<Long, Long>>> entry : buckets.entrySet()) {
+      for (Map.Entry<Map<String, String>, Map<Long, Long>> tagsEntry : entry.getValue().entrySet()) {
+        List<TimeValue> timeValues = new ArrayList<>();
+        for (Map.Entry<Long, Long> timeValue : tagsEntry.getValue().entrySet()) {
+          timeValues.add(new TimeValue(timeValue.getKey(), timeValue.getValue()));
+        }
+        series.add(new MetricTimeSeries(entry.getKey(), tagsEntry.getKey(), timeValues));
+      }
+    }
+
+    PercentileMetrics metrics = PercentileMetrics.parse(ImmutableList.of("system.reads", "system.latency:p50",
+                                                                         "system.latency:p100"));
+    Collection<MetricTimeSeries> result = metrics.compute(series, Integer.MAX_VALUE);
+    Assert.assertEquals(5, result.size());
+
+    Map<String, Map<Map<String, String>, List<TimeValue>>> actual = new HashMap<>();
+    for (MetricTimeSeries timeSeries : result) {
+      actual.computeIfAbsent(timeSeries.getMetricName(), k -> new HashMap<>())
+        .put(timeSeries.getTagValues(), timeSeries.getTimeValues());
+    }
+    Assert.assertEquals(ImmutableList.of(new TimeValue(10L, 5L)), actual.get("system.reads").get(tags1));
+
+    // tags1 has the even values 2 to 100 at timestamp 10, and 1000 at timestamp 20
+    List<TimeValue> p50 = actual.get("system.latency:p50").get(tags1);
+    Assert.assertEquals(2, p50.size());
+    assertApproximate(50, p50.get(0).getValue());
+    assertApproximate(1000, p50.get(1).getValue());
+    assertApproximate(100, actual.get("system.latency:p100").get(tags1).get(0).getValue());
+
+    // tags2 has the odd values 1 to 99 at timestamp 10
+    List<TimeValue> p100 = actual.get("system.latency:p100").get(tags2);
+    Assert.assertEquals(1, p100.size());
+    assertApproximate(99, p100.get(0).getValue());
+
+    // The limit applies to the computed percentiles
+    for (MetricTimeSeries timeSeries : metrics.compute(series, 1)) {
+      Assert.assertEquals(1, timeSeries.getTimeValues().size());
+      if (timeSeries.getMetricName().equals("system.latency:p50") && timeSeries.getTagValues().equals(tags1)) {
+        assertApproximate(50, timeSeries.getTimeValues().get(0).getValue());
+      }
+    }
+  }
+
+  private void addBucket(Map<String, Map<Map<String, String>, Map<Long, Long>>> buckets,
+                         Map<String, String> tags, long timestamp, long value) {
+    String name = DistributionBuckets.getBucketMetricName("system.latency", DistributionBuckets.getBucket(value));
+    buckets.computeIfAbsent(name, k -> new HashMap<>())
+      .computeIfAbsent(tags, k -> new HashMap<>())
+      .merge(timestamp, 1L, Long::sum);
+  }
+
+  private void assertApproximate(long expected, long actual) {
+    Assert.assertTrue("Expected " + expected + " but got " + actual,
+                      Math.abs(expected - actual) <= (double) expected / DistributionBuckets.SUB_BUCKETS);
+  }
+}